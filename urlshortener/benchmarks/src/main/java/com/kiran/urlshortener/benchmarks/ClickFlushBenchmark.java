@@ -0,0 +1,135 @@
+package com.kiran.urlshortener.benchmarks;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import com.kiran.urlshortener.cache.CacheMetrics;
+import com.kiran.urlshortener.cache.RedisCircuitBreaker;
+import com.kiran.urlshortener.config.UrlShortenerProperties;
+import com.kiran.urlshortener.repository.ClickCountRepository;
+import com.kiran.urlshortener.repository.ShardMap;
+import com.kiran.urlshortener.service.ClickCountFlushJob;
+import com.kiran.urlshortener.service.ClickCountFlushJob.FlushResult;
+import com.kiran.urlshortener.service.ShortCodeGenerator;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import redis.embedded.RedisServer;
+
+/**
+ * One ClickCountFlushJob run draining {@code keys} click counters from an
+ * embedded Redis into url_mapping. The database defaults to in-memory H2 in
+ * PostgreSQL mode; pass {@code -p jdbcUrl=jdbc:postgresql://...} together
+ * with -Djdbc.user / -Djdbc.password to run against a real Postgres, whose
+ * url_mapping table must already exist.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 20)
+@Measurement(iterations = 50)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ClickFlushBenchmark {
+
+    @Param({ "1000", "10000" })
+    public int keys;
+
+    @Param({ "1000" })
+    public int chunkSize;
+
+    @Param({ "jdbc:h2:mem:benchmark;MODE=PostgreSQL;DB_CLOSE_DELAY=-1" })
+    public String jdbcUrl;
+
+    private RedisServer redisServer;
+    private LettuceConnectionFactory connectionFactory;
+    private StringRedisTemplate redisTemplate;
+    private ClickCountFlushJob flushJob;
+    private final List<byte[]> clickKeys = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void startServers() throws IOException {
+        int port = freePort();
+        redisServer = new RedisServer(port);
+        redisServer.start();
+
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("localhost", port));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(jdbcUrl,
+                System.getProperty("jdbc.user", "sa"), System.getProperty("jdbc.password", "")));
+        if (jdbcUrl.startsWith("jdbc:h2:")) {
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS url_mapping (id BIGINT PRIMARY KEY, "
+                    + "short_code VARCHAR(255) UNIQUE, click_count BIGINT, active BOOLEAN)");
+        }
+
+        ShortCodeGenerator generator = new ShortCodeGenerator();
+        List<Object[]> rows = new ArrayList<>(keys);
+        for (int i = 0; i < keys; i++) {
+            long id = 1_000_000_000L + i;
+            String code = generator.encode(id);
+            rows.add(new Object[] { id, code });
+            clickKeys.add(("click:" + code).getBytes(StandardCharsets.UTF_8));
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO url_mapping (id, short_code, click_count, active) "
+                + "VALUES (?, ?, 0, TRUE) ON CONFLICT DO NOTHING", rows);
+
+        UrlShortenerProperties properties = new UrlShortenerProperties();
+        properties.getClicks().setFlushChunkSize(chunkSize);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        flushJob = new ClickCountFlushJob(redisTemplate, new ClickCountRepository(ShardMap.single(jdbcTemplate)),
+                properties, meterRegistry,
+                new RedisCircuitBreaker(redisTemplate, new CacheMetrics(meterRegistry), properties, meterRegistry));
+    }
+
+    @Setup(Level.Invocation)
+    public void recordClicks() {
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (byte[] key : clickKeys) {
+                connection.stringCommands().incrBy(key, 3);
+            }
+            return null;
+        });
+    }
+
+    @Benchmark
+    public FlushResult flush() {
+        return flushJob.flushClicks();
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServers() throws IOException {
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
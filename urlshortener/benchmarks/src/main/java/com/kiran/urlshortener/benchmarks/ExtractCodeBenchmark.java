@@ -0,0 +1,39 @@
+package com.kiran.urlshortener.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.kiran.urlshortener.config.UrlShortenerProperties;
+import com.kiran.urlshortener.service.ClickCountFlushJob;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Per-key cost of turning a scanned click:{code} key back into its code.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ExtractCodeBenchmark {
+
+    private final ClickCountFlushJob flushJob = new ClickCountFlushJob(null, null, new UrlShortenerProperties(),
+            new SimpleMeterRegistry(), null);
+    private final String key = "click:bLkA9x";
+
+    @Benchmark
+    public String extractCode() {
+        return flushJob.extractCode(key);
+    }
+}
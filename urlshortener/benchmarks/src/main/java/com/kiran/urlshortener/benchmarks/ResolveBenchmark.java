@@ -0,0 +1,122 @@
+package com.kiran.urlshortener.benchmarks;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.kiran.urlshortener.cache.CacheMetrics;
+import com.kiran.urlshortener.cache.RedirectResponseCache;
+import com.kiran.urlshortener.cache.RedisCircuitBreaker;
+import com.kiran.urlshortener.cache.UrlNearCache;
+import com.kiran.urlshortener.config.ReplicaReads;
+import com.kiran.urlshortener.config.UrlShortenerProperties;
+import com.kiran.urlshortener.entity.UrlMapping;
+import com.kiran.urlshortener.repository.UrlMappingStore;
+import com.kiran.urlshortener.service.ClickBuffer;
+import com.kiran.urlshortener.service.IssuedCodeIndex;
+import com.kiran.urlshortener.service.ShortCodeGenerator;
+import com.kiran.urlshortener.service.UrlService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * UrlService.resolveLongUrl over a fixed set of codes, with the given share
+ * of them present in the in-memory Redis stand-in and the rest served by an
+ * in-memory repository. With the near cache enabled every code becomes a
+ * local hit after warmup, which is the steady state of a hot node.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResolveBenchmark {
+
+    private static final int CODES = 4096;
+
+    @Param({ "0.0", "0.5", "0.9", "1.0" })
+    public double redisHitRatio;
+
+    @Param({ "false", "true" })
+    public boolean nearCache;
+
+    private final String[] codes = new String[CODES];
+    private UrlService urlService;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Setup
+    public void setUp() {
+        ShortCodeGenerator generator = new ShortCodeGenerator();
+        InMemoryRedisTemplate redis = new InMemoryRedisTemplate();
+        Map<Long, UrlMapping> rows = new HashMap<>();
+        SplittableRandom random = new SplittableRandom(42);
+
+        for (int i = 0; i < CODES; i++) {
+            long id = 1_000_000L + i;
+            String code = generator.encode(id);
+            String longUrl = "https://example.com/articles/" + id + "?utm_source=benchmark";
+            codes[i] = code;
+
+            UrlMapping mapping = new UrlMapping();
+            mapping.setId(id);
+            mapping.setShortCode(code);
+            mapping.setLongUrl(longUrl);
+            mapping.setActive(true);
+            rows.put(id, mapping);
+
+            if (random.nextDouble() < redisHitRatio) {
+                redis.preload("short:" + code, longUrl);
+            }
+        }
+
+        UrlShortenerProperties properties = new UrlShortenerProperties();
+        properties.getCache().getLocal().setEnabled(nearCache);
+        properties.getClicks().setMaxPendingCodes(CODES * 2);
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        CacheMetrics cacheMetrics = new CacheMetrics(meterRegistry);
+        RedisCircuitBreaker redisBreaker = new RedisCircuitBreaker(redis, cacheMetrics, properties, meterRegistry);
+        urlService = new UrlService(repository(rows), generator, redis, null,
+                new UrlNearCache(properties), cacheMetrics, properties,
+                new ClickBuffer(redis, properties, meterRegistry, redisBreaker), null, null,
+                new RedirectResponseCache(properties), new IssuedCodeIndex(null, properties), null, redisBreaker,
+                new ReplicaReads(properties));
+    }
+
+    @Benchmark
+    public String resolve(Cursor cursor) {
+        return urlService.resolveLongUrl(codes[cursor.next++ & (CODES - 1)]);
+    }
+
+    private static UrlMappingStore repository(Map<Long, UrlMapping> rows) {
+        return (UrlMappingStore) Proxy.newProxyInstance(
+                UrlMappingStore.class.getClassLoader(),
+                new Class<?>[] { UrlMappingStore.class },
+                (proxy, method, args) -> {
+                    if (method.getName().equals("findByIdAndActiveTrue")) {
+                        return Optional.ofNullable(rows.get((Long) args[0]));
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
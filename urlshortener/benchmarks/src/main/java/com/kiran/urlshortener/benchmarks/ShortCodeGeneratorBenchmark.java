@@ -0,0 +1,79 @@
+package com.kiran.urlshortener.benchmarks;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.kiran.urlshortener.service.ShortCodeGenerator;
+
+/**
+ * Encodes and decodes ids drawn from a band that produces codes of a fixed
+ * length, so results can be compared per code length.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ShortCodeGeneratorBenchmark {
+
+    private static final int IDS = 1024;
+
+    // Code length produced by every id in the band: ids in [62^(n-1), 62^n).
+    @Param({ "1", "4", "7", "10" })
+    public int codeLength;
+
+    private final ShortCodeGenerator generator = new ShortCodeGenerator();
+    private final long[] ids = new long[IDS];
+    private final String[] codes = new String[IDS];
+    private final char[] buffer = new char[ShortCodeGenerator.MAX_LENGTH];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        long low = codeLength == 1 ? 1 : pow62(codeLength - 1);
+        long high = pow62(codeLength);
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < IDS; i++) {
+            ids[i] = random.nextLong(low, high);
+            codes[i] = generator.encode(ids[i]);
+        }
+    }
+
+    @Benchmark
+    public String encode() {
+        long id = ids[next++ & (IDS - 1)];
+        return generator.encode(id);
+    }
+
+    @Benchmark
+    public int encodeIntoBuffer() {
+        long id = ids[next++ & (IDS - 1)];
+        return generator.encode(id, buffer, 0);
+    }
+
+    @Benchmark
+    public long decode() {
+        return generator.decode(codes[next++ & (IDS - 1)]);
+    }
+
+    private static long pow62(int exponent) {
+        long value = 1;
+        for (int i = 0; i < exponent; i++) {
+            value *= 62;
+        }
+        return value;
+    }
+}
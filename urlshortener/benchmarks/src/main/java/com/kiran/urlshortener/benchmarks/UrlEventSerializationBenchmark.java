@@ -0,0 +1,95 @@
+package com.kiran.urlshortener.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.common.compress.Compression;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.MemoryRecords;
+import org.apache.kafka.common.record.MemoryRecordsBuilder;
+import org.apache.kafka.common.record.TimestampType;
+import org.apache.kafka.common.serialization.Serializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import com.kiran.urlshortener.events.UrlCreatedEvent;
+import com.kiran.urlshortener.events.UrlCreatedEventSerializer;
+import com.kiran.urlshortener.service.ShortCodeGenerator;
+
+/**
+ * Events per second for serializing UrlCreatedEvents and appending them to
+ * a Kafka record batch, as the producer does before a send, for the JSON
+ * format the topic used to carry and the binary one. The score is per event.
+ * Bytes per event on the wire (batch size / events, including the JSON type
+ * header) are printed once per trial.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class UrlEventSerializationBenchmark {
+
+    private static final String TOPIC = "url-created-events";
+    private static final int EVENTS = 500;
+
+    @Param({ "json", "binary" })
+    public String format;
+
+    @Param({ "none", "lz4" })
+    public String compression;
+
+    private Serializer<UrlCreatedEvent> serializer;
+    private Compression codec;
+    private UrlCreatedEvent[] events;
+    private byte[][] keys;
+    private ByteBuffer buffer;
+
+    @Setup
+    public void setUp() {
+        serializer = format.equals("json") ? new JsonSerializer<>() : new UrlCreatedEventSerializer();
+        codec = Compression.of(compression).build();
+        ShortCodeGenerator generator = new ShortCodeGenerator();
+        long start = Instant.parse("2024-03-01T10:00:00Z").toEpochMilli();
+        events = new UrlCreatedEvent[EVENTS];
+        keys = new byte[EVENTS][];
+        for (int i = 0; i < EVENTS; i++) {
+            long id = 5_000_000L + i * 7L;
+            String code = generator.encode(id);
+            events[i] = new UrlCreatedEvent(id, code, Instant.ofEpochMilli(start + i * 13L));
+            keys[i] = code.getBytes(StandardCharsets.UTF_8);
+        }
+        buffer = ByteBuffer.allocate(1 << 20);
+
+        MemoryRecords records = batch();
+        System.out.printf("%n%s/%s: %.1f bytes per event%n", format, compression,
+                (double) records.sizeInBytes() / EVENTS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public MemoryRecords batch() {
+        buffer.clear();
+        MemoryRecordsBuilder builder = MemoryRecords.builder(buffer, codec, TimestampType.CREATE_TIME, 0L);
+        for (int i = 0; i < EVENTS; i++) {
+            RecordHeaders headers = new RecordHeaders();
+            byte[] value = serializer.serialize(TOPIC, headers, events[i]);
+            builder.append(0L, keys[i], value, headers.toArray());
+        }
+        return builder.build();
+    }
+}
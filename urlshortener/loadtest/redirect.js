@@ -0,0 +1,34 @@
+// k6 redirect load test used to compare the default (platform thread) and
+// virtual-threads profiles. Run once per profile and connection level:
+//
+//   k6 run -e BASE_URL=http://localhost:8081 -e VUS=1000  loadtest/redirect.js
+//   k6 run -e BASE_URL=http://localhost:8081 -e VUS=10000 loadtest/redirect.js
+//   k6 run -e BASE_URL=http://localhost:8081 -e VUS=50000 loadtest/redirect.js
+//
+// CODES is a comma separated list of existing short codes to hit. Every VU
+// shares the generator's IP, so start the servlet app with the rate limiter
+// off, or set API_KEY to a key with a high redirect limit; otherwise
+// requests are simply answered with 429.
+import http from 'k6/http';
+import { check } from 'k6';
+
+const baseUrl = __ENV.BASE_URL || 'http://localhost:8081';
+const codes = (__ENV.CODES || 'b').split(',');
+const headers = __ENV.API_KEY ? { 'X-API-Key': __ENV.API_KEY } : {};
+
+export const options = {
+  scenarios: {
+    redirects: {
+      executor: 'constant-vus',
+      vus: Number(__ENV.VUS || 1000),
+      duration: __ENV.DURATION || '2m',
+    },
+  },
+  summaryTrendStats: ['avg', 'p(50)', 'p(99)', 'p(99.9)', 'max'],
+};
+
+export default function () {
+  const code = codes[Math.floor(Math.random() * codes.length)];
+  const res = http.get(`${baseUrl}/api/v1/urls/${code}`, { redirects: 0, headers });
+  check(res, { 'is 302': (r) => r.status === 302 });
+}
@@ -0,0 +1,134 @@
+package com.kiran.urlshortener.cache;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Meters for the redirect and shorten paths: per-tier cache hits, latency by
+ * where a lookup was answered and Redis calls that failed and were ignored.
+ * Percentiles and histogram buckets are configured under
+ * management.metrics.distribution.
+ */
+@Component
+public class CacheMetrics {
+
+    public enum Tier {
+        RESPONSE, LOCAL, REDIS
+    }
+
+    /** Why a lookup was answered "not found" without reaching the database. */
+    public enum Negative {
+        INDEX, TOMBSTONE
+    }
+
+    /** Where a redirect lookup was answered. */
+    public enum Source {
+        RESPONSE, LOCAL, REDIS, DATABASE, NEGATIVE
+    }
+
+    /** How a shorten request was answered. */
+    public enum Shorten {
+        EXISTING, CREATED, RACE
+    }
+
+    private final Map<Tier, Counter> hits = new EnumMap<>(Tier.class);
+    private final Map<Tier, Counter> misses = new EnumMap<>(Tier.class);
+    private final Map<Negative, Counter> negatives = new EnumMap<>(Negative.class);
+    private final Map<Source, Timer> resolves = new EnumMap<>(Source.class);
+    private final Map<Shorten, Timer> shortens = new EnumMap<>(Shorten.class);
+    private final Map<String, Counter> redisErrors = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+    private final Counter coalesced;
+    private final Counter earlyRefreshes;
+
+    public CacheMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        for (Tier tier : Tier.values()) {
+            String name = tier.name().toLowerCase();
+            hits.put(tier, Counter.builder("urlshortener.cache.requests")
+                    .tag("tier", name)
+                    .tag("result", "hit")
+                    .register(meterRegistry));
+            misses.put(tier, Counter.builder("urlshortener.cache.requests")
+                    .tag("tier", name)
+                    .tag("result", "miss")
+                    .register(meterRegistry));
+        }
+        for (Negative negative : Negative.values()) {
+            negatives.put(negative, Counter.builder("urlshortener.cache.negative.hits")
+                    .tag("source", negative.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+        for (Source source : Source.values()) {
+            resolves.put(source, Timer.builder("urlshortener.resolve")
+                    .tag("source", source.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+        for (Shorten result : Shorten.values()) {
+            shortens.put(result, Timer.builder("urlshortener.shorten")
+                    .tag("result", result.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+        coalesced = Counter.builder("urlshortener.cache.loads.coalesced")
+                .description("Database loads served by another request's load of the same code")
+                .register(meterRegistry);
+        earlyRefreshes = Counter.builder("urlshortener.cache.early.refreshes")
+                .description("Redis hits that reloaded the key before its TTL ran out")
+                .register(meterRegistry);
+    }
+
+    public void hit(Tier tier) {
+        hits.get(tier).increment();
+    }
+
+    public void miss(Tier tier) {
+        misses.get(tier).increment();
+    }
+
+    public void negativeHit(Negative source) {
+        negatives.get(source).increment();
+    }
+
+    public void coalesced() {
+        coalesced.increment();
+    }
+
+    public void earlyRefresh() {
+        earlyRefreshes.increment();
+    }
+
+    public void resolved(Source source, long startNanos) {
+        resolves.get(source).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void shortened(Shorten result, long startNanos) {
+        shortens.get(result).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Counts a Redis call whose failure was swallowed so the request could
+     * fall through to the next tier.
+     */
+    public void redisError(String operation) {
+        redisErrors.computeIfAbsent(operation, op -> Counter.builder("urlshortener.redis.errors")
+                .tag("operation", op)
+                .register(meterRegistry))
+                .increment();
+    }
+
+    public double hitCount(Tier tier) {
+        return hits.get(tier).count();
+    }
+
+    public double missCount(Tier tier) {
+        return misses.get(tier).count();
+    }
+}
@@ -0,0 +1,82 @@
+package com.kiran.urlshortener.cache;
+
+import java.time.Duration;
+
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.kiran.urlshortener.config.UrlShortenerProperties;
+
+/**
+ * Ready-to-write redirects for the hottest short codes. Size-bounded with
+ * Caffeine's frequency-based admission, so rarely requested codes do not
+ * displace popular ones. Each entry lives no longer than the near cache entry
+ * it was copied from, and therefore never past the mapping's expiryAt.
+ */
+@Component
+public class RedirectResponseCache {
+
+    private final boolean enabled;
+    private final Cache<String, Redirect> cache;
+
+    /**
+     * The complete response for one code: a 302 with this Location value.
+     */
+    public record Redirect(String location, long ttlNanos) {
+    }
+
+    public RedirectResponseCache(UrlShortenerProperties properties) {
+        UrlShortenerProperties.Responses responses = properties.getCache().getResponses();
+        this.enabled = responses.isEnabled();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(responses.getMaximumSize())
+                .expireAfter(new RedirectExpiry())
+                .build();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Redirect get(String shortCode) {
+        return enabled ? cache.getIfPresent(shortCode) : null;
+    }
+
+    /**
+     * @param ttl remaining lifetime; nothing is cached when null or not positive
+     */
+    public void put(String shortCode, String location, Duration ttl) {
+        if (!enabled || location == null || ttl == null || ttl.isNegative() || ttl.isZero()) {
+            return;
+        }
+        cache.put(shortCode, new Redirect(location, ttl.toNanos()));
+    }
+
+    public void invalidate(String shortCode) {
+        cache.invalidate(shortCode);
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    private static class RedirectExpiry implements Expiry<String, Redirect> {
+
+        @Override
+        public long expireAfterCreate(String key, Redirect value, long currentTime) {
+            return value.ttlNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Redirect value, long currentTime, long currentDuration) {
+            return value.ttlNanos();
+        }
+
+        @Override
+        public long expireAfterRead(String key, Redirect value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
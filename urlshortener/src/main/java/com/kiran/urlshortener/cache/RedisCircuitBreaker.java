@@ -0,0 +1,203 @@
+package com.kiran.urlshortener.cache;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import com.kiran.urlshortener.config.UrlShortenerProperties;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Circuit breaker shared by the StringRedisTemplate callers. After
+ * failure-threshold consecutive failed or slow calls it opens, and every call
+ * fails at once instead of waiting out the Redis timeout; callers already
+ * treat a Redis failure as a miss. Requests never probe an open breaker: a
+ * PING does, first after min-open and then at doubling intervals while Redis
+ * stays unhealthy. The probe has a thread of its own, so it never waits behind
+ * the long @Scheduled jobs on the shared scheduling pool. A breaker that
+ * reopens soon after closing keeps doubling from where it was, so a flapping
+ * Redis is probed less often.
+ */
+@Slf4j
+@Component
+public class RedisCircuitBreaker {
+
+    // Thrown for every rejected call; no stack trace, so rejecting is cheap.
+    private static final RuntimeException OPEN =
+            new RuntimeException("Redis circuit breaker is open", null, false, false) {
+            };
+
+    private final StringRedisTemplate redisTemplate;
+    private final CacheMetrics cacheMetrics;
+    private final UrlShortenerProperties.RedisBreaker config;
+    private final long slowCallNanos;
+    private final long minOpenNanos;
+    private final long maxOpenNanos;
+    private final LongSupplier clock;
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final Counter rejected;
+    private final Counter opened;
+
+    private ScheduledExecutorService prober;
+
+    private volatile boolean open;
+    private volatile long retryAt;
+
+    // Guarded by this.
+    private long openNanos;
+    private long closedAt;
+
+    public RedisCircuitBreaker(StringRedisTemplate redisTemplate, CacheMetrics cacheMetrics,
+            UrlShortenerProperties properties, MeterRegistry meterRegistry) {
+        this(redisTemplate, cacheMetrics, properties, meterRegistry, System::nanoTime);
+    }
+
+    RedisCircuitBreaker(StringRedisTemplate redisTemplate, CacheMetrics cacheMetrics,
+            UrlShortenerProperties properties, MeterRegistry meterRegistry, LongSupplier clock) {
+        this.redisTemplate = redisTemplate;
+        this.cacheMetrics = cacheMetrics;
+        this.config = properties.getRedisBreaker();
+        this.slowCallNanos = config.getSlowCallThreshold().toNanos();
+        this.minOpenNanos = config.getMinOpen().toNanos();
+        this.maxOpenNanos = Math.max(minOpenNanos, config.getMaxOpen().toNanos());
+        this.clock = clock;
+        this.rejected = meterRegistry.counter("urlshortener.redis.breaker.rejected");
+        this.opened = meterRegistry.counter("urlshortener.redis.breaker.opened");
+        Gauge.builder("urlshortener.redis.breaker.open", this, breaker -> breaker.open ? 1 : 0)
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        prober = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "redis-breaker-probe");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = config.getProbeIntervalMs();
+        prober.scheduleWithFixedDelay(this::probe, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (prober != null) {
+            prober.shutdownNow();
+        }
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Runs a single Redis command. Failures are counted on
+     * urlshortener.redis.errors and rethrown; so is the rejection when the
+     * breaker is open.
+     */
+    public <T> T call(String operation, Supplier<T> command) {
+        return execute(operation, command, true);
+    }
+
+    public void run(String operation, Runnable command) {
+        execute(operation, () -> {
+            command.run();
+            return null;
+        }, true);
+    }
+
+    /**
+     * Like {@link #call} for pipelines and scripts, whose duration grows with
+     * the batch: only failures count against the breaker, not slowness.
+     */
+    public <T> T batch(String operation, Supplier<T> commands) {
+        return execute(operation, commands, false);
+    }
+
+    private <T> T execute(String operation, Supplier<T> command, boolean timed) {
+        if (open) {
+            rejected.increment();
+            throw OPEN;
+        }
+        long start = clock.getAsLong();
+        T result;
+        try {
+            result = command.get();
+        } catch (RuntimeException e) {
+            cacheMetrics.redisError(operation);
+            failed();
+            throw e;
+        }
+        if (timed && clock.getAsLong() - start > slowCallNanos) {
+            failed();
+        } else if (consecutiveFailures.get() != 0) {
+            consecutiveFailures.set(0);
+        }
+        return result;
+    }
+
+    private void failed() {
+        if (config.isEnabled() && consecutiveFailures.incrementAndGet() >= config.getFailureThreshold()) {
+            trip();
+        }
+    }
+
+    private synchronized void trip() {
+        if (open) {
+            return;
+        }
+        long now = clock.getAsLong();
+        boolean flapping = openNanos > 0 && now - closedAt < maxOpenNanos;
+        openNanos = flapping ? Math.min(2 * openNanos, maxOpenNanos) : minOpenNanos;
+        retryAt = now + openNanos;
+        open = true;
+        opened.increment();
+        log.warn("Redis circuit breaker opened after {} failed or slow calls, probing in {} ms",
+                consecutiveFailures.get(), TimeUnit.NANOSECONDS.toMillis(openNanos));
+    }
+
+    /**
+     * Pings Redis once the open breaker's wait is over, closing it if the
+     * PING answers within slow-call-threshold. Runs every probe-interval-ms.
+     */
+    public void probe() {
+        if (!open || clock.getAsLong() - retryAt < 0) {
+            return;
+        }
+
+        long start = clock.getAsLong();
+        boolean healthy;
+        try {
+            redisTemplate.execute((RedisCallback<String>) RedisConnection::ping);
+            healthy = clock.getAsLong() - start <= slowCallNanos;
+        } catch (Exception e) {
+            healthy = false;
+        }
+
+        synchronized (this) {
+            long now = clock.getAsLong();
+            if (healthy) {
+                consecutiveFailures.set(0);
+                closedAt = now;
+                open = false;
+                log.info("Redis circuit breaker closed");
+            } else {
+                openNanos = Math.min(2 * openNanos, maxOpenNanos);
+                retryAt = now + openNanos;
+            }
+        }
+    }
+}
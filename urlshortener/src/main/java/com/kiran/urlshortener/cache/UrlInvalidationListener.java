@@ -0,0 +1,30 @@
+package com.kiran.urlshortener.cache;
+
+import java.nio.charset.StandardCharsets;
+
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+@Component
+public class UrlInvalidationListener implements MessageListener {
+
+    private final UrlNearCache nearCache;
+    private final RedirectResponseCache responseCache;
+
+    public UrlInvalidationListener(UrlNearCache nearCache, RedirectResponseCache responseCache) {
+        this.nearCache = nearCache;
+        this.responseCache = responseCache;
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String shortCode = new String(message.getBody(), StandardCharsets.UTF_8);
+        nearCache.invalidate(shortCode);
+        responseCache.invalidate(shortCode);
+        log.debug("Invalidated local cache entry: {}", shortCode);
+    }
+}
@@ -0,0 +1,106 @@
+package com.kiran.urlshortener.cache;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.kiran.urlshortener.config.UrlShortenerProperties;
+
+/**
+ * In-process cache consulted before Redis on the redirect path. Entries never
+ * outlive the mapping's expiryAt and are capped at the configured max TTL, so a
+ * missed invalidation message is bounded by that TTL.
+ */
+@Component
+public class UrlNearCache {
+
+    private final boolean enabled;
+    private final long maxTtlNanos;
+    private final Cache<String, Entry> cache;
+
+    public UrlNearCache(UrlShortenerProperties properties) {
+        UrlShortenerProperties.Local local = properties.getCache().getLocal();
+        this.enabled = local.isEnabled();
+        this.maxTtlNanos = local.getMaxTtl().toNanos();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(local.getMaximumSize())
+                .expireAfter(new EntryExpiry())
+                .build();
+    }
+
+    public String get(String shortCode) {
+        if (!enabled) {
+            return null;
+        }
+        Entry entry = cache.getIfPresent(shortCode);
+        return entry == null ? null : entry.longUrl();
+    }
+
+    public void put(String shortCode, String longUrl, LocalDateTime expiryAt) {
+        if (expiryAt == null) {
+            put(shortCode, longUrl, (Duration) null);
+            return;
+        }
+        put(shortCode, longUrl, Duration.between(LocalDateTime.now(), expiryAt));
+    }
+
+    /**
+     * @param ttl remaining lifetime of the mapping, or null if it never expires
+     */
+    public void put(String shortCode, String longUrl, Duration ttl) {
+        if (!enabled || longUrl == null) {
+            return;
+        }
+        long ttlNanos = ttl == null ? maxTtlNanos : Math.min(maxTtlNanos, ttl.toNanos());
+        if (ttlNanos <= 0) {
+            return;
+        }
+        cache.put(shortCode, new Entry(longUrl, ttlNanos));
+    }
+
+    /**
+     * @return how long the entry for {@code shortCode} has left, or null if
+     *         there is none
+     */
+    public Duration expiresAfter(String shortCode) {
+        if (!enabled) {
+            return null;
+        }
+        return cache.policy().expireVariably()
+                .flatMap(expiry -> expiry.getExpiresAfter(shortCode))
+                .orElse(null);
+    }
+
+    public void invalidate(String shortCode) {
+        cache.invalidate(shortCode);
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    private record Entry(String longUrl, long ttlNanos) {
+    }
+
+    private static class EntryExpiry implements Expiry<String, Entry> {
+
+        @Override
+        public long expireAfterCreate(String key, Entry value, long currentTime) {
+            return value.ttlNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Entry value, long currentTime, long currentDuration) {
+            return value.ttlNanos();
+        }
+
+        @Override
+        public long expireAfterRead(String key, Entry value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.kiran.urlshortener.config;
+
+import org.springframework.boot.autoconfigure.kafka.ConcurrentKafkaListenerContainerFactoryConfigurer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.listener.ContainerProperties.AckMode;
+
+@Configuration
+public class KafkaConsumerConfig {
+
+    /**
+     * Listener factory for batch consumers that acknowledge each batch
+     * themselves. Otherwise configured from spring.kafka like the default
+     * factory, which record listeners keep using.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> batchKafkaListenerContainerFactory(
+            ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
+            ConsumerFactory<Object, Object> consumerFactory,
+            UrlShortenerProperties properties) {
+
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+        configurer.configure(factory, consumerFactory);
+        factory.setBatchListener(true);
+        factory.setConcurrency(properties.getEvents().getConsumerConcurrency());
+        factory.getContainerProperties().setAckMode(AckMode.MANUAL);
+        return factory;
+    }
+}
@@ -0,0 +1,25 @@
+package com.kiran.urlshortener.config;
+
+import org.apache.kafka.clients.admin.NewTopic;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.TopicBuilder;
+
+@Configuration
+public class KafkaTopicConfig {
+
+    // Click rollups are written per partition, so partitions bounds how many
+    // consumers can share the work.
+    @Bean
+    public NewTopic clickEventsTopic(UrlShortenerProperties properties) {
+        UrlShortenerProperties.Analytics analytics = properties.getAnalytics();
+        return TopicBuilder.name(analytics.getTopic())
+                .partitions(analytics.getPartitions())
+                .build();
+    }
+
+    @Bean
+    public NewTopic urlCreatedEventsTopic() {
+        return TopicBuilder.name("url-created-events").build();
+    }
+}
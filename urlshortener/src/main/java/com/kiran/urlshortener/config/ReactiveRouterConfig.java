@@ -0,0 +1,26 @@
+package com.kiran.urlshortener.config;
+
+import static org.springframework.web.reactive.function.server.RequestPredicates.GET;
+import static org.springframework.web.reactive.function.server.RouterFunctions.route;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import com.kiran.urlshortener.controller.ReactiveRedirectHandler;
+
+/**
+ * Routes for the reactive profile. Only the redirect is served; creation,
+ * bulk and export stay on the servlet stack.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveRouterConfig {
+
+    @Bean
+    public RouterFunction<ServerResponse> redirectRoutes(ReactiveRedirectHandler handler) {
+        return route(GET("/api/v1/urls/{shortCode}"), handler::redirect);
+    }
+}
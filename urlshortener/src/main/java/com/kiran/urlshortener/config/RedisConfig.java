@@ -0,0 +1,26 @@
+package com.kiran.urlshortener.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import com.kiran.urlshortener.cache.UrlInvalidationListener;
+
+@Configuration
+public class RedisConfig {
+
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(
+            RedisConnectionFactory connectionFactory,
+            UrlInvalidationListener invalidationListener,
+            UrlShortenerProperties properties) {
+
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(invalidationListener,
+                new ChannelTopic(properties.getCache().getInvalidationChannel()));
+        return container;
+    }
+}
@@ -0,0 +1,46 @@
+package com.kiran.urlshortener.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Replaces the auto-configured DataSource with one that also holds a pool per
+ * configured replica. Without urlshortener.replicas.enabled, Boot's single
+ * pool on spring.datasource is used as before.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "urlshortener.replicas", name = "enabled", havingValue = "true")
+public class ReplicaDataSourceConfig {
+
+    @Bean
+    public ReplicaRoutingDataSource dataSource(DataSourceProperties dataSourceProperties,
+            UrlShortenerProperties properties) {
+        HikariDataSource primary = dataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        primary.setPoolName("primary");
+
+        List<ReplicaRoutingDataSource.Replica> replicas = new ArrayList<>();
+        for (UrlShortenerProperties.Replica node : properties.getReplicas().getNodes()) {
+            HikariDataSource pool = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(node.getUrl())
+                    .username(node.getUsername())
+                    .password(node.getPassword())
+                    .build();
+            pool.setPoolName(node.getName());
+            pool.setMaximumPoolSize(node.getMaximumPoolSize());
+            pool.setReadOnly(true);
+            replicas.add(new ReplicaRoutingDataSource.Replica(node.getName(), pool, node.getWeight()));
+        }
+        return new ReplicaRoutingDataSource(primary, replicas, properties.getReplicas());
+    }
+}
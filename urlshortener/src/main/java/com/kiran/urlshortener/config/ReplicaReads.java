@@ -0,0 +1,46 @@
+package com.kiran.urlshortener.config;
+
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Marks the queries that may read from a replica. Only connections opened
+ * inside {@link #read} are routed by ReplicaRoutingDataSource; a transaction
+ * that already holds a connection keeps using it.
+ */
+@Component
+public class ReplicaReads {
+
+    private static final ThreadLocal<Boolean> ACTIVE = new ThreadLocal<>();
+
+    private final boolean enabled;
+
+    public ReplicaReads(UrlShortenerProperties properties) {
+        this.enabled = properties.getReplicas().isEnabled();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Runs the query on a replica when one is healthy and caught up, else on
+     * the primary. The result may be up to replicas.max-lag old.
+     */
+    public <T> T read(Supplier<T> query) {
+        if (!enabled || ACTIVE.get() != null) {
+            return query.get();
+        }
+        ACTIVE.set(Boolean.TRUE);
+        try {
+            return query.get();
+        } finally {
+            ACTIVE.remove();
+        }
+    }
+
+    static boolean isActive() {
+        return ACTIVE.get() != null;
+    }
+}
@@ -0,0 +1,197 @@
+package com.kiran.urlshortener.config;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Hands out replica connections inside {@link ReplicaReads#read} and primary
+ * connections everywhere else. A replica is picked at random in proportion to
+ * its weight among those whose last health check found them streaming from
+ * the primary with a lag of at most max-lag. With none usable, or when the
+ * chosen one refuses a connection, the read goes to the primary; replicas
+ * start out unusable until their first check.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractDataSource implements MeterBinder, DisposableBean {
+
+    // Replay lag in milliseconds, and whether the WAL receiver is streaming.
+    // Lag is 0 when a streaming replica has replayed everything it received,
+    // so an idle primary does not make it look behind; a replica whose
+    // receiver is disconnected has received nothing new either, so it is only
+    // as fresh as its last replayed transaction and is not used at all. A
+    // stalled connection stops counting as streaming after
+    // wal_receiver_timeout. The status column is NULL without
+    // pg_read_all_stats, which the health check user therefore needs.
+    static final String LAG_QUERY = """
+            SELECT CASE
+                WHEN NOT pg_is_in_recovery() THEN 0
+                WHEN receiver.streaming AND pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000, 0)
+            END::bigint,
+            NOT pg_is_in_recovery() OR receiver.streaming
+            FROM (SELECT EXISTS (SELECT 1 FROM pg_stat_wal_receiver WHERE status = 'streaming') AS streaming)
+                AS receiver""";
+
+    private static final int HEALTH_CHECK_TIMEOUT_SECONDS = 2;
+
+    public static final class Replica {
+
+        private final String name;
+        private final DataSource dataSource;
+        private final int weight;
+        private volatile boolean healthy;
+        private volatile long lagMillis;
+
+        public Replica(String name, DataSource dataSource, int weight) {
+            this.name = name;
+            this.dataSource = dataSource;
+            this.weight = weight;
+        }
+    }
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final long maxLagMillis;
+    private final AtomicLong fallbacks = new AtomicLong();
+
+    public ReplicaRoutingDataSource(DataSource primary, List<Replica> replicas,
+            UrlShortenerProperties.Replicas config) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        this.maxLagMillis = config.getMaxLag().toMillis();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!ReplicaReads.isActive()) {
+            return primary.getConnection();
+        }
+
+        Replica replica = choose();
+        if (replica != null) {
+            try {
+                return replica.dataSource.getConnection();
+            } catch (SQLException e) {
+                replica.healthy = false;
+                log.warn("Replica {} refused a connection, reading from the primary until it passes a health check",
+                        replica.name, e);
+            }
+        }
+        fallbacks.incrementAndGet();
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return primary.getConnection(username, password);
+    }
+
+    private Replica choose() {
+        int total = 0;
+        for (Replica replica : replicas) {
+            if (usable(replica)) {
+                total += replica.weight;
+            }
+        }
+        if (total <= 0) {
+            return null;
+        }
+
+        int pick = ThreadLocalRandom.current().nextInt(total);
+        for (Replica replica : replicas) {
+            if (usable(replica)) {
+                pick -= replica.weight;
+                if (pick < 0) {
+                    return replica;
+                }
+            }
+        }
+        return null;
+    }
+
+    private boolean usable(Replica replica) {
+        return replica.healthy && replica.lagMillis <= maxLagMillis && replica.weight > 0;
+    }
+
+    @Scheduled(fixedDelayString = "${urlshortener.replicas.health-check-interval-ms:5000}")
+    public void checkHealth() {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.dataSource.getConnection();
+                    Statement statement = connection.createStatement()) {
+                statement.setQueryTimeout(HEALTH_CHECK_TIMEOUT_SECONDS);
+                boolean streaming = false;
+                try (ResultSet rs = statement.executeQuery(LAG_QUERY)) {
+                    replica.lagMillis = Long.MAX_VALUE;
+                    if (rs.next()) {
+                        replica.lagMillis = rs.getLong(1);
+                        streaming = rs.getBoolean(2);
+                    }
+                }
+                if (!streaming) {
+                    if (replica.healthy) {
+                        log.warn("Replica {} is not streaming from the primary, {} ms since its last replayed "
+                                + "transaction", replica.name, replica.lagMillis);
+                    }
+                    replica.healthy = false;
+                    continue;
+                }
+                if (!replica.healthy) {
+                    log.info("Replica {} is reachable, {} ms behind the primary", replica.name, replica.lagMillis);
+                }
+                replica.healthy = true;
+            } catch (SQLException e) {
+                if (replica.healthy) {
+                    log.warn("Replica {} failed its health check", replica.name, e);
+                }
+                replica.healthy = false;
+            }
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("urlshortener.db.replica.fallbacks", fallbacks, AtomicLong::get)
+                .description("Replica reads served by the primary because no replica was usable")
+                .register(registry);
+        for (Replica replica : replicas) {
+            Gauge.builder("urlshortener.db.replica.lag", replica, r -> r.lagMillis)
+                    .tag("replica", replica.name)
+                    .baseUnit("milliseconds")
+                    .register(registry);
+            Gauge.builder("urlshortener.db.replica.healthy", replica, r -> r.healthy ? 1 : 0)
+                    .tag("replica", replica.name)
+                    .register(registry);
+        }
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        close(primary);
+        for (Replica replica : replicas) {
+            close(replica.dataSource);
+        }
+    }
+
+    private static void close(DataSource dataSource) throws Exception {
+        if (dataSource instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+}
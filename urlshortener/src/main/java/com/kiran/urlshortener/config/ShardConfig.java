@@ -0,0 +1,45 @@
+package com.kiran.urlshortener.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.kiran.urlshortener.repository.ShardMap;
+import com.kiran.urlshortener.service.ShortCodeGenerator;
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Builds the ShardMap: a Hikari pool per configured shard when
+ * urlshortener.shards.enabled, otherwise spring.datasource alone. The shards
+ * must be databases other than spring.datasource, which keeps the bucket map.
+ */
+@Configuration
+public class ShardConfig {
+
+    @Bean
+    public ShardMap shardMap(JdbcTemplate jdbcTemplate, UrlShortenerProperties properties,
+            ShortCodeGenerator shortCodeGenerator) {
+        UrlShortenerProperties.Shards config = properties.getShards();
+        if (!config.isEnabled()) {
+            return ShardMap.single(jdbcTemplate);
+        }
+
+        List<ShardMap.Shard> shards = new ArrayList<>();
+        for (UrlShortenerProperties.Shard node : config.getNodes()) {
+            HikariDataSource pool = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(node.getUrl())
+                    .username(node.getUsername())
+                    .password(node.getPassword())
+                    .build();
+            pool.setPoolName(node.getName());
+            pool.setMaximumPoolSize(node.getMaximumPoolSize());
+            shards.add(new ShardMap.Shard(node.getName(), new JdbcTemplate(pool)));
+        }
+        return new ShardMap(jdbcTemplate, shards, config.getBuckets(), shortCodeGenerator::decode);
+    }
+}
@@ -0,0 +1,638 @@
+package com.kiran.urlshortener.config;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "urlshortener")
+public class UrlShortenerProperties {
+
+    private final Cache cache = new Cache();
+
+    private final Clicks clicks = new Clicks();
+
+    private final Ids ids = new Ids();
+
+    private final Codes codes = new Codes();
+
+    private final Dedupe dedupe = new Dedupe();
+
+    private final Bulk bulk = new Bulk();
+
+    private final Export export = new Export();
+
+    private final RateLimit rateLimit = new RateLimit();
+
+    private final WarmUp warmUp = new WarmUp();
+
+    private final NegativeCache negativeCache = new NegativeCache();
+
+    private final Analytics analytics = new Analytics();
+
+    private final Events events = new Events();
+
+    private final RedisBreaker redisBreaker = new RedisBreaker();
+
+    private final Replicas replicas = new Replicas();
+
+    private final Shards shards = new Shards();
+
+    private final Lifecycle lifecycle = new Lifecycle();
+
+    @Getter
+    @Setter
+    public static class Cache {
+
+        private final Local local = new Local();
+
+        private final Responses responses = new Responses();
+
+        private final EarlyRefresh earlyRefresh = new EarlyRefresh();
+
+        /**
+         * Redis pub/sub channel used to tell every node to drop a short code
+         * from its local cache.
+         */
+        private String invalidationChannel = "url:invalidate";
+    }
+
+    @Getter
+    @Setter
+    public static class Local {
+
+        private boolean enabled = true;
+
+        private long maximumSize = 100_000;
+
+        /**
+         * Upper bound on how long an entry may live in the local cache. This is
+         * also the worst case staleness if an invalidation message is lost.
+         */
+        private Duration maxTtl = Duration.ofSeconds(30);
+    }
+
+    @Getter
+    @Setter
+    public static class Responses {
+
+        private boolean enabled = true;
+
+        /**
+         * Short codes whose redirect is kept ready to write. Caffeine admits
+         * by access frequency, so this holds roughly the N hottest codes.
+         */
+        private long maximumSize = 10_000;
+    }
+
+    @Getter
+    @Setter
+    public static class EarlyRefresh {
+
+        /**
+         * How eagerly a Redis hit reloads its key before the TTL runs out.
+         * The chance of a refresh grows as the remaining TTL approaches beta
+         * times the typical database load time; 0 turns early refresh off.
+         */
+        private double beta = 1.0;
+    }
+
+    @Getter
+    @Setter
+    public static class Clicks {
+
+        /**
+         * How often buffered clicks are drained to Redis. Clicks recorded since
+         * the last drain are lost if the node crashes.
+         */
+        private long flushIntervalMs = 250;
+
+        private int maxPendingCodes = 100_000;
+
+        /**
+         * Keys drained per SCAN page, pipelined GETDEL and UPDATE statement by
+         * the click count flush.
+         */
+        private int flushChunkSize = 1000;
+    }
+
+    @Getter
+    @Setter
+    public static class Ids {
+
+        /**
+         * Number of ids each node leases per sequence call.
+         */
+        private long blockSize = 10_000;
+    }
+
+    @Getter
+    @Setter
+    public static class Codes {
+
+        /**
+         * Permute ids before encoding so codes are not sequential. Codes
+         * written with one setting do not decode under another, so this can
+         * only be changed on an empty url_mapping table.
+         */
+        private boolean obfuscate = false;
+
+        /**
+         * Length of every obfuscated code; ids up to 62^width - 1 fit.
+         */
+        private int width = 7;
+
+        private long key = 0x5DEECE66DL;
+    }
+
+    @Getter
+    @Setter
+    public static class Dedupe {
+
+        private final Bloom bloom = new Bloom();
+
+        /**
+         * Rows read per page when loading the long URL index at startup.
+         */
+        private int loadPageSize = 5000;
+    }
+
+    @Getter
+    @Setter
+    public static class Bloom {
+
+        private boolean enabled = true;
+
+        private long expectedInsertions = 10_000_000;
+
+        private double falsePositiveRate = 0.01;
+    }
+
+    @Getter
+    @Setter
+    public static class Bulk {
+
+        /**
+         * URLs handled per dedupe query, insert batch, Redis pipeline and
+         * Kafka flush by the bulk shorten endpoint.
+         */
+        private int chunkSize = 1000;
+    }
+
+    @Getter
+    @Setter
+    public static class Export {
+
+        private int pageSize = 5000;
+
+        /**
+         * Serves GET /api/v1/export/urls. Off by default: it streams every
+         * long URL, unlisted ones included, to whoever calls it.
+         */
+        private boolean httpEnabled = false;
+
+        /**
+         * When set, the application exports url_mapping to this file and exits
+         * instead of serving traffic. A ".gz" suffix gzips the output.
+         */
+        private String output;
+
+        private String format = "ndjson";
+
+        /**
+         * Only export mappings created at or after this ISO date-time.
+         */
+        private LocalDateTime since;
+    }
+
+    @Getter
+    @Setter
+    public static class RateLimit {
+
+        private boolean enabled = true;
+
+        private Duration window = Duration.ofSeconds(60);
+
+        /**
+         * How often local counts are pushed to Redis and cluster totals pulled
+         * back. Bounds how long other nodes' traffic goes unseen.
+         */
+        private long syncIntervalMs = 1000;
+
+        /**
+         * Client and route pairs tracked in memory; the least recently seen are
+         * evicted beyond this.
+         */
+        private long maxClients = 100_000;
+
+        private String apiKeyHeader = "X-API-Key";
+
+        /**
+         * Checked in order; the first route matching a request's method and
+         * path applies. Requests matching no route are not limited.
+         */
+        private List<Route> routes = new ArrayList<>(List.of(
+                new Route("shorten", "POST", "/api/v1/urls/shorten", 10),
+                new Route("bulk", "POST", "/api/v1/urls/shorten/bulk", 1000, true),
+                new Route("redirect", "GET", "/api/v1/urls/*", 10)));
+
+        /**
+         * Per API key overrides. Requests carrying a listed key are counted
+         * against the key instead of the client IP.
+         */
+        private Map<String, ApiKey> apiKeys = new HashMap<>();
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Route {
+
+        private String name;
+
+        /**
+         * HTTP method, or null for any.
+         */
+        private String method;
+
+        /**
+         * Ant-style path pattern.
+         */
+        private String path;
+
+        /**
+         * Requests allowed per window, or items for a per-item route.
+         */
+        private int limit;
+
+        /**
+         * Counts the URLs of a bulk request rather than the request itself;
+         * the bulk handler takes them from the window as it reads them.
+         */
+        private boolean perItem;
+
+        public Route(String name, String method, String path, int limit) {
+            this(name, method, path, limit, false);
+        }
+    }
+
+    @Getter
+    @Setter
+    public static class ApiKey {
+
+        /**
+         * Limit per route name; routes not listed keep their default limit.
+         */
+        private Map<String, Integer> limits = new HashMap<>();
+    }
+
+    @Getter
+    @Setter
+    public static class WarmUp {
+
+        /**
+         * Warm Redis when the application starts. On-demand warm-ups work
+         * either way.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Most-clicked active mappings to load.
+         */
+        private int topK = 100_000;
+
+        /**
+         * Newest active mappings to load after the most-clicked ones, for
+         * links too new to have many clicks yet.
+         */
+        private int recentK = 10_000;
+
+        private int pageSize = 1000;
+
+        /**
+         * Share of topK + recentK that must be loaded before readiness reports
+         * UP. Readiness is also UP once the warm-up ends, whatever the outcome.
+         */
+        private double coverage = 0.8;
+    }
+
+    @Getter
+    @Setter
+    public static class NegativeCache {
+
+        private boolean enabled = true;
+
+        /**
+         * How long Redis remembers that a code is unknown, inactive or
+         * expired. Creating or reactivating the code overwrites it.
+         */
+        private Duration ttl = Duration.ofSeconds(60);
+
+        /**
+         * Filter over the ids of every issued code. Sized for the total number
+         * of mappings, not just the active ones.
+         */
+        private final Bloom bloom = new Bloom();
+
+        /**
+         * Ids more than this far above the highest known id are rejected
+         * without a lookup. Must comfortably exceed the ids all nodes can
+         * lease between two creation events, i.e. nodes * block size.
+         */
+        private long idMargin = 1_000_000;
+
+        private int loadPageSize = 10_000;
+
+        /**
+         * Full reload of the issued code filter, catching creation events
+         * this node missed.
+         */
+        private long rebuildIntervalMs = 3_600_000;
+
+        /**
+         * Names this node's consumer group for creation events, so a restart
+         * resumes from its committed offset instead of leaving a new group
+         * behind. Must be unique per node and stable across restarts; the
+         * host name is used when unset.
+         */
+        private String nodeId;
+    }
+
+    @Getter
+    @Setter
+    public static class Analytics {
+
+        /**
+         * Publish a click event per redirect and build the click rollups.
+         */
+        private boolean enabled = true;
+
+        private String topic = "click-events";
+
+        private int partitions = 6;
+
+        /**
+         * Request header holding the client's country code, as set by the
+         * CDN or load balancer in front of the service.
+         */
+        private String geoHeader = "CF-IPCountry";
+
+        /**
+         * How often buffered click events are sent to Kafka.
+         */
+        private long publishIntervalMs = 1000;
+
+        /**
+         * Click events per Kafka record.
+         */
+        private int batchSize = 500;
+
+        /**
+         * Click events buffered between sends before new ones are dropped.
+         */
+        private int maxPendingEvents = 100_000;
+
+        /**
+         * How often the consumer writes its in-memory rollups to the database.
+         */
+        private long rollupFlushIntervalMs = 10_000;
+
+        private Duration minuteRetention = Duration.ofDays(7);
+
+        private Duration hourRetention = Duration.ofDays(90);
+
+        /**
+         * Largest number of buckets a single series query may return.
+         */
+        private int maxPoints = 5000;
+    }
+
+    @Getter
+    @Setter
+    public static class Replicas {
+
+        /**
+         * Route redirect lookups to the replicas below. Everything else, and
+         * any lookup while no replica is usable, goes to spring.datasource.
+         */
+        private boolean enabled = false;
+
+        private List<Replica> nodes = new ArrayList<>();
+
+        /**
+         * Replicas further behind the primary than this are skipped. Keep it
+         * well below negative-cache.ttl, which covers deactivations a replica
+         * has not replayed yet.
+         */
+        private Duration maxLag = Duration.ofSeconds(5);
+
+        private long healthCheckIntervalMs = 5000;
+    }
+
+    @Getter
+    @Setter
+    public static class Replica {
+
+        private String name;
+
+        private String url;
+
+        private String username;
+
+        private String password;
+
+        /**
+         * Share of replica reads relative to the other healthy replicas.
+         */
+        private int weight = 1;
+
+        private int maximumPoolSize = 10;
+    }
+
+    @Getter
+    @Setter
+    public static class RedisBreaker {
+
+        private boolean enabled = true;
+
+        /**
+         * Consecutive failed or slow Redis calls that open the breaker.
+         */
+        private int failureThreshold = 5;
+
+        /**
+         * A single Redis command taking longer than this counts as failed.
+         */
+        private Duration slowCallThreshold = Duration.ofMillis(100);
+
+        /**
+         * Wait before the first probe after the breaker opens. Doubles with
+         * each failed probe, and when the breaker reopens within max-open of
+         * closing, up to max-open.
+         */
+        private Duration minOpen = Duration.ofMillis(250);
+
+        private Duration maxOpen = Duration.ofSeconds(30);
+
+        /**
+         * How often an open breaker checks whether its next probe is due.
+         */
+        private long probeIntervalMs = 100;
+    }
+
+    @Getter
+    @Setter
+    public static class Events {
+
+        /**
+         * How often the outbox relay looks for unpublished UrlCreatedEvents.
+         */
+        private long relayIntervalMs = 200;
+
+        /**
+         * Outbox rows locked, published and deleted per relay transaction.
+         */
+        private int relayBatchSize = 500;
+
+        /**
+         * How long the relay waits for Kafka to acknowledge a batch; events
+         * not acknowledged by then stay in the outbox for the next run.
+         */
+        private Duration sendTimeout = Duration.ofSeconds(10);
+
+        /**
+         * Consumer threads for url-created-events; more than the topic has
+         * partitions sit idle.
+         */
+        private int consumerConcurrency = 3;
+
+        /**
+         * Records fetched per batch.
+         */
+        private int maxPollRecords = 500;
+
+        /**
+         * Parallel lanes a batch is split into by short code. Events for one
+         * code always share a lane and keep their order. Lanes are per
+         * consumer container, consumer-concurrency x processing-lanes threads
+         * in all.
+         */
+        private int processingLanes = 4;
+    }
+
+    @Getter
+    @Setter
+    public static class Shards {
+
+        /**
+         * Spread url_mapping over the nodes below by a hash of the id, with
+         * long URL digests indexed by a hash of the digest. spring.datasource
+         * keeps the bucket map, the id sequence and everything else.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Hash buckets ids and digests are split into; the unit a rebalance
+         * moves. Fixed once the bucket map has been written.
+         */
+        private int buckets = 1024;
+
+        private List<Shard> nodes = new ArrayList<>();
+
+        /**
+         * How often every node reloads the bucket map. A rebalance waits
+         * twice this between steps so all nodes route the same way.
+         */
+        private long mapRefreshIntervalMs = 5000;
+
+        private final Rebalance rebalance = new Rebalance();
+    }
+
+    @Getter
+    @Setter
+    public static class Shard {
+
+        private String name;
+
+        private String url;
+
+        private String username;
+
+        private String password;
+
+        private int maximumPoolSize = 10;
+    }
+
+    @Getter
+    @Setter
+    public static class Rebalance {
+
+        /**
+         * When set together with to, the application moves this inclusive
+         * bucket range, e.g. "0-255", to that shard and exits instead of
+         * serving traffic. Other nodes keep serving throughout.
+         */
+        private String buckets;
+
+        private String to;
+
+        /**
+         * Rows copied, reconciled or deleted per statement.
+         */
+        private int batchSize = 1000;
+    }
+
+    @Getter
+    @Setter
+    public static class Lifecycle {
+
+        /**
+         * Archive expired and inactive mappings and drop the url_mapping
+         * partitions they leave behind. Needs shards.enabled: only the
+         * sharded layout is partitioned by month.
+         */
+        private boolean enabled = false;
+
+        private String cron = "0 30 3 * * *";
+
+        /**
+         * Where archive files are written, one per swept partition and shard.
+         */
+        private String archiveDir = "archive";
+
+        /**
+         * Partitions are swept once their month is at least this many months
+         * before the current one. At least 1.
+         */
+        private int minAgeMonths = 1;
+
+        /**
+         * A partition with more live rows than this is left alone rather than
+         * rewritten, since writes to its rows wait while they are copied.
+         */
+        private long maxLiveRows = 100_000;
+
+        /**
+         * How long a sweep waits for a table lock before leaving the
+         * partition to the next run.
+         */
+        private Duration lockTimeout = Duration.ofSeconds(5);
+
+        /**
+         * Rows fetched and digests released per round trip.
+         */
+        private int batchSize = 1000;
+    }
+}
@@ -0,0 +1,37 @@
+package com.kiran.urlshortener.consumer;
+
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+import com.kiran.urlshortener.events.UrlCreatedEvent;
+import com.kiran.urlshortener.service.IssuedCodeIndex;
+
+/**
+ * Feeds every node's issued code filter with the codes created on all the
+ * others. Each node needs the whole topic, so each one joins its own
+ * consumer group, named after urlshortener.negative-cache.node-id or the
+ * host name so a restart picks up where it left off. A new group starts
+ * from the latest offset; anything from before that is covered by the
+ * index's load from url_mapping.
+ */
+@Component
+public class IssuedCodeConsumer {
+
+    private final IssuedCodeIndex issuedCodeIndex;
+
+    public IssuedCodeConsumer(IssuedCodeIndex issuedCodeIndex) {
+        this.issuedCodeIndex = issuedCodeIndex;
+    }
+
+    @KafkaListener(
+        topics = "url-created-events",
+        groupId = "url-code-index-${urlshortener.negative-cache.node-id:#{T(java.net.InetAddress).getLocalHost().getHostName()}}",
+        autoStartup = "${urlshortener.negative-cache.enabled:true}",
+        properties = "auto.offset.reset=latest"
+    )
+    public void consume(UrlCreatedEvent event) {
+        if (event.getId() != null) {
+            issuedCodeIndex.add(event.getId());
+        }
+    }
+}
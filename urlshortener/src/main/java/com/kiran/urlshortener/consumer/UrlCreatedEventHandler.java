@@ -0,0 +1,14 @@
+package com.kiran.urlshortener.consumer;
+
+import com.kiran.urlshortener.events.UrlCreatedEvent;
+
+/**
+ * Work done for each UrlCreatedEvent by UrlEventConsumer. Handlers run once
+ * per event for the whole cluster, possibly again after a failed batch, and
+ * concurrently for different short codes; events for the same code arrive
+ * in the order they were produced.
+ */
+public interface UrlCreatedEventHandler {
+
+    void handle(UrlCreatedEvent event);
+}
@@ -1,24 +1,248 @@
 package com.kiran.urlshortener.consumer;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Component;
 
+import com.kiran.urlshortener.config.UrlShortenerProperties;
+import com.kiran.urlshortener.events.ClickEventBatch;
 import com.kiran.urlshortener.events.UrlCreatedEvent;
+import com.kiran.urlshortener.service.ClickRollupAggregator;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 
 
 
 @Slf4j
 @Component
-public class UrlEventConsumer {
+public class UrlEventConsumer implements ConsumerSeekAware {
+
+    private final ClickRollupAggregator clickRollupAggregator;
+    private final String clickTopic;
+    private final List<UrlCreatedEventHandler> handlers;
+    private final int lanes;
+    private final ExecutorService laneExecutor;
+    private final MeterRegistry meterRegistry;
+    private final Counter consumedEvents;
+    private final Timer batchTimer;
+    private final Counter lagFailures;
+    private final Map<Integer, AtomicLong> lag = new ConcurrentHashMap<>();
+
+    public UrlEventConsumer(ClickRollupAggregator clickRollupAggregator,
+            ObjectProvider<UrlCreatedEventHandler> handlers, UrlShortenerProperties properties,
+            MeterRegistry meterRegistry) {
+        this.clickRollupAggregator = clickRollupAggregator;
+        this.clickTopic = properties.getAnalytics().getTopic();
+        this.handlers = handlers.orderedStream().toList();
+        this.lanes = Math.max(1, properties.getEvents().getProcessingLanes());
+        // Shared by every consumer container, so each can run all its lanes
+        // at once without waiting on another container's batch.
+        int containers = Math.max(1, properties.getEvents().getConsumerConcurrency());
+        this.laneExecutor = Executors.newFixedThreadPool(lanes * containers, laneThreads());
+        this.meterRegistry = meterRegistry;
+        this.consumedEvents = meterRegistry.counter("urlshortener.events.consumed");
+        this.batchTimer = meterRegistry.timer("urlshortener.events.batch.duration");
+        this.lagFailures = meterRegistry.counter("urlshortener.events.consumer.lag.failures");
+    }
 
+    /**
+     * Processes a batch of UrlCreatedEvents in up to processing-lanes lanes,
+     * split by short code so each code's events stay in order, and commits
+     * the batch's offsets once every lane is done. If an event fails, the
+     * batch is retried from the earliest failed record; events after it may
+     * be handled twice.
+     */
     @KafkaListener(
         topics = "url-created-events",
-        groupId = "url-analytics-group"
+        groupId = "url-analytics-group",
+        containerFactory = "batchKafkaListenerContainerFactory",
+        properties = "max.poll.records=${urlshortener.events.max-poll-records:500}"
     )
-    public void consume(UrlCreatedEvent event) {
-        log.info("URL created: {}", event.getShortCode());
+    public void consume(List<ConsumerRecord<String, UrlCreatedEvent>> records, Acknowledgment acknowledgment,
+            Consumer<?, ?> consumer) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            process(records);
+        } finally {
+            sample.stop(batchTimer);
+            recordLag(records, consumer);
+        }
+        acknowledgment.acknowledge();
+        consumedEvents.increment(records.size());
     }
-}
 
+    @KafkaListener(
+        topics = "${urlshortener.analytics.topic:click-events}",
+        groupId = "url-analytics-group",
+        autoStartup = "${urlshortener.analytics.enabled:true}"
+    )
+    public void consumeClicks(ClickEventBatch batch,
+            @Header(KafkaHeaders.RECEIVED_PARTITION) int partition,
+            @Header(KafkaHeaders.OFFSET) long offset) {
+        clickRollupAggregator.add(partition, offset, batch);
+    }
+
+    /**
+     * Resumes click partitions from the offset stored with the rollups rather
+     * than the group's committed offset, which can be ahead of what was
+     * written.
+     */
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        for (TopicPartition topicPartition : assignments.keySet()) {
+            if (!topicPartition.topic().equals(clickTopic)) {
+                continue;
+            }
+            long resumeAt = clickRollupAggregator.assigned(topicPartition.partition());
+            if (resumeAt >= 0) {
+                callback.seek(topicPartition.topic(), topicPartition.partition(), resumeAt);
+            } else {
+                callback.seekToBeginning(topicPartition.topic(), topicPartition.partition());
+            }
+        }
+    }
+
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+        List<Integer> clickPartitions = partitions.stream()
+                .filter(topicPartition -> topicPartition.topic().equals(clickTopic))
+                .map(TopicPartition::partition)
+                .toList();
+        if (!clickPartitions.isEmpty()) {
+            clickRollupAggregator.revoked(clickPartitions);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        laneExecutor.shutdown();
+    }
+
+    private void process(List<ConsumerRecord<String, UrlCreatedEvent>> records) {
+        List<List<Integer>> byLane = new ArrayList<>(lanes);
+        for (int i = 0; i < lanes; i++) {
+            byLane.add(new ArrayList<>());
+        }
+        for (int i = 0; i < records.size(); i++) {
+            byLane.get(lane(records.get(i))).add(i);
+        }
+
+        // Index of the earliest record that failed, in batch order.
+        AtomicInteger failedAt = new AtomicInteger(Integer.MAX_VALUE);
+        Map<Integer, RuntimeException> failures = new ConcurrentHashMap<>();
+        List<CompletableFuture<Void>> running = new ArrayList<>();
+        for (List<Integer> lane : byLane) {
+            if (lane.isEmpty()) {
+                continue;
+            }
+            Runnable work = () -> runLane(records, lane, failedAt, failures);
+            if (lane.size() == records.size()) {
+                work.run();
+            } else {
+                running.add(CompletableFuture.runAsync(work, laneExecutor));
+            }
+        }
+        CompletableFuture.allOf(running.toArray(CompletableFuture[]::new)).join();
+
+        int index = failedAt.get();
+        if (index != Integer.MAX_VALUE) {
+            throw new BatchListenerFailedException("UrlCreatedEvent handler failed", failures.get(index), index);
+        }
+    }
+
+    // A lane stops at its first failure, so nothing later for the same code
+    // is handled ahead of the record that will be retried.
+    private void runLane(List<ConsumerRecord<String, UrlCreatedEvent>> records, List<Integer> lane,
+            AtomicInteger failedAt, Map<Integer, RuntimeException> failures) {
+        for (int index : lane) {
+            try {
+                handle(records.get(index).value());
+            } catch (RuntimeException e) {
+                failures.put(index, e);
+                failedAt.accumulateAndGet(index, Math::min);
+                return;
+            }
+        }
+    }
+
+    private void handle(UrlCreatedEvent event) {
+        if (event == null) {
+            return;
+        }
+        log.debug("URL created: {}", event.getShortCode());
+        for (UrlCreatedEventHandler handler : handlers) {
+            handler.handle(event);
+        }
+    }
+
+    private int lane(ConsumerRecord<String, UrlCreatedEvent> record) {
+        Object key = record.key();
+        if (key == null && record.value() != null) {
+            key = record.value().getShortCode();
+        }
+        return key == null ? record.partition() % lanes : Math.floorMod(key.hashCode(), lanes);
+    }
+
+    // Lag as seen by the fetcher after this batch, so it trails by up to one
+    // batch; partitions it has no position for yet are left as they were.
+    private void recordLag(List<ConsumerRecord<String, UrlCreatedEvent>> records, Consumer<?, ?> consumer) {
+        Set<TopicPartition> partitions = new HashSet<>();
+        for (ConsumerRecord<String, UrlCreatedEvent> record : records) {
+            partitions.add(new TopicPartition(record.topic(), record.partition()));
+        }
+        for (TopicPartition partition : partitions) {
+            try {
+                consumer.currentLag(partition).ifPresent(value -> lagGauge(partition.partition()).set(value));
+            } catch (Exception e) {
+                lagFailures.increment();
+                log.debug("Could not read consumer lag of {}", partition, e);
+            }
+        }
+    }
+
+    private AtomicLong lagGauge(int partition) {
+        return lag.computeIfAbsent(partition, p -> {
+            AtomicLong value = new AtomicLong();
+            Gauge.builder("urlshortener.events.consumer.lag", value, AtomicLong::get)
+                    .tag("partition", String.valueOf(p))
+                    .register(meterRegistry);
+            return value;
+        });
+    }
+
+    private static ThreadFactory laneThreads() {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "url-event-lane-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,41 @@
+package com.kiran.urlshortener.controller;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import com.kiran.urlshortener.service.CacheWarmUpService;
+
+/**
+ * GET /actuator/warmup reports the cache warm-up, POST starts one, e.g.
+ * after a Redis flush. Like UrlDeactivationEndpoint it stays off the public
+ * API and is only reachable once "warmup" is exposed.
+ */
+@Component
+@Endpoint(id = "warmup")
+public class CacheWarmUpEndpoint {
+
+    private final CacheWarmUpService warmUpService;
+
+    public CacheWarmUpEndpoint(CacheWarmUpService warmUpService) {
+        this.warmUpService = warmUpService;
+    }
+
+    /**
+     * Starts a warm-up in the background. Returns 409 if one is already
+     * running.
+     */
+    @WriteOperation
+    public WebEndpointResponse<CacheWarmUpService.Status> warmUp() {
+        HttpStatus status = warmUpService.start() ? HttpStatus.ACCEPTED : HttpStatus.CONFLICT;
+        return new WebEndpointResponse<>(warmUpService.status(), status.value());
+    }
+
+    @ReadOperation
+    public CacheWarmUpService.Status status() {
+        return warmUpService.status();
+    }
+}
@@ -0,0 +1,55 @@
+package com.kiran.urlshortener.controller;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.kiran.urlshortener.dto.ClickBreakdownResponse;
+import com.kiran.urlshortener.dto.ClickSeriesResponse;
+import com.kiran.urlshortener.service.ClickStatsService;
+
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@RequestMapping("/api/v1/urls/{shortCode}/clicks")
+public class ClickStatsController {
+
+    private final ClickStatsService clickStatsService;
+
+    public ClickStatsController(ClickStatsService clickStatsService) {
+        this.clickStatsService = clickStatsService;
+    }
+
+    /**
+     * Click time series from the minute, hour or day rollups. Times are UTC.
+     */
+    @GetMapping
+    public ClickSeriesResponse series(
+            @PathVariable String shortCode,
+            @RequestParam(defaultValue = "hour") String granularity,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+
+        return clickStatsService.series(shortCode, granularity, from, to);
+    }
+
+    /**
+     * Top referrers, countries or agent classes by day range.
+     */
+    @GetMapping("/breakdown")
+    public ClickBreakdownResponse breakdown(
+            @PathVariable String shortCode,
+            @RequestParam(defaultValue = "referrer") String dimension,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "10") int limit) {
+
+        return clickStatsService.breakdown(shortCode, dimension, from, to, limit);
+    }
+}
@@ -0,0 +1,60 @@
+package com.kiran.urlshortener.controller;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.kiran.urlshortener.export.ExportFormat;
+import com.kiran.urlshortener.export.UrlMappingExporter;
+
+import jakarta.servlet.http.HttpServletResponse;
+
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(prefix = "urlshortener.export", name = "http-enabled", havingValue = "true")
+@RequestMapping("/api/v1/export")
+public class ExportController {
+
+    private final UrlMappingExporter exporter;
+
+    public ExportController(UrlMappingExporter exporter) {
+        this.exporter = exporter;
+    }
+
+    /**
+     * Streams every url_mapping row, or those created at or after
+     * {@code since}, straight to the response.
+     */
+    @GetMapping("/urls")
+    public void exportUrls(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime since,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            HttpServletResponse response) throws IOException {
+
+        ExportFormat exportFormat = ExportFormat.from(format);
+        String extension = exportFormat == ExportFormat.CSV ? "csv" : "ndjson";
+
+        response.setStatus(HttpStatus.OK.value());
+        if (gzip) {
+            response.setContentType("application/gzip");
+        } else {
+            response.setContentType(exportFormat == ExportFormat.CSV ? "text/csv" : MediaType.APPLICATION_NDJSON_VALUE);
+            response.setCharacterEncoding("UTF-8");
+        }
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"url_mapping." + extension + (gzip ? ".gz" : "") + "\"");
+
+        exporter.export(response.getOutputStream(), exportFormat, since, gzip);
+    }
+}
@@ -0,0 +1,136 @@
+package com.kiran.urlshortener.controller;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import com.kiran.urlshortener.cache.CacheMetrics;
+import com.kiran.urlshortener.cache.CacheMetrics.Negative;
+import com.kiran.urlshortener.cache.CacheMetrics.Tier;
+import com.kiran.urlshortener.cache.UrlNearCache;
+import com.kiran.urlshortener.service.ClickBuffer;
+import com.kiran.urlshortener.service.ClickEventPublisher;
+import com.kiran.urlshortener.service.UrlService;
+
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Non-blocking counterpart of UrlController.redirect, active only when the
+ * application runs as a reactive web application. Near cache and Redis hits
+ * never leave the event loop; a miss falls back to the blocking JPA lookup on
+ * the bounded-elastic scheduler.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveRedirectHandler {
+
+    private static final String SHORT_PREFIX = "short:";
+
+    private final ReactiveStringRedisTemplate redisTemplate;
+    private final UrlService urlService;
+    private final UrlNearCache nearCache;
+    private final CacheMetrics cacheMetrics;
+    private final ClickBuffer clickBuffer;
+    private final ClickEventPublisher clickEventPublisher;
+
+    public ReactiveRedirectHandler(ReactiveStringRedisTemplate redisTemplate, UrlService urlService,
+            UrlNearCache nearCache, CacheMetrics cacheMetrics, ClickBuffer clickBuffer,
+            ClickEventPublisher clickEventPublisher) {
+        this.redisTemplate = redisTemplate;
+        this.urlService = urlService;
+        this.nearCache = nearCache;
+        this.cacheMetrics = cacheMetrics;
+        this.clickBuffer = clickBuffer;
+        this.clickEventPublisher = clickEventPublisher;
+    }
+
+    public Mono<ServerResponse> redirect(ServerRequest request) {
+
+        String shortCode = request.pathVariable("shortCode");
+
+        String localUrl = nearCache.get(shortCode);
+        if (localUrl != null) {
+            cacheMetrics.hit(Tier.LOCAL);
+            clickBuffer.record(shortCode);
+            return found(request, shortCode, localUrl);
+        }
+        cacheMetrics.miss(Tier.LOCAL);
+
+        if (urlService.isUnissued(shortCode)) {
+            return ServerResponse.notFound().build();
+        }
+
+        return fromRedis(shortCode)
+                .switchIfEmpty(Mono.defer(() -> fromDatabase(shortCode)))
+                .filter(longUrl -> !UrlService.isTombstone(longUrl))
+                .flatMap(longUrl -> found(request, shortCode, longUrl))
+                .switchIfEmpty(Mono.defer(() -> ServerResponse.notFound().build()));
+    }
+
+    private Mono<String> fromRedis(String shortCode) {
+        String key = SHORT_PREFIX + shortCode;
+
+        // GET and PTTL are subscribed together, so Lettuce writes both to the
+        // shared connection in one flush and a hit costs one round trip. An
+        // empty TTL means the key vanished in between (or PTTL failed), in
+        // which case we skip caching; ZERO means the key has no TTL.
+        Mono<Optional<Duration>> ttl = redisTemplate.getExpire(key)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .onErrorReturn(Optional.empty());
+
+        // A tombstone is passed through so the database is skipped.
+        return Mono.zip(redisTemplate.opsForValue().get(key), ttl)
+                .map(hit -> {
+                    String longUrl = hit.getT1();
+                    if (UrlService.isTombstone(longUrl)) {
+                        cacheMetrics.negativeHit(Negative.TOMBSTONE);
+                        return longUrl;
+                    }
+                    cacheMetrics.hit(Tier.REDIS);
+                    clickBuffer.record(shortCode);
+                    hit.getT2().ifPresent(expiry -> {
+                        Duration remaining = expiry.isZero() ? null : expiry;
+                        if (urlService.shouldRefreshEarly(remaining)) {
+                            cacheMetrics.earlyRefresh();
+                            refresh(shortCode);
+                        } else {
+                            nearCache.put(shortCode, longUrl, remaining);
+                        }
+                    });
+                    return longUrl;
+                })
+                .switchIfEmpty(Mono.fromRunnable(() -> cacheMetrics.miss(Tier.REDIS)))
+                .onErrorResume(e -> {
+                    cacheMetrics.redisError("get");
+                    return Mono.empty();
+                });
+    }
+
+    // Unlike the servlet path, the request does not wait for the reload; it
+    // is answered from Redis while the key is rewritten in the background.
+    private void refresh(String shortCode) {
+        Mono.fromRunnable(() -> urlService.reload(shortCode))
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorResume(e -> Mono.empty())
+                .subscribe();
+    }
+
+    private Mono<String> fromDatabase(String shortCode) {
+        return Mono.fromCallable(() -> urlService.resolveFromDatabase(shortCode))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private Mono<ServerResponse> found(ServerRequest request, String shortCode, String longUrl) {
+        clickEventPublisher.record(shortCode, name -> request.headers().firstHeader(name));
+        return ServerResponse.status(HttpStatus.FOUND).header(HttpHeaders.LOCATION, longUrl).build();
+    }
+}
@@ -1,8 +1,12 @@
 package com.kiran.urlshortener.controller;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
+import java.util.function.IntUnaryOperator;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -14,22 +18,33 @@ import org.springframework.web.bind.annotation.RestController;
 
 import com.kiran.urlshortener.dto.ShortenUrlRequest;
 import com.kiran.urlshortener.dto.ShortenUrlResponse;
+import com.kiran.urlshortener.filter.RateLimitFilter;
+import com.kiran.urlshortener.service.BulkShortenService;
+import com.kiran.urlshortener.service.ClickEventPublisher;
 import com.kiran.urlshortener.service.UrlService;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequestMapping("/api/v1/urls")
 public class UrlController {
 
     private final UrlService urlService;
+    private final BulkShortenService bulkShortenService;
+    private final ClickEventPublisher clickEventPublisher;
 
-    public UrlController(UrlService urlService) {
+    public UrlController(UrlService urlService, BulkShortenService bulkShortenService,
+            ClickEventPublisher clickEventPublisher) {
         this.urlService = urlService;
+        this.bulkShortenService = bulkShortenService;
+        this.clickEventPublisher = clickEventPublisher;
     }
 
     @GetMapping("/{shortCode}")
-    public ResponseEntity<Void> redirect(@PathVariable String shortCode) {
+    public ResponseEntity<Void> redirect(@PathVariable String shortCode, HttpServletRequest request) {
 
         String longUrl = urlService.resolveLongUrl(shortCode);
 
@@ -37,6 +52,8 @@ public class UrlController {
             return ResponseEntity.notFound().build();
         }
 
+        clickEventPublisher.record(shortCode, request::getHeader);
+
         return ResponseEntity.status(HttpStatus.FOUND)
                 .header("Location", longUrl)
                 .build();
@@ -58,4 +75,24 @@ public class UrlController {
         String shortCode = urlService.createShortUrl(request.getLongUrl(), expiryAt); 
         return new ShortenUrlResponse(shortCode, expiryAt);
     }
+
+    /**
+     * Accepts NDJSON or a JSON array of ShortenUrlRequests and streams one
+     * NDJSON result line per request, in input order, as chunks complete.
+     * Each URL counts against the bulk rate limit route.
+     */
+    @PostMapping(value = "/shorten/bulk",
+            consumes = { MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE })
+    public void bulkShortenUrls(HttpServletRequest request, HttpServletResponse response) throws IOException {
+
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+
+        IntUnaryOperator permits = (IntUnaryOperator) request.getAttribute(RateLimitFilter.ITEM_PERMITS);
+        if (permits == null) {
+            bulkShortenService.shorten(request.getInputStream(), response.getOutputStream());
+        } else {
+            bulkShortenService.shorten(request.getInputStream(), response.getOutputStream(), permits);
+        }
+    }
 }
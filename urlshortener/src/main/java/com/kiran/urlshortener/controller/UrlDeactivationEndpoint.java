@@ -0,0 +1,35 @@
+package com.kiran.urlshortener.controller;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.stereotype.Component;
+
+import com.kiran.urlshortener.service.UrlService;
+
+/**
+ * DELETE /actuator/urls/{shortCode} deactivates a short code and invalidates
+ * it on every node. It is an actuator endpoint so it stays off the public
+ * API: it is only reachable once "urls" is added to
+ * management.endpoints.web.exposure.include, ideally with management.server.port
+ * set to an internal port.
+ */
+@Component
+@Endpoint(id = "urls")
+public class UrlDeactivationEndpoint {
+
+    private final UrlService urlService;
+
+    public UrlDeactivationEndpoint(UrlService urlService) {
+        this.urlService = urlService;
+    }
+
+    @DeleteOperation
+    public WebEndpointResponse<Void> deactivate(@Selector String shortCode) {
+        int status = urlService.deactivateShortUrl(shortCode)
+                ? WebEndpointResponse.STATUS_NO_CONTENT
+                : WebEndpointResponse.STATUS_NOT_FOUND;
+        return new WebEndpointResponse<>(status);
+    }
+}
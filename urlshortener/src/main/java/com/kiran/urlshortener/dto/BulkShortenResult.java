@@ -0,0 +1,32 @@
+package com.kiran.urlshortener.dto;
+
+import java.time.LocalDateTime;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkShortenResult {
+
+    private String longUrl;
+
+    private String shortUrl;
+
+    private LocalDateTime expiryAt;
+
+    private String error;
+
+    public static BulkShortenResult failed(String longUrl, String error) {
+        return new BulkShortenResult(longUrl, null, null, error);
+    }
+}
@@ -0,0 +1,41 @@
+package com.kiran.urlshortener.dto;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class ClickBreakdownResponse {
+
+    private String shortCode;
+
+    private String dimension;
+
+    private LocalDate from;
+
+    private LocalDate to;
+
+    /** Most-clicked values first. */
+    private List<Value> values;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @ToString
+    public static class Value {
+
+        private String value;
+
+        private long clicks;
+    }
+}
@@ -0,0 +1,43 @@
+package com.kiran.urlshortener.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class ClickSeriesResponse {
+
+    private String shortCode;
+
+    private String granularity;
+
+    private LocalDateTime from;
+
+    private LocalDateTime to;
+
+    private long total;
+
+    /** One point per bucket in [from, to), including empty ones. */
+    private List<Point> points;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @ToString
+    public static class Point {
+
+        private LocalDateTime start;
+
+        private long clicks;
+    }
+}
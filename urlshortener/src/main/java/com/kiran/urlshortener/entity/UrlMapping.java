@@ -3,15 +3,18 @@ package com.kiran.urlshortener.entity;
 import java.time.LocalDateTime;
 
 import org.hibernate.annotations.CreationTimestamp;
+import org.springframework.data.domain.Persistable;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.Index;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
 import jakarta.validation.constraints.NotBlank;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -21,26 +24,32 @@ import lombok.Setter;
 @Table(
     name = "url_mapping",
     indexes = {
-        @Index(name = "idx_short_code", columnList = "shortCode", unique = true)
+        @Index(name = "idx_short_code", columnList = "shortCode", unique = true),
+        @Index(name = "idx_long_url_hash", columnList = "longUrlHash", unique = true),
+        @Index(name = "idx_click_count", columnList = "clickCount, id")
     }
 )
 @Getter
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
-public class UrlMapping {
+public class UrlMapping implements Persistable<Long> {
 
+    // Assigned from IdBlockAllocator before the first save.
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
     @Column(length = 10, unique = true)
     private String shortCode;
 
-    @Column(nullable = false, unique = true,columnDefinition = "TEXT")
+    @Column(nullable = false, columnDefinition = "TEXT")
     @NotBlank
     private String longUrl;
 
+    // SHA-256 of the normalized longUrl, see UrlDigest.
+    @Column(length = 32)
+    private byte[] longUrlHash;
+
     private LocalDateTime expiryAt;
 
     @CreationTimestamp
@@ -49,4 +58,21 @@ public class UrlMapping {
     private Long clickCount = 0L;
 
     private boolean active = true;
+
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private boolean persisted;
+
+    @Override
+    public boolean isNew() {
+        return !persisted;
+    }
+
+    // Also called by ShardedUrlMappingStore, which bypasses JPA.
+    @PostLoad
+    @PostPersist
+    public void markPersisted() {
+        this.persisted = true;
+    }
 }
@@ -0,0 +1,43 @@
+package com.kiran.urlshortener.events;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * One redirect, reduced to what the click rollups group by. Sent by the
+ * hundred per Kafka record, hence the one-letter JSON names.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ClickEvent {
+
+    public enum Agent {
+        BOT, MOBILE, DESKTOP, OTHER
+    }
+
+    @JsonProperty("c")
+    private String shortCode;
+
+    /** Epoch milliseconds. */
+    @JsonProperty("t")
+    private long clickedAt;
+
+    /** Referrer host without "www.", or null for direct traffic. */
+    @JsonProperty("r")
+    private String referrer;
+
+    /** Country code from the geo header, or null. */
+    @JsonProperty("g")
+    private String country;
+
+    @JsonProperty("a")
+    private Agent agent;
+}
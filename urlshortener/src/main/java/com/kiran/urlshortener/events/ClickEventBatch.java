@@ -0,0 +1,16 @@
+package com.kiran.urlshortener.events;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClickEventBatch {
+    private List<ClickEvent> events;
+}
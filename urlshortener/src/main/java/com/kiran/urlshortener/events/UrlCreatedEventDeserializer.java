@@ -0,0 +1,70 @@
+package com.kiran.urlshortener.events;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+
+/**
+ * Reads the encoding written by UrlCreatedEventSerializer.
+ */
+public class UrlCreatedEventDeserializer implements Deserializer<UrlCreatedEvent> {
+
+    @Override
+    public UrlCreatedEvent deserialize(String topic, byte[] data) {
+        return data == null ? null : decode(data);
+    }
+
+    public static UrlCreatedEvent decode(byte[] data) {
+        if (data.length == 0 || data[0] != UrlCreatedEventSerializer.VERSION) {
+            throw new SerializationException("Unsupported UrlCreatedEvent encoding version "
+                    + (data.length == 0 ? "(empty)" : data[0]));
+        }
+        Reader reader = new Reader(data);
+        long id = reader.varint();
+        long createdAt = reader.varint();
+        long codeLength = reader.varint();
+        String shortCode = null;
+        if (codeLength > 0) {
+            shortCode = reader.utf8((int) (codeLength - 1));
+        }
+        return new UrlCreatedEvent(id == 0 ? null : id - 1,
+                shortCode,
+                createdAt == 0 ? null : Instant.ofEpochMilli(createdAt - 1));
+    }
+
+    private static final class Reader {
+
+        private final byte[] data;
+        private int position = 1;
+
+        Reader(byte[] data) {
+            this.data = data;
+        }
+
+        long varint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (position >= data.length) {
+                    throw new SerializationException("Truncated UrlCreatedEvent");
+                }
+                byte b = data[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new SerializationException("Malformed varint in UrlCreatedEvent");
+        }
+
+        String utf8(int length) {
+            if (length < 0 || length > data.length - position) {
+                throw new SerializationException("Truncated UrlCreatedEvent");
+            }
+            String value = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
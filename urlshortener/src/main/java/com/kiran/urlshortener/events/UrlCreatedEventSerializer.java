@@ -0,0 +1,58 @@
+package com.kiran.urlshortener.events;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.apache.kafka.common.serialization.Serializer;
+
+/**
+ * Fixed-schema binary encoding of UrlCreatedEvent, used on the
+ * url-created-events topic instead of JSON:
+ *
+ * <pre>
+ * version      1 byte, currently 1
+ * id + 1       unsigned varint, 0 for null
+ * createdAt    epoch millis + 1, unsigned varint, 0 for null
+ * shortCode    UTF-8 length + 1 as unsigned varint, 0 for null, then the bytes
+ * </pre>
+ *
+ * An event with a seven-character code and a seven-digit id takes 18 bytes
+ * and needs no type headers. Readers reject versions they do not know.
+ */
+public class UrlCreatedEventSerializer implements Serializer<UrlCreatedEvent> {
+
+    static final byte VERSION = 1;
+
+    // version + three varints of at most 10 bytes each
+    private static final int MAX_HEADER = 31;
+
+    @Override
+    public byte[] serialize(String topic, UrlCreatedEvent event) {
+        return event == null ? null : encode(event);
+    }
+
+    public static byte[] encode(UrlCreatedEvent event) {
+        byte[] code = event.getShortCode() == null ? null : event.getShortCode().getBytes(StandardCharsets.UTF_8);
+        byte[] buffer = new byte[MAX_HEADER + (code == null ? 0 : code.length)];
+        buffer[0] = VERSION;
+        int position = 1;
+        position = writeVarint(buffer, position, event.getId() == null ? 0 : event.getId() + 1);
+        position = writeVarint(buffer, position,
+                event.getCreatedAt() == null ? 0 : event.getCreatedAt().toEpochMilli() + 1);
+        position = writeVarint(buffer, position, code == null ? 0 : code.length + 1L);
+        if (code != null) {
+            System.arraycopy(code, 0, buffer, position, code.length);
+            position += code.length;
+        }
+        return Arrays.copyOf(buffer, position);
+    }
+
+    private static int writeVarint(byte[] buffer, int position, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
+}
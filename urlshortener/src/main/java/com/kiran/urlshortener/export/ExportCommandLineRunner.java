@@ -0,0 +1,54 @@
+package com.kiran.urlshortener.export;
+
+import java.io.BufferedOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import com.kiran.urlshortener.config.UrlShortenerProperties;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * CLI export mode, e.g.
+ * {@code java -jar app.jar --spring.main.web-application-type=none
+ * --urlshortener.export.output=/data/url_mapping.csv.gz --urlshortener.export.format=csv}.
+ * Exports once and shuts the application down.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "urlshortener.export", name = "output")
+public class ExportCommandLineRunner implements CommandLineRunner {
+
+    private final UrlMappingExporter exporter;
+    private final UrlShortenerProperties properties;
+    private final ConfigurableApplicationContext context;
+
+    public ExportCommandLineRunner(UrlMappingExporter exporter, UrlShortenerProperties properties,
+            ConfigurableApplicationContext context) {
+        this.exporter = exporter;
+        this.properties = properties;
+        this.context = context;
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        UrlShortenerProperties.Export export = properties.getExport();
+        Path output = Path.of(export.getOutput());
+        boolean gzip = output.getFileName().toString().endsWith(".gz");
+
+        long rows;
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(output))) {
+            rows = exporter.export(out, ExportFormat.from(export.getFormat()), export.getSince(), gzip);
+        }
+        log.info("Exported {} url mappings to {}", rows, output);
+
+        System.exit(SpringApplication.exit(context, () -> 0));
+    }
+}
@@ -0,0 +1,16 @@
+package com.kiran.urlshortener.export;
+
+public enum ExportFormat {
+    NDJSON, CSV;
+
+    public static ExportFormat from(String value) {
+        if (value == null || value.isBlank()) {
+            return NDJSON;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported export format: " + value);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.kiran.urlshortener.export;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.kiran.urlshortener.export.UrlMappingExporter.ExportRow;
+import com.kiran.urlshortener.service.ShortCodeGenerator;
+
+/**
+ * Cold-storage encoding of url_mapping rows, written by UrlMappingLifecycleJob
+ * for every row it archives. The file is gzipped:
+ *
+ * <pre>
+ * magic        4 bytes, "UMA1"
+ * then per row, in ascending id order:
+ * id           unsigned varint, id minus the previous row's id
+ * active       1 byte, 0 or 1
+ * createdAt    epoch seconds + 1, unsigned varint, 0 for null
+ * expiryAt     epoch seconds + 1, unsigned varint, 0 for null
+ * clickCount   unsigned varint
+ * longUrl      UTF-8 length as unsigned varint, then the bytes
+ * </pre>
+ *
+ * Short codes and digests are left out: the code is ShortCodeGenerator's
+ * encoding of the id and the digest is UrlDigest of the long URL. Times are
+ * kept to the second, read as UTC like they were written.
+ */
+public final class UrlMappingArchive {
+
+    static final byte[] MAGIC = { 'U', 'M', 'A', '1' };
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private UrlMappingArchive() {
+    }
+
+    public static Writer writer(OutputStream out) throws IOException {
+        return new Writer(out);
+    }
+
+    /**
+     * Reads every row of an archive, filling in short codes with
+     * {@code codes}.
+     *
+     * @return number of rows read
+     */
+    public static long read(InputStream in, ShortCodeGenerator codes, Consumer<ExportRow> rows) throws IOException {
+        InputStream data = new BufferedInputStream(new GZIPInputStream(in, BUFFER_SIZE), BUFFER_SIZE);
+        byte[] magic = data.readNBytes(MAGIC.length);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a url_mapping archive");
+        }
+
+        long count = 0;
+        long id = 0;
+        int first;
+        while ((first = data.read()) >= 0) {
+            id += varint(data, first);
+            boolean active = readByte(data) != 0;
+            LocalDateTime createdAt = time(varint(data, readByte(data)));
+            LocalDateTime expiryAt = time(varint(data, readByte(data)));
+            long clickCount = varint(data, readByte(data));
+            int length = (int) varint(data, readByte(data));
+            byte[] url = data.readNBytes(length);
+            if (url.length != length) {
+                throw new EOFException("Truncated url_mapping archive");
+            }
+            rows.accept(new ExportRow(id, codes.encode(id), new String(url, StandardCharsets.UTF_8), expiryAt,
+                    createdAt, clickCount, active));
+            count++;
+        }
+        return count;
+    }
+
+    private static int readByte(InputStream in) throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException("Truncated url_mapping archive");
+        }
+        return b;
+    }
+
+    private static long varint(InputStream in, int first) throws IOException {
+        long value = first & 0x7F;
+        int b = first;
+        for (int shift = 7; (b & 0x80) != 0; shift += 7) {
+            if (shift > 63) {
+                throw new IOException("Malformed varint in url_mapping archive");
+            }
+            b = readByte(in);
+            value |= (long) (b & 0x7F) << shift;
+        }
+        return value;
+    }
+
+    private static LocalDateTime time(long value) {
+        return value == 0 ? null : LocalDateTime.ofEpochSecond(value - 1, 0, ZoneOffset.UTC);
+    }
+
+    /**
+     * Appends rows to an archive. Closing it finishes the gzip stream and
+     * closes the underlying one.
+     */
+    public static final class Writer implements Closeable {
+
+        private final GZIPOutputStream gzip;
+        private final OutputStream out;
+        private long lastId;
+        private long rows;
+
+        private Writer(OutputStream target) throws IOException {
+            this.gzip = new GZIPOutputStream(target, BUFFER_SIZE);
+            this.out = new BufferedOutputStream(gzip, BUFFER_SIZE);
+            out.write(MAGIC);
+        }
+
+        public void write(long id, String longUrl, LocalDateTime expiryAt, LocalDateTime createdAt,
+                long clickCount, boolean active) throws IOException {
+            if (id <= lastId) {
+                throw new IllegalArgumentException("Archive rows must be in ascending id order, got " + id
+                        + " after " + lastId);
+            }
+            writeVarint(id - lastId);
+            out.write(active ? 1 : 0);
+            writeVarint(seconds(createdAt));
+            writeVarint(seconds(expiryAt));
+            writeVarint(clickCount);
+            byte[] url = longUrl.getBytes(StandardCharsets.UTF_8);
+            writeVarint(url.length);
+            out.write(url);
+            lastId = id;
+            rows++;
+        }
+
+        public long rows() {
+            return rows;
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.flush();
+            gzip.close();
+        }
+
+        private void writeVarint(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.write((int) value);
+        }
+
+        private static long seconds(LocalDateTime time) {
+            return time == null ? 0 : time.toEpochSecond(ZoneOffset.UTC) + 1;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.kiran.urlshortener.export;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kiran.urlshortener.config.UrlShortenerProperties;
+import com.kiran.urlshortener.repository.ShardMap;
+
+/**
+ * Streams url_mapping as NDJSON or CSV using keyset pagination on id, so memory
+ * use is bounded by one page no matter how large the table is. Shards are
+ * exported one after another, each in id order; a row a rebalance has copied
+ * but not yet deleted is only written by the shard that owns it.
+ */
+@Component
+public class UrlMappingExporter {
+
+    static final String CSV_HEADER = "id,short_code,long_url,expiry_at,created_at,click_count,active";
+
+    private static final String PAGE_SQL =
+            "SELECT id, short_code, long_url, expiry_at, created_at, click_count, active "
+                    + "FROM url_mapping WHERE id > ? ORDER BY id LIMIT ?";
+
+    private static final String PAGE_SINCE_SQL =
+            "SELECT id, short_code, long_url, expiry_at, created_at, click_count, active "
+                    + "FROM url_mapping WHERE id > ? AND created_at >= ? ORDER BY id LIMIT ?";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final RowMapper<ExportRow> ROW_MAPPER = (rs, i) -> new ExportRow(
+            rs.getLong("id"),
+            rs.getString("short_code"),
+            rs.getString("long_url"),
+            toLocalDateTime(rs.getTimestamp("expiry_at")),
+            toLocalDateTime(rs.getTimestamp("created_at")),
+            rs.getLong("click_count"),
+            rs.getBoolean("active"));
+
+    private final ShardMap shardMap;
+    private final ObjectMapper objectMapper;
+    private final int pageSize;
+
+    public record ExportRow(long id, String shortCode, String longUrl, LocalDateTime expiryAt,
+            LocalDateTime createdAt, long clickCount, boolean active) {
+    }
+
+    public UrlMappingExporter(ShardMap shardMap, ObjectMapper objectMapper, UrlShortenerProperties properties) {
+        this.shardMap = shardMap;
+        this.objectMapper = objectMapper;
+        this.pageSize = properties.getExport().getPageSize();
+    }
+
+    /**
+     * Writes every mapping created at or after {@code since} (all of them when
+     * null). The stream is flushed after each page but not closed.
+     *
+     * @return number of rows written
+     */
+    public long export(OutputStream out, ExportFormat format, LocalDateTime since, boolean gzip) throws IOException {
+        GZIPOutputStream gzipOut = gzip ? new GZIPOutputStream(out, BUFFER_SIZE) : null;
+        Writer writer = new BufferedWriter(
+                new OutputStreamWriter(gzip ? gzipOut : out, StandardCharsets.UTF_8), BUFFER_SIZE);
+
+        if (format == ExportFormat.CSV) {
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        }
+
+        long rows = 0;
+        for (ShardMap.Shard shard : shardMap.shards()) {
+            JdbcTemplate jdbcTemplate = shard.jdbcTemplate();
+            long lastId = Long.MIN_VALUE;
+            while (true) {
+                List<ExportRow> page = since == null
+                        ? jdbcTemplate.query(PAGE_SQL, ROW_MAPPER, lastId, pageSize)
+                        : jdbcTemplate.query(PAGE_SINCE_SQL, ROW_MAPPER, lastId, Timestamp.valueOf(since), pageSize);
+                if (page.isEmpty()) {
+                    break;
+                }
+                for (ExportRow row : page) {
+                    if (!shard.equals(shardMap.byId(row.id()).owner())) {
+                        continue;
+                    }
+                    if (format == ExportFormat.CSV) {
+                        writeCsv(writer, row);
+                    } else {
+                        writer.write(objectMapper.writeValueAsString(row));
+                    }
+                    writer.write('\n');
+                    rows++;
+                }
+                writer.flush();
+                lastId = page.get(page.size() - 1).id();
+            }
+        }
+
+        writer.flush();
+        if (gzipOut != null) {
+            gzipOut.finish();
+        }
+        out.flush();
+        return rows;
+    }
+
+    private static void writeCsv(Writer writer, ExportRow row) throws IOException {
+        writer.write(Long.toString(row.id()));
+        writer.write(',');
+        writer.write(csv(row.shortCode()));
+        writer.write(',');
+        writer.write(csv(row.longUrl()));
+        writer.write(',');
+        writer.write(row.expiryAt() == null ? "" : row.expiryAt().toString());
+        writer.write(',');
+        writer.write(row.createdAt() == null ? "" : row.createdAt().toString());
+        writer.write(',');
+        writer.write(Long.toString(row.clickCount()));
+        writer.write(',');
+        writer.write(Boolean.toString(row.active()));
+    }
+
+    static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        return quote ? '"' + value.replace("\"", "\"\"") + '"' : value;
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp == null ? null : timestamp.toLocalDateTime();
+    }
+}
@@ -0,0 +1,256 @@
+package com.kiran.urlshortener.filter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.kiran.urlshortener.cache.RedisCircuitBreaker;
+import com.kiran.urlshortener.config.UrlShortenerProperties;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Sliding-window rate limiter that decides every request in memory. Each
+ * client and route pair keeps its own count for the current window plus the
+ * count other nodes reported at the last sync; the previous window's total
+ * is weighted by how much of it still overlaps the sliding window.
+ *
+ * Once per sync interval the new local counts go to Redis through a Lua
+ * script, one call per thousand windows, which returns the cluster-wide
+ * totals. Between syncs a node does not
+ * see other nodes' traffic, so a client spread over several nodes can briefly
+ * exceed its limit. While the Redis circuit breaker is open, syncs are
+ * skipped and each node limits on its own counts alone.
+ */
+@Slf4j
+@Component
+public class LocalRateLimiter {
+
+    private static final String KEY_PREFIX = "rate:";
+
+    private static final int SYNC_CHUNK_SIZE = 1000;
+
+    // KEYS[i] gets ARGV[i] added and its TTL refreshed; ARGV[#KEYS + 1] is the
+    // TTL in milliseconds. Returns the new totals in key order.
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> SYNC_SCRIPT = new DefaultRedisScript<>("""
+            local ttl = ARGV[#KEYS + 1]
+            local totals = {}
+            for i, key in ipairs(KEYS) do
+              totals[i] = redis.call('INCRBY', key, ARGV[i])
+              redis.call('PEXPIRE', key, ttl)
+            end
+            return totals
+            """, List.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisCircuitBreaker redisBreaker;
+    private final UrlShortenerProperties.RateLimit config;
+    private final long windowMillis;
+    private final LongSupplier clock;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final Cache<String, Window> windows;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Counter> rejections = new ConcurrentHashMap<>();
+
+    public LocalRateLimiter(StringRedisTemplate redisTemplate, UrlShortenerProperties properties,
+            MeterRegistry meterRegistry, RedisCircuitBreaker redisBreaker) {
+        this(redisTemplate, properties, meterRegistry, redisBreaker, System::currentTimeMillis);
+    }
+
+    LocalRateLimiter(StringRedisTemplate redisTemplate, UrlShortenerProperties properties,
+            MeterRegistry meterRegistry, RedisCircuitBreaker redisBreaker, LongSupplier clock) {
+        this.redisTemplate = redisTemplate;
+        this.redisBreaker = redisBreaker;
+        this.meterRegistry = meterRegistry;
+        this.config = properties.getRateLimit();
+        this.windowMillis = config.getWindow().toMillis();
+        this.clock = clock;
+        this.windows = Caffeine.newBuilder()
+                .maximumSize(config.getMaxClients())
+                .expireAfterAccess(2 * windowMillis, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    /**
+     * @return the first configured route matching the request, or null
+     */
+    public UrlShortenerProperties.Route route(String method, String path) {
+        for (UrlShortenerProperties.Route route : config.getRoutes()) {
+            if ((route.getMethod() == null || route.getMethod().equalsIgnoreCase(method))
+                    && pathMatcher.match(route.getPath(), path)) {
+                return route;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Counts one request for the client on the route if it is under the
+     * limit. Clients are identified by API key when a known one is given,
+     * otherwise by IP.
+     */
+    public boolean tryAcquire(UrlShortenerProperties.Route route, String ip, String apiKey) {
+        return acquire(route, ip, apiKey, 1) == 1;
+    }
+
+    /**
+     * Counts up to {@code permits} requests or items for the client on the
+     * route, as many as the limit still allows.
+     *
+     * @return permits granted, from 0 to {@code permits}
+     */
+    public int acquire(UrlShortenerProperties.Route route, String ip, String apiKey, int permits) {
+        int limit = route.getLimit();
+        String client = "ip:" + ip;
+
+        UrlShortenerProperties.ApiKey key = apiKey == null ? null : config.getApiKeys().get(apiKey);
+        if (key != null) {
+            client = "key:" + apiKey;
+            Integer override = key.getLimits().get(route.getName());
+            if (override != null) {
+                limit = override;
+            }
+        }
+
+        long now = clock.getAsLong();
+        Window window = windows.get(route.getName() + ":" + client, k -> new Window());
+        int granted = window.acquire(now / windowMillis, (double) (now % windowMillis) / windowMillis, limit,
+                permits);
+        if (granted < permits) {
+            rejections.computeIfAbsent(route.getName(), name -> Counter.builder("urlshortener.ratelimit.rejected")
+                    .tag("route", name)
+                    .register(meterRegistry))
+                    .increment(permits - granted);
+        }
+        return granted;
+    }
+
+    /**
+     * Pushes new local counts to Redis and pulls back the cluster totals for
+     * those windows, one script call per chunk. Windows with no local traffic
+     * since the last sync are skipped; they pick up other nodes' counts after
+     * their next local request.
+     */
+    @Scheduled(fixedDelayString = "${urlshortener.rate-limit.sync-interval-ms:1000}")
+    public void sync() {
+        if (!config.isEnabled() || redisBreaker.isOpen()) {
+            return;
+        }
+
+        List<Window> chunk = new ArrayList<>(SYNC_CHUNK_SIZE);
+        List<String> keys = new ArrayList<>(SYNC_CHUNK_SIZE);
+        List<long[]> drained = new ArrayList<>(SYNC_CHUNK_SIZE);
+
+        for (Map.Entry<String, Window> entry : windows.asMap().entrySet()) {
+            long[] state = entry.getValue().drain();
+            if (state[1] == 0) {
+                continue;
+            }
+            chunk.add(entry.getValue());
+            keys.add(KEY_PREFIX + entry.getKey() + ":" + state[0]);
+            drained.add(state);
+            if (chunk.size() == SYNC_CHUNK_SIZE) {
+                syncChunk(chunk, keys, drained);
+                chunk.clear();
+                keys.clear();
+                drained.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            syncChunk(chunk, keys, drained);
+        }
+    }
+
+    private void syncChunk(List<Window> chunk, List<String> keys, List<long[]> drained) {
+        Object[] args = new Object[keys.size() + 1];
+        for (int i = 0; i < keys.size(); i++) {
+            args[i] = Long.toString(drained.get(i)[1]);
+        }
+        args[keys.size()] = Long.toString(2 * windowMillis);
+
+        try {
+            List<?> totals = redisBreaker.batch("ratelimit", () -> redisTemplate.execute(SYNC_SCRIPT, keys, args));
+            for (int i = 0; i < chunk.size(); i++) {
+                long[] state = drained.get(i);
+                chunk.get(i).applyTotal(state[0], ((Number) totals.get(i)).longValue(), state[2]);
+            }
+        } catch (Exception e) {
+            // Redis is down: keep limiting on local counts and resend these
+            // on the next sync.
+            for (int i = 0; i < chunk.size(); i++) {
+                long[] state = drained.get(i);
+                chunk.get(i).restore(state[0], state[1]);
+            }
+            log.debug("Rate limit sync failed", e);
+        }
+    }
+
+    // Counts for one client and route. All access is synchronized on the
+    // instance, which only this client's requests and the sync thread touch.
+    static final class Window {
+
+        private long index = -1;
+        private long local;
+        private long unsynced;
+        private long remote;
+        private long previous;
+
+        synchronized int acquire(long nowIndex, double elapsed, int limit, int permits) {
+            roll(nowIndex);
+            double estimate = previous * (1 - elapsed) + local + remote;
+            int granted = (int) Math.max(0, Math.min(permits, Math.ceil(limit - estimate)));
+            local += granted;
+            unsynced += granted;
+            return granted;
+        }
+
+        // Returns {window index, count not yet sent, local count including it}.
+        synchronized long[] drain() {
+            long[] state = { index, unsynced, local };
+            unsynced = 0;
+            return state;
+        }
+
+        synchronized void applyTotal(long windowIndex, long total, long localAtDrain) {
+            if (windowIndex == index) {
+                remote = Math.max(0, total - localAtDrain);
+            }
+        }
+
+        synchronized void restore(long windowIndex, long count) {
+            if (windowIndex == index) {
+                unsynced += count;
+            }
+        }
+
+        private void roll(long nowIndex) {
+            if (nowIndex == index) {
+                return;
+            }
+            previous = nowIndex == index + 1 ? local + remote : 0;
+            index = nowIndex;
+            local = 0;
+            unsynced = 0;
+            remote = 0;
+        }
+    }
+}
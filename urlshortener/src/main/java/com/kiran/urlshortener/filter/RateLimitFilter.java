@@ -1,12 +1,16 @@
 package com.kiran.urlshortener.filter;
 
 import java.io.IOException;
-import java.util.concurrent.TimeUnit;
+import java.util.function.IntUnaryOperator;
 
-import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 
+import com.kiran.urlshortener.config.UrlShortenerProperties;
+
 import jakarta.servlet.Filter;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -16,15 +20,27 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
 @Component
+@Order(Ordered.LOWEST_PRECEDENCE - 10)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class RateLimitFilter implements Filter {
 
-    private static final int LIMIT = 10;
-    private static final long WINDOW_SECONDS = 60;
+    // Probes and scrapes come from a few node IPs far more often than any
+    // route limit allows; a 429 there would mark the pod unready.
+    private static final String ACTUATOR_PREFIX = "/actuator/";
+
+    /**
+     * Request attribute set on a per-item route: an IntUnaryOperator that
+     * takes up to the given number of items from the client's window and
+     * returns how many it got.
+     */
+    public static final String ITEM_PERMITS = RateLimitFilter.class.getName() + ".itemPermits";
 
-    private final StringRedisTemplate redisTemplate;
+    private final LocalRateLimiter rateLimiter;
+    private final String apiKeyHeader;
 
-    public RateLimitFilter(StringRedisTemplate redisTemplate) {
-        this.redisTemplate = redisTemplate;
+    public RateLimitFilter(LocalRateLimiter rateLimiter, UrlShortenerProperties properties) {
+        this.rateLimiter = rateLimiter;
+        this.apiKeyHeader = properties.getRateLimit().getApiKeyHeader();
     }
 
     @Override
@@ -37,21 +53,15 @@ public class RateLimitFilter implements Filter {
         HttpServletRequest httpRequest = (HttpServletRequest) request;
         HttpServletResponse httpResponse = (HttpServletResponse) response;
 
-        String method = httpRequest.getMethod();
-        String path = httpRequest.getRequestURI();
+        String path = httpRequest.getRequestURI().substring(httpRequest.getContextPath().length());
 
-        if (("POST".equals(method) && "/api/v1/urls/shorten".equals(path)) || ("GET".equals(method))) {
+        if (rateLimiter.isEnabled() && !path.startsWith(ACTUATOR_PREFIX)) {
 
+            UrlShortenerProperties.Route route = rateLimiter.route(httpRequest.getMethod(), path);
             String ip = httpRequest.getRemoteAddr();
-            String key = "rate:" + ip;
-
-            Long count = redisTemplate.opsForValue().increment(key);
-
-            if (count != null && count == 1) {
-                redisTemplate.expire(key, WINDOW_SECONDS, TimeUnit.SECONDS);
-            }
+            String apiKey = httpRequest.getHeader(apiKeyHeader);
 
-            if (count != null && count > LIMIT) {
+            if (route != null && !rateLimiter.tryAcquire(route, ip, apiKey)) {
                 httpResponse.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
                 httpResponse.setContentType("application/json");
                 httpResponse.getWriter().write(
@@ -59,8 +69,24 @@ public class RateLimitFilter implements Filter {
                 );
                 return;
             }
+
+            if (route != null && route.isPerItem()) {
+                request.setAttribute(ITEM_PERMITS, itemPermits(route, ip, apiKey));
+            }
         }
 
         chain.doFilter(request, response);
     }
+
+    // The permit taken above, so a client with nothing left gets a 429
+    // up front, pays for the request's first item.
+    private IntUnaryOperator itemPermits(UrlShortenerProperties.Route route, String ip, String apiKey) {
+        int[] prepaid = { 1 };
+        return requested -> {
+            int fromPrepaid = Math.min(prepaid[0], requested);
+            prepaid[0] -= fromPrepaid;
+            int rest = requested - fromPrepaid;
+            return fromPrepaid + (rest > 0 ? rateLimiter.acquire(route, ip, apiKey, rest) : 0);
+        };
+    }
 }
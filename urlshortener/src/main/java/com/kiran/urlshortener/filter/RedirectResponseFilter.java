@@ -0,0 +1,108 @@
+package com.kiran.urlshortener.filter;
+
+import java.io.IOException;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import com.kiran.urlshortener.cache.CacheMetrics;
+import com.kiran.urlshortener.cache.CacheMetrics.Source;
+import com.kiran.urlshortener.cache.CacheMetrics.Tier;
+import com.kiran.urlshortener.cache.RedirectResponseCache;
+import com.kiran.urlshortener.cache.UrlNearCache;
+import com.kiran.urlshortener.service.ClickBuffer;
+import com.kiran.urlshortener.service.ClickEventPublisher;
+
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Answers redirects for hot short codes straight from RedirectResponseCache,
+ * before the DispatcherServlet, handler mapping and ResponseEntity handling.
+ * Misses go through UrlController as usual, and a successful redirect is then
+ * cached for as long as the near cache holds the code. Runs after
+ * RateLimitFilter so cached codes are still limited.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class RedirectResponseFilter implements Filter {
+
+    private static final String REDIRECT_PREFIX = "/api/v1/urls/";
+
+    private final RedirectResponseCache responseCache;
+    private final UrlNearCache nearCache;
+    private final CacheMetrics cacheMetrics;
+    private final ClickBuffer clickBuffer;
+    private final ClickEventPublisher clickEventPublisher;
+
+    public RedirectResponseFilter(RedirectResponseCache responseCache, UrlNearCache nearCache,
+            CacheMetrics cacheMetrics, ClickBuffer clickBuffer, ClickEventPublisher clickEventPublisher) {
+        this.responseCache = responseCache;
+        this.nearCache = nearCache;
+        this.cacheMetrics = cacheMetrics;
+        this.clickBuffer = clickBuffer;
+        this.clickEventPublisher = clickEventPublisher;
+    }
+
+    @Override
+    public void doFilter(
+            ServletRequest request,
+            ServletResponse response,
+            FilterChain chain)
+            throws IOException, ServletException {
+
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        HttpServletResponse httpResponse = (HttpServletResponse) response;
+
+        String shortCode = responseCache.isEnabled() ? shortCode(httpRequest) : null;
+        if (shortCode == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        long start = System.nanoTime();
+        RedirectResponseCache.Redirect redirect = responseCache.get(shortCode);
+        if (redirect != null) {
+            cacheMetrics.hit(Tier.RESPONSE);
+            clickBuffer.record(shortCode);
+            clickEventPublisher.record(shortCode, httpRequest::getHeader);
+            httpResponse.setStatus(HttpStatus.FOUND.value());
+            httpResponse.setHeader(HttpHeaders.LOCATION, redirect.location());
+            httpResponse.setContentLength(0);
+            cacheMetrics.resolved(Source.RESPONSE, start);
+            return;
+        }
+        cacheMetrics.miss(Tier.RESPONSE);
+
+        chain.doFilter(request, response);
+
+        if (httpResponse.getStatus() == HttpStatus.FOUND.value()) {
+            responseCache.put(shortCode, httpResponse.getHeader(HttpHeaders.LOCATION),
+                    nearCache.expiresAfter(shortCode));
+        }
+    }
+
+    // The code of a GET /api/v1/urls/{shortCode} request, or null for
+    // anything else.
+    static String shortCode(HttpServletRequest request) {
+        if (!"GET".equals(request.getMethod())) {
+            return null;
+        }
+        String uri = request.getRequestURI();
+        if (!uri.startsWith(REDIRECT_PREFIX) || uri.length() == REDIRECT_PREFIX.length()
+                || uri.indexOf('/', REDIRECT_PREFIX.length()) >= 0) {
+            return null;
+        }
+        return uri.substring(REDIRECT_PREFIX.length());
+    }
+}
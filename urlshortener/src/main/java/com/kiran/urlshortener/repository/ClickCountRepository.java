@@ -0,0 +1,97 @@
+package com.kiran.urlshortener.repository;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import com.kiran.urlshortener.repository.ShardMap.Shard;
+
+@Repository
+public class ClickCountRepository {
+
+    private final ShardMap shardMap;
+
+    public ClickCountRepository(ShardMap shardMap) {
+        this.shardMap = shardMap;
+    }
+
+    /**
+     * Thrown once every shard has been tried when some of them failed, with
+     * the counts those shards did not apply. The other shards have committed.
+     */
+    public static class PartialFlushException extends RuntimeException {
+
+        private final transient Map<String, Long> unapplied;
+
+        public PartialFlushException(Map<String, Long> unapplied, Exception cause) {
+            super("Click counts not applied on every shard", cause);
+            this.unapplied = unapplied;
+        }
+
+        public Map<String, Long> unapplied() {
+            return unapplied;
+        }
+    }
+
+    /**
+     * Adds every count to its active mapping with a single
+     * UPDATE ... FROM (VALUES ...) statement per shard, each committed on its
+     * own. Counts go to the owner of the code's bucket only, even while the
+     * bucket is being moved.
+     *
+     * @return number of mappings updated
+     * @throws PartialFlushException if any shard failed
+     */
+    public int addClickCounts(Map<String, Long> countsByShortCode) {
+        Map<Shard, Map<String, Long>> countsByShard = new LinkedHashMap<>();
+        countsByShortCode.forEach((shortCode, clicks) -> {
+            Shard owner = shardMap.ownerOfCode(shortCode);
+            if (owner != null) {
+                countsByShard.computeIfAbsent(owner, k -> new LinkedHashMap<>()).put(shortCode, clicks);
+            }
+        });
+
+        int updated = 0;
+        Map<String, Long> unapplied = new LinkedHashMap<>();
+        Exception failure = null;
+        for (Map.Entry<Shard, Map<String, Long>> entry : countsByShard.entrySet()) {
+            try {
+                updated += addClickCounts(entry.getKey().jdbcTemplate(), entry.getValue());
+            } catch (RuntimeException e) {
+                unapplied.putAll(entry.getValue());
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw new PartialFlushException(unapplied, failure);
+        }
+        return updated;
+    }
+
+    private static int addClickCounts(JdbcTemplate jdbcTemplate, Map<String, Long> countsByShortCode) {
+        StringBuilder sql = new StringBuilder(
+                "UPDATE url_mapping AS u SET click_count = COALESCE(u.click_count, 0) + v.clicks FROM (VALUES ");
+        List<Object> args = new ArrayList<>(countsByShortCode.size() * 2);
+
+        countsByShortCode.forEach((shortCode, clicks) -> {
+            if (!args.isEmpty()) {
+                sql.append(", ");
+            }
+            sql.append("(?, CAST(? AS BIGINT))");
+            args.add(shortCode);
+            args.add(clicks);
+        });
+
+        sql.append(") AS v(short_code, clicks) WHERE u.short_code = v.short_code AND u.active = TRUE");
+
+        return jdbcTemplate.update(sql.toString(), args.toArray());
+    }
+}
@@ -0,0 +1,173 @@
+package com.kiran.urlshortener.repository;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Click rollup tables: click totals per code and minute, hour and day bucket,
+ * per-day totals by referrer, country and agent, and the last Kafka offset
+ * folded in per click-events partition. Bucket times are UTC.
+ *
+ * Counts are only ever added together with the offset they were read up to,
+ * in one transaction that first checks the stored offset is still where the
+ * writer left it. A redelivered or already-applied batch therefore never
+ * adds its clicks twice. Tables are created on first use.
+ */
+@Repository
+public class ClickRollupRepository {
+
+    public enum Granularity {
+        MINUTE("click_rollup_minute"), HOUR("click_rollup_hour"), DAY("click_rollup_day");
+
+        private final String table;
+
+        Granularity(String table) {
+            this.table = table;
+        }
+
+        public String table() {
+            return table;
+        }
+    }
+
+    public enum Dimension {
+        REFERRER, COUNTRY, AGENT
+    }
+
+    public record Bucket(String shortCode, LocalDateTime start) {
+    }
+
+    public record DayValue(String shortCode, LocalDate day, Dimension dimension, String value) {
+    }
+
+    public record Point(LocalDateTime start, long clicks) {
+    }
+
+    public record Total(String value, long clicks) {
+    }
+
+    private static final Comparator<Bucket> BUCKET_ORDER =
+            Comparator.comparing(Bucket::shortCode).thenComparing(Bucket::start);
+
+    private static final Comparator<DayValue> DAY_VALUE_ORDER = Comparator.comparing(DayValue::shortCode)
+            .thenComparing(DayValue::day)
+            .thenComparing(DayValue::dimension)
+            .thenComparing(DayValue::value);
+
+    private final JdbcTemplate jdbcTemplate;
+    private volatile boolean tablesCreated;
+
+    public ClickRollupRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * @return the last offset applied for the partition, -1 if none yet
+     */
+    public long committedOffset(int partition) {
+        createTablesIfMissing();
+        jdbcTemplate.update("INSERT INTO click_rollup_offset (topic_partition, committed_offset) VALUES (?, -1) "
+                + "ON CONFLICT (topic_partition) DO NOTHING", partition);
+        Long offset = jdbcTemplate.queryForObject(
+                "SELECT committed_offset FROM click_rollup_offset WHERE topic_partition = ?", Long.class, partition);
+        return offset == null ? -1 : offset;
+    }
+
+    /**
+     * Adds the counts and moves the partition's offset from {@code expected}
+     * to {@code offset}, all or nothing.
+     *
+     * @return false, with nothing written, if the stored offset is no longer
+     *         {@code expected} because another consumer has since applied
+     *         this partition
+     */
+    @Transactional
+    public boolean apply(int partition, long expected, long offset,
+            Map<Granularity, Map<Bucket, Long>> series, Map<DayValue, Long> breakdown) {
+        createTablesIfMissing();
+        int moved = jdbcTemplate.update(
+                "UPDATE click_rollup_offset SET committed_offset = ? WHERE topic_partition = ? AND committed_offset = ?",
+                offset, partition, expected);
+        if (moved == 0) {
+            return false;
+        }
+
+        // Rows are written in key order so concurrent writers for other
+        // partitions lock them in the same order and cannot deadlock.
+        series.forEach((granularity, counts) -> {
+            List<Object[]> args = new ArrayList<>(counts.size());
+            counts.entrySet().stream()
+                    .sorted(Map.Entry.comparingByKey(BUCKET_ORDER))
+                    .forEach(e -> args.add(new Object[] {
+                            e.getKey().shortCode(), Timestamp.valueOf(e.getKey().start()), e.getValue() }));
+            String table = granularity.table();
+            jdbcTemplate.batchUpdate("INSERT INTO " + table + " (short_code, bucket_start, clicks) VALUES (?, ?, ?) "
+                    + "ON CONFLICT (short_code, bucket_start) DO UPDATE SET clicks = " + table
+                    + ".clicks + EXCLUDED.clicks", args);
+        });
+
+        List<Object[]> args = new ArrayList<>(breakdown.size());
+        breakdown.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey(DAY_VALUE_ORDER))
+                .forEach(e -> args.add(new Object[] { e.getKey().shortCode(), Date.valueOf(e.getKey().day()),
+                        e.getKey().dimension().name(), e.getKey().value(), e.getValue() }));
+        jdbcTemplate.batchUpdate("INSERT INTO click_breakdown_day (short_code, day, dimension, value, clicks) "
+                + "VALUES (?, ?, ?, ?, ?) ON CONFLICT (short_code, day, dimension, value) "
+                + "DO UPDATE SET clicks = click_breakdown_day.clicks + EXCLUDED.clicks", args);
+        return true;
+    }
+
+    public List<Point> series(String shortCode, Granularity granularity, LocalDateTime from, LocalDateTime to) {
+        createTablesIfMissing();
+        return jdbcTemplate.query("SELECT bucket_start, clicks FROM " + granularity.table()
+                        + " WHERE short_code = ? AND bucket_start >= ? AND bucket_start < ? ORDER BY bucket_start",
+                (rs, i) -> new Point(rs.getTimestamp("bucket_start").toLocalDateTime(), rs.getLong("clicks")),
+                shortCode, Timestamp.valueOf(from), Timestamp.valueOf(to));
+    }
+
+    public List<Total> breakdown(String shortCode, Dimension dimension, LocalDate from, LocalDate to, int limit) {
+        createTablesIfMissing();
+        return jdbcTemplate.query("SELECT value, SUM(clicks) AS clicks FROM click_breakdown_day "
+                        + "WHERE short_code = ? AND dimension = ? AND day >= ? AND day <= ? "
+                        + "GROUP BY value ORDER BY clicks DESC, value LIMIT ?",
+                (rs, i) -> new Total(rs.getString("value"), rs.getLong("clicks")),
+                shortCode, dimension.name(), Date.valueOf(from), Date.valueOf(to), limit);
+    }
+
+    /**
+     * @return rows deleted from the granularity's table
+     */
+    public int deleteBefore(Granularity granularity, LocalDateTime cutoff) {
+        createTablesIfMissing();
+        return jdbcTemplate.update("DELETE FROM " + granularity.table() + " WHERE bucket_start < ?",
+                Timestamp.valueOf(cutoff));
+    }
+
+    private void createTablesIfMissing() {
+        if (tablesCreated) {
+            return;
+        }
+        for (Granularity granularity : Granularity.values()) {
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + granularity.table() + " ("
+                    + "short_code VARCHAR(16) NOT NULL, bucket_start TIMESTAMP NOT NULL, clicks BIGINT NOT NULL, "
+                    + "PRIMARY KEY (short_code, bucket_start))");
+        }
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS click_breakdown_day ("
+                + "short_code VARCHAR(16) NOT NULL, day DATE NOT NULL, dimension VARCHAR(16) NOT NULL, "
+                + "value VARCHAR(255) NOT NULL, clicks BIGINT NOT NULL, "
+                + "PRIMARY KEY (short_code, day, dimension, value))");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS click_rollup_offset ("
+                + "topic_partition INT PRIMARY KEY, committed_offset BIGINT NOT NULL)");
+        tablesCreated = true;
+    }
+}
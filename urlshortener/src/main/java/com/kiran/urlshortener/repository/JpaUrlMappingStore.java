@@ -0,0 +1,55 @@
+package com.kiran.urlshortener.repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import com.kiran.urlshortener.entity.UrlMapping;
+
+/**
+ * The single url_mapping table on spring.datasource.
+ */
+@Repository
+@ConditionalOnProperty(prefix = "urlshortener.shards", name = "enabled", havingValue = "false", matchIfMissing = true)
+public class JpaUrlMappingStore implements UrlMappingStore {
+
+    private final UrlMappingRepository urlMappingRepository;
+
+    public JpaUrlMappingStore(UrlMappingRepository urlMappingRepository) {
+        this.urlMappingRepository = urlMappingRepository;
+    }
+
+    @Override
+    public Optional<UrlMapping> findByIdAndActiveTrue(Long id) {
+        return urlMappingRepository.findByIdAndActiveTrue(id);
+    }
+
+    @Override
+    public Optional<UrlMapping> findByLongUrlHash(byte[] longUrlHash) {
+        return urlMappingRepository.findByLongUrlHash(longUrlHash);
+    }
+
+    @Override
+    public List<UrlMapping> findByLongUrlHashIn(Collection<byte[]> longUrlHashes) {
+        return urlMappingRepository.findByLongUrlHashIn(longUrlHashes);
+    }
+
+    @Override
+    public UrlMapping save(UrlMapping mapping) {
+        return urlMappingRepository.save(mapping);
+    }
+
+    @Override
+    public List<UrlMapping> saveAll(Iterable<UrlMapping> mappings) {
+        return urlMappingRepository.saveAll(mappings);
+    }
+
+    @Override
+    public void releaseLongUrlHash(UrlMapping mapping) {
+        urlMappingRepository.clearLongUrlHash(mapping.getId());
+        mapping.setLongUrlHash(null);
+    }
+}
@@ -0,0 +1,336 @@
+package com.kiran.urlshortener.repository;
+
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Where each url_mapping row and long URL digest lives. Ids and digests hash
+ * into a fixed number of buckets, and the shard_bucket table on
+ * spring.datasource names the shard that owns each bucket. A bucket being
+ * moved also has a target: reads go to the owner, writes go to the owner and
+ * then the target, so both see every change while ShardRebalancer copies the
+ * rest. Every node reloads the map each map-refresh-interval-ms.
+ *
+ * Tables are created on first use: shard_bucket on spring.datasource, filled
+ * round-robin over the shards when empty, and url_mapping and url_digest on
+ * every shard. A shard's url_mapping is partitioned by created_at month, see
+ * UrlMappingPartitions; each map load makes sure this month and the next have
+ * a partition. Without sharding there is a single shard, spring.datasource,
+ * that owns everything.
+ */
+@Slf4j
+public class ShardMap implements DisposableBean {
+
+    public record Shard(String name, JdbcTemplate jdbcTemplate) {
+    }
+
+    /**
+     * Target is null unless the bucket is being moved.
+     */
+    public record Route(Shard owner, Shard target) {
+
+        /**
+         * Shards every write goes to, owner first.
+         */
+        public List<Shard> writers() {
+            return target == null ? List.of(owner) : List.of(owner, target);
+        }
+    }
+
+    // pg_advisory_lock key shared by ShardRebalancer and UrlMappingLifecycleJob.
+    private static final long MAINTENANCE_LOCK = 0x75726C5F6D6170L;
+
+    private final JdbcTemplate directory;
+    private final Map<String, Shard> shards = new LinkedHashMap<>();
+    private final int buckets;
+    private final ToLongFunction<String> idOfCode;
+
+    private volatile Route[] routes;
+
+    private volatile YearMonth partitionedThrough;
+
+    public ShardMap(JdbcTemplate directory, List<Shard> shards, int buckets, ToLongFunction<String> idOfCode) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        if (buckets < shards.size()) {
+            throw new IllegalArgumentException("Need at least as many buckets as shards");
+        }
+        for (Shard shard : shards) {
+            if (this.shards.put(shard.name(), shard) != null) {
+                throw new IllegalArgumentException("Duplicate shard name " + shard.name());
+            }
+        }
+        this.directory = directory;
+        this.buckets = buckets;
+        this.idOfCode = idOfCode;
+    }
+
+    /**
+     * The unsharded layout: spring.datasource owns every bucket.
+     */
+    public static ShardMap single(JdbcTemplate jdbcTemplate) {
+        Shard primary = new Shard("primary", jdbcTemplate);
+        ShardMap map = new ShardMap(null, List.of(primary), 1, code -> 0);
+        map.routes = new Route[] { new Route(primary, null) };
+        return map;
+    }
+
+    public boolean isSharded() {
+        return directory != null;
+    }
+
+    public int buckets() {
+        return buckets;
+    }
+
+    public Collection<Shard> shards() {
+        return shards.values();
+    }
+
+    public Shard shard(String name) {
+        Shard shard = shards.get(name);
+        if (shard == null) {
+            throw new IllegalArgumentException("Unknown shard " + name);
+        }
+        return shard;
+    }
+
+    public int bucketOf(long id) {
+        return (int) Long.remainderUnsigned(mix(id), buckets);
+    }
+
+    public int bucketOf(byte[] digest) {
+        return (int) Long.remainderUnsigned(ByteBuffer.wrap(digest).getLong(), buckets);
+    }
+
+    public Route route(int bucket) {
+        Route[] current = routes;
+        if (current == null) {
+            current = load();
+        }
+        return current[bucket];
+    }
+
+    public Route byId(long id) {
+        return route(bucketOf(id));
+    }
+
+    public Route byDigest(byte[] digest) {
+        return route(bucketOf(digest));
+    }
+
+    /**
+     * @return the shard holding the code's click count, null for a code that
+     *         does not decode
+     */
+    public Shard ownerOfCode(String shortCode) {
+        long id = idOfCode.applyAsLong(shortCode);
+        return id < 0 ? null : byId(id).owner();
+    }
+
+    @Scheduled(fixedDelayString = "${urlshortener.shards.map-refresh-interval-ms:5000}")
+    public void refresh() {
+        if (directory == null) {
+            return;
+        }
+        try {
+            load();
+        } catch (Exception e) {
+            log.warn("Shard map refresh failed, routing by the previous map", e);
+        }
+    }
+
+    /**
+     * Reads the map from shard_bucket, creating and filling it first if
+     * needed.
+     */
+    public synchronized Route[] load() {
+        if (directory == null) {
+            return routes;
+        }
+        boolean first = routes == null;
+        if (first) {
+            createTablesIfMissing();
+        }
+        createPartitionsIfMissing();
+
+        Route[] next = new Route[buckets];
+        directory.query("SELECT bucket, owner, target FROM shard_bucket", rs -> {
+            int bucket = rs.getInt("bucket");
+            if (bucket < 0 || bucket >= buckets) {
+                throw new IllegalStateException("shard_bucket has bucket " + bucket
+                        + " but urlshortener.shards.buckets is " + buckets);
+            }
+            String target = rs.getString("target");
+            next[bucket] = new Route(shard(rs.getString("owner")), target == null ? null : shard(target));
+        });
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            if (next[bucket] == null) {
+                throw new IllegalStateException("shard_bucket has no owner for bucket " + bucket);
+            }
+        }
+        routes = next;
+        if (first) {
+            log.info("Shard map loaded: {} buckets over {}", buckets, shards.keySet());
+        }
+        return next;
+    }
+
+    /**
+     * Marks every bucket in the range not already on {@code to} as moving
+     * there. Buckets another move is working on are left alone.
+     *
+     * @return buckets marked
+     */
+    public int startMove(int from, int to, String target) {
+        return directory.update("UPDATE shard_bucket SET target = ? "
+                + "WHERE bucket BETWEEN ? AND ? AND owner <> ? AND target IS NULL", target, from, to, target);
+    }
+
+    /**
+     * Makes {@code target} the owner of the range's buckets moving to it, with
+     * the old owner as the target until {@link #finishMove}.
+     *
+     * @return buckets switched
+     */
+    public int switchOwner(int from, int to, String target) {
+        return directory.update("UPDATE shard_bucket SET owner = target, target = owner "
+                + "WHERE bucket BETWEEN ? AND ? AND target = ?", from, to, target);
+    }
+
+    /**
+     * Stops mirroring writes of the range's buckets owned by {@code owner}.
+     *
+     * @return buckets finished
+     */
+    public int finishMove(int from, int to, String owner) {
+        return directory.update("UPDATE shard_bucket SET target = NULL "
+                + "WHERE bucket BETWEEN ? AND ? AND owner = ? AND target IS NOT NULL", from, to, owner);
+    }
+
+    /**
+     * Runs {@code task} holding a session advisory lock on spring.datasource,
+     * so bucket moves and url_mapping sweeps never overlap, on any node.
+     *
+     * @return the task's result, or null without running it when the lock is
+     *         held elsewhere
+     */
+    public <T> T withMaintenanceLock(Supplier<T> task) {
+        if (directory == null) {
+            return task.get();
+        }
+        return directory.execute((ConnectionCallback<T>) connection -> {
+            if (!advisoryLock(connection, "pg_try_advisory_lock")) {
+                return null;
+            }
+            try {
+                return task.get();
+            } finally {
+                advisoryLock(connection, "pg_advisory_unlock");
+            }
+        });
+    }
+
+    private static boolean advisoryLock(Connection connection, String function) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT " + function + "(?)")) {
+            statement.setLong(1, MAINTENANCE_LOCK);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        }
+    }
+
+    /**
+     * Makes the next load check this month's and next month's partitions
+     * again, e.g. after a sweep dropped partitions.
+     */
+    public void forgetPartitions() {
+        partitionedThrough = null;
+    }
+
+    private void createPartitionsIfMissing() {
+        YearMonth next = YearMonth.now().plusMonths(1);
+        if (next.equals(partitionedThrough)) {
+            return;
+        }
+        for (Shard shard : shards.values()) {
+            UrlMappingPartitions.create(shard.jdbcTemplate(), next.minusMonths(1));
+            UrlMappingPartitions.create(shard.jdbcTemplate(), next);
+        }
+        partitionedThrough = next;
+    }
+
+    private void createTablesIfMissing() {
+        directory.execute("CREATE TABLE IF NOT EXISTS shard_bucket ("
+                + "bucket INT PRIMARY KEY, owner VARCHAR(64) NOT NULL, target VARCHAR(64))");
+        List<String> names = new ArrayList<>(shards.keySet());
+        List<Object[]> args = new ArrayList<>(buckets);
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            args.add(new Object[] { bucket, names.get(bucket % names.size()) });
+        }
+        // Nodes starting together all try this; the first one's rows win.
+        directory.batchUpdate("INSERT INTO shard_bucket (bucket, owner) VALUES (?, ?) "
+                + "ON CONFLICT (bucket) DO NOTHING", args);
+
+        for (Shard shard : shards.values()) {
+            JdbcTemplate jdbcTemplate = shard.jdbcTemplate();
+            // Unique indexes must include the partition key. Ids come from a
+            // sequence and codes decode to their id, so neither can repeat.
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS url_mapping ("
+                    + "id BIGINT NOT NULL, bucket INT NOT NULL, short_code VARCHAR(10) NOT NULL, "
+                    + "long_url TEXT NOT NULL, long_url_hash BYTEA, expiry_at TIMESTAMP, "
+                    + "created_at TIMESTAMP NOT NULL, click_count BIGINT NOT NULL DEFAULT 0, "
+                    + "active BOOLEAN NOT NULL, moved_click_count BIGINT NOT NULL DEFAULT 0, "
+                    + "PRIMARY KEY (id, created_at)) PARTITION BY RANGE (created_at)");
+            jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_short_code ON url_mapping (short_code)");
+            jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_click_count ON url_mapping (click_count, id)");
+            jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_url_mapping_bucket ON url_mapping (bucket, id)");
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS url_digest ("
+                    + "long_url_hash BYTEA PRIMARY KEY, bucket INT NOT NULL, mapping_id BIGINT NOT NULL)");
+            jdbcTemplate.execute(
+                    "CREATE INDEX IF NOT EXISTS idx_url_digest_bucket ON url_digest (bucket, long_url_hash)");
+        }
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (directory == null) {
+            return;
+        }
+        for (Shard shard : shards.values()) {
+            DataSource dataSource = shard.jdbcTemplate().getDataSource();
+            if (dataSource instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    // SplitMix64 finalizer, so consecutive ids from one block spread over
+    // all buckets.
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
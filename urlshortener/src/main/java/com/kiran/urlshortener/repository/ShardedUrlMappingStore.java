@@ -0,0 +1,329 @@
+package com.kiran.urlshortener.repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.kiran.urlshortener.entity.UrlMapping;
+import com.kiran.urlshortener.repository.ShardMap.Route;
+import com.kiran.urlshortener.repository.ShardMap.Shard;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * url_mapping spread over the shards of ShardMap by id. The unique long URL
+ * index becomes url_digest, spread by digest: a digest row names the mapping
+ * id, which names the shard to read the mapping from.
+ *
+ * Shards cannot share a transaction, so an insert writes the mapping rows
+ * first and then claims their digests. A digest another mapping already
+ * claimed makes the insert remove all of its rows and claims again and throw
+ * a DuplicateKeyException, as the unique index rolls back the whole batch on a
+ * single table. The caller's transaction rolls back their outbox rows too.
+ * The rows commit on their shards before that transaction does, so when it
+ * then fails to commit, its inserted rows and claims are removed again.
+ *
+ * url_mapping is partitioned by created_at month, so updates name the row's
+ * created_at as well and touch one partition only.
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(prefix = "urlshortener.shards", name = "enabled", havingValue = "true")
+public class ShardedUrlMappingStore implements UrlMappingStore {
+
+    private static final String COLUMNS =
+            "id, short_code, long_url, long_url_hash, expiry_at, created_at, click_count, active";
+
+    private static final String INSERT_SQL = "INSERT INTO url_mapping (id, bucket, short_code, long_url, "
+            + "long_url_hash, expiry_at, created_at, click_count, active) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String UPDATE_SQL =
+            "UPDATE url_mapping SET expiry_at = ?, active = ? WHERE id = ? AND created_at = ?";
+
+    private static final String CLAIM_SQL = "INSERT INTO url_digest (long_url_hash, bucket, mapping_id) "
+            + "VALUES (?, ?, ?) ON CONFLICT (long_url_hash) DO NOTHING";
+
+    private static final RowMapper<UrlMapping> ROW_MAPPER = (rs, i) -> {
+        UrlMapping mapping = new UrlMapping();
+        mapping.setId(rs.getLong("id"));
+        mapping.setShortCode(rs.getString("short_code"));
+        mapping.setLongUrl(rs.getString("long_url"));
+        mapping.setLongUrlHash(rs.getBytes("long_url_hash"));
+        mapping.setExpiryAt(toLocalDateTime(rs.getTimestamp("expiry_at")));
+        mapping.setCreatedAt(toLocalDateTime(rs.getTimestamp("created_at")));
+        mapping.setClickCount(rs.getLong("click_count"));
+        mapping.setActive(rs.getBoolean("active"));
+        mapping.markPersisted();
+        return mapping;
+    };
+
+    private final ShardMap shardMap;
+
+    public ShardedUrlMappingStore(ShardMap shardMap) {
+        this.shardMap = shardMap;
+    }
+
+    @Override
+    public Optional<UrlMapping> findByIdAndActiveTrue(Long id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        return first(shardMap.byId(id).owner().jdbcTemplate().query(
+                "SELECT " + COLUMNS + " FROM url_mapping WHERE id = ? AND active = TRUE", ROW_MAPPER, id));
+    }
+
+    @Override
+    public Optional<UrlMapping> findByLongUrlHash(byte[] longUrlHash) {
+        List<Long> ids = shardMap.byDigest(longUrlHash).owner().jdbcTemplate().queryForList(
+                "SELECT mapping_id FROM url_digest WHERE long_url_hash = ?", Long.class, longUrlHash);
+        if (ids.isEmpty()) {
+            return Optional.empty();
+        }
+        long id = ids.get(0);
+        Optional<UrlMapping> mapping = first(shardMap.byId(id).owner().jdbcTemplate().query(
+                "SELECT " + COLUMNS + " FROM url_mapping WHERE id = ?", ROW_MAPPER, id));
+        if (mapping.isEmpty()) {
+            // Archived by UrlMappingLifecycleJob after this digest was read;
+            // release it so the long URL can be shortened again.
+            for (Shard shard : shardMap.byDigest(longUrlHash).writers()) {
+                shard.jdbcTemplate().update("DELETE FROM url_digest WHERE long_url_hash = ? AND mapping_id = ?",
+                        longUrlHash, id);
+            }
+        }
+        return mapping;
+    }
+
+    @Override
+    public List<UrlMapping> findByLongUrlHashIn(Collection<byte[]> longUrlHashes) {
+        Map<Shard, List<Object>> digestsByShard = new LinkedHashMap<>();
+        for (byte[] digest : longUrlHashes) {
+            digestsByShard.computeIfAbsent(shardMap.byDigest(digest).owner(), k -> new ArrayList<>()).add(digest);
+        }
+        Map<Shard, List<Object>> idsByShard = new LinkedHashMap<>();
+        digestsByShard.forEach((shard, digests) -> {
+            for (Long id : shard.jdbcTemplate().queryForList("SELECT mapping_id FROM url_digest "
+                    + "WHERE long_url_hash IN (" + placeholders(digests.size()) + ")", Long.class, digests.toArray())) {
+                idsByShard.computeIfAbsent(shardMap.byId(id).owner(), k -> new ArrayList<>()).add(id);
+            }
+        });
+
+        List<UrlMapping> mappings = new ArrayList<>();
+        idsByShard.forEach((shard, ids) -> mappings.addAll(shard.jdbcTemplate().query("SELECT " + COLUMNS
+                + " FROM url_mapping WHERE id IN (" + placeholders(ids.size()) + ")", ROW_MAPPER, ids.toArray())));
+        return mappings;
+    }
+
+    @Override
+    public UrlMapping save(UrlMapping mapping) {
+        saveAll(List.of(mapping));
+        return mapping;
+    }
+
+    @Override
+    public List<UrlMapping> saveAll(Iterable<UrlMapping> mappings) {
+        List<UrlMapping> saved = new ArrayList<>();
+        List<UrlMapping> created = new ArrayList<>();
+        List<UrlMapping> updated = new ArrayList<>();
+        for (UrlMapping mapping : mappings) {
+            saved.add(mapping);
+            (mapping.isNew() ? created : updated).add(mapping);
+        }
+        update(updated);
+        insert(created);
+        return saved;
+    }
+
+    // The row loses its digest before the claim goes, so nothing can follow
+    // the claim to a row that no longer carries it.
+    @Override
+    public void releaseLongUrlHash(UrlMapping mapping) {
+        byte[] digest = mapping.getLongUrlHash();
+        if (digest == null) {
+            return;
+        }
+        for (Shard shard : shardMap.byId(mapping.getId()).writers()) {
+            shard.jdbcTemplate().update("UPDATE url_mapping SET long_url_hash = NULL WHERE id = ? AND created_at = ?",
+                    mapping.getId(), toTimestamp(mapping.getCreatedAt()));
+        }
+        for (Shard shard : shardMap.byDigest(digest).writers()) {
+            shard.jdbcTemplate().update("DELETE FROM url_digest WHERE long_url_hash = ? AND mapping_id = ?",
+                    digest, mapping.getId());
+        }
+        mapping.setLongUrlHash(null);
+    }
+
+    // Every owner is written before any target, so a copy that locked the
+    // owner row while the target was written cannot overwrite this change.
+    private void update(List<UrlMapping> mappings) {
+        Map<Shard, List<Object[]>> owners = new LinkedHashMap<>();
+        Map<Shard, List<Object[]>> targets = new LinkedHashMap<>();
+        for (UrlMapping mapping : mappings) {
+            Object[] args = { toTimestamp(mapping.getExpiryAt()), mapping.isActive(), mapping.getId(),
+                    toTimestamp(mapping.getCreatedAt()) };
+            Route route = shardMap.byId(mapping.getId());
+            owners.computeIfAbsent(route.owner(), k -> new ArrayList<>()).add(args);
+            if (route.target() != null) {
+                targets.computeIfAbsent(route.target(), k -> new ArrayList<>()).add(args);
+            }
+        }
+        owners.forEach((shard, args) -> shard.jdbcTemplate().batchUpdate(UPDATE_SQL, args));
+        targets.forEach((shard, args) -> shard.jdbcTemplate().batchUpdate(UPDATE_SQL, args));
+    }
+
+    private void insert(List<UrlMapping> mappings) {
+        if (mappings.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        Map<Shard, List<Object[]>> owners = new LinkedHashMap<>();
+        Map<Shard, List<Object[]>> targets = new LinkedHashMap<>();
+        for (UrlMapping mapping : mappings) {
+            if (mapping.getCreatedAt() == null) {
+                mapping.setCreatedAt(now);
+            }
+            long id = mapping.getId();
+            Object[] args = { id, shardMap.bucketOf(id), mapping.getShortCode(), mapping.getLongUrl(),
+                    mapping.getLongUrlHash(), toTimestamp(mapping.getExpiryAt()),
+                    toTimestamp(mapping.getCreatedAt()),
+                    mapping.getClickCount() == null ? 0L : mapping.getClickCount(), mapping.isActive() };
+            Route route = shardMap.byId(id);
+            owners.computeIfAbsent(route.owner(), k -> new ArrayList<>()).add(args);
+            if (route.target() != null) {
+                targets.computeIfAbsent(route.target(), k -> new ArrayList<>()).add(args);
+            }
+        }
+
+        List<UrlMapping> lost;
+        try {
+            owners.forEach((shard, args) -> shard.jdbcTemplate().batchUpdate(INSERT_SQL, args));
+            targets.forEach((shard, args) -> shard.jdbcTemplate()
+                    .batchUpdate(INSERT_SQL + " ON CONFLICT (id, created_at) DO NOTHING", args));
+            lost = claimDigests(mappings);
+        } catch (RuntimeException e) {
+            deleteQuietly(mappings);
+            throw e;
+        }
+
+        if (!lost.isEmpty()) {
+            // The winners go as well: the caller's outbox rows for them roll
+            // back with this exception, so their codes are never issued.
+            deleteQuietly(mappings);
+            throw new DuplicateKeyException(lost.size() + " long URL digests are already claimed by other mappings");
+        }
+        for (UrlMapping mapping : mappings) {
+            mapping.markPersisted();
+        }
+        removeUnlessCommitted(mappings);
+    }
+
+    // The caller's transaction holds the outbox rows for these mappings;
+    // without them the codes would never be issued.
+    private void removeUnlessCommitted(List<UrlMapping> mappings) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        List<UrlMapping> inserted = List.copyOf(mappings);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    deleteQuietly(inserted);
+                }
+            }
+        });
+    }
+
+    /**
+     * @return mappings whose digest another mapping already claimed
+     */
+    private List<UrlMapping> claimDigests(List<UrlMapping> mappings) {
+        Map<Shard, List<UrlMapping>> owners = new LinkedHashMap<>();
+        for (UrlMapping mapping : mappings) {
+            owners.computeIfAbsent(shardMap.byDigest(mapping.getLongUrlHash()).owner(), k -> new ArrayList<>())
+                    .add(mapping);
+        }
+
+        List<UrlMapping> lost = new ArrayList<>();
+        Map<Shard, List<Object[]>> targets = new LinkedHashMap<>();
+        owners.forEach((shard, group) -> {
+            List<Object[]> args = new ArrayList<>(group.size());
+            for (UrlMapping mapping : group) {
+                args.add(claimArgs(mapping));
+            }
+            int[] counts = shard.jdbcTemplate().batchUpdate(CLAIM_SQL, args);
+            for (int i = 0; i < group.size(); i++) {
+                if (counts[i] == 0) {
+                    lost.add(group.get(i));
+                    continue;
+                }
+                Shard target = shardMap.byDigest(group.get(i).getLongUrlHash()).target();
+                if (target != null) {
+                    targets.computeIfAbsent(target, k -> new ArrayList<>()).add(args.get(i));
+                }
+            }
+        });
+        targets.forEach((shard, args) -> shard.jdbcTemplate().batchUpdate(CLAIM_SQL, args));
+        return lost;
+    }
+
+    private Object[] claimArgs(UrlMapping mapping) {
+        byte[] digest = mapping.getLongUrlHash();
+        return new Object[] { digest, shardMap.bucketOf(digest), mapping.getId() };
+    }
+
+    // Rows of an insert that did not go through; their codes were never
+    // handed out. Digest rows are only removed while they name these ids.
+    private void deleteQuietly(List<UrlMapping> mappings) {
+        try {
+            Map<Shard, List<Object[]>> digests = new LinkedHashMap<>();
+            Map<Shard, List<Object[]>> rows = new LinkedHashMap<>();
+            for (UrlMapping mapping : mappings) {
+                for (Shard shard : shardMap.byDigest(mapping.getLongUrlHash()).writers()) {
+                    digests.computeIfAbsent(shard, k -> new ArrayList<>())
+                            .add(new Object[] { mapping.getLongUrlHash(), mapping.getId() });
+                }
+                for (Shard shard : shardMap.byId(mapping.getId()).writers()) {
+                    rows.computeIfAbsent(shard, k -> new ArrayList<>()).add(new Object[] { mapping.getId() });
+                }
+            }
+            digests.forEach((shard, args) -> shard.jdbcTemplate().batchUpdate(
+                    "DELETE FROM url_digest WHERE long_url_hash = ? AND mapping_id = ?", args));
+            rows.forEach((shard, args) -> shard.jdbcTemplate().batchUpdate(
+                    "DELETE FROM url_mapping WHERE id = ?", args));
+        } catch (RuntimeException e) {
+            log.warn("Could not remove {} mappings of a failed insert", mappings.size(), e);
+        }
+    }
+
+    private static Optional<UrlMapping> first(List<UrlMapping> rows) {
+        return rows.isEmpty() ? Optional.empty() : Optional.of(rows.get(0));
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder sql = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        return sql.toString();
+    }
+
+    private static Timestamp toTimestamp(LocalDateTime dateTime) {
+        return dateTime == null ? null : Timestamp.valueOf(dateTime);
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp == null ? null : timestamp.toLocalDateTime();
+    }
+}
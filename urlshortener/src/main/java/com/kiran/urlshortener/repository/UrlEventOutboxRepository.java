@@ -0,0 +1,93 @@
+package com.kiran.urlshortener.repository;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import com.kiran.urlshortener.events.UrlCreatedEvent;
+
+/**
+ * Outbox of UrlCreatedEvents not yet published to Kafka. Rows are written in
+ * the transaction that inserts their url_mapping rows, so an event exists
+ * exactly when its mapping does, and are deleted by UrlEventOutboxRelay once
+ * Kafka has acknowledged them. The table is created on first use.
+ */
+@Repository
+public class UrlEventOutboxRepository {
+
+    public record Entry(long id, UrlCreatedEvent event) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private volatile boolean tableCreated;
+
+    public UrlEventOutboxRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Joins the caller's transaction.
+     */
+    public void add(UrlCreatedEvent event) {
+        addAll(Collections.singletonList(event));
+    }
+
+    /**
+     * Joins the caller's transaction.
+     */
+    public void addAll(List<UrlCreatedEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        createTableIfMissing();
+        List<Object[]> args = new ArrayList<>(events.size());
+        for (UrlCreatedEvent event : events) {
+            args.add(new Object[] { event.getId(), event.getShortCode(), Timestamp.from(event.getCreatedAt()) });
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO url_event_outbox (mapping_id, short_code, created_at) VALUES (?, ?, ?)", args);
+    }
+
+    /**
+     * Oldest unpublished events, locked until the caller's transaction ends.
+     * Rows another relay has locked are skipped rather than waited for, so
+     * relays on several nodes each take a different batch.
+     */
+    public List<Entry> lockBatch(int limit) {
+        createTableIfMissing();
+        return jdbcTemplate.query("SELECT id, mapping_id, short_code, created_at FROM url_event_outbox "
+                        + "ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED",
+                (rs, i) -> new Entry(rs.getLong("id"), new UrlCreatedEvent(rs.getLong("mapping_id"),
+                        rs.getString("short_code"), rs.getTimestamp("created_at").toInstant())),
+                limit);
+    }
+
+    /**
+     * @return rows deleted
+     */
+    public int delete(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        StringBuilder sql = new StringBuilder("DELETE FROM url_event_outbox WHERE id IN (");
+        for (int i = 0; i < ids.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(')');
+        return jdbcTemplate.update(sql.toString(), ids.toArray());
+    }
+
+    private void createTableIfMissing() {
+        if (tableCreated) {
+            return;
+        }
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS url_event_outbox ("
+                + "id BIGSERIAL PRIMARY KEY, mapping_id BIGINT NOT NULL, short_code VARCHAR(16) NOT NULL, "
+                + "created_at TIMESTAMP NOT NULL)");
+        tableCreated = true;
+    }
+}
@@ -0,0 +1,69 @@
+package com.kiran.urlshortener.repository;
+
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Monthly partitions of a shard's url_mapping, which is partitioned by range
+ * of created_at. The partition for October 2026 is url_mapping_2026_10 and
+ * holds rows created from 2026-10-01 up to 2026-11-01.
+ */
+public final class UrlMappingPartitions {
+
+    private static final String PREFIX = "url_mapping_";
+
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+
+    private UrlMappingPartitions() {
+    }
+
+    public static String name(YearMonth month) {
+        return PREFIX + month.format(SUFFIX);
+    }
+
+    /**
+     * The FOR VALUES clause of the month's partition.
+     */
+    public static String bounds(YearMonth month) {
+        return "FOR VALUES FROM ('" + month.atDay(1) + "') TO ('" + month.plusMonths(1).atDay(1) + "')";
+    }
+
+    public static void create(JdbcTemplate jdbcTemplate, YearMonth month) {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + name(month) + " PARTITION OF url_mapping "
+                + bounds(month));
+    }
+
+    /**
+     * @return months that have a partition, oldest first
+     */
+    public static List<YearMonth> months(JdbcTemplate jdbcTemplate) {
+        List<YearMonth> months = new ArrayList<>();
+        for (String partition : jdbcTemplate.queryForList("SELECT c.relname FROM pg_inherits i "
+                + "JOIN pg_class c ON c.oid = i.inhrelid WHERE i.inhparent = 'url_mapping'::regclass "
+                + "ORDER BY c.relname", String.class)) {
+            if (!partition.startsWith(PREFIX)) {
+                continue;
+            }
+            try {
+                months.add(YearMonth.parse(partition.substring(PREFIX.length()), SUFFIX));
+            } catch (DateTimeParseException e) {
+                // Not one of ours, e.g. a rewrite that was interrupted.
+            }
+        }
+        return months;
+    }
+
+    /**
+     * @return bytes taken by the indexes of every partition
+     */
+    public static long indexBytes(JdbcTemplate jdbcTemplate) {
+        Long bytes = jdbcTemplate.queryForObject("SELECT COALESCE(SUM(pg_indexes_size(i.inhrelid)), 0) "
+                + "FROM pg_inherits i WHERE i.inhparent = 'url_mapping'::regclass", Long.class);
+        return bytes == null ? 0 : bytes;
+    }
+}
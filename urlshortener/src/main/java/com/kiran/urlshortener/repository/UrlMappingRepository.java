@@ -1,12 +1,28 @@
 package com.kiran.urlshortener.repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.kiran.urlshortener.entity.UrlMapping;
 
 public interface UrlMappingRepository extends JpaRepository<UrlMapping,Long>{
     Optional<UrlMapping> findByShortCodeAndActiveTrue(String shortCode);
-    Optional<UrlMapping> findByLongUrl(String longUrl);
+    Optional<UrlMapping> findByIdAndActiveTrue(Long id);
+    Optional<UrlMapping> findByLongUrlHash(byte[] longUrlHash);
+    List<UrlMapping> findByLongUrlHashIn(Collection<byte[]> longUrlHashes);
+
+    // A bulk UPDATE rather than a dirty entity: Hibernate flushes inserts
+    // before updates, so an insert reusing the digest in the same
+    // transaction would otherwise hit the unique index first.
+    @Transactional
+    @Modifying
+    @Query("UPDATE UrlMapping m SET m.longUrlHash = NULL WHERE m.id = :id")
+    int clearLongUrlHash(@Param("id") Long id);
 }
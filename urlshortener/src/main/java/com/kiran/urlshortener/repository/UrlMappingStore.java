@@ -0,0 +1,32 @@
+package com.kiran.urlshortener.repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import com.kiran.urlshortener.entity.UrlMapping;
+
+/**
+ * url_mapping as the services see it, whether it is one table or sharded.
+ * Inserting a mapping whose long URL digest is already taken throws a
+ * DataIntegrityViolationException.
+ */
+public interface UrlMappingStore {
+
+    Optional<UrlMapping> findByIdAndActiveTrue(Long id);
+
+    Optional<UrlMapping> findByLongUrlHash(byte[] longUrlHash);
+
+    List<UrlMapping> findByLongUrlHashIn(Collection<byte[]> longUrlHashes);
+
+    UrlMapping save(UrlMapping mapping);
+
+    List<UrlMapping> saveAll(Iterable<UrlMapping> mappings);
+
+    /**
+     * Takes the long URL digest off a deactivated or expired mapping, right
+     * away and outside any surrounding transaction's pending writes, so the
+     * long URL can get a new mapping. Clears it on {@code mapping} too.
+     */
+    void releaseLongUrlHash(UrlMapping mapping);
+}
@@ -0,0 +1,337 @@
+package com.kiran.urlshortener.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntUnaryOperator;
+
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.redis.connection.RedisStringCommands.SetOption;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kiran.urlshortener.cache.RedisCircuitBreaker;
+import com.kiran.urlshortener.config.UrlShortenerProperties;
+import com.kiran.urlshortener.dto.BulkShortenResult;
+import com.kiran.urlshortener.dto.ShortenUrlRequest;
+import com.kiran.urlshortener.entity.UrlMapping;
+import com.kiran.urlshortener.events.UrlCreatedEvent;
+import com.kiran.urlshortener.repository.UrlEventOutboxRepository;
+import com.kiran.urlshortener.repository.UrlMappingStore;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Shortens a stream of ShortenUrlRequests (NDJSON or a JSON array) in chunks.
+ * Each chunk costs one dedupe query, one batched insert transaction that also
+ * writes the chunk's UrlCreatedEvents to the outbox, and one Redis pipeline,
+ * and its results are written as NDJSON before the next chunk is read.
+ */
+@Slf4j
+@Service
+public class BulkShortenService {
+
+    private static final String SHORT_PREFIX = "short:";
+
+    private final UrlMappingStore urlMappingStore;
+    private final ShortCodeGenerator shortCodeGenerator;
+    private final IdBlockAllocator idBlockAllocator;
+    private final LongUrlIndex longUrlIndex;
+    private final IssuedCodeIndex issuedCodes;
+    private final StringRedisTemplate redisTemplate;
+    private final UrlEventOutboxRepository urlEventOutbox;
+    private final UrlService urlService;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final RedisCircuitBreaker redisBreaker;
+    private final int chunkSize;
+
+    // All requests in a chunk that share one normalized long URL.
+    private static class Pending {
+        private final String longUrl;
+        private final byte[] digest;
+        private final List<Integer> positions = new ArrayList<>();
+        private LocalDateTime expiryAt;
+        private UrlMapping mapping;
+        private String error;
+
+        Pending(String longUrl, byte[] digest) {
+            this.longUrl = longUrl;
+            this.digest = digest;
+        }
+    }
+
+    public BulkShortenService(UrlMappingStore urlMappingStore, ShortCodeGenerator shortCodeGenerator,
+            IdBlockAllocator idBlockAllocator, LongUrlIndex longUrlIndex, IssuedCodeIndex issuedCodes,
+            StringRedisTemplate redisTemplate, UrlEventOutboxRepository urlEventOutbox, UrlService urlService,
+            TransactionTemplate transactionTemplate, ObjectMapper objectMapper, Validator validator,
+            UrlShortenerProperties properties, RedisCircuitBreaker redisBreaker) {
+        this.urlMappingStore = urlMappingStore;
+        this.shortCodeGenerator = shortCodeGenerator;
+        this.idBlockAllocator = idBlockAllocator;
+        this.longUrlIndex = longUrlIndex;
+        this.issuedCodes = issuedCodes;
+        this.redisTemplate = redisTemplate;
+        this.urlEventOutbox = urlEventOutbox;
+        this.urlService = urlService;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.redisBreaker = redisBreaker;
+        this.chunkSize = properties.getBulk().getChunkSize();
+    }
+
+    /**
+     * @return number of requests read from the input
+     */
+    public long shorten(InputStream in, OutputStream out) throws IOException {
+        return shorten(in, out, requested -> requested);
+    }
+
+    /**
+     * Like {@link #shorten(InputStream, OutputStream)}, taking each chunk's
+     * URLs from {@code permits} first. Once it grants fewer than asked, the
+     * granted ones are handled, a rate limit error line is written and the
+     * rest of the input is not read.
+     *
+     * @return number of requests read from the input
+     */
+    public long shorten(InputStream in, OutputStream out, IntUnaryOperator permits) throws IOException {
+        long count = 0;
+        List<ShortenUrlRequest> chunk = new ArrayList<>(chunkSize);
+
+        try (MappingIterator<ShortenUrlRequest> requests =
+                objectMapper.readerFor(ShortenUrlRequest.class).readValues(in)) {
+            while (requests.hasNextValue()) {
+                chunk.add(requests.nextValue());
+                count++;
+                if (chunk.size() == chunkSize) {
+                    if (!writeGranted(chunk, permits, out)) {
+                        return count;
+                    }
+                    chunk.clear();
+                }
+            }
+        } catch (JsonProcessingException e) {
+            if (writeGranted(chunk, permits, out)) {
+                write(List.of(BulkShortenResult.failed(null, "Malformed request body: " + e.getOriginalMessage())),
+                        out);
+            }
+            return count;
+        }
+
+        if (!chunk.isEmpty()) {
+            writeGranted(chunk, permits, out);
+        }
+        return count;
+    }
+
+    // Returns false once the rate limit cut the chunk short.
+    private boolean writeGranted(List<ShortenUrlRequest> chunk, IntUnaryOperator permits, OutputStream out)
+            throws IOException {
+        if (chunk.isEmpty()) {
+            return true;
+        }
+        int granted = permits.applyAsInt(chunk.size());
+        write(process(chunk.subList(0, granted)), out);
+        if (granted == chunk.size()) {
+            return true;
+        }
+        write(List.of(BulkShortenResult.failed(null,
+                "Too many requests: URLs from here on were not shortened")), out);
+        return false;
+    }
+
+    List<BulkShortenResult> process(List<ShortenUrlRequest> chunk) {
+        BulkShortenResult[] results = new BulkShortenResult[chunk.size()];
+        Map<ByteBuffer, Pending> pendingByDigest = new LinkedHashMap<>();
+
+        for (int i = 0; i < chunk.size(); i++) {
+            ShortenUrlRequest request = chunk.get(i);
+            String error = validate(request);
+            if (error != null) {
+                results[i] = BulkShortenResult.failed(request == null ? null : request.getLongUrl(), error);
+                continue;
+            }
+            byte[] digest = UrlDigest.sha256(request.getLongUrl());
+            Pending pending = pendingByDigest.computeIfAbsent(ByteBuffer.wrap(digest),
+                    k -> new Pending(request.getLongUrl(), digest));
+            pending.positions.add(i);
+            pending.expiryAt = later(pending.expiryAt, expiryFor(request));
+        }
+
+        if (!pendingByDigest.isEmpty()) {
+            try {
+                persist(pendingByDigest);
+            } catch (DataIntegrityViolationException e) {
+                // Another node inserted one of these URLs concurrently; the
+                // single-create path resolves each race on its own.
+                log.info("Bulk insert of {} URLs raced with another writer, retrying one by one", pendingByDigest.size());
+                createOneByOne(pendingByDigest.values());
+            }
+        }
+
+        for (Pending pending : pendingByDigest.values()) {
+            BulkShortenResult result = pending.error != null
+                    ? BulkShortenResult.failed(pending.longUrl, pending.error)
+                    : new BulkShortenResult(pending.longUrl, pending.mapping.getShortCode(),
+                            pending.mapping.getExpiryAt(), null);
+            for (int position : pending.positions) {
+                results[position] = result;
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    private void persist(Map<ByteBuffer, Pending> pendingByDigest) {
+        List<byte[]> candidates = new ArrayList<>();
+        for (Pending pending : pendingByDigest.values()) {
+            if (longUrlIndex.mightContain(pending.digest)) {
+                candidates.add(pending.digest);
+            }
+        }
+
+        Map<ByteBuffer, UrlMapping> existing = new HashMap<>();
+        if (!candidates.isEmpty()) {
+            for (UrlMapping mapping : urlMappingStore.findByLongUrlHashIn(candidates)) {
+                if (UrlService.isLive(mapping)) {
+                    existing.put(ByteBuffer.wrap(mapping.getLongUrlHash()), mapping);
+                } else {
+                    // Deactivated or expired: the URL gets a new mapping.
+                    urlMappingStore.releaseLongUrlHash(mapping);
+                }
+            }
+        }
+
+        List<UrlMapping> updated = new ArrayList<>();
+        List<UrlMapping> created = new ArrayList<>();
+        for (Map.Entry<ByteBuffer, Pending> entry : pendingByDigest.entrySet()) {
+            Pending pending = entry.getValue();
+            UrlMapping mapping = existing.get(entry.getKey());
+
+            if (mapping != null) {
+                if (!UrlDigest.sameUrl(mapping.getLongUrl(), pending.longUrl)) {
+                    pending.error = "Long URL digest collision";
+                    continue;
+                }
+                if (UrlService.shouldExtendExpiry(mapping.getExpiryAt(), pending.expiryAt)) {
+                    mapping.setExpiryAt(pending.expiryAt);
+                    updated.add(mapping);
+                }
+                pending.mapping = mapping;
+                continue;
+            }
+
+            long id = idBlockAllocator.nextId();
+            mapping = new UrlMapping();
+            mapping.setId(id);
+            mapping.setShortCode(shortCodeGenerator.encode(id));
+            mapping.setLongUrl(pending.longUrl);
+            mapping.setLongUrlHash(pending.digest);
+            mapping.setExpiryAt(pending.expiryAt);
+            mapping.setActive(true);
+            pending.mapping = mapping;
+            created.add(mapping);
+        }
+
+        Instant now = Instant.now();
+        List<UrlCreatedEvent> events = new ArrayList<>(created.size());
+        for (UrlMapping mapping : created) {
+            events.add(new UrlCreatedEvent(mapping.getId(), mapping.getShortCode(), now));
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            urlMappingStore.saveAll(updated);
+            urlMappingStore.saveAll(created);
+            if (!events.isEmpty()) {
+                urlEventOutbox.addAll(events);
+            }
+        });
+
+        if (created.isEmpty()) {
+            return;
+        }
+        for (UrlMapping mapping : created) {
+            longUrlIndex.add(mapping.getLongUrlHash());
+            issuedCodes.add(mapping.getId());
+        }
+        cacheAll(created);
+    }
+
+    private void createOneByOne(Iterable<Pending> pendings) {
+        for (Pending pending : pendings) {
+            try {
+                // An existing mapping may keep a later expiry than asked.
+                pending.mapping = urlService.createMapping(pending.longUrl, pending.expiryAt);
+            } catch (RuntimeException e) {
+                pending.error = e.getMessage();
+            }
+        }
+    }
+
+    private void cacheAll(List<UrlMapping> mappings) {
+        try {
+            redisBreaker.batch("set", () -> redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (UrlMapping mapping : mappings) {
+                    long ttlSeconds = UrlService.cacheTtlSeconds(mapping.getExpiryAt());
+                    if (ttlSeconds <= 0) continue;
+                    connection.stringCommands().set(
+                            (SHORT_PREFIX + mapping.getShortCode()).getBytes(StandardCharsets.UTF_8),
+                            mapping.getLongUrl().getBytes(StandardCharsets.UTF_8),
+                            Expiration.seconds(ttlSeconds),
+                            SetOption.upsert());
+                }
+                return null;
+            }));
+        } catch (Exception e) {
+            // Counted by the breaker; redirects load these codes on first use.
+        }
+    }
+
+    private String validate(ShortenUrlRequest request) {
+        if (request == null) {
+            return "Request cannot be null";
+        }
+        for (ConstraintViolation<ShortenUrlRequest> violation : validator.validate(request)) {
+            return violation.getPropertyPath() + " " + violation.getMessage();
+        }
+        return null;
+    }
+
+    private void write(List<BulkShortenResult> results, OutputStream out) throws IOException {
+        for (BulkShortenResult result : results) {
+            out.write(objectMapper.writeValueAsBytes(result));
+            out.write('\n');
+        }
+        out.flush();
+    }
+
+    private static LocalDateTime expiryFor(ShortenUrlRequest request) {
+        return request.getExpiryDays() == null ? null : LocalDateTime.now().plusDays(request.getExpiryDays());
+    }
+
+    private static LocalDateTime later(LocalDateTime a, LocalDateTime b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        return a.isAfter(b) ? a : b;
+    }
+}
@@ -0,0 +1,30 @@
+package com.kiran.urlshortener.service;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * OUT_OF_SERVICE until the cache warm-up reaches its coverage. Part of the
+ * readiness group, so a new node gets no traffic while its caches are cold.
+ */
+@Component
+public class CacheWarmUpHealthIndicator implements HealthIndicator {
+
+    private final CacheWarmUpService warmUpService;
+
+    public CacheWarmUpHealthIndicator(CacheWarmUpService warmUpService) {
+        this.warmUpService = warmUpService;
+    }
+
+    @Override
+    public Health health() {
+        CacheWarmUpService.Status status = warmUpService.status();
+        Health.Builder builder = warmUpService.isReady() ? Health.up() : Health.outOfService();
+        return builder
+                .withDetail("state", status.state())
+                .withDetail("warmed", status.warmed())
+                .withDetail("target", status.target())
+                .build();
+    }
+}
@@ -0,0 +1,242 @@
+package com.kiran.urlshortener.service;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.RedisStringCommands.SetOption;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+
+import com.kiran.urlshortener.cache.RedisCircuitBreaker;
+import com.kiran.urlshortener.cache.UrlNearCache;
+import com.kiran.urlshortener.config.UrlShortenerProperties;
+import com.kiran.urlshortener.repository.ShardMap;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Loads the most-clicked and then the newest active mappings into Redis, page
+ * by page, with one pipelined SET NX per page. The most-clicked ones also go
+ * into the local cache, up to its size. With sharding each shard contributes
+ * an equal share of both. Runs once at startup and on demand;
+ * CacheWarmUpHealthIndicator keeps readiness down until the configured
+ * coverage is reached.
+ */
+@Slf4j
+@Service
+public class CacheWarmUpService {
+
+    private static final String SHORT_PREFIX = "short:";
+
+    private static final String ACTIVE = "active = TRUE AND (expiry_at IS NULL OR expiry_at > ?)";
+
+    private static final String TOP_FIRST_PAGE_SQL =
+            "SELECT id, short_code, long_url, expiry_at, click_count FROM url_mapping "
+                    + "WHERE click_count > 0 AND " + ACTIVE + " ORDER BY click_count DESC, id DESC LIMIT ?";
+
+    private static final String TOP_PAGE_SQL =
+            "SELECT id, short_code, long_url, expiry_at, click_count FROM url_mapping "
+                    + "WHERE click_count > 0 AND (click_count, id) < (?, ?) AND " + ACTIVE
+                    + " ORDER BY click_count DESC, id DESC LIMIT ?";
+
+    // Ids are handed out in creation order (per node block), so the primary
+    // key stands in for created_at here.
+    private static final String RECENT_PAGE_SQL =
+            "SELECT id, short_code, long_url, expiry_at, click_count FROM url_mapping "
+                    + "WHERE id < ? AND " + ACTIVE + " ORDER BY id DESC LIMIT ?";
+
+    private static final RowMapper<Row> ROW_MAPPER = (rs, i) -> {
+        Timestamp expiryAt = rs.getTimestamp("expiry_at");
+        return new Row(rs.getLong("id"), rs.getString("short_code"), rs.getString("long_url"),
+                expiryAt == null ? null : expiryAt.toLocalDateTime(), rs.getLong("click_count"));
+    };
+
+    public enum State {
+        PENDING, RUNNING, DONE, FAILED
+    }
+
+    public record Status(State state, long warmed, long target, long durationMillis) {
+    }
+
+    record Row(long id, String shortCode, String longUrl, LocalDateTime expiryAt, long clickCount) {
+    }
+
+    private final ShardMap shardMap;
+    private final StringRedisTemplate redisTemplate;
+    private final UrlNearCache nearCache;
+    private final RedisCircuitBreaker redisBreaker;
+    private final UrlShortenerProperties.WarmUp config;
+    private final long nearCacheSize;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private volatile Status status;
+    private volatile boolean ready;
+
+    public CacheWarmUpService(ShardMap shardMap, StringRedisTemplate redisTemplate, UrlNearCache nearCache,
+            UrlShortenerProperties properties, RedisCircuitBreaker redisBreaker) {
+        this.shardMap = shardMap;
+        this.redisTemplate = redisTemplate;
+        this.nearCache = nearCache;
+        this.redisBreaker = redisBreaker;
+        this.config = properties.getWarmUp();
+        this.nearCacheSize = properties.getCache().getLocal().getMaximumSize();
+        this.status = new Status(config.isEnabled() ? State.PENDING : State.DONE, 0, target(), 0);
+        this.ready = !config.isEnabled();
+    }
+
+    public Status status() {
+        return status;
+    }
+
+    /**
+     * True once the first warm-up has loaded its coverage share, or has
+     * ended. Later on-demand runs do not take the node out of rotation again.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUpOnStartup() {
+        if (config.isEnabled()) {
+            start();
+        }
+    }
+
+    /**
+     * Starts a warm-up on a background thread.
+     *
+     * @return false if one is already running
+     */
+    public boolean start() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        status = new Status(State.RUNNING, 0, target(), 0);
+        Thread worker = new Thread(() -> {
+            try {
+                warmUp();
+            } finally {
+                running.set(false);
+            }
+        }, "cache-warm-up");
+        worker.setDaemon(true);
+        worker.start();
+        return true;
+    }
+
+    Status warmUp() {
+        long start = System.nanoTime();
+        long target = target();
+        long warmed = 0;
+        update(new Status(State.RUNNING, 0, target, 0));
+
+        try {
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            Collection<ShardMap.Shard> shards = shardMap.shards();
+            long topK = share(config.getTopK(), shards.size());
+            long recentK = share(config.getRecentK(), shards.size());
+            long localK = share(nearCacheSize, shards.size());
+
+            for (ShardMap.Shard shard : shards) {
+                JdbcTemplate jdbcTemplate = shard.jdbcTemplate();
+                List<Row> page = jdbcTemplate.query(TOP_FIRST_PAGE_SQL, ROW_MAPPER, now, pageSize(topK));
+                long top = 0;
+                while (!page.isEmpty()) {
+                    cache(page, top < localK);
+                    top += page.size();
+                    warmed += page.size();
+                    update(new Status(State.RUNNING, warmed, target, millisSince(start)));
+                    if (top >= topK) {
+                        break;
+                    }
+                    Row last = page.get(page.size() - 1);
+                    page = jdbcTemplate.query(TOP_PAGE_SQL, ROW_MAPPER, last.clickCount(), last.id(), now,
+                            pageSize(topK - top));
+                }
+            }
+
+            for (ShardMap.Shard shard : shards) {
+                long recent = 0;
+                long lastId = Long.MAX_VALUE;
+                while (recent < recentK) {
+                    List<Row> page = shard.jdbcTemplate().query(RECENT_PAGE_SQL, ROW_MAPPER, lastId, now,
+                            pageSize(recentK - recent));
+                    if (page.isEmpty()) {
+                        break;
+                    }
+                    cache(page, false);
+                    recent += page.size();
+                    warmed += page.size();
+                    lastId = page.get(page.size() - 1).id();
+                    update(new Status(State.RUNNING, warmed, target, millisSince(start)));
+                }
+            }
+
+            update(new Status(State.DONE, warmed, target, millisSince(start)));
+            log.info("Cache warm-up loaded {} mappings in {} ms", warmed, millisSince(start));
+        } catch (Exception e) {
+            update(new Status(State.FAILED, warmed, target, millisSince(start)));
+            log.warn("Cache warm-up failed after {} mappings", warmed, e);
+        }
+        return status;
+    }
+
+    private void update(Status next) {
+        status = next;
+        if (next.state() == State.DONE || next.state() == State.FAILED
+                || next.warmed() >= config.getCoverage() * next.target()) {
+            ready = true;
+        }
+    }
+
+    private void cache(List<Row> rows, boolean local) {
+        redisBreaker.batch("set", () -> redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Row row : rows) {
+                long ttlSeconds = UrlService.cacheTtlSeconds(row.expiryAt());
+                if (ttlSeconds <= 0) continue;
+                // NX: a key that is already cached has a correct TTL, and
+                // rewriting it would only cost bandwidth.
+                connection.stringCommands().set(
+                        (SHORT_PREFIX + row.shortCode()).getBytes(StandardCharsets.UTF_8),
+                        row.longUrl().getBytes(StandardCharsets.UTF_8),
+                        Expiration.seconds(ttlSeconds),
+                        SetOption.ifAbsent());
+            }
+            return null;
+        }));
+
+        if (local) {
+            for (Row row : rows) {
+                nearCache.put(row.shortCode(), row.longUrl(), row.expiryAt());
+            }
+        }
+    }
+
+    private int pageSize(long remaining) {
+        return (int) Math.min(config.getPageSize(), remaining);
+    }
+
+    private static long share(long total, int shards) {
+        return (total + shards - 1) / shards;
+    }
+
+    private long target() {
+        return (long) config.getTopK() + config.getRecentK();
+    }
+
+    private static long millisSince(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+}
@@ -0,0 +1,160 @@
+package com.kiran.urlshortener.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisPipelineException;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.kiran.urlshortener.cache.RedisCircuitBreaker;
+import com.kiran.urlshortener.config.UrlShortenerProperties;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Counts redirects in memory and drains them to the click:{code} Redis keys in
+ * one pipelined INCRBY batch per flush, so the redirect never waits on Redis.
+ *
+ * Clicks recorded since the last successful drain are lost if the JVM dies, so
+ * the loss window is bounded by urlshortener.clicks.flush-interval-ms. Once
+ * max-pending-codes distinct codes are buffered, clicks for new codes are
+ * dropped and counted on urlshortener.clicks.dropped. While the Redis circuit
+ * breaker is open, flushes are skipped and clicks keep accumulating here.
+ * When a flush fails, only the codes whose INCRBY did not go through are
+ * kept for the next one.
+ */
+@Slf4j
+@Component
+public class ClickBuffer {
+
+    private static final String CLICK_PREFIX = "click:";
+
+    private final ConcurrentHashMap<String, LongAdder> pending = new ConcurrentHashMap<>();
+    private final StringRedisTemplate redisTemplate;
+    private final RedisCircuitBreaker redisBreaker;
+    private final int maxPendingCodes;
+    private final Counter droppedClicks;
+
+    public ClickBuffer(StringRedisTemplate redisTemplate, UrlShortenerProperties properties, MeterRegistry meterRegistry,
+            RedisCircuitBreaker redisBreaker) {
+        this.redisTemplate = redisTemplate;
+        this.redisBreaker = redisBreaker;
+        this.maxPendingCodes = properties.getClicks().getMaxPendingCodes();
+        this.droppedClicks = meterRegistry.counter("urlshortener.clicks.dropped");
+    }
+
+    public void record(String shortCode) {
+        LongAdder adder = pending.get(shortCode);
+        if (adder == null) {
+            if (pending.size() >= maxPendingCodes) {
+                droppedClicks.increment();
+                return;
+            }
+            adder = pending.computeIfAbsent(shortCode, k -> new LongAdder());
+        }
+        adder.increment();
+        if (pending.get(shortCode) != adder) {
+            // drain() dropped the adder as idle after we fetched it; move what
+            // it holds to the current one. Every increment is either drained
+            // or taken by the sumThenReset of the thread that made it.
+            long orphaned = adder.sumThenReset();
+            if (orphaned > 0) {
+                pending.computeIfAbsent(shortCode, k -> new LongAdder()).add(orphaned);
+            }
+        }
+    }
+
+    public int pendingCodes() {
+        return pending.size();
+    }
+
+    @Scheduled(fixedDelayString = "${urlshortener.clicks.flush-interval-ms:250}")
+    public void flush() {
+        if (redisBreaker.isOpen()) {
+            return;
+        }
+        Map<String, Long> batch = drain();
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            redisBreaker.batch("incrby", () -> redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                incrementAll(connection, batch);
+                return null;
+            }));
+        } catch (RedisPipelineException e) {
+            int kept = restoreFailed(batch, e.getPipelineResult());
+            log.warn("Click flush to Redis failed for {} of {} codes, keeping them for the next run", kept,
+                    batch.size(), e);
+        } catch (Exception e) {
+            // Nothing reached Redis: no connection, or the breaker rejected it.
+            log.warn("Click flush to Redis failed, keeping {} codes for the next run", batch.size(), e);
+            batch.forEach(this::restore);
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private Map<String, Long> drain() {
+        Map<String, Long> batch = new LinkedHashMap<>();
+        pending.forEach((code, adder) -> {
+            long count = adder.sumThenReset();
+            if (count > 0) {
+                batch.put(code, count);
+            } else {
+                // Idle code: drop the entry so the map only holds recently
+                // clicked codes, unless a click landed since the reset.
+                pending.computeIfPresent(code, (k, current) -> current == adder && adder.sum() == 0 ? null : current);
+            }
+        });
+        return batch;
+    }
+
+    /**
+     * Takes back counts that were drained from Redis elsewhere but could not
+     * be written back, so the next flush INCRBYs them again.
+     */
+    void requeue(Map<String, Long> counts) {
+        counts.forEach(this::restore);
+    }
+
+    // Pipeline results are in batch order; an INCRBY that failed has its
+    // exception in place of the new value, and those missing never ran.
+    int restoreFailed(Map<String, Long> batch, List<Object> results) {
+        int index = 0;
+        int kept = 0;
+        for (Map.Entry<String, Long> entry : batch.entrySet()) {
+            Object result = index < results.size() ? results.get(index) : null;
+            if (result == null || result instanceof Throwable) {
+                restore(entry.getKey(), entry.getValue());
+                kept++;
+            }
+            index++;
+        }
+        return kept;
+    }
+
+    private void restore(String code, long count) {
+        pending.computeIfAbsent(code, k -> new LongAdder()).add(count);
+    }
+
+    private static void incrementAll(RedisConnection connection, Map<String, Long> batch) {
+        batch.forEach((code, count) -> connection.stringCommands()
+                .incrBy((CLICK_PREFIX + code).getBytes(StandardCharsets.UTF_8), count));
+    }
+}
@@ -1,60 +1,168 @@
 package com.kiran.urlshortener.service;
 
-import java.util.Set;
-
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.data.redis.connection.RedisPipelineException;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
-
-import com.kiran.urlshortener.entity.UrlMapping;
-import com.kiran.urlshortener.repository.UrlMappingRepository;
 
+import com.kiran.urlshortener.cache.RedisCircuitBreaker;
+import com.kiran.urlshortener.config.UrlShortenerProperties;
+import com.kiran.urlshortener.repository.ClickCountRepository;
+import com.kiran.urlshortener.repository.ClickCountRepository.PartialFlushException;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Folds the click:{code} Redis counters into url_mapping.click_count. Keys are
+ * walked with SCAN, drained with pipelined GETDEL and written with one UPDATE
+ * per chunk, so neither Redis nor the database is held for the whole run.
+ * Runs are skipped while the Redis circuit breaker is open.
+ */
+@Slf4j
 @Component
 public class ClickCountFlushJob {
 
+    private static final String CLICK_PREFIX = "click:";
+    private static final String CLICK_PATTERN = CLICK_PREFIX + "*";
 
     private final StringRedisTemplate redisTemplate;
-    private final UrlMappingRepository urlMappingRepository;
-
+    private final ClickCountRepository clickCountRepository;
+    private final RedisCircuitBreaker redisBreaker;
+    private final ClickBuffer clickBuffer;
+    private final int chunkSize;
+    private final Timer flushTimer;
+    private final DistributionSummary flushedKeys;
+
+    public record FlushResult(int keys, long clicks, long durationMillis) {
+    }
 
-    public ClickCountFlushJob(UrlMappingRepository urlMappingRepository,StringRedisTemplate redisTemplate) {
-        this.urlMappingRepository = urlMappingRepository;
+    public ClickCountFlushJob(StringRedisTemplate redisTemplate, ClickCountRepository clickCountRepository,
+            UrlShortenerProperties properties, MeterRegistry meterRegistry, RedisCircuitBreaker redisBreaker,
+            ClickBuffer clickBuffer) {
         this.redisTemplate = redisTemplate;
+        this.clickCountRepository = clickCountRepository;
+        this.redisBreaker = redisBreaker;
+        this.clickBuffer = clickBuffer;
+        this.chunkSize = properties.getClicks().getFlushChunkSize();
+        this.flushTimer = meterRegistry.timer("urlshortener.clicks.flush.duration");
+        this.flushedKeys = DistributionSummary.builder("urlshortener.clicks.flush.keys")
+                .description("click: keys drained per flush run")
+                .register(meterRegistry);
     }
 
     public String extractCode(String key) {
         return key.substring(key.indexOf(":") + 1);
     }
-    
+
     @Scheduled(fixedRate = 60000)
-    @Transactional
-    public void flushClicks() {
-        Set<String> keys = redisTemplate.keys("click:*");
-        if (keys == null || keys.isEmpty()) {
-            return;
+    public FlushResult flushClicks() {
+        if (redisBreaker.isOpen()) {
+            return new FlushResult(0, 0, 0);
+        }
+        long start = System.nanoTime();
+        int keys = 0;
+        long clicks = 0;
+
+        ScanOptions options = ScanOptions.scanOptions().match(CLICK_PATTERN).count(chunkSize).build();
+        // Each SCAN page is fetched lazily by hasNext(), so every fetch goes
+        // through the breaker.
+        try (Cursor<String> cursor = redisBreaker.batch("scan", () -> redisTemplate.scan(options))) {
+            List<String> chunk = new ArrayList<>(chunkSize);
+            while (redisBreaker.batch("scan", cursor::hasNext)) {
+                chunk.add(cursor.next());
+                if (chunk.size() == chunkSize) {
+                    keys += chunk.size();
+                    clicks += flushChunk(chunk);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                keys += chunk.size();
+                clicks += flushChunk(chunk);
+            }
         }
 
-        for(String key : keys) {
-            String shortCode = extractCode(key);
-            String value = redisTemplate
-                    .opsForValue()
-                    .get(key);
+        long elapsed = System.nanoTime() - start;
+        flushTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        flushedKeys.record(keys);
 
-            Long count = value == null ? 0L : Long.valueOf(value);
+        FlushResult result = new FlushResult(keys, clicks, TimeUnit.NANOSECONDS.toMillis(elapsed));
+        if (keys > 0) {
+            log.info("Flushed {} clicks from {} keys in {} ms", result.clicks(), result.keys(), result.durationMillis());
+        }
+        return result;
+    }
 
-            if(count <= 0) continue;
+    private long flushChunk(List<String> keys) {
+        List<Object> values = redisBreaker.batch("getdel",
+                () -> redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    for (String key : keys) {
+                        connection.stringCommands().getDel(key.getBytes(StandardCharsets.UTF_8));
+                    }
+                    return null;
+                }));
+
+        Map<String, Long> counts = new HashMap<>();
+        long total = 0;
+        for (int i = 0; i < keys.size(); i++) {
+            Object value = values.get(i);
+            long count = value == null ? 0L : Long.parseLong(value.toString());
+            if (count <= 0) continue;
+            counts.merge(extractCode(keys.get(i)), count, Long::sum);
+            total += count;
+        }
 
-            UrlMapping urlMapping = urlMappingRepository.findByShortCodeAndActiveTrue(shortCode).orElse(null);
+        if (counts.isEmpty()) {
+            return 0;
+        }
 
-            if(urlMapping == null) continue;
+        try {
+            clickCountRepository.addClickCounts(counts);
+            return total;
+        } catch (PartialFlushException ex) {
+            // Shards that committed keep their counts; only the rest go back.
+            Map<String, Long> unapplied = ex.unapplied();
+            log.warn("Click count update failed on some shards, restoring {} of {} counters to Redis",
+                    unapplied.size(), counts.size(), ex);
+            restore(unapplied);
+            return total - unapplied.values().stream().mapToLong(Long::longValue).sum();
+        } catch (Exception ex) {
+            log.warn("Click count update failed, restoring {} counters to Redis", counts.size(), ex);
+            restore(counts);
+            return 0;
+        }
+    }
 
-            try {
-                urlMapping.setClickCount(count + urlMapping.getClickCount());
-                urlMappingRepository.save(urlMapping);
-                redisTemplate.delete(key);
-            }catch(Exception ex) {
-            }
+    // The counters were already removed by GETDEL, so put them back for the
+    // next run. If Redis fails too, ClickBuffer keeps them in memory and its
+    // own flush writes them back once Redis recovers.
+    private void restore(Map<String, Long> counts) {
+        try {
+            redisBreaker.batch("incrby", () -> redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                counts.forEach((code, count) -> connection.stringCommands()
+                        .incrBy((CLICK_PREFIX + code).getBytes(StandardCharsets.UTF_8), count));
+                return null;
+            }));
+        } catch (RedisPipelineException e) {
+            int kept = clickBuffer.restoreFailed(counts, e.getPipelineResult());
+            log.warn("Restoring click counters to Redis failed for {} of {} codes, buffering them in memory", kept,
+                    counts.size(), e);
+        } catch (Exception e) {
+            log.warn("Restoring click counters to Redis failed, buffering {} codes in memory", counts.size(), e);
+            clickBuffer.requeue(counts);
         }
     }
 
@@ -0,0 +1,157 @@
+package com.kiran.urlshortener.service;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.kiran.urlshortener.config.UrlShortenerProperties;
+import com.kiran.urlshortener.events.ClickEvent;
+import com.kiran.urlshortener.events.ClickEventBatch;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Turns redirects into compact click events and sends them to Kafka in
+ * batches of up to batch-size events per record, so a redirect only pays for
+ * a queue offer. Like ClickBuffer, events still buffered when the JVM dies
+ * are lost; once max-pending-events are waiting, new ones are dropped and
+ * counted on urlshortener.clicks.events.dropped.
+ */
+@Slf4j
+@Component
+public class ClickEventPublisher {
+
+    private static final String[] BOT_MARKERS = { "bot", "crawl", "spider", "slurp", "preview", "curl", "wget",
+            "python", "java/", "okhttp", "go-http" };
+
+    private static final String[] MOBILE_MARKERS = { "mobi", "android", "iphone", "ipad", "ipod" };
+
+    private final Queue<ClickEvent> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final UrlShortenerProperties.Analytics config;
+    private final Counter droppedEvents;
+    private final Timer sendTimer;
+
+    public ClickEventPublisher(KafkaTemplate<String, Object> kafkaTemplate, UrlShortenerProperties properties,
+            MeterRegistry meterRegistry) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.config = properties.getAnalytics();
+        this.droppedEvents = meterRegistry.counter("urlshortener.clicks.events.dropped");
+        this.sendTimer = meterRegistry.timer("urlshortener.kafka.send", "topic", config.getTopic());
+    }
+
+    /**
+     * Queues a click event for a redirect to {@code shortCode}.
+     *
+     * @param headers request header lookup by name
+     */
+    public void record(String shortCode, UnaryOperator<String> headers) {
+        if (!config.isEnabled()) {
+            return;
+        }
+        if (pendingCount.incrementAndGet() > config.getMaxPendingEvents()) {
+            pendingCount.decrementAndGet();
+            droppedEvents.increment();
+            return;
+        }
+        pending.add(new ClickEvent(shortCode, System.currentTimeMillis(),
+                referrerHost(headers.apply("Referer")),
+                country(headers.apply(config.getGeoHeader())),
+                agent(headers.apply("User-Agent"))));
+    }
+
+    @Scheduled(fixedDelayString = "${urlshortener.analytics.publish-interval-ms:1000}")
+    public void publish() {
+        int batchSize = config.getBatchSize();
+        List<ClickEvent> batch = new ArrayList<>(batchSize);
+        ClickEvent event;
+        while ((event = pending.poll()) != null) {
+            pendingCount.decrementAndGet();
+            batch.add(event);
+            if (batch.size() == batchSize) {
+                send(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            send(batch);
+        }
+    }
+
+    @PreDestroy
+    public void publishOnShutdown() {
+        publish();
+        kafkaTemplate.flush();
+    }
+
+    private void send(List<ClickEvent> events) {
+        long sentAt = System.nanoTime();
+        kafkaTemplate.send(config.getTopic(), new ClickEventBatch(events))
+                .whenComplete((result, e) -> {
+                    if (e == null) {
+                        sendTimer.record(System.nanoTime() - sentAt, TimeUnit.NANOSECONDS);
+                    } else {
+                        droppedEvents.increment(events.size());
+                        log.warn("Dropped {} click events, Kafka send failed", events.size(), e);
+                    }
+                });
+    }
+
+    static String referrerHost(String referer) {
+        if (referer == null || referer.isBlank()) {
+            return null;
+        }
+        try {
+            String host = URI.create(referer.trim()).getHost();
+            if (host == null) {
+                return null;
+            }
+            host = host.toLowerCase(Locale.ROOT);
+            return host.startsWith("www.") ? host.substring(4) : host;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    static String country(String header) {
+        if (header == null || header.length() != 2) {
+            return null;
+        }
+        // XX and T1 are what CDNs send for unknown and Tor clients.
+        String country = header.toUpperCase(Locale.ROOT);
+        return country.equals("XX") || country.equals("T1") ? null : country;
+    }
+
+    static ClickEvent.Agent agent(String userAgent) {
+        if (userAgent == null || userAgent.isBlank()) {
+            return ClickEvent.Agent.OTHER;
+        }
+        String ua = userAgent.toLowerCase(Locale.ROOT);
+        for (String marker : BOT_MARKERS) {
+            if (ua.contains(marker)) {
+                return ClickEvent.Agent.BOT;
+            }
+        }
+        for (String marker : MOBILE_MARKERS) {
+            if (ua.contains(marker)) {
+                return ClickEvent.Agent.MOBILE;
+            }
+        }
+        return ua.startsWith("mozilla/") ? ClickEvent.Agent.DESKTOP : ClickEvent.Agent.OTHER;
+    }
+}
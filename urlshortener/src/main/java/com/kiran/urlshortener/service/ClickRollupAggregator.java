@@ -0,0 +1,224 @@
+package com.kiran.urlshortener.service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.kiran.urlshortener.config.UrlShortenerProperties;
+import com.kiran.urlshortener.events.ClickEvent;
+import com.kiran.urlshortener.events.ClickEventBatch;
+import com.kiran.urlshortener.repository.ClickRollupRepository;
+import com.kiran.urlshortener.repository.ClickRollupRepository.Bucket;
+import com.kiran.urlshortener.repository.ClickRollupRepository.DayValue;
+import com.kiran.urlshortener.repository.ClickRollupRepository.Dimension;
+import com.kiran.urlshortener.repository.ClickRollupRepository.Granularity;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Folds click event batches into per-minute, per-hour and per-day counts in
+ * memory, one buffer per click-events partition, and writes each buffer
+ * with the offset it was read up to every rollup-flush-interval-ms.
+ *
+ * The database, not Kafka, holds the consumed position: on assignment the
+ * consumer seeks to the stored offset + 1, and records at or below a
+ * buffer's offset are skipped. Buffered clicks lost with the JVM are simply
+ * read again after the restart.
+ */
+@Slf4j
+@Component
+public class ClickRollupAggregator {
+
+    static final String DIRECT = "(direct)";
+    static final String UNKNOWN = "(unknown)";
+
+    private final ClickRollupRepository repository;
+    private final UrlShortenerProperties.Analytics config;
+    private final Map<Integer, PartitionBuffer> buffers = new ConcurrentHashMap<>();
+
+    public ClickRollupAggregator(ClickRollupRepository repository, UrlShortenerProperties properties) {
+        this.repository = repository;
+        this.config = properties.getAnalytics();
+    }
+
+    /**
+     * Starts a buffer for a newly assigned partition.
+     *
+     * @return the offset to resume reading from, or -1 when nothing has been
+     *         written for the partition yet and it should be read from the
+     *         beginning
+     */
+    public long assigned(int partition) {
+        long committed = repository.committedOffset(partition);
+        buffers.put(partition, new PartitionBuffer(committed));
+        return committed < 0 ? -1 : committed + 1;
+    }
+
+    /**
+     * Writes what is buffered for the partitions and forgets them, so their
+     * new owner starts from what is in the database.
+     */
+    public void revoked(Collection<Integer> partitions) {
+        for (int partition : partitions) {
+            PartitionBuffer buffer = buffers.get(partition);
+            if (buffer != null) {
+                flush(partition, buffer);
+            }
+            buffers.remove(partition);
+        }
+    }
+
+    public void add(int partition, long offset, ClickEventBatch batch) {
+        PartitionBuffer buffer = buffers.computeIfAbsent(partition,
+                p -> new PartitionBuffer(repository.committedOffset(p)));
+        buffer.add(offset, batch);
+    }
+
+    @Scheduled(fixedDelayString = "${urlshortener.analytics.rollup-flush-interval-ms:10000}")
+    public void flush() {
+        buffers.forEach(this::flush);
+    }
+
+    /**
+     * Deletes minute and hour buckets older than their retention. Days are
+     * kept.
+     */
+    @Scheduled(cron = "0 17 * * * *")
+    public void prune() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now(ZoneOffset.UTC);
+        try {
+            int minutes = repository.deleteBefore(Granularity.MINUTE, now.minus(config.getMinuteRetention()));
+            int hours = repository.deleteBefore(Granularity.HOUR, now.minus(config.getHourRetention()));
+            log.debug("Pruned {} minute and {} hour click buckets", minutes, hours);
+        } catch (Exception e) {
+            log.warn("Click rollup prune failed", e);
+        }
+    }
+
+    // Writes for one partition are serialized: a second write started
+    // before the first committed would expect the old offset and be dropped.
+    // A ReentrantLock rather than synchronized, as the write holds it through
+    // JDBC and revoked() runs on the consumer thread, which may be virtual.
+    private void flush(int partition, PartitionBuffer buffer) {
+        buffer.flushLock.lock();
+        try {
+            write(partition, buffer);
+        } finally {
+            buffer.flushLock.unlock();
+        }
+    }
+
+    private void write(int partition, PartitionBuffer buffer) {
+        Snapshot snapshot = buffer.drain();
+        if (snapshot == null) {
+            return;
+        }
+        try {
+            if (repository.apply(partition, snapshot.expected, snapshot.offset, snapshot.series,
+                    snapshot.breakdown)) {
+                buffer.committed(snapshot.offset);
+            } else {
+                // Another consumer owns this partition now and has moved
+                // past us; its counts already include these events.
+                log.info("Dropping click rollups for partition {}, applied elsewhere", partition);
+                buffers.remove(partition, buffer);
+            }
+        } catch (Exception e) {
+            log.warn("Click rollup flush for partition {} failed, keeping {} events for the next run",
+                    partition, snapshot.events, e);
+            buffer.restore(snapshot);
+        }
+    }
+
+    static LocalDateTime bucketStart(long epochMillis, Granularity granularity) {
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneOffset.UTC);
+        return switch (granularity) {
+            case MINUTE -> time.truncatedTo(ChronoUnit.MINUTES);
+            case HOUR -> time.truncatedTo(ChronoUnit.HOURS);
+            case DAY -> time.truncatedTo(ChronoUnit.DAYS);
+        };
+    }
+
+    private record Snapshot(long expected, long offset, long events,
+            Map<Granularity, Map<Bucket, Long>> series, Map<DayValue, Long> breakdown) {
+    }
+
+    // Counts for one partition since its last write. The consumer thread
+    // adds and the flush thread drains, both under the instance lock.
+    private static final class PartitionBuffer {
+
+        private final ReentrantLock flushLock = new ReentrantLock();
+        private long committed;
+        private long offset;
+        private long events;
+        private Map<Granularity, Map<Bucket, Long>> series = new EnumMap<>(Granularity.class);
+        private Map<DayValue, Long> breakdown = new HashMap<>();
+
+        PartitionBuffer(long committed) {
+            this.committed = committed;
+            this.offset = committed;
+        }
+
+        synchronized void add(long recordOffset, ClickEventBatch batch) {
+            if (recordOffset <= offset) {
+                return;
+            }
+            offset = recordOffset;
+            if (batch.getEvents() == null) {
+                return;
+            }
+            for (ClickEvent event : batch.getEvents()) {
+                String code = event.getShortCode();
+                for (Granularity granularity : Granularity.values()) {
+                    series.computeIfAbsent(granularity, g -> new HashMap<>())
+                            .merge(new Bucket(code, bucketStart(event.getClickedAt(), granularity)), 1L, Long::sum);
+                }
+                LocalDate day = bucketStart(event.getClickedAt(), Granularity.DAY).toLocalDate();
+                breakdown.merge(new DayValue(code, day, Dimension.REFERRER,
+                        event.getReferrer() == null ? DIRECT : event.getReferrer()), 1L, Long::sum);
+                breakdown.merge(new DayValue(code, day, Dimension.COUNTRY,
+                        event.getCountry() == null ? UNKNOWN : event.getCountry()), 1L, Long::sum);
+                breakdown.merge(new DayValue(code, day, Dimension.AGENT,
+                        event.getAgent() == null ? UNKNOWN : event.getAgent().name()), 1L, Long::sum);
+                events++;
+            }
+        }
+
+        // Null when nothing was read since the last write.
+        synchronized Snapshot drain() {
+            if (offset == committed) {
+                return null;
+            }
+            Snapshot snapshot = new Snapshot(committed, offset, events, series, breakdown);
+            series = new EnumMap<>(Granularity.class);
+            breakdown = new HashMap<>();
+            events = 0;
+            return snapshot;
+        }
+
+        synchronized void committed(long committedOffset) {
+            committed = committedOffset;
+        }
+
+        synchronized void restore(Snapshot snapshot) {
+            snapshot.series.forEach((granularity, counts) -> counts.forEach((bucket, clicks) ->
+                    series.computeIfAbsent(granularity, g -> new HashMap<>()).merge(bucket, clicks, Long::sum)));
+            snapshot.breakdown.forEach((key, clicks) -> breakdown.merge(key, clicks, Long::sum));
+            events += snapshot.events;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.kiran.urlshortener.service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.springframework.stereotype.Service;
+
+import com.kiran.urlshortener.config.UrlShortenerProperties;
+import com.kiran.urlshortener.dto.ClickBreakdownResponse;
+import com.kiran.urlshortener.dto.ClickSeriesResponse;
+import com.kiran.urlshortener.repository.ClickRollupRepository;
+import com.kiran.urlshortener.repository.ClickRollupRepository.Dimension;
+import com.kiran.urlshortener.repository.ClickRollupRepository.Granularity;
+import com.kiran.urlshortener.repository.ClickRollupRepository.Point;
+
+/**
+ * Reads click time series and breakdowns from the rollup tables. Times are
+ * UTC; counts lag real time by up to the publish and rollup flush intervals.
+ */
+@Service
+public class ClickStatsService {
+
+    private final ClickRollupRepository repository;
+    private final int maxPoints;
+
+    public ClickStatsService(ClickRollupRepository repository, UrlShortenerProperties properties) {
+        this.repository = repository;
+        this.maxPoints = properties.getAnalytics().getMaxPoints();
+    }
+
+    /**
+     * Clicks per bucket in [from, to). Without bounds, returns the last hour
+     * of minutes, day of hours or 30 days.
+     */
+    public ClickSeriesResponse series(String shortCode, String granularity, LocalDateTime from, LocalDateTime to) {
+        Granularity unit = parse(Granularity.class, granularity, "granularity");
+        LocalDateTime end = to != null ? to : LocalDateTime.now(ZoneOffset.UTC);
+        LocalDateTime start = ClickRollupAggregator.bucketStart(
+                (from != null ? from : end.minus(defaultWindow(unit))).toInstant(ZoneOffset.UTC).toEpochMilli(),
+                unit);
+        if (!start.isBefore(end)) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+        if (chronoUnit(unit).between(start, end) >= maxPoints) {
+            throw new IllegalArgumentException("Range spans more than " + maxPoints + " " + granularity + " buckets");
+        }
+
+        Map<LocalDateTime, Long> clicks = new HashMap<>();
+        for (Point point : repository.series(shortCode, unit, start, end)) {
+            clicks.put(point.start(), point.clicks());
+        }
+
+        List<ClickSeriesResponse.Point> points = new ArrayList<>();
+        long total = 0;
+        for (LocalDateTime bucket = start; bucket.isBefore(end); bucket = bucket.plus(1, chronoUnit(unit))) {
+            long count = clicks.getOrDefault(bucket, 0L);
+            points.add(new ClickSeriesResponse.Point(bucket, count));
+            total += count;
+        }
+        return new ClickSeriesResponse(shortCode, unit.name().toLowerCase(Locale.ROOT), start, end, total, points);
+    }
+
+    /**
+     * The {@code limit} most frequent values of the dimension over the days
+     * from {@code from} to {@code to}, inclusive; the last 30 days by default.
+     */
+    public ClickBreakdownResponse breakdown(String shortCode, String dimension, LocalDate from, LocalDate to,
+            int limit) {
+        Dimension by = parse(Dimension.class, dimension, "dimension");
+        if (limit < 1 || limit > 1000) {
+            throw new IllegalArgumentException("limit must be between 1 and 1000");
+        }
+        LocalDate last = to != null ? to : LocalDate.now(ZoneOffset.UTC);
+        LocalDate first = from != null ? from : last.minusDays(29);
+        if (first.isAfter(last)) {
+            throw new IllegalArgumentException("from must not be after to");
+        }
+
+        List<ClickBreakdownResponse.Value> values = repository.breakdown(shortCode, by, first, last, limit).stream()
+                .map(total -> new ClickBreakdownResponse.Value(total.value(), total.clicks()))
+                .toList();
+        return new ClickBreakdownResponse(shortCode, by.name().toLowerCase(Locale.ROOT), first, last, values);
+    }
+
+    private static Duration defaultWindow(Granularity granularity) {
+        return switch (granularity) {
+            case MINUTE -> Duration.ofHours(1);
+            case HOUR -> Duration.ofDays(1);
+            case DAY -> Duration.ofDays(30);
+        };
+    }
+
+    private static ChronoUnit chronoUnit(Granularity granularity) {
+        return switch (granularity) {
+            case MINUTE -> ChronoUnit.MINUTES;
+            case HOUR -> ChronoUnit.HOURS;
+            case DAY -> ChronoUnit.DAYS;
+        };
+    }
+
+    private static <E extends Enum<E>> E parse(Class<E> type, String value, String name) {
+        try {
+            return Enum.valueOf(type, value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new IllegalArgumentException("Unsupported " + name + ": " + value);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.kiran.urlshortener.service;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.kiran.urlshortener.config.UrlShortenerProperties;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Hands out url_mapping ids from blocks leased off a Postgres sequence whose
+ * increment is the block size, so each nextval() reserves a whole range for
+ * this node. Ids are known before the INSERT, which lets the short code be
+ * written in the same statement.
+ *
+ * The block size is read back from the sequence, so changing
+ * urlshortener.ids.block-size only affects a freshly created sequence.
+ *
+ * Guarded by a ReentrantLock rather than synchronized: a lease queries the
+ * database while holding it, which would pin the carrier thread of every
+ * virtual thread waiting behind it.
+ */
+@Slf4j
+@Component
+public class IdBlockAllocator {
+
+    static final String SEQUENCE = "url_mapping_id_block_seq";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long configuredBlockSize;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private long blockSize;
+    private long next;
+    private long limit;
+
+    public IdBlockAllocator(JdbcTemplate jdbcTemplate, UrlShortenerProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.configuredBlockSize = properties.getIds().getBlockSize();
+    }
+
+    public long nextId() {
+        lock.lock();
+        try {
+            if (next >= limit) {
+                lease();
+            }
+            return next++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void lease() {
+        if (blockSize == 0) {
+            blockSize = createSequenceIfMissing();
+        }
+        Long start = jdbcTemplate.queryForObject("SELECT nextval('" + SEQUENCE + "')", Long.class);
+        if (start == null) {
+            throw new IllegalStateException("Sequence " + SEQUENCE + " returned no value");
+        }
+        next = start;
+        limit = start + blockSize;
+        log.debug("Leased ids [{}, {})", next, limit);
+    }
+
+    // Starts above any id handed out before blocks were used, so old identity
+    // ids are never reissued.
+    private long createSequenceIfMissing() {
+        Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM url_mapping", Long.class);
+        long startWith = (maxId == null ? 0 : maxId) + 1;
+
+        jdbcTemplate.execute("CREATE SEQUENCE IF NOT EXISTS " + SEQUENCE
+                + " START WITH " + startWith + " INCREMENT BY " + configuredBlockSize);
+
+        Long increment = jdbcTemplate.queryForObject(
+                "SELECT increment_by FROM pg_sequences WHERE schemaname = current_schema() AND sequencename = ?",
+                Long.class, SEQUENCE);
+        return increment == null ? configuredBlockSize : increment;
+    }
+}
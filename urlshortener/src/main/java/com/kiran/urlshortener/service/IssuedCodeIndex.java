@@ -0,0 +1,169 @@
+package com.kiran.urlshortener.service;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.kiran.urlshortener.cache.BloomFilter;
+import com.kiran.urlshortener.config.UrlShortenerProperties;
+import com.kiran.urlshortener.repository.ShardMap;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bloom filter over the ids of every issued short code, so lookups of codes
+ * that were never handed out skip the database. Filled from url_mapping, on
+ * every shard, at startup, from mappings created on this node, and from the UrlCreatedEvents
+ * of every other node; rebuilt from the table periodically to pick up any
+ * event that was lost.
+ *
+ * Ids this far above the highest known id cannot have been leased yet and
+ * are rejected outright. Below that, a fresh code from another node can
+ * briefly be missing until its event arrives, so callers only use a negative
+ * answer to skip the database after Redis, where every new code is written
+ * at creation, has missed. Until the first load finishes every id is reported
+ * as possibly issued.
+ */
+@Slf4j
+@Component
+public class IssuedCodeIndex {
+
+    private final ShardMap shardMap;
+    private final UrlShortenerProperties.Bloom bloom;
+    private final boolean enabled;
+    private final long idMargin;
+    private final int pageSize;
+    private final AtomicLong highestId = new AtomicLong(-1);
+
+    private volatile BloomFilter filter;
+    // Filter being rebuilt; new ids go into both until it replaces filter.
+    private volatile BloomFilter building;
+    private volatile boolean ready;
+
+    public IssuedCodeIndex(ShardMap shardMap, UrlShortenerProperties properties) {
+        UrlShortenerProperties.NegativeCache negativeCache = properties.getNegativeCache();
+        this.shardMap = shardMap;
+        this.bloom = negativeCache.getBloom();
+        this.enabled = negativeCache.isEnabled() && bloom.isEnabled();
+        this.idMargin = negativeCache.getIdMargin();
+        this.pageSize = negativeCache.getLoadPageSize();
+        this.filter = enabled ? newFilter() : null;
+    }
+
+    /**
+     * @return true when the id is certainly not issued: negative, or too far
+     *         above every known id to have been leased by any node yet
+     */
+    public boolean isUnissued(long id) {
+        if (id < 0) {
+            return true;
+        }
+        return enabled && ready && id - idMargin > highestId.get();
+    }
+
+    public boolean mightBeIssued(long id) {
+        if (!enabled || !ready) {
+            return id >= 0;
+        }
+        return filter.mightContain(hash1(id), hash2(id));
+    }
+
+    public void add(long id) {
+        if (!enabled) {
+            return;
+        }
+        highestId.accumulateAndGet(id, Math::max);
+        long hash1 = hash1(id);
+        long hash2 = hash2(id);
+        filter.put(hash1, hash2);
+        BloomFilter next = building;
+        if (next != null) {
+            next.put(hash1, hash2);
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadInBackground() {
+        if (!enabled) {
+            return;
+        }
+        Thread loader = new Thread(this::load, "issued-code-index-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    @Scheduled(initialDelayString = "${urlshortener.negative-cache.rebuild-interval-ms:3600000}",
+            fixedDelayString = "${urlshortener.negative-cache.rebuild-interval-ms:3600000}")
+    public void rebuild() {
+        if (enabled && ready) {
+            load();
+        }
+    }
+
+    /**
+     * Walks url_mapping on each shard by id into a fresh filter, then swaps
+     * it in. Ids added meanwhile go into both filters, so none is lost by the
+     * swap.
+     */
+    synchronized void load() {
+        BloomFilter next = newFilter();
+        building = next;
+        long maxId = -1;
+        long rows = 0;
+        try {
+            for (ShardMap.Shard shard : shardMap.shards()) {
+                long lastId = -1;
+                while (true) {
+                    List<Long> page = shard.jdbcTemplate().queryForList(
+                            "SELECT id FROM url_mapping WHERE id > ? ORDER BY id LIMIT ?",
+                            Long.class, lastId, pageSize);
+                    if (page.isEmpty()) {
+                        break;
+                    }
+                    for (long id : page) {
+                        next.put(hash1(id), hash2(id));
+                    }
+                    rows += page.size();
+                    lastId = page.get(page.size() - 1);
+                }
+                maxId = Math.max(maxId, lastId);
+            }
+            highestId.accumulateAndGet(maxId, Math::max);
+            filter = next;
+            ready = true;
+            log.info("Issued code index loaded {} rows", rows);
+        } catch (Exception e) {
+            log.warn("Issued code index load failed after {} rows, keeping the previous filter", rows, e);
+        } finally {
+            building = null;
+        }
+    }
+
+    private BloomFilter newFilter() {
+        return new BloomFilter(bloom.getExpectedInsertions(), bloom.getFalsePositiveRate());
+    }
+
+    // Two independent mixes of the id (SplitMix64 finalizer) for double
+    // hashing; sequential ids would otherwise probe neighbouring bits.
+    static long hash1(long id) {
+        return mix(id * 0x9E3779B97F4A7C15L);
+    }
+
+    static long hash2(long id) {
+        return mix(id ^ 0xD6E8FEB86659FD93L) | 1;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
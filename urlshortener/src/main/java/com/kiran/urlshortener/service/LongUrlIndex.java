@@ -0,0 +1,143 @@
+package com.kiran.urlshortener.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.kiran.urlshortener.cache.BloomFilter;
+import com.kiran.urlshortener.config.UrlShortenerProperties;
+import com.kiran.urlshortener.repository.ShardMap;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bloom filter over the long URL digests of every mapping, so creations of
+ * never-seen URLs (most of them) skip the dedupe query entirely. Until the
+ * startup load finishes every digest is reported as possibly present.
+ *
+ * The filter only knows digests loaded at startup or created on this node. A
+ * URL first shortened on another node can therefore slip past it; the unique
+ * index on long_url_hash, or the url_digest claim when sharded, catches that
+ * case at insert time.
+ */
+@Slf4j
+@Component
+public class LongUrlIndex {
+
+    // Dead mappings have had their digest released on purpose, see
+    // UrlMappingStore.releaseLongUrlHash; only live ones are backfilled.
+    private static final String LIVE = "active AND (expiry_at IS NULL OR expiry_at >= now())";
+
+    private final ShardMap shardMap;
+    private final boolean bloomEnabled;
+    private final int pageSize;
+    private final BloomFilter bloomFilter;
+    private volatile boolean ready;
+
+    private record Row(long id, byte[] digest, String longUrl) {
+    }
+
+    public LongUrlIndex(ShardMap shardMap, UrlShortenerProperties properties) {
+        UrlShortenerProperties.Bloom bloom = properties.getDedupe().getBloom();
+        this.shardMap = shardMap;
+        this.bloomEnabled = bloom.isEnabled();
+        this.pageSize = properties.getDedupe().getLoadPageSize();
+        this.bloomFilter = bloomEnabled
+                ? new BloomFilter(bloom.getExpectedInsertions(), bloom.getFalsePositiveRate())
+                : null;
+    }
+
+    public boolean mightContain(byte[] digest) {
+        if (!bloomEnabled || !ready) {
+            return true;
+        }
+        return bloomFilter.mightContain(UrlDigest.high(digest), UrlDigest.low(digest));
+    }
+
+    public void add(byte[] digest) {
+        if (bloomEnabled) {
+            bloomFilter.put(UrlDigest.high(digest), UrlDigest.low(digest));
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadInBackground() {
+        Thread loader = new Thread(this::load, "long-url-index-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * Walks url_mapping on each shard by id, adding every digest to the
+     * filter and backfilling long_url_hash for live rows written before the
+     * column existed.
+     */
+    void load() {
+        long rows = 0;
+        try {
+            for (ShardMap.Shard shard : shardMap.shards()) {
+                JdbcTemplate jdbcTemplate = shard.jdbcTemplate();
+                long lastId = 0;
+                while (true) {
+                    List<Row> page = jdbcTemplate.query(
+                            "SELECT id, long_url_hash, CASE WHEN long_url_hash IS NULL AND " + LIVE
+                                    + " THEN long_url END AS long_url FROM url_mapping WHERE id > ? ORDER BY id LIMIT ?",
+                            (rs, i) -> new Row(rs.getLong("id"), rs.getBytes("long_url_hash"),
+                                    rs.getString("long_url")),
+                            lastId, pageSize);
+                    if (page.isEmpty()) {
+                        break;
+                    }
+
+                    List<Object[]> backfill = new ArrayList<>();
+                    for (Row row : page) {
+                        byte[] digest = row.digest();
+                        if (digest == null && row.longUrl() != null) {
+                            digest = UrlDigest.sha256(row.longUrl());
+                            backfill.add(new Object[] { digest, row.id() });
+                        }
+                        if (digest != null) {
+                            add(digest);
+                        }
+                    }
+                    backfill(jdbcTemplate, backfill);
+
+                    rows += page.size();
+                    lastId = page.get(page.size() - 1).id();
+                }
+            }
+            ready = true;
+            log.info("Long URL index loaded {} rows", rows);
+        } catch (Exception e) {
+            log.warn("Long URL index load failed after {} rows, dedupe will always query the database", rows, e);
+        }
+    }
+
+    private void backfill(JdbcTemplate jdbcTemplate, List<Object[]> digests) {
+        if (digests.isEmpty()) {
+            return;
+        }
+        String sql = "UPDATE url_mapping SET long_url_hash = ? WHERE id = ?";
+        try {
+            jdbcTemplate.batchUpdate(sql, digests);
+        } catch (Exception e) {
+            // Legacy rows that normalize to the same URL collide on the unique
+            // index; keep the first one hashed and leave the rest unhashed.
+            for (Object[] args : digests) {
+                try {
+                    jdbcTemplate.update(sql, args);
+                } catch (Exception duplicate) {
+                    log.warn("Could not backfill long_url_hash for id {}", args[1]);
+                }
+            }
+        }
+    }
+}
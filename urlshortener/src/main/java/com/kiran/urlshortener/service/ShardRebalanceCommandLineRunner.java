@@ -0,0 +1,66 @@
+package com.kiran.urlshortener.service;
+
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import com.kiran.urlshortener.config.UrlShortenerProperties;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * CLI rebalance mode, e.g.
+ * {@code java -jar app.jar --spring.main.web-application-type=none
+ * --urlshortener.shards.rebalance.buckets=0-255 --urlshortener.shards.rebalance.to=shard-3}.
+ * Moves the buckets while the serving nodes keep running and shuts the
+ * application down.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "urlshortener.shards.rebalance", name = "to")
+public class ShardRebalanceCommandLineRunner implements CommandLineRunner {
+
+    private final ShardRebalancer rebalancer;
+    private final UrlShortenerProperties properties;
+    private final ConfigurableApplicationContext context;
+
+    public ShardRebalanceCommandLineRunner(ShardRebalancer rebalancer, UrlShortenerProperties properties,
+            ConfigurableApplicationContext context) {
+        this.rebalancer = rebalancer;
+        this.properties = properties;
+        this.context = context;
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        UrlShortenerProperties.Rebalance rebalance = properties.getShards().getRebalance();
+        int[] range = parseRange(rebalance.getBuckets());
+
+        ShardRebalancer.Result result = rebalancer.move(range[0], range[1], rebalance.getTo());
+        log.info("Rebalance finished: {}", result);
+
+        System.exit(SpringApplication.exit(context, () -> 0));
+    }
+
+    /**
+     * "12" or "0-255", inclusive.
+     */
+    static int[] parseRange(String buckets) {
+        if (buckets == null || buckets.isBlank()) {
+            throw new IllegalArgumentException("urlshortener.shards.rebalance.buckets is required");
+        }
+        int dash = buckets.indexOf('-');
+        try {
+            if (dash < 0) {
+                int bucket = Integer.parseInt(buckets.trim());
+                return new int[] { bucket, bucket };
+            }
+            return new int[] { Integer.parseInt(buckets.substring(0, dash).trim()),
+                    Integer.parseInt(buckets.substring(dash + 1).trim()) };
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bucket range must look like 12 or 0-255, got " + buckets, e);
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package com.kiran.urlshortener.service;
+
+import java.time.YearMonth;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.kiran.urlshortener.config.UrlShortenerProperties;
+import com.kiran.urlshortener.repository.ShardMap;
+import com.kiran.urlshortener.repository.ShardMap.Route;
+import com.kiran.urlshortener.repository.ShardMap.Shard;
+import com.kiran.urlshortener.repository.UrlMappingPartitions;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Moves a range of buckets to another shard while every node keeps serving:
+ *
+ * 1. Marks the buckets as moving, so nodes mirror every write to the target.
+ * 2. Copies their url_mapping and url_digest rows. Each page is locked on the
+ *    owner until it is written to the target, so a concurrent write to one of
+ *    its rows lands after the copy. The click count copied is kept on the
+ *    owner in moved_click_count.
+ * 3. Makes the target the owner. The old owner still receives every write.
+ * 4. Adds the clicks the old owner counted after its rows were copied.
+ * 5. Stops mirroring, then deletes the buckets from every other shard.
+ *
+ * Each step but the first waits twice the map refresh interval, so every node
+ * routes by the map the previous step wrote. A node that cannot reach the
+ * bucket map for longer keeps routing by its old copy. Running a move again
+ * after a failure resumes it. A move holds the shard map's maintenance lock,
+ * so it never runs alongside another move or a url_mapping sweep.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "urlshortener.shards", name = "enabled", havingValue = "true")
+public class ShardRebalancer {
+
+    private static final String MAPPING_COLUMNS =
+            "id, bucket, short_code, long_url, long_url_hash, expiry_at, created_at, click_count, active";
+
+    private static final String UPSERT_MAPPING_SQL = "INSERT INTO url_mapping (" + MAPPING_COLUMNS + ") "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) ON CONFLICT (id, created_at) DO UPDATE SET "
+            + "short_code = EXCLUDED.short_code, long_url = EXCLUDED.long_url, "
+            + "long_url_hash = EXCLUDED.long_url_hash, expiry_at = EXCLUDED.expiry_at, "
+            + "click_count = EXCLUDED.click_count, active = EXCLUDED.active";
+
+    private static final String INSERT_DIGEST_SQL = "INSERT INTO url_digest (long_url_hash, bucket, mapping_id) "
+            + "VALUES (?, ?, ?) ON CONFLICT (long_url_hash) DO NOTHING";
+
+    public record Result(int buckets, long rowsCopied, long digestsCopied, long clicksAdded, long rowsDeleted) {
+    }
+
+    private record Delta(long id, long clicks) {
+    }
+
+    private final ShardMap shardMap;
+    private final int batchSize;
+    private final long settleMillis;
+    private final LongConsumer pause;
+
+    @Autowired
+    public ShardRebalancer(ShardMap shardMap, UrlShortenerProperties properties) {
+        this(shardMap, properties, ShardRebalancer::sleep);
+    }
+
+    ShardRebalancer(ShardMap shardMap, UrlShortenerProperties properties, LongConsumer pause) {
+        this.shardMap = shardMap;
+        this.batchSize = properties.getShards().getRebalance().getBatchSize();
+        this.settleMillis = 2 * properties.getShards().getMapRefreshIntervalMs();
+        this.pause = pause;
+    }
+
+    /**
+     * Moves buckets {@code from} to {@code to}, inclusive, onto the shard
+     * named {@code target}. Buckets already there are left alone.
+     */
+    public Result move(int from, int to, String target) {
+        if (from < 0 || to < from || to >= shardMap.buckets()) {
+            throw new IllegalArgumentException("Bucket range " + from + "-" + to + " is outside 0-"
+                    + (shardMap.buckets() - 1));
+        }
+        Shard destination = shardMap.shard(target);
+        Result result = shardMap.withMaintenanceLock(() -> move(from, to, destination));
+        if (result == null) {
+            throw new IllegalStateException("Another bucket move or url_mapping sweep is running");
+        }
+        return result;
+    }
+
+    private Result move(int from, int to, Shard destination) {
+        String target = destination.name();
+
+        Route[] routes = shardMap.load();
+        for (int bucket = from; bucket <= to; bucket++) {
+            Route route = routes[bucket];
+            if (route.target() != null && !route.target().equals(destination) && !route.owner().equals(destination)) {
+                throw new IllegalStateException("Bucket " + bucket + " is already moving from "
+                        + route.owner().name() + " to " + route.target().name());
+            }
+        }
+
+        int buckets = shardMap.startMove(from, to, target);
+        log.info("Moving {} buckets in {}-{} to {}", buckets, from, to, target);
+        settle();
+
+        routes = shardMap.load();
+        // Copied rows keep their created_at, so the destination needs a
+        // partition for every month the owners have one for.
+        Set<Shard> owners = new LinkedHashSet<>();
+        for (int bucket = from; bucket <= to; bucket++) {
+            if (destination.equals(routes[bucket].target())) {
+                owners.add(routes[bucket].owner());
+            }
+        }
+        for (Shard owner : owners) {
+            for (YearMonth month : UrlMappingPartitions.months(owner.jdbcTemplate())) {
+                UrlMappingPartitions.create(destination.jdbcTemplate(), month);
+            }
+        }
+
+        long rowsCopied = 0;
+        long digestsCopied = 0;
+        for (int bucket = from; bucket <= to; bucket++) {
+            Route route = routes[bucket];
+            if (destination.equals(route.target())) {
+                rowsCopied += copyMappings(route.owner(), destination, bucket);
+                digestsCopied += copyDigests(route.owner(), destination, bucket);
+            }
+        }
+        log.info("Copied {} mappings and {} digests to {}", rowsCopied, digestsCopied, target);
+
+        shardMap.switchOwner(from, to, target);
+        settle();
+
+        routes = shardMap.load();
+        long clicksAdded = 0;
+        for (int bucket = from; bucket <= to; bucket++) {
+            Route route = routes[bucket];
+            if (route.owner().equals(destination) && route.target() != null) {
+                clicksAdded += addMovedClicks(route.target(), destination, bucket);
+            }
+        }
+
+        shardMap.finishMove(from, to, target);
+        settle();
+
+        routes = shardMap.load();
+        long rowsDeleted = 0;
+        for (int bucket = from; bucket <= to; bucket++) {
+            Route route = routes[bucket];
+            if (!route.owner().equals(destination) || route.target() != null) {
+                continue;
+            }
+            for (Shard shard : shardMap.shards()) {
+                if (!shard.equals(destination)) {
+                    rowsDeleted += deleteBucket(shard, bucket);
+                }
+            }
+        }
+
+        Result result = new Result(buckets, rowsCopied, digestsCopied, clicksAdded, rowsDeleted);
+        log.info("Moved buckets {}-{} to {}: {}", from, to, target, result);
+        return result;
+    }
+
+    private long copyMappings(Shard source, Shard destination, int bucket) {
+        TransactionTemplate transaction = transaction(source);
+        long copied = 0;
+        long lastId = Long.MIN_VALUE;
+        while (true) {
+            long after = lastId;
+            List<Object[]> page = transaction.execute(status -> {
+                List<Object[]> rows = source.jdbcTemplate().query("SELECT " + MAPPING_COLUMNS + " FROM url_mapping "
+                                + "WHERE bucket = ? AND id > ? ORDER BY id LIMIT ? FOR UPDATE",
+                        (rs, i) -> new Object[] { rs.getLong("id"), rs.getInt("bucket"), rs.getString("short_code"),
+                                rs.getString("long_url"), rs.getBytes("long_url_hash"), rs.getTimestamp("expiry_at"),
+                                rs.getTimestamp("created_at"), rs.getLong("click_count"), rs.getBoolean("active") },
+                        bucket, after, batchSize);
+                if (rows.isEmpty()) {
+                    return rows;
+                }
+                destination.jdbcTemplate().batchUpdate(UPSERT_MAPPING_SQL, rows);
+                source.jdbcTemplate().update("UPDATE url_mapping SET moved_click_count = click_count "
+                        + "WHERE bucket = ? AND id > ? AND id <= ?", bucket, after, rows.get(rows.size() - 1)[0]);
+                return rows;
+            });
+            if (page == null || page.isEmpty()) {
+                return copied;
+            }
+            copied += page.size();
+            lastId = (Long) page.get(page.size() - 1)[0];
+        }
+    }
+
+    // Digest rows are dropped when their mapping dies, so each page is locked
+    // like a mapping page: a node's delete on the owner waits until the page
+    // is on the target, then reaches the target copy too. New ones are
+    // mirrored by the nodes.
+    private long copyDigests(Shard source, Shard destination, int bucket) {
+        TransactionTemplate transaction = transaction(source);
+        long copied = 0;
+        byte[] lastDigest = new byte[0];
+        while (true) {
+            byte[] after = lastDigest;
+            List<Object[]> page = transaction.execute(status -> {
+                List<Object[]> rows = source.jdbcTemplate().query("SELECT long_url_hash, bucket, mapping_id "
+                                + "FROM url_digest WHERE bucket = ? AND long_url_hash > ? ORDER BY long_url_hash "
+                                + "LIMIT ? FOR UPDATE",
+                        (rs, i) -> new Object[] { rs.getBytes("long_url_hash"), rs.getInt("bucket"),
+                                rs.getLong("mapping_id") },
+                        bucket, after, batchSize);
+                if (!rows.isEmpty()) {
+                    destination.jdbcTemplate().batchUpdate(INSERT_DIGEST_SQL, rows);
+                }
+                return rows;
+            });
+            if (page == null || page.isEmpty()) {
+                return copied;
+            }
+            copied += page.size();
+            lastDigest = (byte[]) page.get(page.size() - 1)[0];
+        }
+    }
+
+    // Clicks the old owner counted after the copy, from nodes that had not
+    // yet seen the switch, are added to the new owner.
+    private long addMovedClicks(Shard previous, Shard owner, int bucket) {
+        TransactionTemplate transaction = transaction(previous);
+        long added = 0;
+        long lastId = Long.MIN_VALUE;
+        while (true) {
+            long after = lastId;
+            List<Delta> page = transaction.execute(status -> {
+                List<Delta> deltas = previous.jdbcTemplate().query("SELECT id, click_count - moved_click_count "
+                                + "AS clicks FROM url_mapping WHERE bucket = ? AND id > ? "
+                                + "AND click_count > moved_click_count ORDER BY id LIMIT ? FOR UPDATE",
+                        (rs, i) -> new Delta(rs.getLong("id"), rs.getLong("clicks")), bucket, after, batchSize);
+                if (deltas.isEmpty()) {
+                    return deltas;
+                }
+                List<Object[]> args = deltas.stream().map(d -> new Object[] { d.clicks(), d.id() }).toList();
+                owner.jdbcTemplate().batchUpdate(
+                        "UPDATE url_mapping SET click_count = click_count + ? WHERE id = ?", args);
+                previous.jdbcTemplate().batchUpdate(
+                        "UPDATE url_mapping SET moved_click_count = moved_click_count + ? WHERE id = ?", args);
+                return deltas;
+            });
+            if (page == null || page.isEmpty()) {
+                return added;
+            }
+            for (Delta delta : page) {
+                added += delta.clicks();
+            }
+            lastId = page.get(page.size() - 1).id();
+        }
+    }
+
+    private long deleteBucket(Shard shard, int bucket) {
+        JdbcTemplate jdbcTemplate = shard.jdbcTemplate();
+        long deleted = 0;
+        int rows;
+        do {
+            rows = jdbcTemplate.update("DELETE FROM url_mapping WHERE id IN "
+                    + "(SELECT id FROM url_mapping WHERE bucket = ? LIMIT ?)", bucket, batchSize);
+            deleted += rows;
+        } while (rows > 0);
+        do {
+            rows = jdbcTemplate.update("DELETE FROM url_digest WHERE long_url_hash IN "
+                    + "(SELECT long_url_hash FROM url_digest WHERE bucket = ? LIMIT ?)", bucket, batchSize);
+        } while (rows > 0);
+        return deleted;
+    }
+
+    private static TransactionTemplate transaction(Shard shard) {
+        return new TransactionTemplate(new DataSourceTransactionManager(shard.jdbcTemplate().getDataSource()));
+    }
+
+    private void settle() {
+        pause.accept(settleMillis);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for nodes to reload the shard map", e);
+        }
+    }
+}
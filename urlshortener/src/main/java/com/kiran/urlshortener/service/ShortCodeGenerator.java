@@ -1,30 +1,191 @@
 package com.kiran.urlshortener.service;
 
+import java.util.Arrays;
+
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import com.kiran.urlshortener.config.UrlShortenerProperties;
+
+/**
+ * Base62 codec between mapping ids and short codes. Plain codes are the
+ * shortest base62 form of the id. With obfuscation on, the id is first run
+ * through a keyed permutation of [0, 62^width) and always written with
+ * exactly {@code width} characters, so consecutive ids give unrelated codes
+ * that still decode back to their id.
+ */
 @Component
 public class ShortCodeGenerator {
 
+    /** Length of the longest plain code, Long.MAX_VALUE in base62. */
+    public static final int MAX_LENGTH = 11;
+
     private static final char[] BASE62 =
             "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789".toCharArray();
 
+    private static final byte[] DIGITS = new byte[128];
+
+    private static final long[] POW62 = new long[MAX_LENGTH];
+
+    private static final int ROUNDS = 4;
+
+    static {
+        Arrays.fill(DIGITS, (byte) -1);
+        for (int i = 0; i < BASE62.length; i++) {
+            DIGITS[BASE62[i]] = (byte) i;
+        }
+        POW62[0] = 1;
+        for (int i = 1; i < MAX_LENGTH; i++) {
+            POW62[i] = POW62[i - 1] * 62;
+        }
+    }
+
+    private final boolean obfuscate;
+    private final int width;
+    private final long domain;
+    private final int halfBits;
+    private final long halfMask;
+    private final long key;
+
+    public ShortCodeGenerator() {
+        this(false, 0, 0);
+    }
+
+    @Autowired
+    public ShortCodeGenerator(UrlShortenerProperties properties) {
+        this(properties.getCodes().isObfuscate(), properties.getCodes().getWidth(), properties.getCodes().getKey());
+    }
+
+    ShortCodeGenerator(boolean obfuscate, int width, long key) {
+        this.obfuscate = obfuscate;
+        this.key = key;
+        if (!obfuscate) {
+            this.width = 0;
+            this.domain = 0;
+            this.halfBits = 0;
+            this.halfMask = 0;
+            return;
+        }
+        if (width < 2 || width > 10) {
+            throw new IllegalArgumentException("Obfuscated code width must be between 2 and 10");
+        }
+        this.width = width;
+        this.domain = POW62[width];
+        int bits = 64 - Long.numberOfLeadingZeros(domain - 1);
+        this.halfBits = (bits + 1) / 2;
+        this.halfMask = (1L << halfBits) - 1;
+    }
+
     public String encode(Long id) {
         if (id == null) {
             throw new IllegalArgumentException("Id cannot be null");
         }
+        return encode(id.longValue());
+    }
+
+    public String encode(long id) {
+        char[] buffer = new char[MAX_LENGTH];
+        int length = encode(id, buffer, 0);
+        return new String(buffer, 0, length);
+    }
 
-        if (id == 0) {
-            return String.valueOf(BASE62[0]);
+    /**
+     * Writes the code for {@code id} into {@code dst} starting at
+     * {@code offset}, which needs room for {@link #MAX_LENGTH} characters.
+     *
+     * @return number of characters written
+     */
+    public int encode(long id, char[] dst, int offset) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Id cannot be negative");
         }
 
-        StringBuilder result = new StringBuilder();
+        int length;
+        long value;
+        if (obfuscate) {
+            if (id >= domain) {
+                throw new IllegalStateException("Id " + id + " does not fit in " + width + "-character codes");
+            }
+            length = width;
+            value = permute(id);
+        } else {
+            length = 1;
+            while (length < MAX_LENGTH && id >= POW62[length]) {
+                length++;
+            }
+            value = id;
+        }
+
+        for (int i = offset + length - 1; i >= offset; i--) {
+            dst[i] = BASE62[(int) (value % 62)];
+            value /= 62;
+        }
+        return length;
+    }
 
-        while (id > 0) {
-            int remainder = (int) (id % 62);
-            result.append(BASE62[remainder]);
-            id /= 62;
+    /**
+     * Inverse of encode.
+     *
+     * @return the id, or -1 when {@code code} is not a code this generator
+     *         could have produced
+     */
+    public long decode(CharSequence code) {
+        int length = code == null ? 0 : code.length();
+        if (obfuscate ? length != width : length == 0 || length > MAX_LENGTH) {
+            return -1;
         }
+        // Plain codes never start with the zero digit, except "a" itself.
+        if (!obfuscate && length > 1 && code.charAt(0) == BASE62[0]) {
+            return -1;
+        }
+
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            char c = code.charAt(i);
+            int digit = c < DIGITS.length ? DIGITS[c] : -1;
+            if (digit < 0 || value > (Long.MAX_VALUE - digit) / 62) {
+                return -1;
+            }
+            value = value * 62 + digit;
+        }
+        return obfuscate ? unpermute(value) : value;
+    }
+
+    // Balanced Feistel network over 2 * halfBits bits, cycle-walked until the
+    // result falls back inside [0, domain). Both directions are bijections on
+    // the domain.
+    private long permute(long value) {
+        do {
+            long left = value >>> halfBits;
+            long right = value & halfMask;
+            for (int round = 0; round < ROUNDS; round++) {
+                long next = left ^ round(right, round);
+                left = right;
+                right = next;
+            }
+            value = (left << halfBits) | right;
+        } while (value >= domain);
+        return value;
+    }
+
+    private long unpermute(long value) {
+        do {
+            long left = value >>> halfBits;
+            long right = value & halfMask;
+            for (int round = ROUNDS - 1; round >= 0; round--) {
+                long previous = right ^ round(left, round);
+                right = left;
+                left = previous;
+            }
+            value = (left << halfBits) | right;
+        } while (value >= domain);
+        return value;
+    }
 
-        return result.reverse().toString();
+    private long round(long half, int round) {
+        long x = half ^ key ^ (round * 0x9E3779B97F4A7C15L);
+        x = (x ^ (x >>> 33)) * 0xFF51AFD7ED558CCDL;
+        x = (x ^ (x >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return (x ^ (x >>> 33)) & halfMask;
     }
 }
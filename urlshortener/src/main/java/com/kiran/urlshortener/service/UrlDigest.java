@@ -0,0 +1,69 @@
+package com.kiran.urlshortener.service;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+
+/**
+ * SHA-256 of the normalized long URL, stored in url_mapping.long_url_hash and
+ * used for dedupe lookups instead of an index on the URL text.
+ */
+public final class UrlDigest {
+
+    public static final int LENGTH = 32;
+
+    private UrlDigest() {
+    }
+
+    public static byte[] sha256(String longUrl) {
+        try {
+            return MessageDigest.getInstance("SHA-256")
+                    .digest(normalize(longUrl).getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Trims the URL and lower-cases its scheme and host, which are case
+     * insensitive. Anything that does not parse as a URI is only trimmed.
+     */
+    public static String normalize(String longUrl) {
+        String trimmed = longUrl.trim();
+        try {
+            URI uri = new URI(trimmed);
+            String scheme = uri.getScheme();
+            String authority = uri.getRawAuthority();
+            if (scheme == null || authority == null) {
+                return trimmed;
+            }
+            String prefix = scheme + "://" + authority;
+            if (!trimmed.startsWith(prefix)) {
+                return trimmed;
+            }
+            int at = authority.lastIndexOf('@');
+            String userInfo = authority.substring(0, at + 1);
+            String hostAndPort = authority.substring(at + 1).toLowerCase(Locale.ROOT);
+            return scheme.toLowerCase(Locale.ROOT) + "://" + userInfo + hostAndPort
+                    + trimmed.substring(prefix.length());
+        } catch (URISyntaxException e) {
+            return trimmed;
+        }
+    }
+
+    public static boolean sameUrl(String a, String b) {
+        return a != null && b != null && normalize(a).equals(normalize(b));
+    }
+
+    public static long high(byte[] digest) {
+        return ByteBuffer.wrap(digest, 0, 8).getLong();
+    }
+
+    public static long low(byte[] digest) {
+        return ByteBuffer.wrap(digest, 8, 8).getLong();
+    }
+}
@@ -0,0 +1,85 @@
+package com.kiran.urlshortener.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.kiran.urlshortener.config.UrlShortenerProperties;
+import com.kiran.urlshortener.events.UrlCreatedEvent;
+import com.kiran.urlshortener.repository.UrlEventOutboxRepository;
+import com.kiran.urlshortener.repository.UrlEventOutboxRepository.Entry;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Moves UrlCreatedEvents from url_event_outbox to Kafka. Each run locks up
+ * to relay-batch-size of the oldest rows, publishes them together, deletes
+ * the acknowledged ones in the same transaction and repeats while batches
+ * come back full. Every node runs a relay; SKIP LOCKED gives each its own
+ * rows. A crash after the send but before the commit publishes those events
+ * again on the next run, so consumers see each event at least once.
+ */
+@Slf4j
+@Component
+public class UrlEventOutboxRelay {
+
+    // Upper bound on batches per run, so one run cannot hold the scheduler
+    // thread indefinitely under a sustained backlog.
+    private static final int MAX_BATCHES_PER_RUN = 100;
+
+    private final UrlEventOutboxRepository outbox;
+    private final UrlEventProducer urlEventProducer;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+
+    public UrlEventOutboxRelay(UrlEventOutboxRepository outbox, UrlEventProducer urlEventProducer,
+            TransactionTemplate transactionTemplate, UrlShortenerProperties properties) {
+        this.outbox = outbox;
+        this.urlEventProducer = urlEventProducer;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = properties.getEvents().getRelayBatchSize();
+    }
+
+    @Scheduled(fixedDelayString = "${urlshortener.events.relay-interval-ms:200}")
+    public void relay() {
+        try {
+            for (int i = 0; i < MAX_BATCHES_PER_RUN; i++) {
+                Integer relayed = transactionTemplate.execute(status -> relayBatch());
+                if (relayed == null || relayed < batchSize) {
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            log.warn("UrlCreatedEvent outbox relay failed", e);
+        }
+    }
+
+    /**
+     * @return events published and deleted; fewer than batch size when the
+     *         outbox is drained or a send failed
+     */
+    int relayBatch() {
+        List<Entry> entries = outbox.lockBatch(batchSize);
+        if (entries.isEmpty()) {
+            return 0;
+        }
+
+        List<UrlCreatedEvent> events = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            events.add(entry.event());
+        }
+        boolean[] acknowledged = urlEventProducer.publish(events);
+
+        List<Long> published = new ArrayList<>(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            if (acknowledged[i]) {
+                published.add(entries.get(i).id());
+            }
+        }
+        outbox.delete(published);
+        return published.size();
+    }
+}
@@ -1,21 +1,95 @@
 package com.kiran.urlshortener.service;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 
+import com.kiran.urlshortener.config.UrlShortenerProperties;
 import com.kiran.urlshortener.events.UrlCreatedEvent;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
 
+/**
+ * Sends batches of UrlCreatedEvents for UrlEventOutboxRelay. The producer
+ * batches and compresses them per linger.ms, batch-size and compression-type;
+ * the caller learns which events Kafka acknowledged within send-timeout.
+ */
+@Slf4j
 @Service
 public class UrlEventProducer {
 
+    static final String TOPIC = "url-created-events";
+
     private final KafkaTemplate<String, UrlCreatedEvent> kafkaTemplate;
+    private final Duration sendTimeout;
+    private final Counter failedEvents;
+    private final Timer sendTimer;
 
-    public UrlEventProducer(KafkaTemplate<String, UrlCreatedEvent> kafkaTemplate) {
+    public UrlEventProducer(KafkaTemplate<String, UrlCreatedEvent> kafkaTemplate, UrlShortenerProperties properties,
+            MeterRegistry meterRegistry) {
         this.kafkaTemplate = kafkaTemplate;
+        this.sendTimeout = properties.getEvents().getSendTimeout();
+        this.failedEvents = meterRegistry.counter("urlshortener.events.send.failures");
+        this.sendTimer = meterRegistry.timer("urlshortener.kafka.send", "topic", TOPIC);
     }
 
-    public void sendUrlCreatedEvent(UrlCreatedEvent event) {
-        kafkaTemplate.send("url-created-events", event.getShortCode(), event);
+    /**
+     * Sends every event keyed by short code and waits for the acks.
+     *
+     * @return per event, whether Kafka acknowledged it
+     */
+    public boolean[] publish(List<UrlCreatedEvent> events) {
+        boolean[] acknowledged = new boolean[events.size()];
+        if (events.isEmpty()) {
+            return acknowledged;
+        }
+
+        CompletableFuture<?>[] sends = new CompletableFuture<?>[events.size()];
+        try {
+            for (int i = 0; i < events.size(); i++) {
+                UrlCreatedEvent event = events.get(i);
+                long sentAt = System.nanoTime();
+                sends[i] = kafkaTemplate.send(TOPIC, event.getShortCode(), event);
+                sends[i].whenComplete((result, e) -> {
+                    if (e == null) {
+                        sendTimer.record(System.nanoTime() - sentAt, TimeUnit.NANOSECONDS);
+                    }
+                });
+            }
+            kafkaTemplate.flush();
+        } catch (Exception e) {
+            // Kafka is unreachable; the rest would each block max.block.ms.
+            log.warn("Kafka send failed, leaving UrlCreatedEvents for the next run", e);
+        }
+
+        long deadline = System.nanoTime() + sendTimeout.toNanos();
+        int failed = 0;
+        for (int i = 0; i < sends.length; i++) {
+            if (sends[i] == null) {
+                failed++;
+                continue;
+            }
+            try {
+                sends[i].get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                acknowledged[i] = true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failed++;
+            } catch (Exception e) {
+                failed++;
+            }
+        }
+        if (failed > 0) {
+            failedEvents.increment(failed);
+            log.warn("{} of {} UrlCreatedEvents were not acknowledged", failed, events.size());
+        }
+        return acknowledged;
     }
 }
@@ -0,0 +1,307 @@
+package com.kiran.urlshortener.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.kiran.urlshortener.config.UrlShortenerProperties;
+import com.kiran.urlshortener.export.UrlMappingArchive;
+import com.kiran.urlshortener.repository.ShardMap;
+import com.kiran.urlshortener.repository.ShardMap.Route;
+import com.kiran.urlshortener.repository.ShardMap.Shard;
+import com.kiran.urlshortener.repository.UrlMappingPartitions;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Gets expired and inactive mappings out of url_mapping a partition at a
+ * time. Once a month is min-age-months old, its partition on each shard is
+ * locked in EXCLUSIVE mode, which lets redirects read it while writes to its
+ * rows wait. Its dead rows are streamed to an archive file (see
+ * UrlMappingArchive) and their long URL digests released. Then the partition
+ * is dropped, or, if some rows are still live, replaced by a copy of just
+ * those, as long as there are at most max-live-rows of them. Dead rows are
+ * never deleted one by one.
+ *
+ * Sweeps hold the shard map's maintenance lock and skip runs while a bucket
+ * move is unfinished. Click flushes update every partition, so they wait
+ * while one is locked.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "urlshortener.lifecycle", name = "enabled", havingValue = "true")
+public class UrlMappingLifecycleJob {
+
+    private static final String DEAD = "(NOT active OR expiry_at < ?)";
+
+    private static final String LIVE = "(active AND (expiry_at IS NULL OR expiry_at >= ?))";
+
+    private static final DateTimeFormatter FILE_STAMP = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss");
+
+    public record Report(int partitionsDropped, int partitionsRewritten, int partitionsKept, long rowsArchived,
+            long indexBytesBefore, long indexBytesAfter) {
+    }
+
+    private enum Outcome {
+        DROPPED, REWRITTEN, KEPT
+    }
+
+    private record Swept(Outcome outcome, long archived) {
+    }
+
+    private final ShardMap shardMap;
+    private final UrlShortenerProperties.Lifecycle config;
+    private final Path archiveDir;
+
+    public UrlMappingLifecycleJob(ShardMap shardMap, UrlShortenerProperties properties) {
+        if (!shardMap.isSharded()) {
+            throw new IllegalStateException("urlshortener.lifecycle needs urlshortener.shards.enabled; "
+                    + "a single database can be the only shard");
+        }
+        if (properties.getLifecycle().getMinAgeMonths() < 1) {
+            throw new IllegalStateException("urlshortener.lifecycle.min-age-months must be at least 1; "
+                    + "the current month's partition takes every new mapping");
+        }
+        this.shardMap = shardMap;
+        this.config = properties.getLifecycle();
+        this.archiveDir = Paths.get(config.getArchiveDir());
+    }
+
+    @Scheduled(cron = "${urlshortener.lifecycle.cron:0 30 3 * * *}")
+    public void run() {
+        try {
+            sweep();
+        } catch (Exception e) {
+            log.warn("url_mapping sweep failed", e);
+        }
+    }
+
+    /**
+     * @return what was done, or null when another node holds the maintenance
+     *         lock or a bucket move is unfinished
+     */
+    public Report sweep() {
+        Report report = shardMap.withMaintenanceLock(this::sweepLocked);
+        if (report == null) {
+            log.info("Skipped url_mapping sweep: a bucket move or another sweep is running");
+        }
+        return report;
+    }
+
+    private Report sweepLocked() {
+        for (Route route : shardMap.load()) {
+            if (route.target() != null) {
+                return null;
+            }
+        }
+
+        try {
+            Files.createDirectories(archiveDir);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        LocalDateTime now = LocalDateTime.now();
+        YearMonth newest = YearMonth.from(now).minusMonths(config.getMinAgeMonths());
+        long indexBytesBefore = indexBytes();
+        int dropped = 0;
+        int rewritten = 0;
+        int kept = 0;
+        long archived = 0;
+        for (Shard shard : shardMap.shards()) {
+            for (YearMonth month : UrlMappingPartitions.months(shard.jdbcTemplate())) {
+                if (month.isAfter(newest)) {
+                    continue;
+                }
+                Swept swept;
+                try {
+                    swept = sweep(shard, month, now);
+                } catch (RuntimeException e) {
+                    log.warn("Could not sweep {} on {}, leaving it to the next run",
+                            UrlMappingPartitions.name(month), shard.name(), e);
+                    swept = new Swept(Outcome.KEPT, 0);
+                }
+                archived += swept.archived();
+                switch (swept.outcome()) {
+                    case DROPPED -> dropped++;
+                    case REWRITTEN -> rewritten++;
+                    case KEPT -> kept++;
+                }
+            }
+        }
+
+        if (dropped > 0) {
+            // Recreates any partition inserts still need right away.
+            shardMap.forgetPartitions();
+            shardMap.load();
+        }
+
+        Report report = new Report(dropped, rewritten, kept, archived, indexBytesBefore, indexBytes());
+        log.info("url_mapping sweep archived {} rows, dropped {} partitions, rewrote {}, kept {}; "
+                + "partition indexes went from {} to {} bytes", archived, dropped, rewritten, kept,
+                report.indexBytesBefore(), report.indexBytesAfter());
+        return report;
+    }
+
+    private Swept sweep(Shard shard, YearMonth month, LocalDateTime now) {
+        String partition = UrlMappingPartitions.name(month);
+        Path file = archiveDir.resolve(partition + "." + shard.name() + "." + now.format(FILE_STAMP) + ".bin.gz");
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        JdbcTemplate jdbcTemplate = shard.jdbcTemplate();
+
+        Swept swept;
+        try {
+            TransactionTemplate transaction = new TransactionTemplate(
+                    new DataSourceTransactionManager(jdbcTemplate.getDataSource()));
+            swept = transaction.execute(status -> {
+                jdbcTemplate.execute("SET LOCAL lock_timeout = " + config.getLockTimeout().toMillis());
+                jdbcTemplate.execute("LOCK TABLE " + partition + " IN EXCLUSIVE MODE");
+                Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + partition + " WHERE " + LIVE,
+                        Long.class, Timestamp.valueOf(now));
+                long live = count == null ? 0 : count;
+                if (live > config.getMaxLiveRows()) {
+                    log.info("Keeping {} on {}: {} live rows", partition, shard.name(), live);
+                    return new Swept(Outcome.KEPT, 0);
+                }
+
+                long archived = archive(shard, partition, now, temporary);
+                if (live == 0) {
+                    jdbcTemplate.execute("ALTER TABLE url_mapping DETACH PARTITION " + partition);
+                    jdbcTemplate.execute("DROP TABLE " + partition);
+                    return new Swept(Outcome.DROPPED, archived);
+                }
+                if (archived == 0) {
+                    return new Swept(Outcome.KEPT, 0);
+                }
+                rewrite(jdbcTemplate, month, now);
+                return new Swept(Outcome.REWRITTEN, archived);
+            });
+        } catch (RuntimeException e) {
+            deleteQuietly(temporary);
+            throw e;
+        }
+
+        try {
+            if (swept.archived() > 0) {
+                Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+                log.info("Archived {} rows of {} on {} to {}", swept.archived(), partition, shard.name(), file);
+            } else {
+                Files.deleteIfExists(temporary);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Archive of " + partition + " on " + shard.name()
+                    + " was left at " + temporary, e);
+        }
+        return swept;
+    }
+
+    // Rows of buckets another shard owns are leftovers of a finished move:
+    // they are dropped with the partition but neither archived nor released.
+    private long archive(Shard shard, String partition, LocalDateTime now, Path file) {
+        Map<Shard, List<Object[]>> digests = new LinkedHashMap<>();
+        long[] archived = new long[1];
+        try (OutputStream out = Files.newOutputStream(file);
+                UrlMappingArchive.Writer writer = UrlMappingArchive.writer(out)) {
+            shard.jdbcTemplate().query(connection -> {
+                PreparedStatement statement = connection.prepareStatement("SELECT id, long_url, long_url_hash, "
+                        + "expiry_at, created_at, click_count, active FROM " + partition + " WHERE " + DEAD
+                        + " ORDER BY id");
+                statement.setFetchSize(config.getBatchSize());
+                statement.setTimestamp(1, Timestamp.valueOf(now));
+                return statement;
+            }, rs -> {
+                long id = rs.getLong("id");
+                if (!shard.equals(shardMap.byId(id).owner())) {
+                    return;
+                }
+                Timestamp expiryAt = rs.getTimestamp("expiry_at");
+                Timestamp createdAt = rs.getTimestamp("created_at");
+                try {
+                    writer.write(id, rs.getString("long_url"),
+                            expiryAt == null ? null : expiryAt.toLocalDateTime(),
+                            createdAt == null ? null : createdAt.toLocalDateTime(),
+                            rs.getLong("click_count"), rs.getBoolean("active"));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                archived[0]++;
+
+                byte[] digest = rs.getBytes("long_url_hash");
+                if (digest != null) {
+                    for (Shard writerShard : shardMap.byDigest(digest).writers()) {
+                        digests.computeIfAbsent(writerShard, k -> new ArrayList<>())
+                                .add(new Object[] { digest, id });
+                    }
+                }
+                if (archived[0] % config.getBatchSize() == 0) {
+                    release(digests);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        release(digests);
+        return archived[0];
+    }
+
+    // Released on their own connections and not undone if the sweep fails:
+    // a dead mapping without a digest is just never reused.
+    private static void release(Map<Shard, List<Object[]>> digests) {
+        digests.forEach((shard, args) -> shard.jdbcTemplate().batchUpdate(
+                "DELETE FROM url_digest WHERE long_url_hash = ? AND mapping_id = ?", args));
+        digests.clear();
+    }
+
+    // The copy gets its indexes and a CHECK matching the bounds before the
+    // swap, so ATTACH neither builds nor scans anything while DETACH holds
+    // url_mapping.
+    private static void rewrite(JdbcTemplate jdbcTemplate, YearMonth month, LocalDateTime now) {
+        String partition = UrlMappingPartitions.name(month);
+        String copy = partition + "_new";
+        jdbcTemplate.execute("CREATE TABLE " + copy + " (LIKE url_mapping INCLUDING DEFAULTS INCLUDING INDEXES)");
+        jdbcTemplate.update("INSERT INTO " + copy + " SELECT * FROM " + partition + " WHERE " + LIVE,
+                Timestamp.valueOf(now));
+        jdbcTemplate.execute("ALTER TABLE " + copy + " ADD CONSTRAINT " + partition + "_bounds CHECK ("
+                + "created_at >= '" + month.atDay(1) + "' AND created_at < '" + month.plusMonths(1).atDay(1) + "')");
+        jdbcTemplate.execute("ALTER TABLE url_mapping DETACH PARTITION " + partition);
+        jdbcTemplate.execute("DROP TABLE " + partition);
+        jdbcTemplate.execute("ALTER TABLE " + copy + " RENAME TO " + partition);
+        jdbcTemplate.execute("ALTER TABLE url_mapping ATTACH PARTITION " + partition + " "
+                + UrlMappingPartitions.bounds(month));
+    }
+
+    private long indexBytes() {
+        long bytes = 0;
+        for (Shard shard : shardMap.shards()) {
+            bytes += UrlMappingPartitions.indexBytes(shard.jdbcTemplate());
+        }
+        return bytes;
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete {}", file, e);
+        }
+    }
+}
@@ -1,148 +1,498 @@
 package com.kiran.urlshortener.service;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
-
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.kiran.urlshortener.cache.CacheMetrics;
+import com.kiran.urlshortener.cache.CacheMetrics.Negative;
+import com.kiran.urlshortener.cache.CacheMetrics.Shorten;
+import com.kiran.urlshortener.cache.CacheMetrics.Source;
+import com.kiran.urlshortener.cache.CacheMetrics.Tier;
+import com.kiran.urlshortener.cache.RedirectResponseCache;
+import com.kiran.urlshortener.cache.RedisCircuitBreaker;
+import com.kiran.urlshortener.cache.SingleFlight;
+import com.kiran.urlshortener.cache.UrlNearCache;
+import com.kiran.urlshortener.config.ReplicaReads;
+import com.kiran.urlshortener.config.UrlShortenerProperties;
 import com.kiran.urlshortener.entity.UrlMapping;
 import com.kiran.urlshortener.events.UrlCreatedEvent;
-import com.kiran.urlshortener.repository.UrlMappingRepository;
+import com.kiran.urlshortener.repository.UrlEventOutboxRepository;
+import com.kiran.urlshortener.repository.UrlMappingStore;
 
 
 @Service
 public class UrlService {
 
-    private final UrlMappingRepository urlMappingRepository;
+    private final UrlMappingStore urlMappingStore;
     private final ShortCodeGenerator shortCodeGenerator;
     private final StringRedisTemplate redisTemplate;
-    private final UrlEventProducer urlEventProducer;
+    private final UrlEventOutboxRepository urlEventOutbox;
+    private final UrlNearCache nearCache;
+    private final CacheMetrics cacheMetrics;
+    private final UrlShortenerProperties properties;
+    private final ClickBuffer clickBuffer;
+    private final IdBlockAllocator idBlockAllocator;
+    private final LongUrlIndex longUrlIndex;
+    private final RedirectResponseCache responseCache;
+    private final IssuedCodeIndex issuedCodes;
+    private final TransactionTemplate transactionTemplate;
+    private final RedisCircuitBreaker redisBreaker;
+    private final ReplicaReads replicaReads;
+    private final SingleFlight<String> loads;
     private static final String SHORT_PREFIX = "short:";
-    private static final String CLICK_PREFIX = "click:";
+
+    // Value of a short: key for a code that is unknown, inactive or expired.
+    private static final String TOMBSTONE = "";
+
+    // Assumed database load time until the first load has been measured.
+    private static final long INITIAL_LOAD_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    // Moving average of database load time, the delta in the early refresh
+    // decision. Updates race harmlessly.
+    private volatile long loadNanos = INITIAL_LOAD_NANOS;
 
 
-    public UrlService(UrlMappingRepository urlMappingRepository,
-                      ShortCodeGenerator shortCodeGenerator,StringRedisTemplate redisTemplate, UrlEventProducer urlEventProducer) {
-        this.urlMappingRepository = urlMappingRepository;
+    public UrlService(UrlMappingStore urlMappingStore,
+                      ShortCodeGenerator shortCodeGenerator,StringRedisTemplate redisTemplate, UrlEventOutboxRepository urlEventOutbox,
+                      UrlNearCache nearCache, CacheMetrics cacheMetrics, UrlShortenerProperties properties,
+                      ClickBuffer clickBuffer, IdBlockAllocator idBlockAllocator, LongUrlIndex longUrlIndex,
+                      RedirectResponseCache responseCache, IssuedCodeIndex issuedCodes,
+                      TransactionTemplate transactionTemplate, RedisCircuitBreaker redisBreaker,
+                      ReplicaReads replicaReads) {
+        this.urlMappingStore = urlMappingStore;
         this.shortCodeGenerator = shortCodeGenerator;
         this.redisTemplate = redisTemplate;
-        this.urlEventProducer = urlEventProducer;
+        this.urlEventOutbox = urlEventOutbox;
+        this.nearCache = nearCache;
+        this.cacheMetrics = cacheMetrics;
+        this.properties = properties;
+        this.clickBuffer = clickBuffer;
+        this.idBlockAllocator = idBlockAllocator;
+        this.longUrlIndex = longUrlIndex;
+        this.responseCache = responseCache;
+        this.issuedCodes = issuedCodes;
+        this.transactionTemplate = transactionTemplate;
+        this.redisBreaker = redisBreaker;
+        this.replicaReads = replicaReads;
+        this.loads = new SingleFlight<>(cacheMetrics::coalesced);
     }
 
     public String createShortUrl(String originalUrl, LocalDateTime expiryTime) {
+        return createMapping(originalUrl, expiryTime).getShortCode();
+    }
+
+    /**
+     * Like {@link #createShortUrl}, returning the mapping the URL resolved to:
+     * a new one, or an existing one whose expiry may be later than asked.
+     */
+    public UrlMapping createMapping(String originalUrl, LocalDateTime expiryTime) {
 
         if (originalUrl == null || originalUrl.isBlank()) {
             throw new IllegalArgumentException("Original URL cannot be null or blank");
         }
 
-        UrlMapping urlMapping = urlMappingRepository.findByLongUrl(originalUrl).orElse(null);
-
-        if(urlMapping != null) {
-            String shortCode = urlMapping.getShortCode();
+        long start = System.nanoTime();
+        byte[] digest = UrlDigest.sha256(originalUrl);
 
-            LocalDateTime expiryAt = urlMapping.getExpiryAt();
+        UrlMapping urlMapping = findByDigest(originalUrl, digest);
 
-            if (expiryAt == null || expiryAt.isBefore(expiryTime)) {
-                urlMapping.setExpiryAt(expiryTime);
-                urlMappingRepository.save(urlMapping);
-            }
-            return shortCode;
+        if(urlMapping != null) {
+            reuseExisting(urlMapping, expiryTime);
+            cacheMetrics.shortened(Shorten.EXISTING, start);
+            return urlMapping;
         }
         
 
-        urlMapping = new UrlMapping();
-        urlMapping.setLongUrl(originalUrl);
-        urlMapping.setExpiryAt(expiryTime);
-        urlMapping.setActive(true);
-
-        urlMappingRepository.save(urlMapping);
-
-        String shortCode = shortCodeGenerator.encode(urlMapping.getId());
+        long id = idBlockAllocator.nextId();
+        String shortCode = shortCodeGenerator.encode(id);
 
         String key = SHORT_PREFIX + shortCode;
 
+        urlMapping = new UrlMapping();
+        urlMapping.setId(id);
         urlMapping.setShortCode(shortCode);
+        urlMapping.setLongUrl(originalUrl);
+        urlMapping.setLongUrlHash(digest);
+        urlMapping.setExpiryAt(expiryTime);
+        urlMapping.setActive(true);
 
-        urlMappingRepository.save(urlMapping);
+        // The event is committed with the mapping and published later by
+        // UrlEventOutboxRelay, so neither can exist without the other. A
+        // sharded mapping commits on its shard just before the event and is
+        // removed again if the event's transaction does not commit.
+        UrlMapping created = urlMapping;
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                urlMappingStore.save(created);
+                urlEventOutbox.add(new UrlCreatedEvent(id, shortCode, Instant.now()));
+            });
+        } catch (DataIntegrityViolationException e) {
+            // Another node shortened the same URL after our lookup.
+            UrlMapping existing = urlMappingStore.findByLongUrlHash(digest).orElseThrow(() -> e);
+            longUrlIndex.add(digest);
+            if (live(existing) == null) {
+                // It has gone dead since and its digest is free again.
+                return createMapping(originalUrl, expiryTime);
+            }
+            reuseExisting(existing, expiryTime);
+            cacheMetrics.shortened(Shorten.RACE, start);
+            return existing;
+        }
+        longUrlIndex.add(digest);
+        issuedCodes.add(id);
 
         try {
-            long ttlSeconds = urlMapping.getExpiryAt() == null
-                    ? TimeUnit.HOURS.toSeconds(24)
-                    : Duration.between(LocalDateTime.now(), urlMapping.getExpiryAt()).getSeconds();
+            long ttlSeconds = cacheTtlSeconds(urlMapping.getExpiryAt());
 
                 String longUrl = urlMapping.getLongUrl();
                 if (longUrl != null && ttlSeconds > 0) {
-                    redisTemplate.opsForValue()
+                    redisBreaker.run("set", () -> redisTemplate.opsForValue()
                                 .set(key, 
                                     longUrl, 
                                     ttlSeconds, 
-                                    TimeUnit.SECONDS);
+                                    TimeUnit.SECONDS));
                     
                 }
         } catch (Exception e) {
+            // Counted by the breaker; the code is cached again on its next lookup.
+        }
+
+        cacheMetrics.shortened(Shorten.CREATED, start);
+        return urlMapping;
+    }
+
+
+    private UrlMapping findByDigest(String originalUrl, byte[] digest) {
+
+        if (!longUrlIndex.mightContain(digest)) {
+            return null;
+        }
+
+        UrlMapping existing = urlMappingStore.findByLongUrlHash(digest).orElse(null);
+
+        if (existing != null && !UrlDigest.sameUrl(existing.getLongUrl(), originalUrl)) {
+            throw new IllegalStateException("Long URL digest collision for mapping " + existing.getId());
+        }
+        return live(existing);
+    }
+
+    /**
+     * @return the mapping if it is live; a deactivated or expired one has its
+     *         digest released, so the long URL gets a new mapping, and null is
+     *         returned. Its code stays dead.
+     */
+    private UrlMapping live(UrlMapping mapping) {
+        if (mapping == null || isLive(mapping)) {
+            return mapping;
         }
+        urlMappingStore.releaseLongUrlHash(mapping);
+        return null;
+    }
 
+    private void reuseExisting(UrlMapping urlMapping, LocalDateTime expiryTime) {
 
-        urlEventProducer.sendUrlCreatedEvent(
-            new UrlCreatedEvent(
-                urlMapping.getId(),
-                urlMapping.getShortCode(),
-                Instant.now()
-            )
-        );
+        if (shouldExtendExpiry(urlMapping.getExpiryAt(), expiryTime)) {
+            urlMapping.setExpiryAt(expiryTime);
+            urlMappingStore.save(urlMapping);
 
-        return shortCode;
+            // Drops the short: key so it is cached again with the new expiry.
+            try {
+                redisBreaker.call("delete", () -> redisTemplate.delete(SHORT_PREFIX + urlMapping.getShortCode()));
+            } catch (Exception e) {
+                // Counted by the breaker; the old entry just expires sooner.
+            }
+        }
     }
 
+    static boolean shouldExtendExpiry(LocalDateTime expiryAt, LocalDateTime requested) {
+        return expiryAt == null || (requested != null && expiryAt.isBefore(requested));
+    }
+
+    /**
+     * TTL for the short: key of a mapping; 24 hours when it never expires.
+     */
+    static long cacheTtlSeconds(LocalDateTime expiryAt) {
+        return expiryAt == null
+                ? TimeUnit.HOURS.toSeconds(24)
+                : Duration.between(LocalDateTime.now(), expiryAt).getSeconds();
+    }
 
     public String resolveLongUrl(String shortCode) {
 
+        long start = System.nanoTime();
         String key = SHORT_PREFIX + shortCode;
-        String clickKey = CLICK_PREFIX + shortCode;
 
+        String localUrl = nearCache.get(shortCode);
+        if (localUrl != null) {
+            cacheMetrics.hit(Tier.LOCAL);
+            clickBuffer.record(shortCode);
+            cacheMetrics.resolved(Source.LOCAL, start);
+            return localUrl;
+        }
+        cacheMetrics.miss(Tier.LOCAL);
+
+        if (isUnissued(shortCode)) {
+            cacheMetrics.resolved(Source.NEGATIVE, start);
+            return null;
+        }
+
+        boolean refresh = false;
         try {
-            String cachedUrl = redisTemplate.opsForValue().get(key);
-            if (cachedUrl != null) {
-                redisTemplate.opsForValue().increment(clickKey);
-                return cachedUrl;
+            List<Object> cached = redisBreaker.call("get", () -> getWithTtl(key));
+            String cachedUrl = (String) cached.get(0);
+            if (cachedUrl == null) {
+                cacheMetrics.miss(Tier.REDIS);
+            } else if (isTombstone(cachedUrl)) {
+                cacheMetrics.negativeHit(Negative.TOMBSTONE);
+                cacheMetrics.resolved(Source.NEGATIVE, start);
+                return null;
+            } else {
+                cacheMetrics.hit(Tier.REDIS);
+                Duration ttl = remainingTtl((Long) cached.get(1));
+                if (!shouldRefreshEarly(ttl)) {
+                    nearCache.put(shortCode, cachedUrl, ttl);
+                    clickBuffer.record(shortCode);
+                    cacheMetrics.resolved(Source.REDIS, start);
+                    return cachedUrl;
+                }
+                cacheMetrics.earlyRefresh();
+                refresh = true;
             }
         } catch (Exception e) {
+            // Counted by the breaker; the database answers instead.
+        }
+
+        // An early refresh skips the issued code filter: the code was just
+        // seen in Redis, even if its creation event has not arrived yet.
+        if (!refresh && neverIssued(shortCode)) {
+            cacheMetrics.resolved(Source.NEGATIVE, start);
+            return null;
         }
+        String longUrl = clicked(shortCode, reload(shortCode));
+        cacheMetrics.resolved(Source.DATABASE, start);
+        return longUrl;
+    }
 
-        UrlMapping mapping =
-            urlMappingRepository.findByShortCodeAndActiveTrue(shortCode)
-                                .orElse(null);
+    /**
+     * True when the code can be answered "not found" without any I/O: it is
+     * not a valid code or lies beyond every id issued so far.
+     */
+    public boolean isUnissued(String shortCode) {
+        if (issuedCodes.isUnissued(shortCodeGenerator.decode(shortCode))) {
+            cacheMetrics.negativeHit(Negative.INDEX);
+            return true;
+        }
+        return false;
+    }
 
-        if (mapping == null) return null;
+    /**
+     * True for the cached value that marks a code as not found.
+     */
+    public static boolean isTombstone(String cachedValue) {
+        return TOMBSTONE.equals(cachedValue);
+    }
 
-        LocalDateTime expiryAt = mapping.getExpiryAt();
-        if (expiryAt != null && expiryAt.isBefore(LocalDateTime.now())) {
+    /**
+     * Cache-miss path of resolveLongUrl: loads the mapping, repopulates Redis
+     * and the local cache, and records the click. Blocking. Concurrent misses
+     * for the same code on this node share one database query, and codes the
+     * issued code filter has never seen skip it.
+     */
+    public String resolveFromDatabase(String shortCode) {
+
+        return neverIssued(shortCode) ? null : clicked(shortCode, reload(shortCode));
+    }
+
+    private boolean neverIssued(String shortCode) {
+        if (!issuedCodes.mightBeIssued(shortCodeGenerator.decode(shortCode))) {
+            cacheMetrics.negativeHit(Negative.INDEX);
+            return true;
+        }
+        return false;
+    }
+
+    private String clicked(String shortCode, String longUrl) {
+        if (longUrl != null) {
+            clickBuffer.record(shortCode);
+        }
+        return longUrl;
+    }
+
+    /**
+     * Loads the mapping and rewrites its Redis key and local cache entry,
+     * without recording a click. Shares a load already running for the code.
+     *
+     * @return the long URL, or null if the code is unknown, inactive or expired
+     */
+    public String reload(String shortCode) {
+        return loads.load(shortCode, () -> {
+            long start = System.nanoTime();
+            String longUrl = loadFromDatabase(shortCode);
+            long elapsed = System.nanoTime() - start;
+            loadNanos += (elapsed - loadNanos) / 8;
+            return longUrl;
+        });
+    }
+
+    /**
+     * Probabilistic early expiration: true with a probability that rises as
+     * the remaining TTL approaches beta times the database load time, so one
+     * of the requests on a hot key reloads it shortly before it expires.
+     * Keys without a TTL are never refreshed.
+     */
+    public boolean shouldRefreshEarly(Duration remainingTtl) {
+        double beta = properties.getCache().getEarlyRefresh().getBeta();
+        return shouldRefreshEarly(remainingTtl, loadNanos, beta, 1 - ThreadLocalRandom.current().nextDouble());
+    }
+
+    static boolean shouldRefreshEarly(Duration remainingTtl, long loadNanos, double beta, double random) {
+        if (remainingTtl == null || beta <= 0) {
+            return false;
+        }
+        return loadNanos * beta * -Math.log(random) >= remainingTtl.toNanos();
+    }
+
+    private String loadFromDatabase(String shortCode) {
+
+        String key = SHORT_PREFIX + shortCode;
+
+        UrlMapping mapping = replicaReads.read(() -> findActive(shortCode));
+        if (!isLive(mapping) && replicaReads.isEnabled()) {
+            // The replica may not have replayed the creation or an expiry
+            // extension yet; only the primary can say the code is gone.
+            mapping = findActive(shortCode);
+        }
+
+        if (!isLive(mapping)) {
+            cacheTombstone(key);
             return null;
         }
 
+        LocalDateTime expiryAt = mapping.getExpiryAt();
+        nearCache.put(shortCode, mapping.getLongUrl(), expiryAt);
+
         try {
-            long ttlSeconds = expiryAt == null
-                    ? TimeUnit.HOURS.toSeconds(24)
-                    : Duration.between(LocalDateTime.now(), expiryAt).getSeconds();
+            long ttlSeconds = cacheTtlSeconds(expiryAt);
 
             String longUrl = mapping.getLongUrl();
             if (longUrl != null && ttlSeconds > 0) {
-                redisTemplate.opsForValue()
+                redisBreaker.run("set", () -> redisTemplate.opsForValue()
                             .set(key, 
                                 longUrl, 
                                 ttlSeconds, 
-                                TimeUnit.SECONDS);
-                
-                redisTemplate.opsForValue().increment(clickKey);
+                                TimeUnit.SECONDS));
             }
 
         } catch (Exception e) {
+            // Counted by the breaker; the code is cached again on its next lookup.
         }
 
         return mapping.getLongUrl();
     }
 
+    static boolean isLive(UrlMapping mapping) {
+        return mapping != null && mapping.isActive()
+                && (mapping.getExpiryAt() == null || !mapping.getExpiryAt().isBefore(LocalDateTime.now()));
+    }
+
+    /**
+     * Deactivates a short code and evicts it from Redis and from the local
+     * cache of every node. Nodes that miss the pub/sub message still drop the
+     * entry once the local max TTL elapses. The long URL digest is released,
+     * so shortening the URL again gives a new code.
+     */
+    public boolean deactivateShortUrl(String shortCode) {
+
+        UrlMapping mapping = findActive(shortCode);
+
+        if (mapping == null) return false;
+
+        mapping.setActive(false);
+        urlMappingStore.save(mapping);
+        urlMappingStore.releaseLongUrlHash(mapping);
+
+        nearCache.invalidate(shortCode);
+        responseCache.invalidate(shortCode);
+
+        try {
+            evict(SHORT_PREFIX + shortCode);
+            redisBreaker.call("publish", () -> redisTemplate.convertAndSend(
+                    properties.getCache().getInvalidationChannel(), shortCode));
+        } catch (Exception e) {
+            // Counted by the breaker; cached copies serve the code until their TTL.
+        }
+
+        return true;
+    }
+
+    // With replicas, a delete would let a lagging replica put the URL back
+    // on the next miss; a tombstone answers "not found" until it catches up.
+    private void evict(String key) {
+        UrlShortenerProperties.NegativeCache negativeCache = properties.getNegativeCache();
+        if (replicaReads.isEnabled() && negativeCache.isEnabled()) {
+            redisBreaker.run("set", () -> redisTemplate.opsForValue().set(key, TOMBSTONE, negativeCache.getTtl()));
+        } else {
+            redisBreaker.call("delete", () -> redisTemplate.delete(key));
+        }
+    }
+
+    private void cacheTombstone(String key) {
+        UrlShortenerProperties.NegativeCache negativeCache = properties.getNegativeCache();
+        if (!negativeCache.isEnabled()) {
+            return;
+        }
+        try {
+            // NX so a code created while this lookup ran keeps its URL.
+            redisBreaker.call("setnx", () -> redisTemplate.opsForValue()
+                    .setIfAbsent(key, TOMBSTONE, negativeCache.getTtl()));
+        } catch (Exception e) {
+            // Counted by the breaker; the next lookup asks the database again.
+        }
+    }
+
+    // Short codes are encoded ids, so the lookup goes through the primary key.
+    // The stored code is compared as well so a non-canonical spelling of the
+    // same id does not resolve.
+    private UrlMapping findActive(String shortCode) {
+        long id = shortCodeGenerator.decode(shortCode);
+        if (id < 0) return null;
+
+        return urlMappingStore.findByIdAndActiveTrue(id)
+                .filter(mapping -> shortCode.equals(mapping.getShortCode()))
+                .orElse(null);
+    }
+
+    // GET and PTTL of a cached key, pipelined so a hit costs one round trip.
+    private List<Object> getWithTtl(String key) {
+        byte[] rawKey = key.getBytes(StandardCharsets.UTF_8);
+        return redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.stringCommands().get(rawKey);
+            connection.keyCommands().pTtl(rawKey);
+            return null;
+        });
+    }
+
+    // Remaining Redis TTL from a PTTL reply: null when the key never expires,
+    // zero when it is already gone.
+    private static Duration remainingTtl(Long ttlMillis) {
+        if (ttlMillis == null || ttlMillis == -2) {
+            return Duration.ZERO;
+        }
+        if (ttlMillis == -1) {
+            return null;
+        }
+        return Duration.ofMillis(ttlMillis);
+    }
+
 }
@@ -0,0 +1,56 @@
+package com.kiran.urlshortener.cache;
+
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import org.junit.jupiter.api.Test;
+
+class BloomFilterTest {
+
+    @Test
+    void mightContain_shouldNeverMissInsertedElements() {
+        // Arrange
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        SplittableRandom random = new SplittableRandom(42);
+        long[][] hashes = new long[10_000][2];
+        for (long[] hash : hashes) {
+            hash[0] = random.nextLong();
+            hash[1] = random.nextLong();
+            filter.put(hash[0], hash[1]);
+        }
+
+        // Act & Assert
+        for (long[] hash : hashes) {
+            assertThat(filter.mightContain(hash[0], hash[1])).isTrue();
+        }
+    }
+
+    @Test
+    void mightContain_shouldStayNearConfiguredFalsePositiveRate() {
+        // Arrange
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        SplittableRandom random = new SplittableRandom(7);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put(random.nextLong(), random.nextLong());
+        }
+
+        // Act
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain(random.nextLong(), random.nextLong())) {
+                falsePositives++;
+            }
+        }
+
+        // Assert
+        assertThat(falsePositives / 100_000.0).isLessThan(0.02);
+    }
+
+    @Test
+    void constructor_withInvalidRate_shouldThrowException() {
+        // Act & Assert
+        assertThatThrownBy(() -> new BloomFilter(100, 1.5))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,171 @@
+package com.kiran.urlshortener.cache;
+
+import com.kiran.urlshortener.config.UrlShortenerProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RedisCircuitBreakerTest {
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    private final AtomicLong now = new AtomicLong();
+    private SimpleMeterRegistry meterRegistry;
+    private RedisCircuitBreaker breaker;
+
+    @BeforeEach
+    void setUp() {
+        UrlShortenerProperties properties = new UrlShortenerProperties();
+        properties.getRedisBreaker().setFailureThreshold(3);
+        properties.getRedisBreaker().setSlowCallThreshold(Duration.ofMillis(100));
+        properties.getRedisBreaker().setMinOpen(Duration.ofMillis(250));
+        properties.getRedisBreaker().setMaxOpen(Duration.ofSeconds(2));
+        meterRegistry = new SimpleMeterRegistry();
+        breaker = new RedisCircuitBreaker(redisTemplate, new CacheMetrics(meterRegistry), properties, meterRegistry,
+                now::get);
+    }
+
+    private void fail(int times) {
+        for (int i = 0; i < times; i++) {
+            try {
+                breaker.call("get", () -> {
+                    throw new RedisConnectionFailureException("down");
+                });
+            } catch (RuntimeException e) {
+            }
+        }
+    }
+
+    private void advanceMillis(long millis) {
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    @Test
+    void call_afterConsecutiveFailures_shouldOpenAndRejectWithoutCallingRedis() {
+        // Arrange
+        fail(3);
+        AtomicInteger calls = new AtomicInteger();
+
+        // Act & Assert
+        assertThat(breaker.isOpen()).isTrue();
+        assertThatThrownBy(() -> breaker.call("get", calls::incrementAndGet)).hasMessageContaining("open");
+        assertThat(calls.get()).isZero();
+        assertThat(meterRegistry.counter("urlshortener.redis.errors", "operation", "get").count()).isEqualTo(3);
+        assertThat(meterRegistry.counter("urlshortener.redis.breaker.rejected").count()).isEqualTo(1);
+    }
+
+    @Test
+    void call_withSuccessBetweenFailures_shouldStayClosed() {
+        // Act
+        fail(2);
+        breaker.call("get", () -> "ok");
+        fail(2);
+
+        // Assert
+        assertThat(breaker.isOpen()).isFalse();
+    }
+
+    @Test
+    void call_withSlowCommands_shouldOpen() {
+        // Act
+        for (int i = 0; i < 3; i++) {
+            breaker.call("get", () -> {
+                advanceMillis(150);
+                return "slow";
+            });
+        }
+
+        // Assert
+        assertThat(breaker.isOpen()).isTrue();
+    }
+
+    @Test
+    void batch_withSlowPipeline_shouldNotCountAsFailure() {
+        // Act
+        for (int i = 0; i < 3; i++) {
+            breaker.batch("incrby", () -> {
+                advanceMillis(500);
+                return null;
+            });
+        }
+
+        // Assert
+        assertThat(breaker.isOpen()).isFalse();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void probe_shouldWaitForMinOpenThenCloseWhenPingAnswers() {
+        // Arrange
+        fail(3);
+
+        // Act & Assert
+        advanceMillis(200);
+        breaker.probe();
+        verifyNoInteractions(redisTemplate);
+        assertThat(breaker.isOpen()).isTrue();
+
+        advanceMillis(50);
+        breaker.probe();
+        verify(redisTemplate).execute(any(RedisCallback.class));
+        assertThat(breaker.isOpen()).isFalse();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void probe_whenPingFails_shouldDoubleTheWait() {
+        // Arrange
+        when(redisTemplate.execute(any(RedisCallback.class)))
+                .thenThrow(new RedisConnectionFailureException("down"))
+                .thenReturn("PONG");
+        fail(3);
+        advanceMillis(250);
+        breaker.probe();
+
+        // Act & Assert
+        advanceMillis(400);
+        breaker.probe();
+        assertThat(breaker.isOpen()).isTrue();
+
+        advanceMillis(100);
+        breaker.probe();
+        assertThat(breaker.isOpen()).isFalse();
+        verify(redisTemplate, times(2)).execute(any(RedisCallback.class));
+    }
+
+    @Test
+    void call_whenReopeningSoonAfterClosing_shouldBackOffLonger() {
+        // Arrange
+        fail(3);
+        advanceMillis(250);
+        breaker.probe();
+        fail(3);
+
+        // Act & Assert
+        advanceMillis(250);
+        breaker.probe();
+        assertThat(breaker.isOpen()).isTrue();
+
+        advanceMillis(250);
+        breaker.probe();
+        assertThat(breaker.isOpen()).isFalse();
+    }
+}
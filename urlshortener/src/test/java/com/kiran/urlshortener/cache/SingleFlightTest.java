@@ -0,0 +1,79 @@
+package com.kiran.urlshortener.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTest {
+
+    private final AtomicInteger shared = new AtomicInteger();
+    private final SingleFlight<String> singleFlight = new SingleFlight<>(shared::incrementAndGet);
+
+    @Test
+    void load_withoutConcurrentCallers_shouldRunEveryLoad() {
+        // Arrange
+        AtomicInteger loads = new AtomicInteger();
+
+        // Act
+        singleFlight.load("abc", () -> "v" + loads.incrementAndGet());
+        String second = singleFlight.load("abc", () -> "v" + loads.incrementAndGet());
+
+        // Assert
+        assertThat(second).isEqualTo("v2");
+        assertThat(shared.get()).isZero();
+        assertThat(singleFlight.inFlight()).isZero();
+    }
+
+    @Test
+    void load_whileSameKeyLoads_shouldShareTheFailure() throws Exception {
+        // Arrange
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> singleFlight.load("abc", () -> {
+            started.countDown();
+            await(release);
+            throw new IllegalStateException("database down");
+        }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // Act
+        CompletableFuture<String> follower = CompletableFuture.supplyAsync(
+                () -> singleFlight.load("abc", () -> "unused"));
+        while (shared.get() == 0) {
+            Thread.onSpinWait();
+        }
+        release.countDown();
+
+        // Assert
+        assertThatThrownBy(() -> follower.get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("database down");
+        assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(IllegalStateException.class);
+        assertThat(singleFlight.inFlight()).isZero();
+    }
+
+    @Test
+    void load_withDifferentKeys_shouldNotShare() {
+        // Act
+        String a = singleFlight.load("a", () -> singleFlight.load("b", () -> "b"));
+
+        // Assert
+        assertThat(a).isEqualTo("b");
+        assertThat(shared.get()).isZero();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
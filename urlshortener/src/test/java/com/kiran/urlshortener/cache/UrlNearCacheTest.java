@@ -0,0 +1,98 @@
+package com.kiran.urlshortener.cache;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.kiran.urlshortener.config.UrlShortenerProperties;
+
+class UrlNearCacheTest {
+
+    private UrlShortenerProperties properties;
+    private UrlNearCache nearCache;
+
+    @BeforeEach
+    void setUp() {
+        properties = new UrlShortenerProperties();
+        nearCache = new UrlNearCache(properties);
+    }
+
+    @Test
+    void get_afterPut_shouldReturnLongUrl() {
+        // Act
+        nearCache.put("abc123", "https://example.com", LocalDateTime.now().plusDays(1));
+
+        // Assert
+        assertThat(nearCache.get("abc123")).isEqualTo("https://example.com");
+    }
+
+    @Test
+    void put_withPastExpiry_shouldNotCache() {
+        // Act
+        nearCache.put("abc123", "https://example.com", LocalDateTime.now().minusSeconds(1));
+
+        // Assert
+        assertThat(nearCache.get("abc123")).isNull();
+    }
+
+    @Test
+    void put_withZeroTtl_shouldNotCache() {
+        // Act
+        nearCache.put("abc123", "https://example.com", Duration.ZERO);
+
+        // Assert
+        assertThat(nearCache.get("abc123")).isNull();
+    }
+
+    @Test
+    void get_afterTtlElapsed_shouldReturnNull() throws InterruptedException {
+        // Arrange
+        nearCache.put("abc123", "https://example.com", Duration.ofMillis(20));
+
+        // Act
+        Thread.sleep(50);
+
+        // Assert
+        assertThat(nearCache.get("abc123")).isNull();
+    }
+
+    @Test
+    void invalidate_shouldRemoveEntry() {
+        // Arrange
+        nearCache.put("abc123", "https://example.com", (Duration) null);
+
+        // Act
+        nearCache.invalidate("abc123");
+
+        // Assert
+        assertThat(nearCache.get("abc123")).isNull();
+    }
+
+    @Test
+    void get_whenDisabled_shouldAlwaysMiss() {
+        // Arrange
+        properties.getCache().getLocal().setEnabled(false);
+        UrlNearCache disabled = new UrlNearCache(properties);
+
+        // Act
+        disabled.put("abc123", "https://example.com", (Duration) null);
+
+        // Assert
+        assertThat(disabled.get("abc123")).isNull();
+    }
+
+    @Test
+    void expiresAfter_shouldReturnRemainingLifetimeCappedAtMaxTtl() {
+        // Arrange
+        nearCache.put("abc123", "https://example.com", LocalDateTime.now().plusDays(1));
+        nearCache.put("soon", "https://example.com/soon", Duration.ofSeconds(5));
+
+        // Act & Assert
+        assertThat(nearCache.expiresAfter("abc123")).isLessThanOrEqualTo(Duration.ofSeconds(30));
+        assertThat(nearCache.expiresAfter("soon")).isLessThanOrEqualTo(Duration.ofSeconds(5)).isPositive();
+        assertThat(nearCache.expiresAfter("missing")).isNull();
+    }
+}
@@ -0,0 +1,189 @@
+package com.kiran.urlshortener.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class ReplicaRoutingDataSourceTest {
+
+    @Mock
+    private DataSource primary;
+
+    @Mock
+    private Connection primaryConnection;
+
+    private UrlShortenerProperties properties;
+    private ReplicaReads replicaReads;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        properties = new UrlShortenerProperties();
+        properties.getReplicas().setEnabled(true);
+        properties.getReplicas().setMaxLag(Duration.ofSeconds(5));
+        replicaReads = new ReplicaReads(properties);
+        when(primary.getConnection()).thenReturn(primaryConnection);
+    }
+
+    // A streaming replica whose health check reports the given lag in milliseconds.
+    private DataSource replica(long lagMillis) throws SQLException {
+        return replica(lagMillis, true);
+    }
+
+    private DataSource replica(long lagMillis, boolean streaming) throws SQLException {
+        DataSource dataSource = mock(DataSource.class);
+        Connection connection = mock(Connection.class);
+        Statement statement = mock(Statement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.createStatement()).thenReturn(statement);
+        when(statement.executeQuery(ReplicaRoutingDataSource.LAG_QUERY)).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getLong(1)).thenReturn(lagMillis);
+        when(resultSet.getBoolean(2)).thenReturn(streaming);
+        return dataSource;
+    }
+
+    private Connection readConnection(DataSource dataSource) {
+        return replicaReads.read(() -> {
+            try {
+                return dataSource.getConnection();
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    @Test
+    void getConnection_outsideReplicaRead_shouldUsePrimary() throws SQLException {
+        // Arrange
+        DataSource replica = replica(0);
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary,
+                List.of(new ReplicaRoutingDataSource.Replica("replica-1", replica, 1)), properties.getReplicas());
+        routing.checkHealth();
+        clearInvocations(replica);
+
+        // Act
+        Connection connection = routing.getConnection();
+
+        // Assert
+        assertThat(connection).isSameAs(primaryConnection);
+        verify(replica, never()).getConnection();
+    }
+
+    @Test
+    void getConnection_inReplicaReadBeforeFirstHealthCheck_shouldUsePrimary() throws SQLException {
+        // Arrange
+        DataSource replica = replica(0);
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary,
+                List.of(new ReplicaRoutingDataSource.Replica("replica-1", replica, 1)), properties.getReplicas());
+
+        // Act & Assert
+        assertThat(readConnection(routing)).isSameAs(primaryConnection);
+    }
+
+    @Test
+    void getConnection_inReplicaRead_shouldSkipReplicaBeyondMaxLag() throws SQLException {
+        // Arrange
+        DataSource caughtUp = replica(100);
+        DataSource lagging = replica(60_000);
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, List.of(
+                new ReplicaRoutingDataSource.Replica("lagging", lagging, 10),
+                new ReplicaRoutingDataSource.Replica("caught-up", caughtUp, 1)), properties.getReplicas());
+        routing.checkHealth();
+        clearInvocations(caughtUp, lagging);
+
+        // Act
+        for (int i = 0; i < 20; i++) {
+            readConnection(routing);
+        }
+
+        // Assert
+        verify(caughtUp, times(20)).getConnection();
+        verify(lagging, never()).getConnection();
+    }
+
+    @Test
+    void getConnection_inReplicaRead_shouldSkipReplicaThatIsNotStreaming() throws SQLException {
+        // Arrange
+        DataSource disconnected = replica(0, false);
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary,
+                List.of(new ReplicaRoutingDataSource.Replica("disconnected", disconnected, 1)),
+                properties.getReplicas());
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        routing.bindTo(meterRegistry);
+        routing.checkHealth();
+        clearInvocations(disconnected);
+
+        // Act
+        Connection connection = readConnection(routing);
+
+        // Assert
+        assertThat(connection).isSameAs(primaryConnection);
+        verify(disconnected, never()).getConnection();
+        assertThat(meterRegistry.get("urlshortener.db.replica.healthy").gauge().value()).isZero();
+    }
+
+    @Test
+    void getConnection_inReplicaRead_shouldSplitByWeight() throws SQLException {
+        // Arrange
+        DataSource heavy = replica(0);
+        DataSource light = replica(0);
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, List.of(
+                new ReplicaRoutingDataSource.Replica("heavy", heavy, 3),
+                new ReplicaRoutingDataSource.Replica("light", light, 1)), properties.getReplicas());
+        routing.checkHealth();
+        Connection heavyConnection = heavy.getConnection();
+
+        // Act
+        Map<Boolean, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 4000; i++) {
+            counts.merge(readConnection(routing) == heavyConnection, 1, Integer::sum);
+        }
+
+        // Assert
+        assertThat(counts.get(true)).isBetween(2700, 3300);
+    }
+
+    @Test
+    void getConnection_whenReplicaRefuses_shouldFallBackAndStopUsingIt() throws SQLException {
+        // Arrange
+        DataSource replica = replica(0);
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary,
+                List.of(new ReplicaRoutingDataSource.Replica("replica-1", replica, 1)), properties.getReplicas());
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        routing.bindTo(meterRegistry);
+        routing.checkHealth();
+        when(replica.getConnection()).thenThrow(new SQLException("connection refused"));
+
+        // Act
+        Connection first = readConnection(routing);
+        Connection second = readConnection(routing);
+
+        // Assert
+        assertThat(first).isSameAs(primaryConnection);
+        assertThat(second).isSameAs(primaryConnection);
+        verify(replica, times(2)).getConnection();
+        assertThat(meterRegistry.get("urlshortener.db.replica.fallbacks").functionCounter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("urlshortener.db.replica.healthy").gauge().value()).isZero();
+    }
+}
@@ -0,0 +1,161 @@
+package com.kiran.urlshortener.consumer;
+
+import com.kiran.urlshortener.config.UrlShortenerProperties;
+import com.kiran.urlshortener.events.UrlCreatedEvent;
+import com.kiran.urlshortener.service.ClickRollupAggregator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UrlEventConsumerTest {
+
+    @Mock
+    private ClickRollupAggregator clickRollupAggregator;
+
+    @Mock
+    private ObjectProvider<UrlCreatedEventHandler> handlerProvider;
+
+    @Mock
+    private Acknowledgment acknowledgment;
+
+    @Mock
+    private Consumer<?, ?> consumer;
+
+    private final List<String> handled = Collections.synchronizedList(new ArrayList<>());
+    private UrlCreatedEventHandler handler = event -> handled.add(event.getShortCode() + ":" + event.getId());
+    private SimpleMeterRegistry meterRegistry;
+    private UrlEventConsumer urlEventConsumer;
+
+    @BeforeEach
+    void setUp() {
+        UrlShortenerProperties properties = new UrlShortenerProperties();
+        properties.getEvents().setProcessingLanes(3);
+        meterRegistry = new SimpleMeterRegistry();
+        when(handlerProvider.orderedStream()).thenAnswer(invocation -> Stream.<UrlCreatedEventHandler>of(event -> handler.handle(event)));
+        urlEventConsumer = new UrlEventConsumer(clickRollupAggregator, handlerProvider, properties, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        urlEventConsumer.shutdown();
+    }
+
+    private static ConsumerRecord<String, UrlCreatedEvent> record(int partition, long offset, String code, long id) {
+        return new ConsumerRecord<>("url-created-events", partition, offset, code,
+                new UrlCreatedEvent(id, code, Instant.now()));
+    }
+
+    @Test
+    void consume_shouldHandleEveryEventKeepingOrderPerCodeThenAcknowledge() {
+        // Arrange
+        List<ConsumerRecord<String, UrlCreatedEvent>> records = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            records.add(record(i % 2, i, "code" + (i % 5), i));
+        }
+        when(consumer.currentLag(any())).thenReturn(OptionalLong.of(7));
+
+        // Act
+        urlEventConsumer.consume(records, acknowledgment, consumer);
+
+        // Assert
+        assertThat(handled).hasSize(30);
+        for (int code = 0; code < 5; code++) {
+            String prefix = "code" + code + ":";
+            List<Long> ids = handled.stream()
+                    .filter(entry -> entry.startsWith(prefix))
+                    .map(entry -> Long.parseLong(entry.substring(prefix.length())))
+                    .toList();
+            assertThat(ids).isSorted().hasSize(6);
+        }
+        verify(acknowledgment).acknowledge();
+        assertThat(meterRegistry.counter("urlshortener.events.consumed").count()).isEqualTo(30);
+        assertThat(meterRegistry.get("urlshortener.events.consumer.lag").tag("partition", "1").gauge().value())
+                .isEqualTo(7);
+        assertThat(meterRegistry.timer("urlshortener.events.batch.duration").count()).isEqualTo(1);
+    }
+
+    @Test
+    void consume_whenLagCannotBeRead_shouldCountItAndStillAcknowledge() {
+        // Arrange
+        when(consumer.currentLag(any())).thenThrow(new IllegalStateException("not assigned"));
+
+        // Act
+        urlEventConsumer.consume(List.of(record(0, 0, "a", 1), record(1, 0, "b", 2)), acknowledgment, consumer);
+
+        // Assert
+        verify(acknowledgment).acknowledge();
+        assertThat(meterRegistry.counter("urlshortener.events.consumer.lag.failures").count()).isEqualTo(2);
+    }
+
+    @Test
+    void consume_whenHandlerFails_shouldReportEarliestFailedRecordAndNotAcknowledge() {
+        // Arrange
+        handler = event -> {
+            if (event.getId() == 4 || event.getId() == 2) {
+                throw new IllegalStateException("boom " + event.getId());
+            }
+            handled.add(event.getShortCode() + ":" + event.getId());
+        };
+        List<ConsumerRecord<String, UrlCreatedEvent>> records = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            records.add(record(0, i, "code" + i, i));
+        }
+
+        // Act + Assert
+        assertThatThrownBy(() -> urlEventConsumer.consume(records, acknowledgment, consumer))
+                .isInstanceOfSatisfying(BatchListenerFailedException.class,
+                        e -> assertThat(e.getIndex()).isEqualTo(2));
+        verify(acknowledgment, never()).acknowledge();
+    }
+
+    @Test
+    void consume_whenFailureInLane_shouldNotHandleLaterEventsForSameCode() {
+        // Arrange
+        handler = event -> {
+            if (event.getId() == 1) {
+                throw new IllegalStateException("boom");
+            }
+            handled.add(event.getShortCode() + ":" + event.getId());
+        };
+        List<ConsumerRecord<String, UrlCreatedEvent>> records = List.of(
+                record(0, 0, "same", 0), record(0, 1, "same", 1), record(0, 2, "same", 2));
+
+        // Act + Assert
+        assertThatThrownBy(() -> urlEventConsumer.consume(records, acknowledgment, consumer))
+                .isInstanceOf(BatchListenerFailedException.class);
+        assertThat(handled).containsExactly("same:0");
+    }
+
+    @Test
+    void onPartitionsRevoked_shouldOnlyFlushClickPartitions() {
+        // Act
+        urlEventConsumer.onPartitionsRevoked(List.of(
+                new TopicPartition("url-created-events", 0), new TopicPartition("click-events", 3)));
+
+        // Assert
+        verify(clickRollupAggregator).revoked(List.of(3));
+    }
+}
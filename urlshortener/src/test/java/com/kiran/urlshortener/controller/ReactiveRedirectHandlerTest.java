@@ -0,0 +1,190 @@
+package com.kiran.urlshortener.controller;
+
+import com.kiran.urlshortener.cache.CacheMetrics;
+import com.kiran.urlshortener.cache.CacheMetrics.Negative;
+import com.kiran.urlshortener.cache.CacheMetrics.Tier;
+import com.kiran.urlshortener.cache.UrlNearCache;
+import com.kiran.urlshortener.config.ReactiveRouterConfig;
+import com.kiran.urlshortener.service.ClickBuffer;
+import com.kiran.urlshortener.service.ClickEventPublisher;
+import com.kiran.urlshortener.service.UrlService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.ReactiveValueOperations;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class ReactiveRedirectHandlerTest {
+
+    @Mock
+    private ReactiveStringRedisTemplate redisTemplate;
+
+    @Mock
+    private ReactiveValueOperations<String, String> valueOperations;
+
+    @Mock
+    private UrlService urlService;
+
+    @Mock
+    private UrlNearCache nearCache;
+
+    @Mock
+    private CacheMetrics cacheMetrics;
+
+    @Mock
+    private ClickBuffer clickBuffer;
+
+    @Mock
+    private ClickEventPublisher clickEventPublisher;
+
+    private WebTestClient client;
+
+    @BeforeEach
+    void setUp() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(redisTemplate.getExpire(anyString())).thenReturn(Mono.empty());
+        ReactiveRedirectHandler handler =
+                new ReactiveRedirectHandler(redisTemplate, urlService, nearCache, cacheMetrics, clickBuffer,
+                        clickEventPublisher);
+        client = WebTestClient.bindToRouterFunction(new ReactiveRouterConfig().redirectRoutes(handler)).build();
+    }
+
+    @Test
+    void redirect_whenInNearCache_shouldNotTouchRedis() {
+        // Arrange
+        when(nearCache.get("abc")).thenReturn("https://example.com");
+
+        // Act & Assert
+        client.get().uri("/api/v1/urls/abc").exchange()
+                .expectStatus().isFound()
+                .expectHeader().valueEquals("Location", "https://example.com");
+
+        verify(clickBuffer).record("abc");
+        verifyNoInteractions(valueOperations, urlService);
+    }
+
+    @Test
+    void redirect_whenInRedis_shouldFillNearCacheWithRemainingTtl() {
+        // Arrange
+        when(valueOperations.get("short:abc")).thenReturn(Mono.just("https://example.com"));
+        when(redisTemplate.getExpire("short:abc")).thenReturn(Mono.just(Duration.ofSeconds(30)));
+
+        // Act & Assert
+        client.get().uri("/api/v1/urls/abc").exchange()
+                .expectStatus().isFound()
+                .expectHeader().valueEquals("Location", "https://example.com");
+
+        verify(cacheMetrics).hit(Tier.REDIS);
+        verify(nearCache).put("abc", "https://example.com", Duration.ofSeconds(30));
+        verify(clickBuffer).record("abc");
+        verify(urlService, never()).reload(anyString());
+        verify(urlService, never()).resolveFromDatabase(anyString());
+    }
+
+    @Test
+    void redirect_whenRedisKeyIsDueForEarlyRefresh_shouldAnswerAndReloadInBackground() {
+        // Arrange
+        when(valueOperations.get("short:abc")).thenReturn(Mono.just("https://example.com"));
+        when(redisTemplate.getExpire("short:abc")).thenReturn(Mono.just(Duration.ofMillis(1)));
+        when(urlService.shouldRefreshEarly(Duration.ofMillis(1))).thenReturn(true);
+
+        // Act & Assert
+        client.get().uri("/api/v1/urls/abc").exchange()
+                .expectStatus().isFound()
+                .expectHeader().valueEquals("Location", "https://example.com");
+
+        verify(cacheMetrics).earlyRefresh();
+        verify(urlService, timeout(5000)).reload("abc");
+        verify(nearCache, never()).put(anyString(), anyString(), any(Duration.class));
+    }
+
+    @Test
+    void redirect_whenRedisKeyHasNoTtl_shouldUseNearCacheMaxTtl() {
+        // Arrange
+        when(valueOperations.get("short:abc")).thenReturn(Mono.just("https://example.com"));
+        when(redisTemplate.getExpire("short:abc")).thenReturn(Mono.just(Duration.ZERO));
+
+        // Act & Assert
+        client.get().uri("/api/v1/urls/abc").exchange()
+                .expectStatus().isFound();
+
+        verify(nearCache).put("abc", "https://example.com", (Duration) null);
+    }
+
+    @Test
+    void redirect_whenNotCached_shouldFallBackToDatabase() {
+        // Arrange
+        when(valueOperations.get("short:abc")).thenReturn(Mono.empty());
+        when(urlService.resolveFromDatabase("abc")).thenReturn("https://example.com");
+
+        // Act & Assert
+        client.get().uri("/api/v1/urls/abc").exchange()
+                .expectStatus().isFound()
+                .expectHeader().valueEquals("Location", "https://example.com");
+
+        verify(cacheMetrics).miss(Tier.REDIS);
+    }
+
+    @Test
+    void redirect_whenRedisIsDown_shouldFallBackToDatabase() {
+        // Arrange
+        when(valueOperations.get("short:abc"))
+                .thenReturn(Mono.error(new RedisConnectionFailureException("down")));
+        when(urlService.resolveFromDatabase("abc")).thenReturn("https://example.com");
+
+        // Act & Assert
+        client.get().uri("/api/v1/urls/abc").exchange()
+                .expectStatus().isFound();
+    }
+
+    @Test
+    void redirect_withUnissuedCode_shouldNotTouchRedis() {
+        // Arrange
+        when(urlService.isUnissued("abc")).thenReturn(true);
+
+        // Act & Assert
+        client.get().uri("/api/v1/urls/abc").exchange()
+                .expectStatus().isNotFound();
+
+        verifyNoInteractions(valueOperations);
+    }
+
+    @Test
+    void redirect_withTombstone_shouldReturnNotFoundWithoutDatabase() {
+        // Arrange
+        when(valueOperations.get("short:abc")).thenReturn(Mono.just(""));
+
+        // Act & Assert
+        client.get().uri("/api/v1/urls/abc").exchange()
+                .expectStatus().isNotFound();
+
+        verify(cacheMetrics).negativeHit(Negative.TOMBSTONE);
+        verify(urlService, never()).resolveFromDatabase(anyString());
+        verifyNoInteractions(clickBuffer);
+    }
+
+    @Test
+    void redirect_whenUnknown_shouldReturnNotFound() {
+        // Arrange
+        when(valueOperations.get("short:missing")).thenReturn(Mono.empty());
+        when(urlService.resolveFromDatabase("missing")).thenReturn(null);
+
+        // Act & Assert
+        client.get().uri("/api/v1/urls/missing").exchange()
+                .expectStatus().isNotFound();
+    }
+}
@@ -0,0 +1,59 @@
+package com.kiran.urlshortener.events;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UrlCreatedEventSerializerTest {
+
+    private final UrlCreatedEventSerializer serializer = new UrlCreatedEventSerializer();
+    private final UrlCreatedEventDeserializer deserializer = new UrlCreatedEventDeserializer();
+
+    @Test
+    void roundTrip_shouldPreserveAllFields() {
+        // Arrange
+        UrlCreatedEvent event = new UrlCreatedEvent(1_234_567L, "bLkA9x1", Instant.ofEpochMilli(1_700_000_000_123L));
+
+        // Act
+        byte[] bytes = serializer.serialize("url-created-events", event);
+        UrlCreatedEvent decoded = deserializer.deserialize("url-created-events", bytes);
+
+        // Assert
+        assertThat(bytes).hasSize(18);
+        assertThat(decoded.getId()).isEqualTo(1_234_567L);
+        assertThat(decoded.getShortCode()).isEqualTo("bLkA9x1");
+        assertThat(decoded.getCreatedAt()).isEqualTo(Instant.ofEpochMilli(1_700_000_000_123L));
+    }
+
+    @Test
+    void roundTrip_shouldPreserveNullsAndExtremes() {
+        UrlCreatedEvent empty = deserializer.deserialize("t", serializer.serialize("t", new UrlCreatedEvent()));
+        assertThat(empty.getId()).isNull();
+        assertThat(empty.getShortCode()).isNull();
+        assertThat(empty.getCreatedAt()).isNull();
+
+        UrlCreatedEvent large = deserializer.deserialize("t",
+                serializer.serialize("t", new UrlCreatedEvent(Long.MAX_VALUE - 1, "", Instant.EPOCH)));
+        assertThat(large.getId()).isEqualTo(Long.MAX_VALUE - 1);
+        assertThat(large.getShortCode()).isEmpty();
+        assertThat(large.getCreatedAt()).isEqualTo(Instant.EPOCH);
+    }
+
+    @Test
+    void deserialize_shouldRejectUnknownVersionAndTruncatedInput() {
+        byte[] bytes = serializer.serialize("t", new UrlCreatedEvent(1L, "abc", Instant.now()));
+
+        byte[] wrongVersion = bytes.clone();
+        wrongVersion[0] = 2;
+        assertThatThrownBy(() -> deserializer.deserialize("t", wrongVersion))
+                .isInstanceOf(SerializationException.class);
+        assertThatThrownBy(() -> deserializer.deserialize("t", Arrays.copyOf(bytes, bytes.length - 1)))
+                .isInstanceOf(SerializationException.class);
+        assertThat(deserializer.deserialize("t", null)).isNull();
+    }
+}
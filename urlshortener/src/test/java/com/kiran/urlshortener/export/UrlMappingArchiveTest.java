@@ -0,0 +1,86 @@
+package com.kiran.urlshortener.export;
+
+import com.kiran.urlshortener.export.UrlMappingExporter.ExportRow;
+import com.kiran.urlshortener.service.ShortCodeGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UrlMappingArchiveTest {
+
+    private static final LocalDateTime CREATED = LocalDateTime.of(2026, 1, 2, 3, 4, 5);
+
+    private final ShortCodeGenerator codes = new ShortCodeGenerator();
+
+    @Test
+    void read_shouldReturnWhatWasWritten() throws IOException {
+        // Arrange
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (UrlMappingArchive.Writer writer = UrlMappingArchive.writer(out)) {
+            writer.write(1_000, "https://example.com/a", CREATED.plusDays(30), CREATED, 42, true);
+            writer.write(1_007, "https://example.com/ü?q=1", null, CREATED.plusHours(1), 0, false);
+        }
+
+        // Act
+        List<ExportRow> rows = new ArrayList<>();
+        long count = UrlMappingArchive.read(new ByteArrayInputStream(out.toByteArray()), codes, rows::add);
+
+        // Assert
+        assertThat(count).isEqualTo(2);
+        assertThat(rows).containsExactly(
+                new ExportRow(1_000, codes.encode(1_000L), "https://example.com/a", CREATED.plusDays(30), CREATED,
+                        42, true),
+                new ExportRow(1_007, codes.encode(1_007L), "https://example.com/ü?q=1", null,
+                        CREATED.plusHours(1), 0, false));
+    }
+
+    @Test
+    void write_shouldTakeFewBytesPerRowBeyondTheUrl() throws IOException {
+        // Arrange
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        UrlMappingArchive.Writer writer = UrlMappingArchive.writer(out);
+
+        // Act
+        for (int i = 1; i <= 1_000; i++) {
+            writer.write(5_000_000 + i, "https://example.com/" + i, CREATED.plusDays(7), CREATED, i, true);
+        }
+        writer.close();
+
+        // Assert
+        assertThat(writer.rows()).isEqualTo(1_000);
+        assertThat(out.size()).isLessThan(1_000 * 10);
+    }
+
+    @Test
+    void write_withDescendingIds_shouldFail() throws IOException {
+        // Arrange
+        UrlMappingArchive.Writer writer = UrlMappingArchive.writer(new ByteArrayOutputStream());
+        writer.write(10, "https://example.com", null, CREATED, 0, true);
+
+        // Act & Assert
+        assertThatThrownBy(() -> writer.write(10, "https://example.com", null, CREATED, 0, true))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void read_withOtherContent_shouldFail() throws IOException {
+        // Arrange
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write("id,short_code".getBytes());
+        }
+
+        // Act & Assert
+        assertThatThrownBy(() -> UrlMappingArchive.read(new ByteArrayInputStream(out.toByteArray()), codes,
+                row -> { })).isInstanceOf(IOException.class).hasMessageContaining("Not a url_mapping archive");
+    }
+}
@@ -0,0 +1,153 @@
+package com.kiran.urlshortener.export;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import org.mockito.Mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.kiran.urlshortener.config.UrlShortenerProperties;
+import com.kiran.urlshortener.export.UrlMappingExporter.ExportRow;
+import com.kiran.urlshortener.repository.ShardMap;
+
+@ExtendWith(MockitoExtension.class)
+class UrlMappingExporterTest {
+
+    private static final LocalDateTime CREATED = LocalDateTime.of(2026, 1, 2, 3, 4, 5);
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private UrlMappingExporter exporter;
+
+    @BeforeEach
+    void setUp() {
+        UrlShortenerProperties properties = new UrlShortenerProperties();
+        properties.getExport().setPageSize(2);
+        ObjectMapper objectMapper = new ObjectMapper()
+                .findAndRegisterModules()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        exporter = new UrlMappingExporter(ShardMap.single(jdbcTemplate), objectMapper, properties);
+    }
+
+    private static ExportRow row(long id, String longUrl) {
+        return new ExportRow(id, "c" + id, longUrl, null, CREATED, id * 10, true);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void givenPages(List<ExportRow>... pages) {
+        Iterator<List<ExportRow>> iterator = Arrays.asList(pages).iterator();
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), any(Object[].class)))
+                .thenAnswer(invocation -> iterator.hasNext() ? iterator.next() : List.of());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void export_shouldWalkPagesByLastId() throws Exception {
+        // Arrange
+        givenPages(List.of(row(1, "https://a"), row(5, "https://b")), List.of(row(9, "https://c")), List.of());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // Act
+        long rows = exporter.export(out, ExportFormat.NDJSON, null, false);
+
+        // Assert
+        assertThat(rows).isEqualTo(3);
+        assertThat(out.toString(StandardCharsets.UTF_8).lines()).hasSize(3);
+        verify(jdbcTemplate).query(anyString(), any(RowMapper.class), eq(Long.MIN_VALUE), eq(2));
+        verify(jdbcTemplate).query(anyString(), any(RowMapper.class), eq(5L), eq(2));
+        verify(jdbcTemplate).query(anyString(), any(RowMapper.class), eq(9L), eq(2));
+    }
+
+    @Test
+    void export_asNdjson_shouldWriteOneJsonObjectPerLine() throws Exception {
+        // Arrange
+        givenPages(List.of(row(1, "https://a")), List.of());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // Act
+        exporter.export(out, ExportFormat.NDJSON, null, false);
+
+        // Assert
+        assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo(
+                "{\"id\":1,\"shortCode\":\"c1\",\"longUrl\":\"https://a\",\"expiryAt\":null,"
+                        + "\"createdAt\":\"2026-01-02T03:04:05\",\"clickCount\":10,\"active\":true}\n");
+    }
+
+    @Test
+    void export_asCsv_shouldWriteHeaderAndEscapeValues() throws Exception {
+        // Arrange
+        givenPages(List.of(row(1, "https://a/?q=\"x\",y")), List.of());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // Act
+        exporter.export(out, ExportFormat.CSV, null, false);
+
+        // Assert
+        assertThat(out.toString(StandardCharsets.UTF_8).lines()).containsExactly(
+                UrlMappingExporter.CSV_HEADER,
+                "1,c1,\"https://a/?q=\"\"x\"\",y\",,2026-01-02T03:04:05,10,true");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void export_withSince_shouldFilterOnCreatedAt() throws Exception {
+        // Arrange
+        givenPages(List.of());
+        LocalDateTime since = LocalDateTime.of(2026, 1, 1, 0, 0);
+
+        // Act
+        exporter.export(new ByteArrayOutputStream(), ExportFormat.NDJSON, since, false);
+
+        // Assert
+        verify(jdbcTemplate).query(contains("created_at >= ?"), any(RowMapper.class),
+                eq(Long.MIN_VALUE), eq(Timestamp.valueOf(since)), eq(2));
+    }
+
+    @Test
+    void export_withGzip_shouldProduceValidGzipStream() throws Exception {
+        // Arrange
+        givenPages(List.of(row(1, "https://a")), List.of());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // Act
+        exporter.export(out, ExportFormat.CSV, null, true);
+
+        // Assert
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            String content = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            assertThat(content).startsWith(UrlMappingExporter.CSV_HEADER);
+        }
+    }
+
+    @Test
+    void format_shouldRejectUnknownValues() {
+        // Act & Assert
+        assertThat(ExportFormat.from("CSV")).isEqualTo(ExportFormat.CSV);
+        assertThat(ExportFormat.from(null)).isEqualTo(ExportFormat.NDJSON);
+        assertThatThrownBy(() -> ExportFormat.from("xml"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
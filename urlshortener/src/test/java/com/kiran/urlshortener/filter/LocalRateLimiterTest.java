@@ -0,0 +1,207 @@
+package com.kiran.urlshortener.filter;
+
+import com.kiran.urlshortener.cache.CacheMetrics;
+import com.kiran.urlshortener.cache.RedisCircuitBreaker;
+import com.kiran.urlshortener.config.UrlShortenerProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LocalRateLimiterTest {
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    private final AtomicLong now = new AtomicLong(600_000);
+    private UrlShortenerProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+    private RedisCircuitBreaker redisBreaker;
+    private LocalRateLimiter rateLimiter;
+
+    @BeforeEach
+    void setUp() {
+        properties = new UrlShortenerProperties();
+        properties.getRateLimit().setWindow(Duration.ofSeconds(60));
+        meterRegistry = new SimpleMeterRegistry();
+        redisBreaker = new RedisCircuitBreaker(redisTemplate, new CacheMetrics(meterRegistry), properties,
+                meterRegistry);
+        rateLimiter = new LocalRateLimiter(redisTemplate, properties, meterRegistry, redisBreaker, now::get);
+    }
+
+    private int acquired(UrlShortenerProperties.Route route, String ip, String apiKey, int attempts) {
+        int allowed = 0;
+        for (int i = 0; i < attempts; i++) {
+            if (rateLimiter.tryAcquire(route, ip, apiKey)) {
+                allowed++;
+            }
+        }
+        return allowed;
+    }
+
+    @Test
+    void route_shouldReturnFirstMatchingRoute() {
+        // Act & Assert
+        assertThat(rateLimiter.route("POST", "/api/v1/urls/shorten").getName()).isEqualTo("shorten");
+        assertThat(rateLimiter.route("POST", "/api/v1/urls/shorten/bulk").getName()).isEqualTo("bulk");
+        assertThat(rateLimiter.route("GET", "/api/v1/urls/abc").getName()).isEqualTo("redirect");
+        assertThat(rateLimiter.route("DELETE", "/api/v1/urls/abc")).isNull();
+        assertThat(rateLimiter.route("GET", "/api/v1/urls/abc/clicks")).isNull();
+        assertThat(rateLimiter.route("GET", "/api/v1/export/urls")).isNull();
+        assertThat(rateLimiter.route("GET", "/actuator/health/readiness")).isNull();
+    }
+
+    @Test
+    void tryAcquire_shouldAllowUpToLimitWithoutTouchingRedis() {
+        // Arrange
+        UrlShortenerProperties.Route route = rateLimiter.route("GET", "/api/v1/urls/abc");
+
+        // Act
+        int allowed = acquired(route, "10.0.0.1", null, 15);
+
+        // Assert
+        assertThat(allowed).isEqualTo(10);
+        assertThat(acquired(route, "10.0.0.2", null, 1)).isEqualTo(1);
+        assertThat(meterRegistry.counter("urlshortener.ratelimit.rejected", "route", "redirect").count())
+                .isEqualTo(5);
+        verifyNoInteractions(redisTemplate);
+    }
+
+    @Test
+    void tryAcquire_shouldCountRoutesSeparately() {
+        // Arrange
+        UrlShortenerProperties.Route redirect = rateLimiter.route("GET", "/api/v1/urls/abc");
+        UrlShortenerProperties.Route shorten = rateLimiter.route("POST", "/api/v1/urls/shorten");
+        acquired(redirect, "10.0.0.1", null, 10);
+
+        // Act & Assert
+        assertThat(rateLimiter.tryAcquire(shorten, "10.0.0.1", null)).isTrue();
+    }
+
+    @Test
+    void tryAcquire_withKnownApiKey_shouldUseItsLimit() {
+        // Arrange
+        UrlShortenerProperties.ApiKey apiKey = new UrlShortenerProperties.ApiKey();
+        apiKey.getLimits().put("redirect", 50);
+        properties.getRateLimit().getApiKeys().put("partner-key", apiKey);
+        UrlShortenerProperties.Route route = rateLimiter.route("GET", "/api/v1/urls/abc");
+
+        // Act & Assert
+        assertThat(acquired(route, "10.0.0.1", "partner-key", 60)).isEqualTo(50);
+        assertThat(acquired(route, "10.0.0.1", "unknown-key", 20)).isEqualTo(10);
+    }
+
+    @Test
+    void tryAcquire_shouldWeightPreviousWindowBySlidingOverlap() {
+        // Arrange
+        UrlShortenerProperties.Route route = rateLimiter.route("GET", "/api/v1/urls/abc");
+        acquired(route, "10.0.0.1", null, 10);
+
+        // Act: halfway through the next window, half of the previous 10 still count
+        now.addAndGet(90_000);
+        int allowed = acquired(route, "10.0.0.1", null, 10);
+
+        // Assert
+        assertThat(allowed).isEqualTo(5);
+    }
+
+    @Test
+    void acquire_forPerItemRoute_shouldGrantWhatIsLeftOfTheLimit() {
+        // Arrange
+        UrlShortenerProperties.Route bulk = rateLimiter.route("POST", "/api/v1/urls/shorten/bulk");
+
+        // Act & Assert
+        assertThat(rateLimiter.acquire(bulk, "10.0.0.1", null, 600)).isEqualTo(600);
+        assertThat(rateLimiter.acquire(bulk, "10.0.0.1", null, 600)).isEqualTo(400);
+        assertThat(rateLimiter.acquire(bulk, "10.0.0.1", null, 1)).isZero();
+        assertThat(meterRegistry.counter("urlshortener.ratelimit.rejected", "route", "bulk").count())
+                .isEqualTo(201);
+    }
+
+    @Test
+    void tryAcquire_afterIdleWindow_shouldStartFresh() {
+        // Arrange
+        UrlShortenerProperties.Route route = rateLimiter.route("GET", "/api/v1/urls/abc");
+        acquired(route, "10.0.0.1", null, 10);
+
+        // Act
+        now.addAndGet(180_000);
+
+        // Assert
+        assertThat(acquired(route, "10.0.0.1", null, 10)).isEqualTo(10);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void sync_shouldPushDeltasAndApplyOtherNodesCounts() {
+        // Arrange
+        UrlShortenerProperties.Route route = rateLimiter.route("GET", "/api/v1/urls/abc");
+        acquired(route, "10.0.0.1", null, 3);
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class)))
+                .thenReturn(List.of(9L));
+
+        // Act
+        rateLimiter.sync();
+
+        // Assert: 3 local + 6 from other nodes leaves room for one more
+        ArgumentCaptor<List<String>> keys = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<Object[]> args = ArgumentCaptor.forClass(Object[].class);
+        verify(redisTemplate).execute(any(RedisScript.class), keys.capture(), args.capture());
+        assertThat(keys.getValue()).containsExactly("rate:redirect:ip:10.0.0.1:10");
+        assertThat(args.getValue()).containsExactly("3", "120000");
+        assertThat(acquired(route, "10.0.0.1", null, 5)).isEqualTo(1);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void sync_withNothingNew_shouldNotCallRedis() {
+        // Arrange
+        UrlShortenerProperties.Route route = rateLimiter.route("GET", "/api/v1/urls/abc");
+        acquired(route, "10.0.0.1", null, 1);
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class)))
+                .thenReturn(List.of(1L));
+        rateLimiter.sync();
+
+        // Act
+        rateLimiter.sync();
+
+        // Assert
+        verify(redisTemplate, times(1)).execute(any(RedisScript.class), anyList(), any(Object[].class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void sync_whenRedisFails_shouldResendCountsNextTime() {
+        // Arrange
+        UrlShortenerProperties.Route route = rateLimiter.route("GET", "/api/v1/urls/abc");
+        acquired(route, "10.0.0.1", null, 2);
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class)))
+                .thenThrow(new RedisConnectionFailureException("down"))
+                .thenReturn(List.of(3L));
+        rateLimiter.sync();
+        acquired(route, "10.0.0.1", null, 1);
+
+        // Act
+        rateLimiter.sync();
+
+        // Assert
+        ArgumentCaptor<Object[]> args = ArgumentCaptor.forClass(Object[].class);
+        verify(redisTemplate, times(2)).execute(any(RedisScript.class), anyList(), args.capture());
+        assertThat(args.getAllValues().get(1)).containsExactly("3", "120000");
+    }
+}
@@ -0,0 +1,81 @@
+package com.kiran.urlshortener.filter;
+
+import com.kiran.urlshortener.cache.CacheMetrics;
+import com.kiran.urlshortener.cache.RedisCircuitBreaker;
+import com.kiran.urlshortener.config.UrlShortenerProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.List;
+import java.util.function.IntUnaryOperator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(MockitoExtension.class)
+class RateLimitFilterTest {
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    private RateLimitFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        UrlShortenerProperties properties = new UrlShortenerProperties();
+        properties.getRateLimit().setRoutes(List.of(
+                new UrlShortenerProperties.Route("bulk", "POST", "/bulk", 5, true),
+                new UrlShortenerProperties.Route("any", "GET", "/**", 1)));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        RedisCircuitBreaker redisBreaker = new RedisCircuitBreaker(redisTemplate, new CacheMetrics(meterRegistry),
+                properties, meterRegistry);
+        filter = new RateLimitFilter(new LocalRateLimiter(redisTemplate, properties, meterRegistry, redisBreaker),
+                properties);
+    }
+
+    private int status(String uri) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+        request.setRemoteAddr("10.0.0.1");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response.getStatus();
+    }
+
+    @Test
+    void doFilter_overLimit_shouldReject() throws Exception {
+        // Act & Assert
+        assertThat(status("/api/v1/urls/abc")).isEqualTo(200);
+        assertThat(status("/api/v1/urls/abc")).isEqualTo(429);
+    }
+
+    @Test
+    void doFilter_forActuator_shouldNeverLimit() throws Exception {
+        // Act & Assert
+        for (int i = 0; i < 5; i++) {
+            assertThat(status("/actuator/health/readiness")).isEqualTo(200);
+            assertThat(status("/actuator/prometheus")).isEqualTo(200);
+        }
+    }
+
+    @Test
+    void doFilter_forPerItemRoute_shouldHandItemPermitsToHandler() throws Exception {
+        // Arrange
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/bulk");
+        request.setRemoteAddr("10.0.0.1");
+
+        // Act
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+
+        // Assert: the permit taken by the filter pays for the first item
+        IntUnaryOperator permits = (IntUnaryOperator) request.getAttribute(RateLimitFilter.ITEM_PERMITS);
+        assertThat(permits.applyAsInt(3)).isEqualTo(3);
+        assertThat(permits.applyAsInt(3)).isEqualTo(2);
+    }
+}
@@ -0,0 +1,141 @@
+package com.kiran.urlshortener.filter;
+
+import com.kiran.urlshortener.cache.CacheMetrics;
+import com.kiran.urlshortener.cache.CacheMetrics.Tier;
+import com.kiran.urlshortener.cache.RedirectResponseCache;
+import com.kiran.urlshortener.cache.UrlNearCache;
+import com.kiran.urlshortener.config.UrlShortenerProperties;
+import com.kiran.urlshortener.service.ClickBuffer;
+import com.kiran.urlshortener.service.ClickEventPublisher;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RedirectResponseFilterTest {
+
+    @Mock
+    private ClickBuffer clickBuffer;
+
+    @Mock
+    private ClickEventPublisher clickEventPublisher;
+
+    private UrlNearCache nearCache;
+    private RedirectResponseCache responseCache;
+    private CacheMetrics cacheMetrics;
+    private RedirectResponseFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        UrlShortenerProperties properties = new UrlShortenerProperties();
+        nearCache = new UrlNearCache(properties);
+        responseCache = new RedirectResponseCache(properties);
+        cacheMetrics = new CacheMetrics(new SimpleMeterRegistry());
+        filter = new RedirectResponseFilter(responseCache, nearCache, cacheMetrics, clickBuffer, clickEventPublisher);
+    }
+
+    // Stands in for UrlController: resolves through the near cache like UrlService does.
+    private MockFilterChain controller(String location) {
+        return new MockFilterChain() {
+            @Override
+            public void doFilter(ServletRequest request, ServletResponse response) {
+                HttpServletResponse httpResponse = (HttpServletResponse) response;
+                if (location == null) {
+                    httpResponse.setStatus(404);
+                    return;
+                }
+                nearCache.put("abc", location, Duration.ofSeconds(10));
+                httpResponse.setStatus(302);
+                httpResponse.setHeader("Location", location);
+            }
+        };
+    }
+
+    @Test
+    void doFilter_onMiss_shouldDelegateAndCacheTheRedirect() throws Exception {
+        // Arrange
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // Act
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/v1/urls/abc"), response,
+                controller("https://example.com"));
+
+        // Assert
+        assertThat(response.getStatus()).isEqualTo(302);
+        assertThat(responseCache.get("abc").location()).isEqualTo("https://example.com");
+        assertThat(cacheMetrics.missCount(Tier.RESPONSE)).isEqualTo(1);
+        verifyNoInteractions(clickBuffer);
+    }
+
+    @Test
+    void doFilter_onHit_shouldWriteRedirectWithoutCallingController() throws Exception {
+        // Arrange
+        responseCache.put("abc", "https://example.com", Duration.ofSeconds(10));
+        MockFilterChain chain = new MockFilterChain();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // Act
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/v1/urls/abc"), response, chain);
+
+        // Assert
+        assertThat(chain.getRequest()).isNull();
+        assertThat(response.getStatus()).isEqualTo(302);
+        assertThat(response.getHeader("Location")).isEqualTo("https://example.com");
+        assertThat(response.getContentLength()).isZero();
+        assertThat(cacheMetrics.hitCount(Tier.RESPONSE)).isEqualTo(1);
+        verify(clickBuffer).record("abc");
+        verify(clickEventPublisher).record(eq("abc"), any());
+    }
+
+    @Test
+    void doFilter_onNotFound_shouldNotCache() throws Exception {
+        // Act
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/v1/urls/abc"), new MockHttpServletResponse(),
+                controller(null));
+
+        // Assert
+        assertThat(responseCache.get("abc")).isNull();
+    }
+
+    @Test
+    void doFilter_withNonRedirectRequest_shouldPassThrough() throws Exception {
+        // Arrange
+        responseCache.put("shorten", "https://example.com", Duration.ofSeconds(10));
+        MockFilterChain chain = new MockFilterChain();
+
+        // Act
+        filter.doFilter(new MockHttpServletRequest("POST", "/api/v1/urls/shorten"), new MockHttpServletResponse(),
+                chain);
+
+        // Assert
+        assertThat(chain.getRequest()).isNotNull();
+        assertThat(cacheMetrics.hitCount(Tier.RESPONSE)).isZero();
+        assertThat(cacheMetrics.missCount(Tier.RESPONSE)).isZero();
+    }
+
+    @Test
+    void shortCode_shouldOnlyMatchSingleSegmentRedirects() {
+        // Act & Assert
+        assertThat(RedirectResponseFilter.shortCode(new MockHttpServletRequest("GET", "/api/v1/urls/abc")))
+                .isEqualTo("abc");
+        assertThat(RedirectResponseFilter.shortCode(new MockHttpServletRequest("GET", "/api/v1/urls/"))).isNull();
+        assertThat(RedirectResponseFilter.shortCode(new MockHttpServletRequest("GET", "/api/v1/urls/a/b")))
+                .isNull();
+        assertThat(RedirectResponseFilter.shortCode(new MockHttpServletRequest("GET", "/api/v1/export/urls")))
+                .isNull();
+    }
+}
@@ -0,0 +1,80 @@
+package com.kiran.urlshortener.repository;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import org.mockito.Mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.kiran.urlshortener.repository.ClickCountRepository.PartialFlushException;
+import com.kiran.urlshortener.repository.ShardMap.Shard;
+
+@ExtendWith(MockitoExtension.class)
+class ClickCountRepositoryTest {
+
+    @Mock
+    private ShardMap shardMap;
+
+    @Mock
+    private JdbcTemplate first;
+
+    @Mock
+    private JdbcTemplate second;
+
+    private ClickCountRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        repository = new ClickCountRepository(shardMap);
+        when(shardMap.ownerOfCode("a")).thenReturn(new Shard("shard-1", first));
+        when(shardMap.ownerOfCode("b")).thenReturn(new Shard("shard-2", second));
+    }
+
+    private static Map<String, Long> counts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        counts.put("a", 3L);
+        counts.put("b", 4L);
+        return counts;
+    }
+
+    @Test
+    void addClickCounts_shouldUpdateEachShardOnce() {
+        // Arrange
+        when(first.update(anyString(), eq("a"), eq(3L))).thenReturn(1);
+        when(second.update(anyString(), eq("b"), eq(4L))).thenReturn(1);
+
+        // Act
+        int updated = repository.addClickCounts(counts());
+
+        // Assert
+        assertThat(updated).isEqualTo(2);
+    }
+
+    @Test
+    void addClickCounts_whenSecondShardFails_shouldReportOnlyItsCounts() {
+        // Arrange
+        when(first.update(anyString(), eq("a"), eq(3L))).thenReturn(1);
+        when(second.update(anyString(), eq("b"), eq(4L))).thenThrow(new QueryTimeoutException("shard-2 down"));
+
+        // Act & Assert
+        assertThatThrownBy(() -> repository.addClickCounts(counts()))
+                .isInstanceOfSatisfying(PartialFlushException.class,
+                        e -> assertThat(e.unapplied()).containsExactly(Map.entry("b", 4L)))
+                .hasCauseInstanceOf(QueryTimeoutException.class);
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        verify(first).update(sql.capture(), eq("a"), eq(3L));
+        assertThat(sql.getValue()).startsWith("UPDATE url_mapping");
+    }
+}
@@ -0,0 +1,207 @@
+package com.kiran.urlshortener.repository;
+
+import com.kiran.urlshortener.repository.ShardMap.Route;
+import com.kiran.urlshortener.repository.ShardMap.Shard;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ShardMapTest {
+
+    @Mock
+    private JdbcTemplate directory;
+
+    @Mock
+    private JdbcTemplate first;
+
+    @Mock
+    private JdbcTemplate second;
+
+    private ShardMap shardMap;
+
+    @BeforeEach
+    void setUp() {
+        shardMap = new ShardMap(directory, List.of(new Shard("shard-1", first), new Shard("shard-2", second)), 4,
+                code -> code.length());
+    }
+
+    // Answers the shard_bucket query with {bucket, owner, target} rows.
+    private void givenBuckets(String[]... rows) throws SQLException {
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (String[] row : rows) {
+                ResultSet rs = mock(ResultSet.class);
+                doReturn(Integer.parseInt(row[0])).when(rs).getInt("bucket");
+                doReturn(row[1]).when(rs).getString("owner");
+                doReturn(row[2]).when(rs).getString("target");
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(directory).query(startsWith("SELECT bucket"), any(RowCallbackHandler.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void load_shouldCreateTablesAndAssignBucketsRoundRobin() throws SQLException {
+        // Arrange
+        givenBuckets(new String[] { "0", "shard-1", null }, new String[] { "1", "shard-2", null },
+                new String[] { "2", "shard-1", null }, new String[] { "3", "shard-2", null });
+
+        // Act
+        shardMap.load();
+
+        // Assert
+        ArgumentCaptor<List<Object[]>> assigned = ArgumentCaptor.forClass(List.class);
+        verify(directory).batchUpdate(contains("ON CONFLICT (bucket) DO NOTHING"), assigned.capture());
+        assertThat(assigned.getValue()).extracting(args -> args[1])
+                .containsExactly("shard-1", "shard-2", "shard-1", "shard-2");
+        verify(first).execute(startsWith("CREATE TABLE IF NOT EXISTS url_mapping ("));
+        verify(second).execute(startsWith("CREATE TABLE IF NOT EXISTS url_digest"));
+        verify(second).execute(startsWith("CREATE TABLE IF NOT EXISTS "
+                + UrlMappingPartitions.name(YearMonth.now().plusMonths(1)) + " PARTITION OF url_mapping"));
+        assertThat(shardMap.route(1).owner().name()).isEqualTo("shard-2");
+    }
+
+    @Test
+    void route_forMovingBucket_shouldWriteOwnerThenTarget() throws SQLException {
+        // Arrange
+        givenBuckets(new String[] { "0", "shard-1", "shard-2" }, new String[] { "1", "shard-2", null },
+                new String[] { "2", "shard-1", null }, new String[] { "3", "shard-2", null });
+
+        // Act
+        Route moving = shardMap.route(0);
+        Route settled = shardMap.route(1);
+
+        // Assert
+        assertThat(moving.writers()).extracting(Shard::name).containsExactly("shard-1", "shard-2");
+        assertThat(settled.writers()).extracting(Shard::name).containsExactly("shard-2");
+        verify(directory, times(1)).query(startsWith("SELECT bucket"), any(RowCallbackHandler.class));
+    }
+
+    @Test
+    void load_withUnknownShardInMap_shouldFail() throws SQLException {
+        // Arrange
+        givenBuckets(new String[] { "0", "shard-9", null });
+
+        // Act & Assert
+        assertThatThrownBy(() -> shardMap.load()).hasMessageContaining("Unknown shard shard-9");
+    }
+
+    @Test
+    void refresh_whenDirectoryFails_shouldKeepPreviousMap() throws SQLException {
+        // Arrange
+        givenBuckets(new String[] { "0", "shard-1", null }, new String[] { "1", "shard-2", null },
+                new String[] { "2", "shard-1", null }, new String[] { "3", "shard-2", null });
+        shardMap.load();
+        doThrow(new IllegalStateException("directory down"))
+                .when(directory).query(startsWith("SELECT bucket"), any(RowCallbackHandler.class));
+
+        // Act
+        shardMap.refresh();
+
+        // Assert
+        assertThat(shardMap.route(3).owner().name()).isEqualTo("shard-2");
+    }
+
+    @Test
+    void load_shouldCreateNextMonthsPartitionOnce() throws SQLException {
+        // Arrange
+        givenBuckets(new String[] { "0", "shard-1", null }, new String[] { "1", "shard-2", null },
+                new String[] { "2", "shard-1", null }, new String[] { "3", "shard-2", null });
+
+        // Act
+        shardMap.load();
+        shardMap.refresh();
+
+        // Assert
+        verify(first, times(2)).execute(contains("PARTITION OF url_mapping"));
+        verify(first).execute(startsWith("CREATE TABLE IF NOT EXISTS " + UrlMappingPartitions.name(YearMonth.now())));
+    }
+
+    @Test
+    void load_afterForgetPartitions_shouldCreatePartitionsAgain() throws SQLException {
+        // Arrange
+        givenBuckets(new String[] { "0", "shard-1", null }, new String[] { "1", "shard-2", null },
+                new String[] { "2", "shard-1", null }, new String[] { "3", "shard-2", null });
+        shardMap.load();
+
+        // Act
+        shardMap.forgetPartitions();
+        shardMap.load();
+
+        // Assert
+        verify(first, times(4)).execute(contains("PARTITION OF url_mapping"));
+    }
+
+    @Test
+    void withMaintenanceLock_whenHeldElsewhere_shouldNotRunTask() throws SQLException {
+        // Arrange
+        Connection connection = mock(Connection.class);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        ResultSet rs = mock(ResultSet.class);
+        when(connection.prepareStatement("SELECT pg_try_advisory_lock(?)")).thenReturn(statement);
+        when(statement.executeQuery()).thenReturn(rs);
+        when(rs.next()).thenReturn(true);
+        when(rs.getBoolean(1)).thenReturn(false);
+        when(directory.execute(any(ConnectionCallback.class)))
+                .thenAnswer(invocation -> invocation.<ConnectionCallback<?>>getArgument(0).doInConnection(connection));
+
+        // Act
+        Object result = shardMap.withMaintenanceLock(() -> {
+            throw new AssertionError("task must not run");
+        });
+
+        // Assert
+        assertThat(result).isNull();
+        verify(connection, never()).prepareStatement("SELECT pg_advisory_unlock(?)");
+    }
+
+    @Test
+    void bucketOf_shouldSpreadConsecutiveIdsEvenly() {
+        // Arrange
+        ShardMap wide = new ShardMap(directory, List.of(new Shard("shard-1", first)), 64, code -> 0);
+        int[] counts = new int[64];
+
+        // Act
+        LongStream.range(1_000_000, 1_064_000).forEach(id -> counts[wide.bucketOf(id)]++);
+
+        // Assert
+        for (int count : counts) {
+            assertThat(count).isBetween(800, 1200);
+        }
+    }
+
+    @Test
+    void single_shouldRouteEverythingToPrimaryWithoutDirectory() {
+        // Arrange
+        ShardMap single = ShardMap.single(first);
+
+        // Act & Assert
+        assertThat(single.isSharded()).isFalse();
+        assertThat(single.byId(42).owner().jdbcTemplate()).isSameAs(first);
+        assertThat(single.byDigest(new byte[32]).target()).isNull();
+        assertThat(single.ownerOfCode("abc").jdbcTemplate()).isSameAs(first);
+        single.refresh();
+        verifyNoInteractions(first);
+    }
+}
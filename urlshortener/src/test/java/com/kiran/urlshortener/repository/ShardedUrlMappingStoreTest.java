@@ -0,0 +1,166 @@
+package com.kiran.urlshortener.repository;
+
+import com.kiran.urlshortener.entity.UrlMapping;
+import com.kiran.urlshortener.repository.ShardMap.Route;
+import com.kiran.urlshortener.repository.ShardMap.Shard;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ShardedUrlMappingStoreTest {
+
+    @Mock
+    private ShardMap shardMap;
+
+    @Mock
+    private JdbcTemplate owner;
+
+    @Mock
+    private JdbcTemplate target;
+
+    private Shard ownerShard;
+    private Shard targetShard;
+    private ShardedUrlMappingStore store;
+
+    @BeforeEach
+    void setUp() {
+        ownerShard = new Shard("shard-1", owner);
+        targetShard = new Shard("shard-2", target);
+        store = new ShardedUrlMappingStore(shardMap);
+    }
+
+    private UrlMapping newMapping(long id) {
+        UrlMapping mapping = new UrlMapping();
+        mapping.setId(id);
+        mapping.setShortCode("code" + id);
+        mapping.setLongUrl("https://example.com/" + id);
+        mapping.setLongUrlHash(new byte[] { (byte) id });
+        mapping.setActive(true);
+        return mapping;
+    }
+
+    @Test
+    void save_forMovingBucket_shouldWriteOwnerBeforeTarget() {
+        // Arrange
+        UrlMapping mapping = newMapping(7);
+        Route moving = new Route(ownerShard, targetShard);
+        when(shardMap.byId(7L)).thenReturn(moving);
+        when(shardMap.byDigest(any(byte[].class))).thenReturn(new Route(ownerShard, null));
+        lenient().when(owner.batchUpdate(startsWith("INSERT INTO url_digest"), anyList()))
+                .thenReturn(new int[] { 1 });
+
+        // Act
+        store.save(mapping);
+
+        // Assert
+        InOrder order = inOrder(owner, target);
+        order.verify(owner).batchUpdate(startsWith("INSERT INTO url_mapping"), anyList());
+        order.verify(target).batchUpdate(contains("ON CONFLICT (id, created_at) DO NOTHING"), anyList());
+        order.verify(owner).batchUpdate(startsWith("INSERT INTO url_digest"), anyList());
+        assertThat(mapping.isNew()).isFalse();
+        assertThat(mapping.getCreatedAt()).isNotNull();
+    }
+
+    @Test
+    void saveAll_whenDigestAlreadyClaimed_shouldRemoveWholeBatchAndThrow() {
+        // Arrange
+        UrlMapping won = newMapping(1);
+        UrlMapping lost = newMapping(2);
+        when(shardMap.byId(anyLong())).thenReturn(new Route(ownerShard, null));
+        when(shardMap.byDigest(any(byte[].class))).thenReturn(new Route(ownerShard, null));
+        lenient().when(owner.batchUpdate(startsWith("INSERT INTO url_digest"), anyList()))
+                .thenReturn(new int[] { 1, 0 });
+
+        // Act & Assert
+        assertThatThrownBy(() -> store.saveAll(List.of(won, lost))).isInstanceOf(DuplicateKeyException.class);
+        verify(owner).batchUpdate(eq("DELETE FROM url_mapping WHERE id = ?"),
+                argThat((List<Object[]> args) -> args.size() == 2 && args.get(0)[0].equals(1L)
+                        && args.get(1)[0].equals(2L)));
+        verify(owner).batchUpdate(eq("DELETE FROM url_digest WHERE long_url_hash = ? AND mapping_id = ?"),
+                argThat((List<Object[]> args) -> args.size() == 2 && args.get(0)[1].equals(1L)));
+        assertThat(won.isNew()).isTrue();
+        verifyNoInteractions(target);
+    }
+
+    @Test
+    void save_whenCallerTransactionRollsBack_shouldRemoveInsertedRows() {
+        // Arrange
+        UrlMapping mapping = newMapping(3);
+        when(shardMap.byId(3L)).thenReturn(new Route(ownerShard, null));
+        when(shardMap.byDigest(any(byte[].class))).thenReturn(new Route(ownerShard, null));
+        lenient().when(owner.batchUpdate(startsWith("INSERT INTO url_digest"), anyList()))
+                .thenReturn(new int[] { 1 });
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            store.save(mapping);
+
+            // Act: the outbox write in the same transaction failed
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        // Assert
+        verify(owner).batchUpdate(eq("DELETE FROM url_mapping WHERE id = ?"),
+                argThat((List<Object[]> args) -> args.size() == 1 && args.get(0)[0].equals(3L)));
+        verify(owner).batchUpdate(eq("DELETE FROM url_digest WHERE long_url_hash = ? AND mapping_id = ?"),
+                argThat((List<Object[]> args) -> args.size() == 1 && args.get(0)[1].equals(3L)));
+    }
+
+    @Test
+    void findByLongUrlHash_whenMappingWasArchived_shouldReleaseDigest() {
+        // Arrange
+        byte[] digest = { 9 };
+        when(shardMap.byDigest(digest)).thenReturn(new Route(ownerShard, null));
+        when(shardMap.byId(5L)).thenReturn(new Route(targetShard, null));
+        when(owner.queryForList(anyString(), eq(Long.class), any(Object[].class))).thenReturn(List.of(5L));
+        when(target.query(anyString(), any(RowMapper.class), any(Object[].class))).thenReturn(List.of());
+
+        // Act
+        Optional<UrlMapping> mapping = store.findByLongUrlHash(digest);
+
+        // Assert
+        assertThat(mapping).isEmpty();
+        verify(owner).update("DELETE FROM url_digest WHERE long_url_hash = ? AND mapping_id = ?", digest, 5L);
+    }
+
+    @Test
+    void releaseLongUrlHash_shouldClearRowBeforeDroppingClaim() {
+        // Arrange
+        UrlMapping mapping = newMapping(4);
+        mapping.setCreatedAt(LocalDateTime.of(2026, 1, 1, 0, 0));
+        byte[] digest = mapping.getLongUrlHash();
+        when(shardMap.byId(4L)).thenReturn(new Route(targetShard, null));
+        when(shardMap.byDigest(digest)).thenReturn(new Route(ownerShard, null));
+
+        // Act
+        store.releaseLongUrlHash(mapping);
+
+        // Assert
+        InOrder order = inOrder(target, owner);
+        order.verify(target).update(eq("UPDATE url_mapping SET long_url_hash = NULL WHERE id = ? AND created_at = ?"),
+                eq(4L), any());
+        order.verify(owner).update("DELETE FROM url_digest WHERE long_url_hash = ? AND mapping_id = ?", digest, 4L);
+        assertThat(mapping.getLongUrlHash()).isNull();
+    }
+}
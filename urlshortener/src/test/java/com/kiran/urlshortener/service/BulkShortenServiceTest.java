@@ -0,0 +1,335 @@
+package com.kiran.urlshortener.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import org.mockito.Mock;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.kiran.urlshortener.cache.CacheMetrics;
+import com.kiran.urlshortener.cache.RedisCircuitBreaker;
+import com.kiran.urlshortener.config.UrlShortenerProperties;
+import com.kiran.urlshortener.entity.UrlMapping;
+import com.kiran.urlshortener.events.UrlCreatedEvent;
+import com.kiran.urlshortener.repository.UrlEventOutboxRepository;
+import com.kiran.urlshortener.repository.UrlMappingStore;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import jakarta.validation.ValidatorFactory;
+
+@ExtendWith(MockitoExtension.class)
+class BulkShortenServiceTest {
+
+    @Mock
+    private UrlMappingStore urlMappingStore;
+
+    @Mock
+    private IdBlockAllocator idBlockAllocator;
+
+    @Mock
+    private LongUrlIndex longUrlIndex;
+
+    @Mock
+    private IssuedCodeIndex issuedCodeIndex;
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private UrlEventOutboxRepository urlEventOutbox;
+
+    @Mock
+    private UrlService urlService;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    private ValidatorFactory validatorFactory;
+    private BulkShortenService bulkShortenService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        UrlShortenerProperties properties = new UrlShortenerProperties();
+        properties.getBulk().setChunkSize(2);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+        bulkShortenService = new BulkShortenService(urlMappingStore, new ShortCodeGenerator(), idBlockAllocator,
+                longUrlIndex, issuedCodeIndex, redisTemplate, urlEventOutbox, urlService, transactionTemplate, objectMapper,
+                validatorFactory.getValidator(), properties, new RedisCircuitBreaker(redisTemplate,
+                        new CacheMetrics(meterRegistry), properties, meterRegistry));
+
+        AtomicLong ids = new AtomicLong(1);
+        lenient().when(idBlockAllocator.nextId()).thenAnswer(invocation -> ids.getAndIncrement());
+        lenient().when(longUrlIndex.mightContain(any())).thenReturn(true);
+        lenient().doAnswer(invocation -> {
+            Consumer<TransactionStatus> callback = invocation.getArgument(0);
+            callback.accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        lenient().when(redisTemplate.executePipelined(any(RedisCallback.class))).thenReturn(List.of());
+    }
+
+    @AfterEach
+    void tearDown() {
+        validatorFactory.close();
+    }
+
+    private List<JsonNode> shorten(String body) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        bulkShortenService.shorten(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), out);
+        return out.toString(StandardCharsets.UTF_8).lines()
+                .map(line -> {
+                    try {
+                        return objectMapper.readTree(line);
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                })
+                .toList();
+    }
+
+    @Test
+    void shorten_whenPermitsRunOut_shouldStopWithRateLimitLine() throws Exception {
+        // Arrange
+        when(urlMappingStore.findByLongUrlHashIn(anyList())).thenReturn(List.of());
+        String body = """
+                {"longUrl":"https://example.com/a"}
+                {"longUrl":"https://example.com/b"}
+                {"longUrl":"https://example.com/c"}
+                """;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AtomicInteger left = new AtomicInteger(2);
+
+        // Act
+        bulkShortenService.shorten(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), out,
+                requested -> {
+                    int granted = Math.min(requested, left.get());
+                    left.addAndGet(-granted);
+                    return granted;
+                });
+
+        // Assert
+        List<String> lines = out.toString(StandardCharsets.UTF_8).lines().toList();
+        assertThat(lines).hasSize(3);
+        assertThat(objectMapper.readTree(lines.get(1)).get("longUrl").asText()).isEqualTo("https://example.com/b");
+        assertThat(objectMapper.readTree(lines.get(2)).get("error").asText()).startsWith("Too many requests");
+        verify(idBlockAllocator, times(2)).nextId();
+    }
+
+    @Test
+    void shorten_withNdjson_shouldReturnOneLinePerRequestInOrder() throws Exception {
+        // Arrange
+        when(urlMappingStore.findByLongUrlHashIn(anyList())).thenReturn(List.of());
+
+        // Act
+        List<JsonNode> results = shorten("""
+                {"longUrl":"https://example.com/a"}
+                {"longUrl":"https://example.com/b","expiryDays":3}
+                {"longUrl":"https://example.com/c"}
+                """);
+
+        // Assert
+        assertThat(results).extracting(node -> node.get("longUrl").asText())
+                .containsExactly("https://example.com/a", "https://example.com/b", "https://example.com/c");
+        assertThat(results).extracting(node -> node.get("shortUrl").asText())
+                .containsExactly("b", "c", "d");
+        assertThat(results.get(1).has("expiryAt")).isTrue();
+    }
+
+    @Test
+    void shorten_withJsonArray_shouldBeAccepted() throws Exception {
+        // Arrange
+        when(urlMappingStore.findByLongUrlHashIn(anyList())).thenReturn(List.of());
+
+        // Act
+        List<JsonNode> results = shorten("[{\"longUrl\":\"https://example.com/a\"},{\"longUrl\":\"https://example.com/b\"}]");
+
+        // Assert
+        assertThat(results).hasSize(2);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shorten_shouldBatchDatabaseRedisAndKafkaPerChunk() throws Exception {
+        // Arrange
+        when(urlMappingStore.findByLongUrlHashIn(anyList())).thenReturn(List.of());
+
+        // Act
+        shorten("""
+                {"longUrl":"https://example.com/a"}
+                {"longUrl":"https://example.com/b"}
+                {"longUrl":"https://example.com/c"}
+                """);
+
+        // Assert
+        verify(urlMappingStore, times(2)).findByLongUrlHashIn(anyList());
+        verify(redisTemplate, times(2)).executePipelined(any(RedisCallback.class));
+        ArgumentCaptor<List<UrlCreatedEvent>> events = ArgumentCaptor.forClass(List.class);
+        verify(urlEventOutbox, times(2)).addAll(events.capture());
+        assertThat(events.getAllValues().get(0)).hasSize(2);
+        assertThat(events.getAllValues().get(1)).hasSize(1);
+        verify(urlService, never()).createMapping(any(), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shorten_withDuplicatesInChunk_shouldCreateOnce() throws Exception {
+        // Arrange
+        when(urlMappingStore.findByLongUrlHashIn(anyList())).thenReturn(List.of());
+        ArgumentCaptor<Iterable<UrlMapping>> saved = ArgumentCaptor.forClass(Iterable.class);
+
+        // Act
+        List<JsonNode> results = shorten("""
+                {"longUrl":"https://example.com/same"}
+                {"longUrl":"https://EXAMPLE.com/same"}
+                """);
+
+        // Assert
+        assertThat(results.get(0).get("shortUrl")).isEqualTo(results.get(1).get("shortUrl"));
+        verify(urlMappingStore, times(2)).saveAll(saved.capture());
+        assertThat(saved.getAllValues().get(1)).hasSize(1);
+    }
+
+    @Test
+    void shorten_withExistingUrl_shouldReuseItsShortCode() throws Exception {
+        // Arrange
+        UrlMapping existing = new UrlMapping();
+        existing.setId(99L);
+        existing.setShortCode("existing");
+        existing.setLongUrl("https://example.com/a");
+        existing.setLongUrlHash(UrlDigest.sha256("https://example.com/a"));
+        when(urlMappingStore.findByLongUrlHashIn(anyList())).thenReturn(List.of(existing));
+
+        // Act
+        List<JsonNode> results = shorten("{\"longUrl\":\"https://example.com/a\"}");
+
+        // Assert
+        assertThat(results.get(0).get("shortUrl").asText()).isEqualTo("existing");
+        verify(idBlockAllocator, never()).nextId();
+        verify(urlEventOutbox, never()).addAll(anyList());
+    }
+
+    @Test
+    void shorten_whenExistingMappingWasDeactivated_shouldReleaseItAndCreateNewOne() throws Exception {
+        // Arrange
+        UrlMapping deactivated = new UrlMapping();
+        deactivated.setId(99L);
+        deactivated.setShortCode("existing");
+        deactivated.setLongUrl("https://example.com/a");
+        deactivated.setLongUrlHash(UrlDigest.sha256("https://example.com/a"));
+        deactivated.setActive(false);
+        when(urlMappingStore.findByLongUrlHashIn(anyList())).thenReturn(List.of(deactivated));
+
+        // Act
+        List<JsonNode> results = shorten("{\"longUrl\":\"https://example.com/a\"}");
+
+        // Assert
+        assertThat(results.get(0).get("shortUrl").asText()).isNotEqualTo("existing");
+        verify(urlMappingStore).releaseLongUrlHash(deactivated);
+        verify(idBlockAllocator).nextId();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shorten_whenUrlsNeverSeen_shouldSkipDedupeQuery() throws Exception {
+        // Arrange
+        when(longUrlIndex.mightContain(any())).thenReturn(false);
+
+        // Act
+        shorten("{\"longUrl\":\"https://example.com/a\"}");
+
+        // Assert
+        verify(urlMappingStore, never()).findByLongUrlHashIn(any(Collection.class));
+        verify(longUrlIndex).add(UrlDigest.sha256("https://example.com/a"));
+    }
+
+    @Test
+    void shorten_withInvalidRequest_shouldReportErrorInPlace() throws Exception {
+        // Act
+        List<JsonNode> results = shorten("""
+                {"longUrl":""}
+                {"longUrl":"https://example.com/a","expiryDays":0}
+                """);
+
+        // Assert
+        assertThat(results.get(0).get("error").asText()).isEqualTo("longUrl URL cannot be blank");
+        assertThat(results.get(1).get("error").asText()).isEqualTo("expiryDays Expiry days must be at least 1");
+        verify(idBlockAllocator, never()).nextId();
+    }
+
+    @Test
+    void shorten_withMalformedBody_shouldEmitTrailingError() throws Exception {
+        // Arrange
+        when(urlMappingStore.findByLongUrlHashIn(anyList())).thenReturn(List.of());
+
+        // Act
+        List<JsonNode> results = shorten("""
+                {"longUrl":"https://example.com/a"}
+                {"longUrl":
+                """);
+
+        // Assert
+        assertThat(results).hasSize(2);
+        assertThat(results.get(0).get("shortUrl").asText()).isEqualTo("b");
+        assertThat(results.get(1).get("error").asText()).startsWith("Malformed request body");
+    }
+
+    @Test
+    void shorten_whenInsertRacesAnotherNode_shouldFallBackToSingleCreates() throws Exception {
+        // Arrange
+        UrlMapping theirs = new UrlMapping();
+        theirs.setShortCode("theirs");
+        theirs.setExpiryAt(LocalDateTime.of(2099, 1, 1, 0, 0));
+        when(urlMappingStore.findByLongUrlHashIn(anyList())).thenReturn(List.of());
+        when(urlMappingStore.saveAll(anyList()))
+                .thenReturn(List.of())
+                .thenThrow(new DataIntegrityViolationException("duplicate key"));
+        when(urlService.createMapping(eq("https://example.com/a"), any())).thenReturn(theirs);
+
+        // Act
+        List<JsonNode> results = shorten("{\"longUrl\":\"https://example.com/a\",\"expiryDays\":1}");
+
+        // Assert: their later expiry is kept and reported
+        assertThat(results.get(0).get("shortUrl").asText()).isEqualTo("theirs");
+        assertThat(results.get(0).get("expiryAt").asText()).startsWith("2099-01-01");
+        verify(redisTemplate, never()).executePipelined(any(RedisCallback.class));
+        verify(idBlockAllocator, times(1)).nextId();
+        verify(urlEventOutbox, never()).addAll(anyList());
+    }
+}
@@ -0,0 +1,143 @@
+package com.kiran.urlshortener.service;
+
+import com.kiran.urlshortener.cache.CacheMetrics;
+import com.kiran.urlshortener.cache.RedisCircuitBreaker;
+import com.kiran.urlshortener.cache.UrlNearCache;
+import com.kiran.urlshortener.config.UrlShortenerProperties;
+import com.kiran.urlshortener.repository.ShardMap;
+import com.kiran.urlshortener.service.CacheWarmUpService.Row;
+import com.kiran.urlshortener.service.CacheWarmUpService.State;
+import com.kiran.urlshortener.service.CacheWarmUpService.Status;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CacheWarmUpServiceTest {
+
+    private static final String TOP = "SELECT id, short_code, long_url, expiry_at, click_count FROM url_mapping WHERE click_count";
+    private static final String RECENT = "SELECT id, short_code, long_url, expiry_at, click_count FROM url_mapping WHERE id";
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private UrlNearCache nearCache;
+
+    private UrlShortenerProperties properties;
+    private RedisCircuitBreaker redisBreaker;
+    private CacheWarmUpService warmUpService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        properties = new UrlShortenerProperties();
+        properties.getWarmUp().setTopK(3);
+        properties.getWarmUp().setRecentK(2);
+        properties.getWarmUp().setPageSize(2);
+        properties.getWarmUp().setCoverage(0.5);
+        properties.getCache().getLocal().setMaximumSize(2);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        redisBreaker = new RedisCircuitBreaker(redisTemplate, new CacheMetrics(meterRegistry), properties, meterRegistry);
+        warmUpService = new CacheWarmUpService(ShardMap.single(jdbcTemplate), redisTemplate, nearCache, properties,
+                redisBreaker);
+        lenient().when(redisTemplate.executePipelined(any(RedisCallback.class))).thenReturn(List.of());
+    }
+
+    private static Row row(long id, long clicks) {
+        return new Row(id, "c" + id, "https://example.com/" + id, LocalDateTime.now().plusDays(1), clicks);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void warmUp_shouldWalkTopThenRecentPagesUpToLimits() {
+        // Arrange
+        when(jdbcTemplate.query(startsWith(TOP), any(RowMapper.class), any(Object[].class)))
+                .thenReturn(List.of(row(9, 50), row(4, 40)))
+                .thenReturn(List.of(row(7, 10)));
+        when(jdbcTemplate.query(startsWith(RECENT), any(RowMapper.class), any(Object[].class)))
+                .thenReturn(List.of(row(12, 0), row(11, 0)));
+
+        // Act
+        Status status = warmUpService.warmUp();
+
+        // Assert
+        assertThat(status.state()).isEqualTo(State.DONE);
+        assertThat(status.warmed()).isEqualTo(5);
+        verify(jdbcTemplate).query(startsWith(TOP), any(RowMapper.class), eq(40L), eq(4L), any(), eq(1));
+        verify(jdbcTemplate).query(startsWith(RECENT), any(RowMapper.class), eq(Long.MAX_VALUE), any(), eq(2));
+        verify(redisTemplate, times(3)).executePipelined(any(RedisCallback.class));
+        assertThat(warmUpService.isReady()).isTrue();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void warmUp_shouldOnlyFillLocalCacheUpToItsSize() {
+        // Arrange
+        when(jdbcTemplate.query(startsWith(TOP), any(RowMapper.class), any(Object[].class)))
+                .thenReturn(List.of(row(9, 50), row(4, 40)))
+                .thenReturn(List.of(row(7, 10)));
+        when(jdbcTemplate.query(startsWith(RECENT), any(RowMapper.class), any(Object[].class)))
+                .thenReturn(List.of());
+
+        // Act
+        warmUpService.warmUp();
+
+        // Assert
+        verify(nearCache).put(eq("c9"), eq("https://example.com/9"), any(LocalDateTime.class));
+        verify(nearCache).put(eq("c4"), eq("https://example.com/4"), any(LocalDateTime.class));
+        verify(nearCache, never()).put(eq("c7"), anyString(), any(LocalDateTime.class));
+    }
+
+    @Test
+    void isReady_beforeFirstWarmUp_shouldBeFalse() {
+        // Act & Assert
+        assertThat(warmUpService.status().state()).isEqualTo(State.PENDING);
+        assertThat(warmUpService.isReady()).isFalse();
+    }
+
+    @Test
+    void isReady_whenDisabled_shouldBeTrue() {
+        // Arrange
+        properties.getWarmUp().setEnabled(false);
+
+        // Act & Assert
+        assertThat(new CacheWarmUpService(ShardMap.single(jdbcTemplate), redisTemplate, nearCache, properties, redisBreaker)
+                .isReady()).isTrue();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void warmUp_whenRedisFails_shouldEndAsFailedAndStillBecomeReady() {
+        // Arrange
+        when(jdbcTemplate.query(startsWith(TOP), any(RowMapper.class), any(Object[].class)))
+                .thenReturn(List.of(row(9, 50)));
+        when(redisTemplate.executePipelined(any(RedisCallback.class)))
+                .thenThrow(new RedisConnectionFailureException("down"));
+
+        // Act
+        Status status = warmUpService.warmUp();
+
+        // Assert
+        assertThat(status.state()).isEqualTo(State.FAILED);
+        assertThat(warmUpService.isReady()).isTrue();
+    }
+}
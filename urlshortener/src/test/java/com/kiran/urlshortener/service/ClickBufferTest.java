@@ -0,0 +1,246 @@
+package com.kiran.urlshortener.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import org.mockito.Mock;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisPipelineException;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import com.kiran.urlshortener.cache.CacheMetrics;
+import com.kiran.urlshortener.cache.RedisCircuitBreaker;
+import com.kiran.urlshortener.config.UrlShortenerProperties;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+class ClickBufferTest {
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private RedisConnection connection;
+
+    @Mock
+    private RedisStringCommands stringCommands;
+
+    private UrlShortenerProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+    private RedisCircuitBreaker redisBreaker;
+    private ClickBuffer clickBuffer;
+
+    @BeforeEach
+    void setUp() {
+        properties = new UrlShortenerProperties();
+        meterRegistry = new SimpleMeterRegistry();
+        redisBreaker = new RedisCircuitBreaker(redisTemplate, new CacheMetrics(meterRegistry), properties,
+                meterRegistry);
+        clickBuffer = new ClickBuffer(redisTemplate, properties, meterRegistry, redisBreaker);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void runPipelinedCallbacks() {
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(invocation -> {
+            RedisCallback<Object> callback = invocation.getArgument(0);
+            callback.doInRedis(connection);
+            return null;
+        });
+    }
+
+    @Test
+    void flush_shouldSendOneIncrByPerCodeWithAccumulatedCount() {
+        // Arrange
+        runPipelinedCallbacks();
+        when(connection.stringCommands()).thenReturn(stringCommands);
+        clickBuffer.record("abc123");
+        clickBuffer.record("abc123");
+        clickBuffer.record("xyz789");
+
+        // Act
+        clickBuffer.flush();
+
+        // Assert
+        verify(stringCommands).incrBy("click:abc123".getBytes(StandardCharsets.UTF_8), 2L);
+        verify(stringCommands).incrBy("click:xyz789".getBytes(StandardCharsets.UTF_8), 1L);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flush_withNothingRecorded_shouldNotTouchRedis() {
+        // Act
+        clickBuffer.flush();
+
+        // Assert
+        verify(redisTemplate, never()).executePipelined(any(RedisCallback.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flush_whenRedisFails_shouldKeepCountsForNextRun() {
+        // Arrange
+        when(redisTemplate.executePipelined(any(RedisCallback.class)))
+                .thenThrow(new RuntimeException("Redis connection failed"));
+        clickBuffer.record("abc123");
+        clickBuffer.record("abc123");
+
+        // Act
+        clickBuffer.flush();
+
+        // Assert
+        assertThat(clickBuffer.pendingCodes()).isEqualTo(1);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flush_whenPipelinePartlyFails_shouldKeepOnlyCodesNotIncremented() {
+        // Arrange
+        List<String> sent = new ArrayList<>();
+        when(connection.stringCommands()).thenReturn(stringCommands);
+        doAnswer(invocation -> {
+            sent.add(new String(invocation.<byte[]>getArgument(0), StandardCharsets.UTF_8));
+            return null;
+        }).when(stringCommands).incrBy(any(byte[].class), anyLong());
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(invocation -> {
+            invocation.<RedisCallback<Object>>getArgument(0).doInRedis(connection);
+            throw new RedisPipelineException(new RuntimeException("timeout"),
+                    List.of(3L, new RuntimeException("timeout")));
+        });
+        clickBuffer.record("abc123");
+        clickBuffer.record("xyz789");
+        clickBuffer.record("xyz789");
+        clickBuffer.record("xyz789");
+
+        // Act
+        clickBuffer.flush();
+
+        // Assert
+        String failed = sent.get(1);
+        sent.clear();
+        clickBuffer.flush();
+        assertThat(sent).containsExactly(failed);
+        verify(stringCommands, times(2)).incrBy(failed.getBytes(StandardCharsets.UTF_8),
+                failed.equals("click:abc123") ? 1L : 3L);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flush_concurrentWithRecord_shouldNotLoseClicks() throws Exception {
+        // Arrange
+        AtomicLong flushed = new AtomicLong();
+        lenient().when(connection.stringCommands()).thenReturn(stringCommands);
+        lenient().doAnswer(invocation -> flushed.addAndGet(invocation.<Long>getArgument(1)))
+                .when(stringCommands).incrBy(any(byte[].class), anyLong());
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(invocation -> {
+            invocation.<RedisCallback<Object>>getArgument(0).doInRedis(connection);
+            return null;
+        });
+        int threads = 4;
+        int clicksPerThread = 50_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch done = new CountDownLatch(threads);
+        AtomicBoolean recording = new AtomicBoolean(true);
+
+        // Act
+        for (int t = 0; t < threads; t++) {
+            executor.execute(() -> {
+                for (int i = 0; i < clicksPerThread; i++) {
+                    // Codes go idle between bursts so drains keep removing them.
+                    clickBuffer.record("code" + (i / 100 % 3));
+                }
+                done.countDown();
+            });
+        }
+        Thread flusher = new Thread(() -> {
+            while (recording.get()) {
+                clickBuffer.flush();
+            }
+        });
+        flusher.start();
+        assertThat(done.await(30, TimeUnit.SECONDS)).isTrue();
+        recording.set(false);
+        flusher.join();
+        executor.shutdown();
+        clickBuffer.flush();
+
+        // Assert
+        assertThat(flushed.get()).isEqualTo((long) threads * clicksPerThread);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flush_whileRedisBreakerIsOpen_shouldKeepCountsWithoutTouchingRedis() {
+        // Arrange
+        for (int i = 0; i < properties.getRedisBreaker().getFailureThreshold(); i++) {
+            try {
+                redisBreaker.call("get", () -> {
+                    throw new RuntimeException("Redis connection failed");
+                });
+            } catch (RuntimeException e) {
+            }
+        }
+        clickBuffer.record("abc123");
+
+        // Act
+        clickBuffer.flush();
+
+        // Assert
+        assertThat(redisBreaker.isOpen()).isTrue();
+        assertThat(clickBuffer.pendingCodes()).isEqualTo(1);
+        verify(redisTemplate, never()).executePipelined(any(RedisCallback.class));
+    }
+
+    @Test
+    void flush_afterSuccessfulDrain_shouldForgetIdleCodes() {
+        // Arrange
+        runPipelinedCallbacks();
+        when(connection.stringCommands()).thenReturn(stringCommands);
+        clickBuffer.record("abc123");
+
+        // Act
+        clickBuffer.flush();
+        clickBuffer.flush();
+
+        // Assert
+        assertThat(clickBuffer.pendingCodes()).isZero();
+    }
+
+    @Test
+    void record_beyondMaxPendingCodes_shouldDropAndCount() {
+        // Arrange
+        properties.getClicks().setMaxPendingCodes(1);
+        ClickBuffer bounded = new ClickBuffer(redisTemplate, properties, meterRegistry, redisBreaker);
+
+        // Act
+        bounded.record("abc123");
+        bounded.record("xyz789");
+        bounded.record("abc123");
+
+        // Assert
+        assertThat(bounded.pendingCodes()).isEqualTo(1);
+        assertThat(meterRegistry.counter("urlshortener.clicks.dropped").count()).isEqualTo(1.0);
+    }
+}
@@ -1,41 +1,104 @@
 package com.kiran.urlshortener.service;
 
-import java.util.Collections;
-import java.util.Optional;
-import java.util.Set;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyString;
-import org.mockito.InjectMocks;
+import static org.mockito.ArgumentMatchers.anyMap;
 import org.mockito.Mock;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
 import org.springframework.data.redis.core.StringRedisTemplate;
-import org.springframework.data.redis.core.ValueOperations;
 
-import com.kiran.urlshortener.entity.UrlMapping;
-import com.kiran.urlshortener.repository.UrlMappingRepository;
+import com.kiran.urlshortener.cache.CacheMetrics;
+import com.kiran.urlshortener.cache.RedisCircuitBreaker;
+import com.kiran.urlshortener.config.UrlShortenerProperties;
+import com.kiran.urlshortener.repository.ClickCountRepository;
+import com.kiran.urlshortener.repository.ClickCountRepository.PartialFlushException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 
 @ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
 class ClickCountFlushJobTest {
 
     @Mock
-    private UrlMappingRepository urlMappingRepository;
+    private StringRedisTemplate redisTemplate;
 
     @Mock
-    private StringRedisTemplate redisTemplate;
+    private ClickCountRepository clickCountRepository;
+
+    @Mock
+    private RedisConnection connection;
 
     @Mock
-    private ValueOperations<String, String> valueOperations;
+    private RedisStringCommands stringCommands;
+
+    @Mock
+    private ClickBuffer clickBuffer;
+
+    private UrlShortenerProperties properties;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private RedisCircuitBreaker redisBreaker;
 
-    @InjectMocks
     private ClickCountFlushJob clickCountFlushJob;
 
+    @BeforeEach
+    void setUp() {
+        properties = new UrlShortenerProperties();
+        meterRegistry = new SimpleMeterRegistry();
+        redisBreaker = new RedisCircuitBreaker(redisTemplate, new CacheMetrics(meterRegistry), properties,
+                meterRegistry);
+        clickCountFlushJob = new ClickCountFlushJob(redisTemplate, clickCountRepository, properties, meterRegistry,
+                redisBreaker, clickBuffer);
+        when(connection.stringCommands()).thenReturn(stringCommands);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void givenKeys(String... keys) {
+        Iterator<String> iterator = Arrays.asList(keys).iterator();
+        Cursor<String> cursor = mock(Cursor.class);
+        when(cursor.hasNext()).thenAnswer(invocation -> iterator.hasNext());
+        when(cursor.next()).thenAnswer(invocation -> iterator.next());
+        when(redisTemplate.scan(any(ScanOptions.class))).thenReturn(cursor);
+    }
+
+    // Each pipelined call runs its callback against the mocked connection and
+    // returns the next batch of values.
+    @SuppressWarnings("unchecked")
+    private void givenPipelineResults(List<?>... results) {
+        Iterator<List<?>> iterator = Arrays.asList(results).iterator();
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(invocation -> {
+            RedisCallback<Object> callback = invocation.getArgument(0);
+            callback.doInRedis(connection);
+            return iterator.hasNext() ? iterator.next() : List.of();
+        });
+    }
+
+    private static byte[] bytes(String key) {
+        return key.getBytes(StandardCharsets.UTF_8);
+    }
+
     @Test
     void extractCode_shouldExtractShortCodeFromKey() {
         // Act
@@ -54,170 +117,155 @@ class ClickCountFlushJobTest {
     }
 
     @Test
+    @SuppressWarnings("unchecked")
     void flushClicks_withNoKeys_shouldDoNothing() {
         // Arrange
-        when(redisTemplate.keys("click:*")).thenReturn(Collections.emptySet());
+        givenKeys();
 
         // Act
-        clickCountFlushJob.flushClicks();
+        ClickCountFlushJob.FlushResult result = clickCountFlushJob.flushClicks();
 
         // Assert
-        verify(redisTemplate).keys("click:*");
-        verify(urlMappingRepository, never()).findByShortCodeAndActiveTrue(anyString());
-        verify(urlMappingRepository, never()).save(any());
+        assertThat(result.keys()).isZero();
+        verify(redisTemplate, never()).executePipelined(any(RedisCallback.class));
+        verify(clickCountRepository, never()).addClickCounts(anyMap());
     }
 
     @Test
-    void flushClicks_withNullKeys_shouldDoNothing() {
+    void flushClicks_shouldScanInsteadOfKeys() {
         // Arrange
-        when(redisTemplate.keys("click:*")).thenReturn(null);
+        givenKeys();
 
         // Act
         clickCountFlushJob.flushClicks();
 
         // Assert
-        verify(redisTemplate).keys("click:*");
-        verify(urlMappingRepository, never()).findByShortCodeAndActiveTrue(anyString());
+        verify(redisTemplate).scan(any(ScanOptions.class));
+        verify(redisTemplate, never()).keys(any());
     }
 
     @Test
-    void flushClicks_withValidClicks_shouldUpdateDatabase() {
+    void flushClicks_withValidClicks_shouldDrainAndUpdateInOneBatch() {
         // Arrange
-        String key = "click:abc123";
-        String shortCode = "abc123";
-        Set<String> keys = Set.of(key);
-
-        UrlMapping mapping = new UrlMapping();
-        mapping.setId(1L);
-        mapping.setShortCode(shortCode);
-        mapping.setClickCount(10L);
-
-        when(redisTemplate.keys("click:*")).thenReturn(keys);
-        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
-        when(valueOperations.get(key)).thenReturn("5");
-        when(urlMappingRepository.findByShortCodeAndActiveTrue(shortCode)).thenReturn(Optional.of(mapping));
-        when(urlMappingRepository.save(any(UrlMapping.class))).thenReturn(mapping);
+        givenKeys("click:abc123", "click:xyz789");
+        givenPipelineResults(List.of("3", "7"));
 
         // Act
-        clickCountFlushJob.flushClicks();
+        ClickCountFlushJob.FlushResult result = clickCountFlushJob.flushClicks();
 
         // Assert
-        verify(urlMappingRepository).findByShortCodeAndActiveTrue(shortCode);
-        verify(urlMappingRepository).save(mapping);
-        verify(redisTemplate).delete(key);
-        assertThat(mapping.getClickCount()).isEqualTo(15L);
+        verify(stringCommands).getDel(bytes("click:abc123"));
+        verify(stringCommands).getDel(bytes("click:xyz789"));
+        verify(clickCountRepository).addClickCounts(Map.of("abc123", 3L, "xyz789", 7L));
+        assertThat(result.keys()).isEqualTo(2);
+        assertThat(result.clicks()).isEqualTo(10L);
     }
 
     @Test
-    void flushClicks_withMultipleKeys_shouldProcessAll() {
+    void flushClicks_withZeroOrMissingCounts_shouldSkipThem() {
         // Arrange
-        Set<String> keys = Set.of("click:abc123", "click:xyz789");
-
-        UrlMapping mapping1 = new UrlMapping();
-        mapping1.setShortCode("abc123");
-        mapping1.setClickCount(5L);
-
-        UrlMapping mapping2 = new UrlMapping();
-        mapping2.setShortCode("xyz789");
-        mapping2.setClickCount(10L);
-
-        when(redisTemplate.keys("click:*")).thenReturn(keys);
-        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
-        when(valueOperations.get("click:abc123")).thenReturn("3");
-        when(valueOperations.get("click:xyz789")).thenReturn("7");
-        when(urlMappingRepository.findByShortCodeAndActiveTrue("abc123")).thenReturn(Optional.of(mapping1));
-        when(urlMappingRepository.findByShortCodeAndActiveTrue("xyz789")).thenReturn(Optional.of(mapping2));
+        givenKeys("click:abc123", "click:zero", "click:gone");
+        givenPipelineResults(Arrays.asList("5", "0", null));
 
         // Act
         clickCountFlushJob.flushClicks();
 
         // Assert
-        verify(urlMappingRepository).save(mapping1);
-        verify(urlMappingRepository).save(mapping2);
-        verify(redisTemplate).delete("click:abc123");
-        verify(redisTemplate).delete("click:xyz789");
-        assertThat(mapping1.getClickCount()).isEqualTo(8L);
-        assertThat(mapping2.getClickCount()).isEqualTo(17L);
+        verify(clickCountRepository).addClickCounts(Map.of("abc123", 5L));
     }
 
     @Test
-    void flushClicks_withZeroCount_shouldSkip() {
+    void flushClicks_withOnlyEmptyCounts_shouldNotTouchDatabase() {
         // Arrange
-        String key = "click:abc123";
-        Set<String> keys = Set.of(key);
-
-        when(redisTemplate.keys("click:*")).thenReturn(keys);
-        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
-        when(valueOperations.get(key)).thenReturn("0");
+        givenKeys("click:abc123");
+        givenPipelineResults(Arrays.asList((Object) null));
 
         // Act
         clickCountFlushJob.flushClicks();
 
         // Assert
-        verify(urlMappingRepository, never()).findByShortCodeAndActiveTrue(anyString());
-        verify(urlMappingRepository, never()).save(any());
-        verify(redisTemplate, never()).delete(anyString());
+        verify(clickCountRepository, never()).addClickCounts(anyMap());
     }
 
     @Test
-    void flushClicks_withNullCount_shouldSkip() {
+    void flushClicks_withMoreKeysThanChunkSize_shouldUpdatePerChunk() {
         // Arrange
-        String key = "click:abc123";
-        Set<String> keys = Set.of(key);
-
-        when(redisTemplate.keys("click:*")).thenReturn(keys);
-        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
-        when(valueOperations.get(key)).thenReturn(null);
+        properties.getClicks().setFlushChunkSize(2);
+        clickCountFlushJob = new ClickCountFlushJob(redisTemplate, clickCountRepository, properties, meterRegistry,
+                redisBreaker, clickBuffer);
+        givenKeys("click:a", "click:b", "click:c");
+        givenPipelineResults(List.of("1", "2"), List.of("3"));
 
         // Act
-        clickCountFlushJob.flushClicks();
+        ClickCountFlushJob.FlushResult result = clickCountFlushJob.flushClicks();
 
         // Assert
-        verify(urlMappingRepository, never()).findByShortCodeAndActiveTrue(anyString());
-        verify(urlMappingRepository, never()).save(any());
+        verify(clickCountRepository).addClickCounts(Map.of("a", 1L, "b", 2L));
+        verify(clickCountRepository).addClickCounts(Map.of("c", 3L));
+        assertThat(result.keys()).isEqualTo(3);
+        assertThat(result.clicks()).isEqualTo(6L);
+        assertThat(meterRegistry.timer("urlshortener.clicks.flush.duration").count()).isEqualTo(1);
+        assertThat(meterRegistry.summary("urlshortener.clicks.flush.keys").totalAmount()).isEqualTo(3);
     }
 
     @Test
-    void flushClicks_withNonExistentMapping_shouldSkip() {
+    void flushClicks_withDatabaseFailure_shouldRestoreCountersToRedis() {
         // Arrange
-        String key = "click:notfound";
-        Set<String> keys = Set.of(key);
-
-        when(redisTemplate.keys("click:*")).thenReturn(keys);
-        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
-        when(valueOperations.get(key)).thenReturn("5");
-        when(urlMappingRepository.findByShortCodeAndActiveTrue("notfound")).thenReturn(Optional.empty());
+        givenKeys("click:abc123");
+        givenPipelineResults(List.of("3"));
+        when(clickCountRepository.addClickCounts(anyMap())).thenThrow(new RuntimeException("Database error"));
 
         // Act
-        clickCountFlushJob.flushClicks();
+        ClickCountFlushJob.FlushResult result = clickCountFlushJob.flushClicks();
 
         // Assert
-        verify(urlMappingRepository).findByShortCodeAndActiveTrue("notfound");
-        verify(urlMappingRepository, never()).save(any());
-        verify(redisTemplate, never()).delete(anyString());
+        verify(stringCommands, times(1)).incrBy(bytes("click:abc123"), 3L);
+        assertThat(result.clicks()).isZero();
     }
 
     @Test
-    void flushClicks_withException_shouldContinueProcessing() {
+    void flushClicks_whenOneShardFails_shouldRestoreOnlyItsCounters() {
         // Arrange
-        String key = "click:abc123";
-        Set<String> keys = Set.of(key);
+        givenKeys("click:a", "click:b");
+        givenPipelineResults(List.of("3", "4"));
+        when(clickCountRepository.addClickCounts(anyMap())).thenThrow(
+                new PartialFlushException(Map.of("b", 4L), new RuntimeException("shard down")));
 
-        UrlMapping mapping = new UrlMapping();
-        mapping.setShortCode("abc123");
-        mapping.setClickCount(5L);
+        // Act
+        ClickCountFlushJob.FlushResult result = clickCountFlushJob.flushClicks();
 
-        when(redisTemplate.keys("click:*")).thenReturn(keys);
-        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
-        when(valueOperations.get(key)).thenReturn("3");
-        when(urlMappingRepository.findByShortCodeAndActiveTrue("abc123")).thenReturn(Optional.of(mapping));
-        when(urlMappingRepository.save(any())).thenThrow(new RuntimeException("Database error"));
+        // Assert
+        verify(stringCommands).incrBy(bytes("click:b"), 4L);
+        verify(stringCommands, never()).incrBy(bytes("click:a"), 3L);
+        assertThat(result.clicks()).isEqualTo(3L);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flushClicks_whenRestoreFails_shouldBufferCountersAndKeepScanning() {
+        // Arrange
+        properties.getClicks().setFlushChunkSize(1);
+        clickCountFlushJob = new ClickCountFlushJob(redisTemplate, clickCountRepository, properties, meterRegistry,
+                redisBreaker, clickBuffer);
+        givenKeys("click:a", "click:b");
+        Iterator<Object> results = Arrays.<Object>asList(List.of("3"), new RuntimeException("Redis down"), List.of("4"))
+                .iterator();
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(invocation -> {
+            Object result = results.next();
+            if (result instanceof RuntimeException e) {
+                throw e;
+            }
+            return result;
+        });
+        when(clickCountRepository.addClickCounts(Map.of("a", 3L))).thenThrow(new RuntimeException("Database error"));
 
         // Act
-        clickCountFlushJob.flushClicks();
+        ClickCountFlushJob.FlushResult result = clickCountFlushJob.flushClicks();
 
         // Assert
-        verify(urlMappingRepository).save(mapping);
-        verify(redisTemplate, never()).delete(key); // Should not delete if save fails
+        verify(clickBuffer).requeue(Map.of("a", 3L));
+        verify(clickCountRepository).addClickCounts(Map.of("b", 4L));
+        assertThat(result.keys()).isEqualTo(2);
+        assertThat(result.clicks()).isEqualTo(4L);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,104 @@
+package com.kiran.urlshortener.service;
+
+import com.kiran.urlshortener.config.UrlShortenerProperties;
+import com.kiran.urlshortener.events.ClickEvent;
+import com.kiran.urlshortener.events.ClickEventBatch;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ClickEventPublisherTest {
+
+    @Mock
+    private KafkaTemplate<String, Object> kafkaTemplate;
+
+    private UrlShortenerProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+    private ClickEventPublisher publisher;
+
+    @BeforeEach
+    void setUp() {
+        properties = new UrlShortenerProperties();
+        properties.getAnalytics().setBatchSize(2);
+        properties.getAnalytics().setMaxPendingEvents(3);
+        meterRegistry = new SimpleMeterRegistry();
+        publisher = new ClickEventPublisher(kafkaTemplate, properties, meterRegistry);
+    }
+
+    @Test
+    void referrerHost_shouldKeepLowercaseHostWithoutWww() {
+        assertThat(ClickEventPublisher.referrerHost("https://WWW.Google.com/search?q=x")).isEqualTo("google.com");
+        assertThat(ClickEventPublisher.referrerHost("android-app://com.slack/")).isEqualTo("com.slack");
+        assertThat(ClickEventPublisher.referrerHost("not a url")).isNull();
+        assertThat(ClickEventPublisher.referrerHost(null)).isNull();
+    }
+
+    @Test
+    void country_shouldAcceptTwoLetterCodesOnly() {
+        assertThat(ClickEventPublisher.country("de")).isEqualTo("DE");
+        assertThat(ClickEventPublisher.country("XX")).isNull();
+        assertThat(ClickEventPublisher.country("USA")).isNull();
+    }
+
+    @Test
+    void agent_shouldClassifyBotsMobileAndDesktop() {
+        assertThat(ClickEventPublisher.agent("Mozilla/5.0 (compatible; Googlebot/2.1)"))
+                .isEqualTo(ClickEvent.Agent.BOT);
+        assertThat(ClickEventPublisher.agent("Mozilla/5.0 (iPhone; CPU iPhone OS 17_0 like Mac OS X)"))
+                .isEqualTo(ClickEvent.Agent.MOBILE);
+        assertThat(ClickEventPublisher.agent("Mozilla/5.0 (Windows NT 10.0; Win64; x64)"))
+                .isEqualTo(ClickEvent.Agent.DESKTOP);
+        assertThat(ClickEventPublisher.agent(null)).isEqualTo(ClickEvent.Agent.OTHER);
+    }
+
+    @Test
+    void publish_shouldSendBatchesAndDropBeyondPendingLimit() {
+        // Arrange
+        when(kafkaTemplate.send(anyString(), any()))
+                .thenReturn(CompletableFuture.<SendResult<String, Object>>completedFuture(null));
+        Map<String, String> headers = Map.of("Referer", "https://news.ycombinator.com/", "CF-IPCountry", "NL");
+        for (int i = 0; i < 4; i++) {
+            publisher.record("abc", headers::get);
+        }
+
+        // Act
+        publisher.publish();
+
+        // Assert
+        ArgumentCaptor<Object> batches = ArgumentCaptor.forClass(Object.class);
+        verify(kafkaTemplate, times(2)).send(eq("click-events"), batches.capture());
+        ClickEventBatch first = (ClickEventBatch) batches.getAllValues().get(0);
+        assertThat(first.getEvents()).hasSize(2);
+        assertThat(first.getEvents().get(0).getReferrer()).isEqualTo("news.ycombinator.com");
+        assertThat(first.getEvents().get(0).getCountry()).isEqualTo("NL");
+        assertThat(((ClickEventBatch) batches.getAllValues().get(1)).getEvents()).hasSize(1);
+        assertThat(meterRegistry.counter("urlshortener.clicks.events.dropped").count()).isEqualTo(1);
+    }
+
+    @Test
+    void record_whenDisabled_shouldNotQueue() {
+        // Arrange
+        properties.getAnalytics().setEnabled(false);
+
+        // Act
+        publisher.record("abc", name -> null);
+        publisher.publish();
+
+        // Assert
+        verifyNoInteractions(kafkaTemplate);
+    }
+}
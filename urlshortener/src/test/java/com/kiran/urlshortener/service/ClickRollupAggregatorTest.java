@@ -0,0 +1,153 @@
+package com.kiran.urlshortener.service;
+
+import com.kiran.urlshortener.config.UrlShortenerProperties;
+import com.kiran.urlshortener.events.ClickEvent;
+import com.kiran.urlshortener.events.ClickEventBatch;
+import com.kiran.urlshortener.repository.ClickRollupRepository;
+import com.kiran.urlshortener.repository.ClickRollupRepository.Bucket;
+import com.kiran.urlshortener.repository.ClickRollupRepository.DayValue;
+import com.kiran.urlshortener.repository.ClickRollupRepository.Dimension;
+import com.kiran.urlshortener.repository.ClickRollupRepository.Granularity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ClickRollupAggregatorTest {
+
+    private static final long T = LocalDateTime.of(2024, 3, 1, 10, 15, 30).toInstant(ZoneOffset.UTC).toEpochMilli();
+
+    @Mock
+    private ClickRollupRepository repository;
+
+    private ClickRollupAggregator aggregator;
+
+    @BeforeEach
+    void setUp() {
+        aggregator = new ClickRollupAggregator(repository, new UrlShortenerProperties());
+    }
+
+    private static ClickEventBatch batch(ClickEvent... events) {
+        return new ClickEventBatch(List.of(events));
+    }
+
+    private static ClickEvent click(String code, long at, String referrer) {
+        return new ClickEvent(code, at, referrer, "DE", ClickEvent.Agent.MOBILE);
+    }
+
+    @Test
+    void bucketStart_shouldTruncateInUtc() {
+        assertThat(ClickRollupAggregator.bucketStart(T, Granularity.MINUTE))
+                .isEqualTo(LocalDateTime.of(2024, 3, 1, 10, 15));
+        assertThat(ClickRollupAggregator.bucketStart(T, Granularity.HOUR))
+                .isEqualTo(LocalDateTime.of(2024, 3, 1, 10, 0));
+        assertThat(ClickRollupAggregator.bucketStart(T, Granularity.DAY))
+                .isEqualTo(LocalDateTime.of(2024, 3, 1, 0, 0));
+    }
+
+    @Test
+    void assigned_shouldResumeAfterStoredOffsetOrFromBeginning() {
+        // Arrange
+        when(repository.committedOffset(0)).thenReturn(41L);
+        when(repository.committedOffset(1)).thenReturn(-1L);
+
+        // Act + Assert
+        assertThat(aggregator.assigned(0)).isEqualTo(42);
+        assertThat(aggregator.assigned(1)).isEqualTo(-1);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flush_shouldWriteCountsPerBucketWithOffset() {
+        // Arrange
+        when(repository.committedOffset(0)).thenReturn(4L);
+        when(repository.apply(anyInt(), anyLong(), anyLong(), anyMap(), anyMap())).thenReturn(true);
+        aggregator.assigned(0);
+        aggregator.add(0, 5, batch(click("abc", T, "google.com"), click("abc", T + 60_000, null)));
+
+        // Act
+        aggregator.flush();
+
+        // Assert
+        ArgumentCaptor<Map<Granularity, Map<Bucket, Long>>> series = ArgumentCaptor.forClass(Map.class);
+        ArgumentCaptor<Map<DayValue, Long>> breakdown = ArgumentCaptor.forClass(Map.class);
+        verify(repository).apply(eq(0), eq(4L), eq(5L), series.capture(), breakdown.capture());
+        assertThat(series.getValue().get(Granularity.MINUTE)).hasSize(2);
+        assertThat(series.getValue().get(Granularity.HOUR))
+                .containsEntry(new Bucket("abc", LocalDateTime.of(2024, 3, 1, 10, 0)), 2L);
+        LocalDate day = LocalDate.of(2024, 3, 1);
+        assertThat(breakdown.getValue())
+                .containsEntry(new DayValue("abc", day, Dimension.REFERRER, "google.com"), 1L)
+                .containsEntry(new DayValue("abc", day, Dimension.REFERRER, ClickRollupAggregator.DIRECT), 1L)
+                .containsEntry(new DayValue("abc", day, Dimension.COUNTRY, "DE"), 2L)
+                .containsEntry(new DayValue("abc", day, Dimension.AGENT, "MOBILE"), 2L);
+    }
+
+    @Test
+    void add_shouldSkipRecordsAtOrBelowStoredOffset() {
+        // Arrange
+        when(repository.committedOffset(0)).thenReturn(5L);
+        aggregator.assigned(0);
+
+        // Act
+        aggregator.add(0, 3, batch(click("abc", T, null)));
+        aggregator.add(0, 5, batch(click("abc", T, null)));
+        aggregator.flush();
+
+        // Assert
+        verify(repository, never()).apply(anyInt(), anyLong(), anyLong(), anyMap(), anyMap());
+    }
+
+    @Test
+    void flush_whenOffsetMovedElsewhere_shouldDropBuffer() {
+        // Arrange
+        when(repository.committedOffset(0)).thenReturn(4L, 9L);
+        when(repository.apply(anyInt(), anyLong(), anyLong(), anyMap(), anyMap())).thenReturn(false);
+        aggregator.assigned(0);
+        aggregator.add(0, 5, batch(click("abc", T, null)));
+
+        // Act
+        aggregator.flush();
+        aggregator.add(0, 6, batch(click("abc", T, null)));
+        aggregator.flush();
+
+        // Assert: the re-created buffer starts from the stored offset 9, so 6 is skipped
+        verify(repository, times(1)).apply(anyInt(), anyLong(), anyLong(), anyMap(), anyMap());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flush_whenWriteFails_shouldKeepCountsForNextRun() {
+        // Arrange
+        when(repository.committedOffset(0)).thenReturn(4L);
+        when(repository.apply(anyInt(), anyLong(), anyLong(), anyMap(), anyMap()))
+                .thenThrow(new RuntimeException("db down"))
+                .thenReturn(true);
+        aggregator.assigned(0);
+        aggregator.add(0, 5, batch(click("abc", T, null)));
+        aggregator.flush();
+        aggregator.add(0, 6, batch(click("abc", T, null)));
+
+        // Act
+        aggregator.flush();
+
+        // Assert
+        ArgumentCaptor<Map<Granularity, Map<Bucket, Long>>> series = ArgumentCaptor.forClass(Map.class);
+        verify(repository, times(2)).apply(eq(0), eq(4L), anyLong(), series.capture(), anyMap());
+        assertThat(series.getValue().get(Granularity.DAY))
+                .containsEntry(new Bucket("abc", LocalDateTime.of(2024, 3, 1, 0, 0)), 2L);
+    }
+}
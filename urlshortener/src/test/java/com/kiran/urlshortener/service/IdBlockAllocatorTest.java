@@ -0,0 +1,80 @@
+package com.kiran.urlshortener.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import org.mockito.Mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.kiran.urlshortener.config.UrlShortenerProperties;
+
+@ExtendWith(MockitoExtension.class)
+class IdBlockAllocatorTest {
+
+    private static final String NEXTVAL = "SELECT nextval('url_mapping_id_block_seq')";
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private IdBlockAllocator allocator;
+
+    @BeforeEach
+    void setUp() {
+        UrlShortenerProperties properties = new UrlShortenerProperties();
+        properties.getIds().setBlockSize(3);
+        allocator = new IdBlockAllocator(jdbcTemplate, properties);
+
+        when(jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM url_mapping", Long.class)).thenReturn(41L);
+        when(jdbcTemplate.queryForObject(startsWith("SELECT increment_by"), eq(Long.class), eq("url_mapping_id_block_seq")))
+                .thenReturn(3L);
+    }
+
+    @Test
+    void nextId_shouldCreateSequenceAboveExistingIds() {
+        // Arrange
+        when(jdbcTemplate.queryForObject(NEXTVAL, Long.class)).thenReturn(42L);
+
+        // Act
+        allocator.nextId();
+
+        // Assert
+        verify(jdbcTemplate).execute(
+                "CREATE SEQUENCE IF NOT EXISTS url_mapping_id_block_seq START WITH 42 INCREMENT BY 3");
+    }
+
+    @Test
+    void nextId_shouldServeWholeBlockFromOneSequenceCall() {
+        // Arrange
+        when(jdbcTemplate.queryForObject(NEXTVAL, Long.class)).thenReturn(42L);
+
+        // Act & Assert
+        assertThat(allocator.nextId()).isEqualTo(42L);
+        assertThat(allocator.nextId()).isEqualTo(43L);
+        assertThat(allocator.nextId()).isEqualTo(44L);
+        verify(jdbcTemplate, times(1)).queryForObject(NEXTVAL, Long.class);
+    }
+
+    @Test
+    void nextId_whenBlockExhausted_shouldLeaseNextBlock() {
+        // Arrange
+        when(jdbcTemplate.queryForObject(NEXTVAL, Long.class)).thenReturn(42L, 48L);
+
+        // Act
+        allocator.nextId();
+        allocator.nextId();
+        allocator.nextId();
+        long id = allocator.nextId();
+
+        // Assert
+        assertThat(id).isEqualTo(48L);
+        verify(jdbcTemplate, times(2)).queryForObject(NEXTVAL, Long.class);
+        verify(jdbcTemplate, times(1)).execute(startsWith("CREATE SEQUENCE"));
+    }
+}
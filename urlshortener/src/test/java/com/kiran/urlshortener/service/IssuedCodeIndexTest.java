@@ -0,0 +1,150 @@
+package com.kiran.urlshortener.service;
+
+import com.kiran.urlshortener.config.UrlShortenerProperties;
+import com.kiran.urlshortener.repository.ShardMap;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IssuedCodeIndexTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private UrlShortenerProperties properties;
+    private IssuedCodeIndex index;
+
+    @BeforeEach
+    void setUp() {
+        properties = new UrlShortenerProperties();
+        properties.getNegativeCache().getBloom().setExpectedInsertions(10_000);
+        properties.getNegativeCache().getBloom().setFalsePositiveRate(0.0001);
+        properties.getNegativeCache().setIdMargin(1000);
+        properties.getNegativeCache().setLoadPageSize(50);
+        index = new IssuedCodeIndex(ShardMap.single(jdbcTemplate), properties);
+    }
+
+    private static List<Long> ids(long from, long to) {
+        return LongStream.range(from, to).boxed().toList();
+    }
+
+    @Test
+    void beforeLoad_shouldReportEveryValidIdAsPossiblyIssued() {
+        // Act & Assert
+        assertThat(index.mightBeIssued(123_456_789L)).isTrue();
+        assertThat(index.isUnissued(123_456_789L)).isFalse();
+        assertThat(index.isUnissued(-1)).isTrue();
+    }
+
+    @Test
+    void load_shouldRejectIdsNotInTable() {
+        // Arrange
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), any(Object[].class)))
+                .thenReturn(ids(1, 51), ids(51, 101), List.of());
+
+        // Act
+        index.load();
+
+        // Assert
+        assertThat(index.isReady()).isTrue();
+        assertThat(LongStream.range(1, 101).allMatch(index::mightBeIssued)).isTrue();
+        assertThat(LongStream.range(200, 1100).filter(index::mightBeIssued).count()).isLessThan(3);
+        verify(jdbcTemplate).queryForList(anyString(), eq(Long.class), eq(50L), eq(50));
+    }
+
+    @Test
+    void load_withShards_shouldCoverEveryShard() {
+        // Arrange
+        JdbcTemplate other = mock(JdbcTemplate.class);
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), any(Object[].class)))
+                .thenReturn(ids(1, 51), List.of());
+        when(other.queryForList(anyString(), eq(Long.class), any(Object[].class)))
+                .thenReturn(ids(3000, 3050), List.of());
+        ShardMap shardMap = new ShardMap(mock(JdbcTemplate.class), List.of(
+                new ShardMap.Shard("shard-1", jdbcTemplate), new ShardMap.Shard("shard-2", other)), 16, code -> 0);
+        IssuedCodeIndex sharded = new IssuedCodeIndex(shardMap, properties);
+
+        // Act
+        sharded.load();
+
+        // Assert
+        assertThat(LongStream.range(1, 51).allMatch(sharded::mightBeIssued)).isTrue();
+        assertThat(LongStream.range(3000, 3050).allMatch(sharded::mightBeIssued)).isTrue();
+        assertThat(sharded.isUnissued(4049)).isFalse();
+        assertThat(sharded.isUnissued(4050)).isTrue();
+    }
+
+    @Test
+    void isUnissued_shouldRejectIdsBeyondMarginOfHighestKnownId() {
+        // Arrange
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), any(Object[].class)))
+                .thenReturn(ids(1, 51), List.of());
+        index.load();
+
+        // Act
+        index.add(5000);
+
+        // Assert
+        assertThat(index.isUnissued(6000)).isFalse();
+        assertThat(index.isUnissued(6001)).isTrue();
+        assertThat(index.mightBeIssued(5000)).isTrue();
+    }
+
+    @Test
+    void load_shouldKeepIdsAddedWhileRebuilding() {
+        // Arrange
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), any(Object[].class)))
+                .thenAnswer(invocation -> {
+                    index.add(777);
+                    return ids(1, 11);
+                })
+                .thenReturn(List.of());
+
+        // Act
+        index.load();
+
+        // Assert
+        assertThat(index.mightBeIssued(777)).isTrue();
+    }
+
+    @Test
+    void load_whenQueryFails_shouldStayNotReady() {
+        // Arrange
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), any(Object[].class)))
+                .thenThrow(new QueryTimeoutException("timeout"));
+
+        // Act
+        index.load();
+
+        // Assert
+        assertThat(index.isReady()).isFalse();
+        assertThat(index.mightBeIssued(42)).isTrue();
+    }
+
+    @Test
+    void disabled_shouldNeverRejectValidIds() {
+        // Arrange
+        properties.getNegativeCache().getBloom().setEnabled(false);
+        IssuedCodeIndex disabled = new IssuedCodeIndex(ShardMap.single(jdbcTemplate), properties);
+
+        // Act
+        disabled.loadInBackground();
+
+        // Assert
+        assertThat(disabled.mightBeIssued(42)).isTrue();
+        assertThat(disabled.isUnissued(Long.MAX_VALUE)).isFalse();
+        verifyNoInteractions(jdbcTemplate);
+    }
+}
@@ -1,5 +1,8 @@
 package com.kiran.urlshortener.service;
 
+import java.util.HashSet;
+import java.util.Set;
+
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -105,4 +108,95 @@ class ShortCodeGeneratorTest {
         assertThat(result1).isEqualTo(result2);
         assertThat(result2).isEqualTo(result3);
     }
-}
\ No newline at end of file
+
+    @ParameterizedTest
+    @CsvSource({
+            "a, 0",
+            "b, 1",
+            "9, 61",
+            "ba, 62",
+            "bM, 100"
+    })
+    void decode_withVariousCodes_shouldReturnId(String code, long expected) {
+        // Act & Assert
+        assertThat(shortCodeGenerator.decode(code)).isEqualTo(expected);
+    }
+
+    @Test
+    void decode_shouldInvertEncodeAcrossIdRanges() {
+        // Arrange
+        long[] ids = { 0L, 1L, 61L, 62L, 3843L, 3844L, 56_800_235_583L, 1L << 40, Long.MAX_VALUE };
+
+        // Act & Assert
+        for (long id : ids) {
+            assertThat(shortCodeGenerator.decode(shortCodeGenerator.encode(id))).isEqualTo(id);
+        }
+    }
+
+    @Test
+    void decode_withInvalidCodes_shouldReturnMinusOne() {
+        // Act & Assert
+        assertThat(shortCodeGenerator.decode("")).isEqualTo(-1);
+        assertThat(shortCodeGenerator.decode(null)).isEqualTo(-1);
+        assertThat(shortCodeGenerator.decode("ab-c")).isEqualTo(-1);
+        assertThat(shortCodeGenerator.decode("é")).isEqualTo(-1);
+        assertThat(shortCodeGenerator.decode("ab")).isEqualTo(-1);
+        assertThat(shortCodeGenerator.decode("999999999999")).isEqualTo(-1);
+        assertThat(shortCodeGenerator.decode("99999999999")).isEqualTo(-1);
+    }
+
+    @Test
+    void encode_intoBuffer_shouldWriteAtOffsetWithoutAllocating() {
+        // Arrange
+        char[] buffer = new char[2 + ShortCodeGenerator.MAX_LENGTH];
+
+        // Act
+        int length = shortCodeGenerator.encode(100L, buffer, 2);
+
+        // Assert
+        assertThat(length).isEqualTo(2);
+        assertThat(new String(buffer, 2, length)).isEqualTo("bM");
+    }
+
+    @Test
+    void encode_withNegativeId_shouldThrowException() {
+        // Act & Assert
+        assertThatThrownBy(() -> shortCodeGenerator.encode(-1L))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void obfuscatedCodes_shouldBeFixedWidthNonSequentialAndDecodable() {
+        // Arrange
+        ShortCodeGenerator obfuscating = new ShortCodeGenerator(true, 7, 12345L);
+        Set<String> codes = new HashSet<>();
+
+        // Act & Assert
+        for (long id = 1; id <= 1000; id++) {
+            String code = obfuscating.encode(id);
+            assertThat(code).hasSize(7).matches("[a-zA-Z0-9]+");
+            assertThat(obfuscating.decode(code)).isEqualTo(id);
+            codes.add(code);
+        }
+        assertThat(codes).hasSize(1000);
+        assertThat(obfuscating.encode(2L)).isNotEqualTo(shortCodeGenerator.encode(2L));
+        assertThat(obfuscating.decode("abc")).isEqualTo(-1);
+    }
+
+    @Test
+    void obfuscatedCodes_shouldCoverTheWholeDomain() {
+        // Arrange
+        ShortCodeGenerator obfuscating = new ShortCodeGenerator(true, 2, 7L);
+        Set<String> codes = new HashSet<>();
+
+        // Act
+        for (long id = 0; id < 62 * 62; id++) {
+            codes.add(obfuscating.encode(id));
+        }
+
+        // Assert
+        assertThat(codes).hasSize(62 * 62);
+        assertThatThrownBy(() -> obfuscating.encode(62L * 62))
+                .isInstanceOf(IllegalStateException.class);
+    }
+}
@@ -0,0 +1,43 @@
+package com.kiran.urlshortener.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.Test;
+
+class UrlDigestTest {
+
+    @Test
+    void sha256_shouldBeFixedWidth() {
+        // Act
+        byte[] digest = UrlDigest.sha256("https://example.com/" + "x".repeat(10_000));
+
+        // Assert
+        assertThat(digest).hasSize(UrlDigest.LENGTH);
+    }
+
+    @Test
+    void normalize_shouldLowerCaseSchemeAndHostOnly() {
+        // Act
+        String result = UrlDigest.normalize("  HTTPS://User@Example.COM:8443/Path?Q=A  ");
+
+        // Assert
+        assertThat(result).isEqualTo("https://User@example.com:8443/Path?Q=A");
+    }
+
+    @Test
+    void normalize_withUnparseableUrl_shouldOnlyTrim() {
+        // Act
+        String result = UrlDigest.normalize(" not a url ");
+
+        // Assert
+        assertThat(result).isEqualTo("not a url");
+    }
+
+    @Test
+    void sha256_shouldMatchForEquivalentUrls() {
+        // Act & Assert
+        assertThat(UrlDigest.sha256("https://EXAMPLE.com/a"))
+                .isEqualTo(UrlDigest.sha256("https://example.com/a"));
+        assertThat(UrlDigest.sha256("https://example.com/A"))
+                .isNotEqualTo(UrlDigest.sha256("https://example.com/a"));
+    }
+}
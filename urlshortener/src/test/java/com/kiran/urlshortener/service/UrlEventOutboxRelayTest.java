@@ -0,0 +1,98 @@
+package com.kiran.urlshortener.service;
+
+import com.kiran.urlshortener.config.UrlShortenerProperties;
+import com.kiran.urlshortener.events.UrlCreatedEvent;
+import com.kiran.urlshortener.repository.UrlEventOutboxRepository;
+import com.kiran.urlshortener.repository.UrlEventOutboxRepository.Entry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UrlEventOutboxRelayTest {
+
+    @Mock
+    private UrlEventOutboxRepository outbox;
+
+    @Mock
+    private UrlEventProducer urlEventProducer;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private UrlEventOutboxRelay relay;
+
+    @BeforeEach
+    void setUp() {
+        UrlShortenerProperties properties = new UrlShortenerProperties();
+        properties.getEvents().setRelayBatchSize(2);
+        relay = new UrlEventOutboxRelay(outbox, urlEventProducer, transactionTemplate, properties);
+        lenient().when(transactionTemplate.execute(any()))
+                .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+
+    private static Entry entry(long id) {
+        return new Entry(id, new UrlCreatedEvent(id * 10, "code" + id, Instant.now()));
+    }
+
+    @Test
+    void relay_shouldPublishAndDeleteBatchesUntilOutboxIsDrained() {
+        // Arrange
+        when(outbox.lockBatch(2)).thenReturn(List.of(entry(1), entry(2)), List.of(entry(3)));
+        when(urlEventProducer.publish(anyList())).thenReturn(new boolean[] { true, true }, new boolean[] { true });
+
+        // Act
+        relay.relay();
+
+        // Assert
+        verify(transactionTemplate, times(2)).execute(any());
+        verify(outbox).delete(List.of(1L, 2L));
+        verify(outbox).delete(List.of(3L));
+        verify(outbox, times(2)).lockBatch(2);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void relayBatch_shouldOnlyDeleteAcknowledgedEvents() {
+        // Arrange
+        when(outbox.lockBatch(2)).thenReturn(List.of(entry(1), entry(2)));
+        List<List<UrlCreatedEvent>> published = new ArrayList<>();
+        when(urlEventProducer.publish(anyList())).thenAnswer(invocation -> {
+            published.add(invocation.getArgument(0));
+            return new boolean[] { false, true };
+        });
+
+        // Act
+        int relayed = relay.relayBatch();
+
+        // Assert
+        assertThat(relayed).isEqualTo(1);
+        assertThat(published.get(0)).extracting(UrlCreatedEvent::getId).containsExactly(10L, 20L);
+        verify(outbox).delete(List.of(2L));
+    }
+
+    @Test
+    void relay_withEmptyOutbox_shouldNotPublish() {
+        // Arrange
+        when(outbox.lockBatch(2)).thenReturn(List.of());
+
+        // Act
+        relay.relay();
+
+        // Assert
+        verifyNoInteractions(urlEventProducer);
+        verify(outbox, never()).delete(anyList());
+    }
+}
@@ -1,18 +1,27 @@
 package com.kiran.urlshortener.service;
 
+import com.kiran.urlshortener.config.UrlShortenerProperties;
 import com.kiran.urlshortener.events.UrlCreatedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.common.KafkaException;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
-import org.mockito.InjectMocks;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.mockito.Mockito.verify;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class UrlEventProducerTest {
@@ -20,12 +29,25 @@ class UrlEventProducerTest {
     @Mock
     private KafkaTemplate<String, UrlCreatedEvent> kafkaTemplate;
 
-    @InjectMocks
+    private SimpleMeterRegistry meterRegistry;
     private UrlEventProducer urlEventProducer;
 
+    @BeforeEach
+    void setUp() {
+        UrlShortenerProperties properties = new UrlShortenerProperties();
+        properties.getEvents().setSendTimeout(Duration.ofMillis(50));
+        meterRegistry = new SimpleMeterRegistry();
+        urlEventProducer = new UrlEventProducer(kafkaTemplate, properties, meterRegistry);
+    }
+
+    private static CompletableFuture<SendResult<String, UrlCreatedEvent>> acked() {
+        return CompletableFuture.completedFuture(null);
+    }
+
     @Test
-    void sendUrlCreatedEvent_shouldSendEventToKafka() {
+    void publish_shouldSendEventToKafkaKeyedByShortCode() {
         // Arrange
+        when(kafkaTemplate.send(anyString(), anyString(), any())).thenReturn(acked());
         Long id = 123L;
         String shortCode = "abc123";
         Instant createdAt = Instant.now();
@@ -37,7 +59,7 @@ class UrlEventProducerTest {
         ArgumentCaptor<UrlCreatedEvent> eventCaptor = ArgumentCaptor.forClass(UrlCreatedEvent.class);
 
         // Act
-        urlEventProducer.sendUrlCreatedEvent(event);
+        boolean[] acknowledged = urlEventProducer.publish(List.of(event));
 
         // Assert
         verify(kafkaTemplate).send(topicCaptor.capture(), keyCaptor.capture(), eventCaptor.capture());
@@ -49,20 +71,72 @@ class UrlEventProducerTest {
         assertThat(capturedEvent.getId()).isEqualTo(id);
         assertThat(capturedEvent.getShortCode()).isEqualTo(shortCode);
         assertThat(capturedEvent.getCreatedAt()).isEqualTo(createdAt);
+        assertThat(acknowledged).containsExactly(true);
+        assertThat(meterRegistry.timer("urlshortener.kafka.send", "topic", "url-created-events").count())
+                .isEqualTo(1);
     }
 
     @Test
-    void sendUrlCreatedEvent_withDifferentEvents_shouldSendAllToKafka() {
+    void publish_shouldSendAllThenFlushOnce() {
         // Arrange
+        when(kafkaTemplate.send(anyString(), anyString(), any())).thenReturn(acked());
         UrlCreatedEvent event1 = new UrlCreatedEvent(1L, "code1", Instant.now());
         UrlCreatedEvent event2 = new UrlCreatedEvent(2L, "code2", Instant.now());
 
         // Act
-        urlEventProducer.sendUrlCreatedEvent(event1);
-        urlEventProducer.sendUrlCreatedEvent(event2);
+        urlEventProducer.publish(List.of(event1, event2));
+
+        // Assert
+        InOrder order = inOrder(kafkaTemplate);
+        order.verify(kafkaTemplate).send("url-created-events", "code1", event1);
+        order.verify(kafkaTemplate).send("url-created-events", "code2", event2);
+        order.verify(kafkaTemplate).flush();
+    }
+
+    @Test
+    void publish_withNoEvents_shouldNotTouchKafka() {
+        // Act
+        boolean[] acknowledged = urlEventProducer.publish(List.of());
+
+        // Assert
+        assertThat(acknowledged).isEmpty();
+        verifyNoInteractions(kafkaTemplate);
+    }
+
+    @Test
+    void publish_shouldReportFailedAndUnacknowledgedEvents() {
+        // Arrange
+        when(kafkaTemplate.send(anyString(), anyString(), any()))
+                .thenReturn(acked())
+                .thenReturn(CompletableFuture.failedFuture(new KafkaException("not leader")))
+                .thenReturn(new CompletableFuture<>());
+
+        // Act
+        boolean[] acknowledged = urlEventProducer.publish(List.of(
+                new UrlCreatedEvent(1L, "code1", Instant.now()),
+                new UrlCreatedEvent(2L, "code2", Instant.now()),
+                new UrlCreatedEvent(3L, "code3", Instant.now())));
+
+        // Assert
+        assertThat(acknowledged).containsExactly(true, false, false);
+        assertThat(meterRegistry.counter("urlshortener.events.send.failures").count()).isEqualTo(2);
+    }
+
+    @Test
+    void publish_whenSendThrows_shouldStopSendingTheRest() {
+        // Arrange
+        when(kafkaTemplate.send(anyString(), anyString(), any()))
+                .thenReturn(acked())
+                .thenThrow(new KafkaException("metadata timeout"));
+
+        // Act
+        boolean[] acknowledged = urlEventProducer.publish(List.of(
+                new UrlCreatedEvent(1L, "code1", Instant.now()),
+                new UrlCreatedEvent(2L, "code2", Instant.now()),
+                new UrlCreatedEvent(3L, "code3", Instant.now())));
 
         // Assert
-        verify(kafkaTemplate).send("url-created-events", "code1", event1);
-        verify(kafkaTemplate).send("url-created-events", "code2", event2);
+        assertThat(acknowledged).containsExactly(true, false, false);
+        verify(kafkaTemplate, times(2)).send(anyString(), anyString(), any());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,218 @@
+package com.kiran.urlshortener.service;
+
+import com.kiran.urlshortener.config.UrlShortenerProperties;
+import com.kiran.urlshortener.export.UrlMappingArchive;
+import com.kiran.urlshortener.export.UrlMappingExporter.ExportRow;
+import com.kiran.urlshortener.repository.ShardMap;
+import com.kiran.urlshortener.repository.ShardMap.Route;
+import com.kiran.urlshortener.repository.ShardMap.Shard;
+import com.kiran.urlshortener.repository.UrlMappingPartitions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import javax.sql.DataSource;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UrlMappingLifecycleJobTest {
+
+    private static final LocalDateTime CREATED = LocalDateTime.of(2020, 1, 15, 10, 0);
+
+    @Mock
+    private ShardMap shardMap;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private DataSource dataSource;
+
+    @TempDir
+    private Path archiveDir;
+
+    private Shard shard;
+    private UrlMappingLifecycleJob job;
+
+    @BeforeEach
+    void setUp() {
+        shard = new Shard("shard-1", jdbcTemplate);
+        UrlShortenerProperties properties = new UrlShortenerProperties();
+        properties.getLifecycle().setArchiveDir(archiveDir.toString());
+        properties.getLifecycle().setMaxLiveRows(10);
+        when(shardMap.isSharded()).thenReturn(true);
+        job = new UrlMappingLifecycleJob(shardMap, properties);
+    }
+
+    private void givenShard(String... partitions) throws SQLException {
+        doAnswer(invocation -> invocation.<Supplier<?>>getArgument(0).get()).when(shardMap).withMaintenanceLock(any());
+        when(shardMap.load()).thenReturn(new Route[] { new Route(shard, null) });
+        when(shardMap.shards()).thenReturn(List.of(shard));
+        when(jdbcTemplate.queryForList(contains("pg_inherits"), eq(String.class))).thenReturn(List.of(partitions));
+        when(jdbcTemplate.queryForObject(contains("pg_indexes_size"), eq(Long.class))).thenReturn(8192L, 4096L);
+        when(jdbcTemplate.getDataSource()).thenReturn(dataSource);
+        when(dataSource.getConnection()).thenReturn(mock(Connection.class));
+    }
+
+    private void givenLiveRows(String partition, long live) {
+        when(jdbcTemplate.queryForObject(startsWith("SELECT COUNT(*) FROM " + partition + " "), eq(Long.class),
+                any(Object[].class))).thenReturn(live);
+    }
+
+    // Answers the archive query with dead rows of the given ids.
+    private void givenDeadRows(long... ids) {
+        when(shardMap.byId(anyLong())).thenReturn(new Route(shard, null));
+        when(shardMap.byDigest(any(byte[].class))).thenReturn(new Route(shard, null));
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (long id : ids) {
+                ResultSet rs = mock(ResultSet.class);
+                doReturn(id).when(rs).getLong("id");
+                doReturn("https://example.com/" + id).when(rs).getString("long_url");
+                doReturn(new byte[] { (byte) id }).when(rs).getBytes("long_url_hash");
+                doReturn(Timestamp.valueOf(CREATED.plusDays(1))).when(rs).getTimestamp("expiry_at");
+                doReturn(Timestamp.valueOf(CREATED)).when(rs).getTimestamp("created_at");
+                doReturn(id * 10).when(rs).getLong("click_count");
+                doReturn(true).when(rs).getBoolean("active");
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+    }
+
+    private List<ExportRow> archived(String partition) throws Exception {
+        List<ExportRow> rows = new ArrayList<>();
+        try (Stream<Path> files = Files.list(archiveDir)) {
+            for (Path file : files.filter(f -> f.getFileName().toString().startsWith(partition + ".shard-1."))
+                    .toList()) {
+                assertThat(file.getFileName().toString()).endsWith(".bin.gz");
+                try (InputStream in = Files.newInputStream(file)) {
+                    UrlMappingArchive.read(in, new ShortCodeGenerator(), rows::add);
+                }
+            }
+        }
+        return rows;
+    }
+
+    @Test
+    void sweep_withOnlyDeadRows_shouldArchiveAndDropPartition() throws Exception {
+        // Arrange
+        String current = UrlMappingPartitions.name(YearMonth.now());
+        givenShard("url_mapping_2020_01", current);
+        givenLiveRows("url_mapping_2020_01", 0);
+        givenDeadRows(3, 8);
+
+        // Act
+        UrlMappingLifecycleJob.Report report = job.sweep();
+
+        // Assert
+        assertThat(report).isEqualTo(new UrlMappingLifecycleJob.Report(1, 0, 0, 2, 8192, 4096));
+        verify(jdbcTemplate).execute("LOCK TABLE url_mapping_2020_01 IN EXCLUSIVE MODE");
+        verify(jdbcTemplate).execute("ALTER TABLE url_mapping DETACH PARTITION url_mapping_2020_01");
+        verify(jdbcTemplate).execute("DROP TABLE url_mapping_2020_01");
+        verify(jdbcTemplate, never()).execute("LOCK TABLE " + current + " IN EXCLUSIVE MODE");
+        verify(jdbcTemplate).batchUpdate(eq("DELETE FROM url_digest WHERE long_url_hash = ? AND mapping_id = ?"),
+                argThat((List<Object[]> args) -> args.size() == 2));
+        assertThat(archived("url_mapping_2020_01")).extracting(ExportRow::id).containsExactly(3L, 8L);
+        verify(shardMap).forgetPartitions();
+        verify(shardMap, times(2)).load();
+    }
+
+    @Test
+    void sweep_withFewLiveRows_shouldRewritePartitionWithThem() throws Exception {
+        // Arrange
+        givenShard("url_mapping_2020_01");
+        givenLiveRows("url_mapping_2020_01", 4);
+        givenDeadRows(5);
+
+        // Act
+        UrlMappingLifecycleJob.Report report = job.sweep();
+
+        // Assert
+        assertThat(report.partitionsRewritten()).isEqualTo(1);
+        verify(jdbcTemplate).update(startsWith("INSERT INTO url_mapping_2020_01_new SELECT * FROM url_mapping_2020_01"),
+                any(Object[].class));
+        verify(jdbcTemplate).execute("DROP TABLE url_mapping_2020_01");
+        verify(jdbcTemplate).execute("ALTER TABLE url_mapping_2020_01_new RENAME TO url_mapping_2020_01");
+        verify(jdbcTemplate).execute("ALTER TABLE url_mapping ATTACH PARTITION url_mapping_2020_01 "
+                + "FOR VALUES FROM ('2020-01-01') TO ('2020-02-01')");
+        assertThat(archived("url_mapping_2020_01")).hasSize(1);
+    }
+
+    @Test
+    void sweep_withTooManyLiveRows_shouldKeepPartition() throws Exception {
+        // Arrange
+        givenShard("url_mapping_2020_01");
+        givenLiveRows("url_mapping_2020_01", 11);
+
+        // Act
+        UrlMappingLifecycleJob.Report report = job.sweep();
+
+        // Assert
+        assertThat(report.partitionsKept()).isEqualTo(1);
+        verify(jdbcTemplate, never()).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+        verify(jdbcTemplate, never()).execute(startsWith("ALTER TABLE"));
+        try (Stream<Path> files = Files.list(archiveDir)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    void sweep_whileBucketIsMoving_shouldSkip() {
+        // Arrange
+        doAnswer(invocation -> invocation.<Supplier<?>>getArgument(0).get()).when(shardMap).withMaintenanceLock(any());
+        when(shardMap.load()).thenReturn(new Route[] { new Route(shard, new Shard("shard-2", jdbcTemplate)) });
+
+        // Act
+        UrlMappingLifecycleJob.Report report = job.sweep();
+
+        // Assert
+        assertThat(report).isNull();
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void constructor_withoutShards_shouldFail() {
+        // Arrange
+        ShardMap single = ShardMap.single(jdbcTemplate);
+
+        // Act & Assert
+        assertThatThrownBy(() -> new UrlMappingLifecycleJob(single, new UrlShortenerProperties()))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void constructor_withMinAgeBelowOneMonth_shouldFail() {
+        // Arrange
+        UrlShortenerProperties properties = new UrlShortenerProperties();
+        properties.getLifecycle().setMinAgeMonths(0);
+
+        // Act & Assert
+        assertThatThrownBy(() -> new UrlMappingLifecycleJob(shardMap, properties))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("min-age-months");
+    }
+}
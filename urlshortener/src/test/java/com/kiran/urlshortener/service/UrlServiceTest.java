@@ -1,23 +1,46 @@
 package com.kiran.urlshortener.service;
 
+import com.kiran.urlshortener.cache.CacheMetrics;
+import com.kiran.urlshortener.cache.RedirectResponseCache;
+import com.kiran.urlshortener.cache.RedisCircuitBreaker;
+import com.kiran.urlshortener.cache.UrlNearCache;
+import com.kiran.urlshortener.config.ReplicaReads;
+import com.kiran.urlshortener.config.UrlShortenerProperties;
 import com.kiran.urlshortener.entity.UrlMapping;
 import com.kiran.urlshortener.events.UrlCreatedEvent;
-import com.kiran.urlshortener.repository.UrlMappingRepository;
+import com.kiran.urlshortener.repository.UrlEventOutboxRepository;
+import com.kiran.urlshortener.repository.UrlMappingStore;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -29,7 +52,7 @@ import static org.mockito.Mockito.*;
 class UrlServiceTest {
 
     @Mock
-    private UrlMappingRepository urlMappingRepository;
+    private UrlMappingStore urlMappingStore;
 
     @Mock
     private ShortCodeGenerator shortCodeGenerator;
@@ -38,17 +61,73 @@ class UrlServiceTest {
     private StringRedisTemplate redisTemplate;
 
     @Mock
-    private UrlEventProducer urlEventProducer;
+    private UrlEventOutboxRepository urlEventOutbox;
 
     @Mock
     private ValueOperations<String, String> valueOperations;
 
+    @Mock
+    private UrlNearCache nearCache;
+
+    @Mock
+    private CacheMetrics cacheMetrics;
+
+    @Spy
+    private UrlShortenerProperties properties = new UrlShortenerProperties();
+
+    @Mock
+    private ClickBuffer clickBuffer;
+
+    @Mock
+    private IdBlockAllocator idBlockAllocator;
+
+    @Mock
+    private LongUrlIndex longUrlIndex;
+
+    @Mock
+    private RedirectResponseCache responseCache;
+
+    @Mock
+    private IssuedCodeIndex issuedCodeIndex;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private RedisCircuitBreaker redisBreaker;
+
+    @Mock
+    private ReplicaReads replicaReads;
+
     @InjectMocks
     private UrlService urlService;
 
     @BeforeEach
     void setUp() {
         lenient().when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        lenient().when(idBlockAllocator.nextId()).thenReturn(1L);
+        lenient().when(longUrlIndex.mightContain(any())).thenReturn(true);
+        lenient().when(shortCodeGenerator.decode(anyString())).thenReturn(1L);
+        lenient().when(issuedCodeIndex.mightBeIssued(anyLong())).thenReturn(true);
+        lenient().doAnswer(invocation -> {
+            Consumer<TransactionStatus> callback = invocation.getArgument(0);
+            callback.accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        lenient().when(redisBreaker.call(anyString(), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(1).get());
+        lenient().doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(1).run();
+            return null;
+        }).when(redisBreaker).run(anyString(), any());
+        lenient().when(redisTemplate.executePipelined(any(RedisCallback.class))).thenReturn(Arrays.asList(null, -2L));
+        lenient().when(replicaReads.read(any()))
+                .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(0).get());
+    }
+
+    // Stubs the pipelined GET and PTTL of a Redis lookup.
+    private void cacheReturns(String value, Long ttlMillis) {
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenReturn(Arrays.asList(value, ttlMillis));
     }
 
     @Test
@@ -57,38 +136,23 @@ class UrlServiceTest {
         String originalUrl = "https://example.com/very-long-url";
         LocalDateTime expiryTime = LocalDateTime.now().plusDays(7);
 
-        // First save returns entity without ID, second save returns with ID
-        UrlMapping mappingWithoutId = new UrlMapping();
-        mappingWithoutId.setLongUrl(originalUrl);
-        mappingWithoutId.setExpiryAt(expiryTime);
-        mappingWithoutId.setActive(true);
-
-        UrlMapping mappingWithId = new UrlMapping();
-        mappingWithId.setId(1L);
-        mappingWithId.setLongUrl(originalUrl);
-        mappingWithId.setExpiryAt(expiryTime);
-        mappingWithId.setActive(true);
-
-        when(urlMappingRepository.findByLongUrl(originalUrl)).thenReturn(Optional.empty());
-        when(urlMappingRepository.save(any(UrlMapping.class)))
-                .thenAnswer(invocation -> {
-                    UrlMapping mapping = invocation.getArgument(0);
-                    if (mapping.getId() == null) {
-                        // First save - return with ID set
-                        mapping.setId(1L);
-                    }
-                    return mapping;
-                });
+        when(urlMappingStore.findByLongUrlHash(UrlDigest.sha256(originalUrl))).thenReturn(Optional.empty());
+        when(urlMappingStore.save(any(UrlMapping.class))).thenAnswer(invocation -> invocation.getArgument(0));
         when(shortCodeGenerator.encode(1L)).thenReturn("abc123");
 
+        ArgumentCaptor<UrlMapping> mappingCaptor = ArgumentCaptor.forClass(UrlMapping.class);
+
         // Act
         String result = urlService.createShortUrl(originalUrl, expiryTime);
 
         // Assert
         assertThat(result).isEqualTo("abc123");
-        verify(urlMappingRepository, times(2)).save(any(UrlMapping.class));
+        verify(urlMappingStore, times(1)).save(mappingCaptor.capture());
         verify(shortCodeGenerator).encode(1L);
-        verify(urlEventProducer).sendUrlCreatedEvent(any(UrlCreatedEvent.class));
+        assertThat(mappingCaptor.getValue().getId()).isEqualTo(1L);
+        assertThat(mappingCaptor.getValue().getShortCode()).isEqualTo("abc123");
+        verify(urlEventOutbox).add(any(UrlCreatedEvent.class));
+        verify(issuedCodeIndex).add(1L);
     }
 
     @Test
@@ -120,15 +184,15 @@ class UrlServiceTest {
         existingMapping.setLongUrl(originalUrl);
         existingMapping.setExpiryAt(oldExpiry);
 
-        when(urlMappingRepository.findByLongUrl(originalUrl)).thenReturn(Optional.of(existingMapping));
-        when(urlMappingRepository.save(any(UrlMapping.class))).thenReturn(existingMapping);
+        when(urlMappingStore.findByLongUrlHash(UrlDigest.sha256(originalUrl))).thenReturn(Optional.of(existingMapping));
+        when(urlMappingStore.save(any(UrlMapping.class))).thenReturn(existingMapping);
 
         // Act
         String result = urlService.createShortUrl(originalUrl, newExpiry);
 
         // Assert
         assertThat(result).isEqualTo("existing123");
-        verify(urlMappingRepository).save(existingMapping);
+        verify(urlMappingStore).save(existingMapping);
         assertThat(existingMapping.getExpiryAt()).isEqualTo(newExpiry);
     }
 
@@ -144,14 +208,59 @@ class UrlServiceTest {
         existingMapping.setLongUrl(originalUrl);
         existingMapping.setExpiryAt(existingExpiry);
 
-        when(urlMappingRepository.findByLongUrl(originalUrl)).thenReturn(Optional.of(existingMapping));
+        when(urlMappingStore.findByLongUrlHash(UrlDigest.sha256(originalUrl))).thenReturn(Optional.of(existingMapping));
 
         // Act
         String result = urlService.createShortUrl(originalUrl, LocalDateTime.now().plusDays(5));
 
         // Assert
         assertThat(result).isEqualTo("existing123");
-        verify(urlMappingRepository, never()).save(any());
+        verify(urlMappingStore, never()).save(any());
+    }
+
+    @Test
+    void createShortUrl_whenExistingMappingWasDeactivated_shouldReleaseItAndCreateNewOne() {
+        // Arrange
+        String originalUrl = "https://example.com/deleted";
+        UrlMapping deactivated = new UrlMapping();
+        deactivated.setId(7L);
+        deactivated.setShortCode("old");
+        deactivated.setLongUrl(originalUrl);
+        deactivated.setActive(false);
+
+        when(urlMappingStore.findByLongUrlHash(UrlDigest.sha256(originalUrl))).thenReturn(Optional.of(deactivated));
+        when(shortCodeGenerator.encode(1L)).thenReturn("new");
+
+        // Act
+        String result = urlService.createShortUrl(originalUrl, null);
+
+        // Assert
+        assertThat(result).isEqualTo("new");
+        verify(urlMappingStore).releaseLongUrlHash(deactivated);
+        verify(urlMappingStore, never()).save(deactivated);
+        verify(urlEventOutbox).add(any(UrlCreatedEvent.class));
+    }
+
+    @Test
+    void createShortUrl_whenExistingMappingExpired_shouldReleaseItAndCreateNewOne() {
+        // Arrange
+        String originalUrl = "https://example.com/expired";
+        UrlMapping expired = new UrlMapping();
+        expired.setId(7L);
+        expired.setShortCode("old");
+        expired.setLongUrl(originalUrl);
+        expired.setExpiryAt(LocalDateTime.now().minusDays(1));
+
+        when(urlMappingStore.findByLongUrlHash(UrlDigest.sha256(originalUrl))).thenReturn(Optional.of(expired));
+        when(shortCodeGenerator.encode(1L)).thenReturn("new");
+
+        // Act
+        String result = urlService.createShortUrl(originalUrl, LocalDateTime.now().plusDays(1));
+
+        // Assert
+        assertThat(result).isEqualTo("new");
+        verify(urlMappingStore).releaseLongUrlHash(expired);
+        assertThat(expired.getExpiryAt()).isBefore(LocalDateTime.now());
     }
 
     @Test
@@ -159,15 +268,8 @@ class UrlServiceTest {
         // Arrange
         String originalUrl = "https://example.com/no-expiry";
 
-        when(urlMappingRepository.findByLongUrl(originalUrl)).thenReturn(Optional.empty());
-        when(urlMappingRepository.save(any(UrlMapping.class)))
-                .thenAnswer(invocation -> {
-                    UrlMapping mapping = invocation.getArgument(0);
-                    if (mapping.getId() == null) {
-                        mapping.setId(1L);
-                    }
-                    return mapping;
-                });
+        when(urlMappingStore.findByLongUrlHash(UrlDigest.sha256(originalUrl))).thenReturn(Optional.empty());
+        when(urlMappingStore.save(any(UrlMapping.class))).thenAnswer(invocation -> invocation.getArgument(0));
         when(shortCodeGenerator.encode(1L)).thenReturn("abc123");
 
         // Act
@@ -186,15 +288,15 @@ class UrlServiceTest {
         String shortCode = "abc123";
         String cachedUrl = "https://example.com/cached";
 
-        when(valueOperations.get("short:abc123")).thenReturn(cachedUrl);
+        cacheReturns(cachedUrl, 60_000L);
 
         // Act
         String result = urlService.resolveLongUrl(shortCode);
 
         // Assert
         assertThat(result).isEqualTo(cachedUrl);
-        verify(valueOperations).increment("click:abc123");
-        verify(urlMappingRepository, never()).findByShortCodeAndActiveTrue(anyString());
+        verify(clickBuffer).record("abc123");
+        verify(urlMappingStore, never()).findByIdAndActiveTrue(anyLong());
     }
 
     @Test
@@ -210,8 +312,8 @@ class UrlServiceTest {
         mapping.setExpiryAt(LocalDateTime.now().plusDays(7));
         mapping.setActive(true);
 
-        when(valueOperations.get("short:abc123")).thenReturn(null);
-        when(urlMappingRepository.findByShortCodeAndActiveTrue(shortCode)).thenReturn(Optional.of(mapping));
+        cacheReturns(null, -2L);
+        when(urlMappingStore.findByIdAndActiveTrue(1L)).thenReturn(Optional.of(mapping));
 
         // Act
         String result = urlService.resolveLongUrl(shortCode);
@@ -219,7 +321,7 @@ class UrlServiceTest {
         // Assert
         assertThat(result).isEqualTo(longUrl);
         verify(valueOperations).set(eq("short:abc123"), eq(longUrl), anyLong(), eq(TimeUnit.SECONDS));
-        verify(valueOperations).increment("click:abc123");
+        verify(clickBuffer).record("abc123");
     }
 
     @Test
@@ -227,15 +329,15 @@ class UrlServiceTest {
         // Arrange
         String shortCode = "notfound";
 
-        when(valueOperations.get("short:notfound")).thenReturn(null);
-        when(urlMappingRepository.findByShortCodeAndActiveTrue(shortCode)).thenReturn(Optional.empty());
+        cacheReturns(null, -2L);
+        when(urlMappingStore.findByIdAndActiveTrue(1L)).thenReturn(Optional.empty());
 
         // Act
         String result = urlService.resolveLongUrl(shortCode);
 
         // Assert
         assertThat(result).isNull();
-        verify(valueOperations, never()).increment(anyString());
+        verify(clickBuffer, never()).record(anyString());
     }
 
     @Test
@@ -251,8 +353,8 @@ class UrlServiceTest {
         mapping.setExpiryAt(pastExpiry);
         mapping.setActive(true);
 
-        when(valueOperations.get("short:expired123")).thenReturn(null);
-        when(urlMappingRepository.findByShortCodeAndActiveTrue(shortCode)).thenReturn(Optional.of(mapping));
+        cacheReturns(null, -2L);
+        when(urlMappingStore.findByIdAndActiveTrue(1L)).thenReturn(Optional.of(mapping));
 
         // Act
         String result = urlService.resolveLongUrl(shortCode);
@@ -275,32 +377,50 @@ class UrlServiceTest {
         mapping.setExpiryAt(LocalDateTime.now().plusDays(7));
         mapping.setActive(true);
 
-        when(valueOperations.get("short:abc123")).thenThrow(new RuntimeException("Redis connection failed"));
-        when(urlMappingRepository.findByShortCodeAndActiveTrue(shortCode)).thenReturn(Optional.of(mapping));
+        when(redisTemplate.executePipelined(any(RedisCallback.class)))
+                .thenThrow(new RuntimeException("Redis connection failed"));
+        when(urlMappingStore.findByIdAndActiveTrue(1L)).thenReturn(Optional.of(mapping));
 
         // Act
         String result = urlService.resolveLongUrl(shortCode);
 
         // Assert
         assertThat(result).isEqualTo(longUrl);
-        verify(urlMappingRepository).findByShortCodeAndActiveTrue(shortCode);
+        verify(urlMappingStore).findByIdAndActiveTrue(1L);
+        verify(cacheMetrics).resolved(eq(CacheMetrics.Source.DATABASE), anyLong());
     }
 
     @Test
-    void createShortUrl_shouldSendUrlCreatedEvent() {
+    void resolveLongUrl_withRedisBreakerOpen_shouldGoStraightToDatabase() {
+        // Arrange
+        UrlMapping mapping = new UrlMapping();
+        mapping.setId(1L);
+        mapping.setShortCode("abc123");
+        mapping.setLongUrl("https://example.com/degraded");
+        mapping.setActive(true);
+
+        doThrow(new RuntimeException("Redis circuit breaker is open")).when(redisBreaker).call(anyString(), any());
+        doThrow(new RuntimeException("Redis circuit breaker is open")).when(redisBreaker).run(anyString(), any());
+        when(urlMappingStore.findByIdAndActiveTrue(1L)).thenReturn(Optional.of(mapping));
+
+        // Act
+        String result = urlService.resolveLongUrl("abc123");
+
+        // Assert
+        assertThat(result).isEqualTo("https://example.com/degraded");
+        verify(nearCache).put("abc123", "https://example.com/degraded", (LocalDateTime) null);
+        verifyNoInteractions(valueOperations);
+        verify(clickBuffer).record("abc123");
+    }
+
+    @Test
+    void createShortUrl_shouldWriteUrlCreatedEventWithMappingInOneTransaction() {
         // Arrange
         String originalUrl = "https://example.com/test";
         LocalDateTime expiryTime = LocalDateTime.now().plusDays(7);
 
-        when(urlMappingRepository.findByLongUrl(originalUrl)).thenReturn(Optional.empty());
-        when(urlMappingRepository.save(any(UrlMapping.class)))
-                .thenAnswer(invocation -> {
-                    UrlMapping mapping = invocation.getArgument(0);
-                    if (mapping.getId() == null) {
-                        mapping.setId(1L);
-                    }
-                    return mapping;
-                });
+        when(urlMappingStore.findByLongUrlHash(UrlDigest.sha256(originalUrl))).thenReturn(Optional.empty());
+        when(urlMappingStore.save(any(UrlMapping.class))).thenAnswer(invocation -> invocation.getArgument(0));
         when(shortCodeGenerator.encode(1L)).thenReturn("abc123");
 
         ArgumentCaptor<UrlCreatedEvent> eventCaptor = ArgumentCaptor.forClass(UrlCreatedEvent.class);
@@ -309,10 +429,405 @@ class UrlServiceTest {
         urlService.createShortUrl(originalUrl, expiryTime);
 
         // Assert
-        verify(urlEventProducer).sendUrlCreatedEvent(eventCaptor.capture());
+        InOrder order = inOrder(transactionTemplate, urlMappingStore, urlEventOutbox);
+        order.verify(transactionTemplate).executeWithoutResult(any());
+        order.verify(urlMappingStore).save(any(UrlMapping.class));
+        order.verify(urlEventOutbox).add(eventCaptor.capture());
         UrlCreatedEvent capturedEvent = eventCaptor.getValue();
         assertThat(capturedEvent.getId()).isEqualTo(1L);
         assertThat(capturedEvent.getShortCode()).isEqualTo("abc123");
         assertThat(capturedEvent.getCreatedAt()).isNotNull();
     }
-}
\ No newline at end of file
+
+    @Test
+    void resolveLongUrl_withLocalCacheHit_shouldSkipRedisAndDatabase() {
+        // Arrange
+        when(nearCache.get("abc123")).thenReturn("https://example.com/local");
+
+        // Act
+        String result = urlService.resolveLongUrl("abc123");
+
+        // Assert
+        assertThat(result).isEqualTo("https://example.com/local");
+        verify(redisTemplate, never()).executePipelined(any(RedisCallback.class));
+        verify(urlMappingStore, never()).findByIdAndActiveTrue(anyLong());
+        verify(clickBuffer).record("abc123");
+        verify(cacheMetrics).hit(CacheMetrics.Tier.LOCAL);
+    }
+
+    @Test
+    void resolveLongUrl_withRedisHit_shouldPopulateLocalCacheWithRemainingTtl() {
+        // Arrange
+        cacheReturns("https://example.com/cached", 5000L);
+
+        // Act
+        urlService.resolveLongUrl("abc123");
+
+        // Assert
+        verify(nearCache).put("abc123", "https://example.com/cached", Duration.ofMillis(5000));
+        verify(cacheMetrics).miss(CacheMetrics.Tier.LOCAL);
+        verify(cacheMetrics).hit(CacheMetrics.Tier.REDIS);
+        verify(cacheMetrics).resolved(eq(CacheMetrics.Source.REDIS), anyLong());
+    }
+
+    @Test
+    void resolveLongUrl_withRedisHitAboutToExpire_shouldReloadFromDatabase() {
+        // Arrange
+        properties.getCache().getEarlyRefresh().setBeta(1_000_000);
+        UrlMapping mapping = new UrlMapping();
+        mapping.setId(1L);
+        mapping.setShortCode("abc123");
+        mapping.setLongUrl("https://example.com/fresh");
+        mapping.setActive(true);
+        cacheReturns("https://example.com/cached", 1L);
+        when(urlMappingStore.findByIdAndActiveTrue(1L)).thenReturn(Optional.of(mapping));
+        // The code is in Redis, so the filter's opinion does not matter.
+        when(issuedCodeIndex.mightBeIssued(1L)).thenReturn(false);
+
+        // Act
+        String result = urlService.resolveLongUrl("abc123");
+
+        // Assert
+        assertThat(result).isEqualTo("https://example.com/fresh");
+        verify(cacheMetrics).earlyRefresh();
+        verify(valueOperations).set("short:abc123", "https://example.com/fresh", TimeUnit.HOURS.toSeconds(24),
+                TimeUnit.SECONDS);
+        verify(clickBuffer, times(1)).record("abc123");
+    }
+
+    @Test
+    void resolveLongUrl_withEarlyRefreshDisabled_shouldServeRedisHit() {
+        // Arrange
+        properties.getCache().getEarlyRefresh().setBeta(0);
+        cacheReturns("https://example.com/cached", 1L);
+
+        // Act
+        String result = urlService.resolveLongUrl("abc123");
+
+        // Assert
+        assertThat(result).isEqualTo("https://example.com/cached");
+        verify(urlMappingStore, never()).findByIdAndActiveTrue(anyLong());
+    }
+
+    @Test
+    void shouldRefreshEarly_shouldGrowMoreLikelyAsTtlShrinks() {
+        // Arrange
+        long loadNanos = TimeUnit.MILLISECONDS.toNanos(10);
+
+        // Act & Assert: -ln(0.5) * 10ms is about 6.9ms
+        assertThat(UrlService.shouldRefreshEarly(Duration.ofMillis(5), loadNanos, 1.0, 0.5)).isTrue();
+        assertThat(UrlService.shouldRefreshEarly(Duration.ofMillis(8), loadNanos, 1.0, 0.5)).isFalse();
+        assertThat(UrlService.shouldRefreshEarly(Duration.ofMillis(8), loadNanos, 2.0, 0.5)).isTrue();
+        assertThat(UrlService.shouldRefreshEarly(Duration.ofHours(1), loadNanos, 1.0, 1e-9)).isFalse();
+        assertThat(UrlService.shouldRefreshEarly(null, loadNanos, 1.0, 1e-9)).isFalse();
+        assertThat(UrlService.shouldRefreshEarly(Duration.ZERO, loadNanos, 0, 0.5)).isFalse();
+    }
+
+    @Test
+    void resolveFromDatabase_withConcurrentMisses_shouldQueryDatabaseOnce() throws Exception {
+        // Arrange
+        UrlMapping mapping = new UrlMapping();
+        mapping.setId(1L);
+        mapping.setShortCode("abc123");
+        mapping.setLongUrl("https://example.com/viral");
+        mapping.setActive(true);
+        CountDownLatch queried = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(urlMappingStore.findByIdAndActiveTrue(1L)).thenAnswer(invocation -> {
+            queried.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return Optional.of(mapping);
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            // Act
+            Future<String> leader = executor.submit(() -> urlService.resolveFromDatabase("abc123"));
+            assertThat(queried.await(5, TimeUnit.SECONDS)).isTrue();
+            List<Future<String>> followers = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                followers.add(executor.submit(() -> urlService.resolveFromDatabase("abc123")));
+            }
+            verify(cacheMetrics, timeout(5000).times(3)).coalesced();
+            release.countDown();
+
+            // Assert
+            assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("https://example.com/viral");
+            for (Future<String> follower : followers) {
+                assertThat(follower.get(5, TimeUnit.SECONDS)).isEqualTo("https://example.com/viral");
+            }
+            verify(urlMappingStore, times(1)).findByIdAndActiveTrue(1L);
+            verify(clickBuffer, times(4)).record("abc123");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void resolveLongUrl_withDatabaseHit_shouldPopulateLocalCacheWithExpiry() {
+        // Arrange
+        LocalDateTime expiryAt = LocalDateTime.now().plusDays(1);
+        UrlMapping mapping = new UrlMapping();
+        mapping.setShortCode("abc123");
+        mapping.setLongUrl("https://example.com/db");
+        mapping.setExpiryAt(expiryAt);
+
+        when(urlMappingStore.findByIdAndActiveTrue(1L)).thenReturn(Optional.of(mapping));
+
+        // Act
+        urlService.resolveLongUrl("abc123");
+
+        // Assert
+        verify(nearCache).put("abc123", "https://example.com/db", expiryAt);
+        verify(cacheMetrics).miss(CacheMetrics.Tier.REDIS);
+    }
+
+    @Test
+    void resolveLongUrl_withUndecodableCode_shouldNotQueryDatabase() {
+        // Arrange
+        when(shortCodeGenerator.decode("bad-code")).thenReturn(-1L);
+
+        // Act
+        String result = urlService.resolveLongUrl("bad-code");
+
+        // Assert
+        assertThat(result).isNull();
+        verify(urlMappingStore, never()).findByIdAndActiveTrue(anyLong());
+    }
+
+    @Test
+    void resolveLongUrl_withUnissuedCode_shouldSkipRedisAndDatabase() {
+        // Arrange
+        when(issuedCodeIndex.isUnissued(1L)).thenReturn(true);
+
+        // Act
+        String result = urlService.resolveLongUrl("abc123");
+
+        // Assert
+        assertThat(result).isNull();
+        verify(cacheMetrics).negativeHit(CacheMetrics.Negative.INDEX);
+        verifyNoInteractions(valueOperations, urlMappingStore);
+    }
+
+    @Test
+    void resolveLongUrl_withTombstone_shouldReturnNullWithoutDatabase() {
+        // Arrange
+        cacheReturns("", 60_000L);
+
+        // Act
+        String result = urlService.resolveLongUrl("abc123");
+
+        // Assert
+        assertThat(result).isNull();
+        verify(cacheMetrics).negativeHit(CacheMetrics.Negative.TOMBSTONE);
+        verify(urlMappingStore, never()).findByIdAndActiveTrue(anyLong());
+        verify(clickBuffer, never()).record(anyString());
+    }
+
+    @Test
+    void resolveLongUrl_whenFilterHasNeverSeenCode_shouldSkipDatabase() {
+        // Arrange
+        cacheReturns(null, -2L);
+        when(issuedCodeIndex.mightBeIssued(1L)).thenReturn(false);
+
+        // Act
+        String result = urlService.resolveLongUrl("abc123");
+
+        // Assert
+        assertThat(result).isNull();
+        verify(cacheMetrics).negativeHit(CacheMetrics.Negative.INDEX);
+        verify(cacheMetrics).resolved(eq(CacheMetrics.Source.NEGATIVE), anyLong());
+        verify(urlMappingStore, never()).findByIdAndActiveTrue(anyLong());
+    }
+
+    @Test
+    void resolveLongUrl_withUnknownCode_shouldCacheTombstone() {
+        // Arrange
+        cacheReturns(null, -2L);
+        when(urlMappingStore.findByIdAndActiveTrue(1L)).thenReturn(Optional.empty());
+
+        // Act
+        String result = urlService.resolveLongUrl("abc123");
+
+        // Assert
+        assertThat(result).isNull();
+        verify(valueOperations).setIfAbsent("short:abc123", "", Duration.ofSeconds(60));
+    }
+
+    @Test
+    void resolveLongUrl_withNegativeCacheDisabled_shouldNotCacheTombstone() {
+        // Arrange
+        properties.getNegativeCache().setEnabled(false);
+        cacheReturns(null, -2L);
+        when(urlMappingStore.findByIdAndActiveTrue(1L)).thenReturn(Optional.empty());
+
+        // Act
+        urlService.resolveLongUrl("abc123");
+
+        // Assert
+        verify(valueOperations, never()).setIfAbsent(anyString(), anyString(), any(Duration.class));
+    }
+
+    @Test
+    void resolveLongUrl_whenStoredCodeDiffers_shouldReturnNull() {
+        // Arrange
+        UrlMapping mapping = new UrlMapping();
+        mapping.setId(1L);
+        mapping.setShortCode("b");
+        mapping.setLongUrl("https://example.com/db");
+
+        when(urlMappingStore.findByIdAndActiveTrue(1L)).thenReturn(Optional.of(mapping));
+
+        // Act
+        String result = urlService.resolveLongUrl("ab");
+
+        // Assert
+        assertThat(result).isNull();
+        verify(clickBuffer, never()).record(anyString());
+    }
+
+    @Test
+    void deactivateShortUrl_shouldEvictEverywhereAndPublishInvalidation() {
+        // Arrange
+        UrlMapping mapping = new UrlMapping();
+        mapping.setShortCode("abc123");
+        mapping.setActive(true);
+
+        when(urlMappingStore.findByIdAndActiveTrue(1L)).thenReturn(Optional.of(mapping));
+
+        // Act
+        boolean result = urlService.deactivateShortUrl("abc123");
+
+        // Assert
+        assertThat(result).isTrue();
+        assertThat(mapping.isActive()).isFalse();
+        verify(urlMappingStore).save(mapping);
+        verify(urlMappingStore).releaseLongUrlHash(mapping);
+        verify(nearCache).invalidate("abc123");
+        verify(responseCache).invalidate("abc123");
+        verify(redisTemplate).delete("short:abc123");
+        verify(redisTemplate).convertAndSend("url:invalidate", "abc123");
+    }
+
+    @Test
+    void resolveLongUrl_whenReplicaHasNotSeenNewCode_shouldConfirmOnPrimary() {
+        // Arrange
+        UrlMapping mapping = new UrlMapping();
+        mapping.setId(1L);
+        mapping.setShortCode("abc123");
+        mapping.setLongUrl("https://example.com/new");
+        mapping.setActive(true);
+
+        when(replicaReads.isEnabled()).thenReturn(true);
+        doReturn(null).when(replicaReads).read(any());
+        when(urlMappingStore.findByIdAndActiveTrue(1L)).thenReturn(Optional.of(mapping));
+
+        // Act
+        String result = urlService.resolveLongUrl("abc123");
+
+        // Assert
+        assertThat(result).isEqualTo("https://example.com/new");
+        verify(valueOperations, never()).setIfAbsent(anyString(), eq(""), any(Duration.class));
+    }
+
+    @Test
+    void deactivateShortUrl_withReplicas_shouldTombstoneInsteadOfDelete() {
+        // Arrange
+        UrlMapping mapping = new UrlMapping();
+        mapping.setShortCode("abc123");
+        mapping.setActive(true);
+
+        when(replicaReads.isEnabled()).thenReturn(true);
+        when(urlMappingStore.findByIdAndActiveTrue(1L)).thenReturn(Optional.of(mapping));
+
+        // Act
+        urlService.deactivateShortUrl("abc123");
+
+        // Assert
+        verify(valueOperations).set("short:abc123", "", properties.getNegativeCache().getTtl());
+        verify(redisTemplate, never()).delete(anyString());
+        verify(redisTemplate).convertAndSend("url:invalidate", "abc123");
+    }
+
+    @Test
+    void deactivateShortUrl_withUnknownCode_shouldReturnFalse() {
+        // Arrange
+        when(urlMappingStore.findByIdAndActiveTrue(1L)).thenReturn(Optional.empty());
+
+        // Act & Assert
+        assertThat(urlService.deactivateShortUrl("missing")).isFalse();
+        verify(nearCache, never()).invalidate(anyString());
+    }
+
+    @Test
+    void createShortUrl_whenUrlNeverSeen_shouldSkipDedupeQuery() {
+        // Arrange
+        String originalUrl = "https://example.com/new";
+        when(longUrlIndex.mightContain(any())).thenReturn(false);
+        when(shortCodeGenerator.encode(1L)).thenReturn("abc123");
+
+        // Act
+        String result = urlService.createShortUrl(originalUrl, null);
+
+        // Assert
+        assertThat(result).isEqualTo("abc123");
+        verify(urlMappingStore, never()).findByLongUrlHash(any());
+        verify(longUrlIndex).add(UrlDigest.sha256(originalUrl));
+    }
+
+    @Test
+    void createShortUrl_shouldStoreDigestOfLongUrl() {
+        // Arrange
+        String originalUrl = "https://example.com/digest";
+        when(urlMappingStore.findByLongUrlHash(any())).thenReturn(Optional.empty());
+        when(shortCodeGenerator.encode(1L)).thenReturn("abc123");
+        ArgumentCaptor<UrlMapping> mappingCaptor = ArgumentCaptor.forClass(UrlMapping.class);
+
+        // Act
+        urlService.createShortUrl(originalUrl, null);
+
+        // Assert
+        verify(urlMappingStore).save(mappingCaptor.capture());
+        assertThat(mappingCaptor.getValue().getLongUrlHash()).isEqualTo(UrlDigest.sha256(originalUrl));
+    }
+
+    @Test
+    void createShortUrl_withDigestCollision_shouldFail() {
+        // Arrange
+        UrlMapping other = new UrlMapping();
+        other.setId(7L);
+        other.setLongUrl("https://example.com/other");
+        when(urlMappingStore.findByLongUrlHash(any())).thenReturn(Optional.of(other));
+
+        // Act & Assert
+        assertThatThrownBy(() -> urlService.createShortUrl("https://example.com/mine", null))
+                .isInstanceOf(IllegalStateException.class);
+        verify(urlMappingStore, never()).save(any());
+    }
+
+    @Test
+    void createShortUrl_whenAnotherNodeInsertedFirst_shouldReturnTheirShortCode() {
+        // Arrange
+        String originalUrl = "https://example.com/race";
+        LocalDateTime expiry = LocalDateTime.now().plusDays(1);
+
+        UrlMapping existing = new UrlMapping();
+        existing.setShortCode("theirs");
+        existing.setLongUrl(originalUrl);
+
+        when(urlMappingStore.findByLongUrlHash(any())).thenReturn(Optional.empty(), Optional.of(existing));
+        when(shortCodeGenerator.encode(1L)).thenReturn("mine");
+        when(urlMappingStore.save(any(UrlMapping.class)))
+                .thenThrow(new DataIntegrityViolationException("duplicate key"))
+                .thenReturn(existing);
+
+        // Act
+        String result = urlService.createShortUrl(originalUrl, expiry);
+
+        // Assert
+        assertThat(result).isEqualTo("theirs");
+        assertThat(existing.getExpiryAt()).isEqualTo(expiry);
+        verify(urlEventOutbox, never()).add(any());
+        verify(cacheMetrics).shortened(eq(CacheMetrics.Shorten.RACE), anyLong());
+    }
+}